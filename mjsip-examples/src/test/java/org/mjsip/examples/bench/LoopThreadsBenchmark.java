@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.examples.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mjsip.time.LoopThreads;
+import org.zoolu.net.UdpPacket;
+import org.zoolu.net.UdpProvider;
+import org.zoolu.net.UdpProviderListener;
+import org.zoolu.net.UdpSocket;
+
+/**
+ * Compares the memory and thread footprint of many concurrent {@link UdpProvider} receive loops on
+ * platform threads and on virtual threads.
+ * 
+ * <p>
+ * Usage: <code>java org.mjsip.examples.bench.LoopThreadsBenchmark [count] [platform|virtual]</code>
+ * </p>
+ * 
+ * <p>
+ * Not a test case; run manually from the test class path. Virtual threads require Java 21 and the
+ * multi-release build of <code>mjsip-util</code>.
+ * </p>
+ */
+public class LoopThreadsBenchmark {
+
+	/**
+	 * Runs the benchmark.
+	 */
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		boolean virtual = args.length > 1 && args[1].equalsIgnoreCase("virtual");
+
+		LoopThreads loopThreads = LoopThreads.of(virtual);
+		System.out.println("Loops: " + count + ", threads: " + loopThreads);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		long heapBefore = usedHeap(memory);
+		int threadsBefore = threads.getThreadCount();
+		long start = System.nanoTime();
+
+		UdpProviderListener listener = new UdpProviderListener() {
+			@Override
+			public void onReceivedPacket(UdpProvider udp, UdpPacket packet) {
+				// Ignore.
+			}
+
+			@Override
+			public void onServiceTerminated(UdpProvider udp, Exception error) {
+				// Ignore.
+			}
+		};
+
+		List<UdpProvider> providers = new ArrayList<>(count);
+		try {
+			for (int n = 0; n < count; n++) {
+				providers.add(new UdpProvider(new UdpSocket(0), 0, listener, null, loopThreads));
+			}
+		} catch (SocketException ex) {
+			System.out.println("Stopped after " + providers.size() + " sockets: " + ex.getMessage());
+		}
+		long startupMillis = (System.nanoTime() - start) / 1000000;
+
+		// Let all loops block in receive.
+		Thread.sleep(1000);
+
+		long heapAfter = usedHeap(memory);
+		int threadsAfter = threads.getThreadCount();
+
+		System.out.println("Startup time:     " + startupMillis + " ms");
+		System.out.println("Platform threads: " + threadsBefore + " -> " + threadsAfter);
+		System.out.println("Used heap:        " + (heapBefore / 1024) + " KiB -> " + (heapAfter / 1024) + " KiB");
+		System.out.println("Heap per loop:    " + ((heapAfter - heapBefore) / Math.max(1, providers.size())) + " B");
+
+		for (UdpProvider provider : providers) {
+			provider.halt();
+			provider.getUdpSocket().close();
+		}
+	}
+
+	private static long usedHeap(MemoryMXBean memory) {
+		System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+}
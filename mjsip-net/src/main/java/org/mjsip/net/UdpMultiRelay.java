@@ -25,6 +25,7 @@ package org.mjsip.net;
 import java.io.InterruptedIOException;
 import java.util.Vector;
 
+import org.mjsip.time.LoopThreads;
 import org.zoolu.net.SocketAddress;
 import org.zoolu.net.UdpPacket;
 
@@ -45,7 +46,7 @@ import org.zoolu.net.UdpPacket;
   *   <li> filtered: packets are not sent to the same node they come from</li>
   * </ul>
   */
-public class UdpMultiRelay extends Thread {
+public class UdpMultiRelay implements Runnable {
 	
 	/** Local socket */
 	UdpConnectedSocket socket;  
@@ -67,6 +68,10 @@ public class UdpMultiRelay extends Thread {
 
 	/** Whether it is running */
 	boolean stop;
+
+	/** The thread running the loop, or <i>null</i> if not yet started */
+	private volatile Thread thread=null;
+
 	/** Maximum time that the UDP relay can remain active after been halted */
 	int socket_to=3000; // 3sec 
 
@@ -144,6 +149,36 @@ public class UdpMultiRelay extends Thread {
 		return socket_to;
 	}
 		 
+	/** Starts the loop in a new thread.
+	  * The loop is started by the constructors.
+	  * @throws IllegalThreadStateException if the loop has already been started */
+	public synchronized void start() {
+		if (thread!=null) throw new IllegalThreadStateException("Already started: "+this);
+		thread=LoopThreads.PLATFORM.start(this,"UdpMultiRelay");
+	}
+
+
+	/** Whether the thread running the loop is alive. */
+	public boolean isAlive() {
+		Thread t=thread;
+		return t!=null && t.isAlive();
+	}
+
+
+	/** Waits for the loop to terminate. */
+	public void join() throws InterruptedException {
+		join(0);
+	}
+
+
+	/** Waits at most <i>millis</i> milliseconds for the loop to terminate.
+	  * @param millis the time to wait in milliseconds, or 0 to wait forever */
+	public void join(long millis) throws InterruptedException {
+		Thread t=thread;
+		if (t!=null) t.join(millis);
+	}
+
+
 	/** Redirect packets from source addr/port to destination addr/port  */
 	@Override
 	public void run() {
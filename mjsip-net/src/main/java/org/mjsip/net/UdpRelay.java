@@ -24,6 +24,7 @@ package org.mjsip.net;
 
 import java.io.InterruptedIOException;
 
+import org.mjsip.time.LoopThreads;
 import org.zoolu.net.IpAddress;
 import org.zoolu.net.UdpPacket;
 import org.zoolu.net.UdpSocket;
@@ -33,7 +34,7 @@ import org.zoolu.net.UdpSocket;
   * It receives UDP packets at a local port and relays them toward a remote UDP socket
   * (destination address/port).
   */
-public class UdpRelay extends Thread {
+public class UdpRelay implements Runnable {
 	
 	// The maximum IP packet size
 	//public static final int MAX_PKT_SIZE=2000;
@@ -51,6 +52,8 @@ public class UdpRelay extends Thread {
 	int dest_port;  
 	/** Whether it is running */
 	boolean stop;
+	/** The thread running the loop, or <i>null</i> if not yet started */
+	private volatile Thread thread=null;
 	/** Maximum time that the UDP relay can remain active after been halted (in milliseconds) */
 	int socket_to=3000; // 3sec 
 	/** Maximum time that the UDP relay remains active without receiving UDP datagrams (in seconds) */
@@ -132,6 +135,36 @@ public class UdpRelay extends Thread {
 		return socket_to;
 	}
 		 
+	/** Starts the loop in a new thread.
+	  * The loop is started by the constructors.
+	  * @throws IllegalThreadStateException if the loop has already been started */
+	public synchronized void start() {
+		if (thread!=null) throw new IllegalThreadStateException("Already started: "+this);
+		thread=LoopThreads.PLATFORM.start(this,"UdpRelay "+local_port);
+	}
+
+
+	/** Whether the thread running the loop is alive. */
+	public boolean isAlive() {
+		Thread t=thread;
+		return t!=null && t.isAlive();
+	}
+
+
+	/** Waits for the loop to terminate. */
+	public void join() throws InterruptedException {
+		join(0);
+	}
+
+
+	/** Waits at most <i>millis</i> milliseconds for the loop to terminate.
+	  * @param millis the time to wait in milliseconds, or 0 to wait forever */
+	public void join(long millis) throws InterruptedException {
+		Thread t=thread;
+		if (t!=null) t.join(millis);
+	}
+
+
 	/** Redirect packets received from remote source addr/port to destination addr/port  */
 	@Override
 	public void run() {
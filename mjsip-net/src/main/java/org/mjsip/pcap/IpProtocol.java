@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+/**
+ * Transport protocol of a captured packet.
+ */
+public enum IpProtocol {
+
+	/** A UDP datagram. */
+	UDP(17),
+
+	/** A segment of a TCP stream. */
+	TCP(6);
+
+	private final int _number;
+
+	private IpProtocol(int number) {
+		_number = number;
+	}
+
+	/**
+	 * The protocol number in the IP header.
+	 */
+	public int getNumber() {
+		return _number;
+	}
+
+	/**
+	 * The {@link IpProtocol} with the given protocol number, <code>null</code> if not supported.
+	 */
+	public static IpProtocol fromNumber(int number) {
+		for (IpProtocol protocol : values()) {
+			if (protocol._number == number) {
+				return protocol;
+			}
+		}
+		return null;
+	}
+
+}
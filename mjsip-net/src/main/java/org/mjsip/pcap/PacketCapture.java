@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Captures the sent and received packets of all sockets into a {@link PacketSink}, e.g. pcap files
+ * that can be opened in Wireshark.
+ *
+ * <p>
+ * Sending and receiving threads only copy the packet into a pre-allocated slot of a bounded,
+ * lock-free ring buffer. A background thread drains the buffer into the sink. If the buffer is
+ * full, because the sink cannot keep up, packets are dropped and counted instead of blocking the
+ * I/O threads.
+ * </p>
+ *
+ * <p>
+ * Capturing is switched on by {@link #setDefault(PacketCapture) installing} a default capture that
+ * is used by all UDP sockets and TCP connections.
+ * </p>
+ */
+public final class PacketCapture implements AutoCloseable {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(PacketCapture.class);
+
+	/** Default number of packets that can be buffered. */
+	public static final int DEFAULT_CAPACITY = 2048;
+
+	/** Default maximum number of bytes captured per packet. */
+	public static final int DEFAULT_SNAP_LENGTH = 4096;
+
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static volatile PacketCapture _default;
+
+	private final PacketSink _sink;
+
+	private final PacketFilter _filter;
+
+	private final Slot[] _slots;
+
+	private final int _mask;
+
+	private final AtomicLong _tail = new AtomicLong();
+
+	private final AtomicLong _dropped = new AtomicLong();
+
+	private final long _baseMicros;
+
+	private final long _baseNanos;
+
+	private final Thread _writer;
+
+	private long _head;
+
+	private volatile long _written;
+
+	private volatile boolean _stopped;
+
+	private volatile InetAddress _localIPv4;
+
+	private volatile InetAddress _localIPv6;
+
+	/**
+	 * Creates a {@link PacketCapture} and starts its writer thread.
+	 *
+	 * @param sink
+	 *        The sink to write packets to.
+	 * @param filter
+	 *        The filter selecting the packets to capture.
+	 * @param capacity
+	 *        The number of packets that can be buffered, rounded up to a power of two.
+	 * @param snapLength
+	 *        The maximum number of bytes captured per packet.
+	 */
+	public PacketCapture(PacketSink sink, PacketFilter filter, int capacity, int snapLength) {
+		_sink = sink;
+		_filter = filter;
+
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		_slots = new Slot[size];
+		for (int n = 0; n < size; n++) {
+			_slots[n] = new Slot(n, snapLength);
+		}
+		_mask = size - 1;
+
+		_baseMicros = System.currentTimeMillis() * 1000;
+		_baseNanos = System.nanoTime();
+
+		_writer = new Thread(this::drain, "PacketCapture");
+		_writer.setDaemon(true);
+		_writer.start();
+	}
+
+	/**
+	 * The capture used by all sockets, <code>null</code> if capturing is switched off.
+	 */
+	public static PacketCapture getDefault() {
+		return _default;
+	}
+
+	/**
+	 * Sets the capture used by all sockets.
+	 *
+	 * @param capture
+	 *        The new default capture, <code>null</code> to switch capturing off.
+	 * @return The former default capture that should be {@link #close() closed} by the caller.
+	 */
+	public static synchronized PacketCapture setDefault(PacketCapture capture) {
+		PacketCapture before = _default;
+		_default = capture;
+		return before;
+	}
+
+	/**
+	 * Starts capturing all packets into rotating pcap files, unless a default capture is already
+	 * installed.
+	 *
+	 * @param prefix
+	 *        See {@link PcapFileSink#PcapFileSink(String, long, int, int)}.
+	 * @param filter
+	 *        The filter specification, see {@link PacketFilter#parse(String)}.
+	 * @param maxFileSize
+	 *        See {@link PcapFileSink#PcapFileSink(String, long, int, int)}.
+	 * @param maxFiles
+	 *        See {@link PcapFileSink#PcapFileSink(String, long, int, int)}.
+	 * @return The default capture.
+	 */
+	public static synchronized PacketCapture startDefault(String prefix, String filter, long maxFileSize,
+			int maxFiles) {
+		PacketCapture result = _default;
+		if (result == null) {
+			result = new PacketCapture(new PcapFileSink(prefix, maxFileSize, maxFiles, DEFAULT_SNAP_LENGTH),
+				PacketFilter.parse(filter), DEFAULT_CAPACITY, DEFAULT_SNAP_LENGTH);
+			_default = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the address reported as local address for packets of sockets bound to the wildcard
+	 * address.
+	 *
+	 * <p>
+	 * The actual local address of a datagram received on a wildcard socket is not available. Instead,
+	 * the address the host is reachable at, e.g. the configured via or media address, is recorded.
+	 * One address can be set for IPv4 and IPv6 each.
+	 * </p>
+	 *
+	 * @param address
+	 *        The local address of the host.
+	 */
+	public void setLocalAddress(InetAddress address) {
+		if (address instanceof Inet6Address) {
+			_localIPv6 = address;
+		} else {
+			_localIPv4 = address;
+		}
+	}
+
+	/**
+	 * The address {@link #setLocalAddress(InetAddress) set} for the address family of the given
+	 * remote address, <code>null</code> if there is none.
+	 */
+	public InetAddress getLocalAddress(InetAddress remote) {
+		return remote instanceof Inet6Address ? _localIPv6 : _localIPv4;
+	}
+
+	/**
+	 * Captures a packet.
+	 *
+	 * <p>
+	 * Called on the sending or receiving thread. The payload is copied, the given buffer can be
+	 * reused immediately.
+	 * </p>
+	 *
+	 * @return Whether the packet was buffered, <code>false</code> if it was filtered or dropped.
+	 */
+	public boolean capture(IpProtocol protocol, InetAddress src, int srcPort, InetAddress dst, int dstPort,
+			byte[] buf, int off, int len) {
+		if (_stopped || !_filter.accept(protocol, srcPort, dstPort)) {
+			return false;
+		}
+
+		Slot slot;
+		long pos = _tail.get();
+		while (true) {
+			slot = _slots[(int) pos & _mask];
+			long diff = slot._sequence - pos;
+			if (diff == 0) {
+				if (_tail.compareAndSet(pos, pos + 1)) {
+					break;
+				}
+				pos = _tail.get();
+			} else if (diff < 0) {
+				_dropped.incrementAndGet();
+				return false;
+			} else {
+				pos = _tail.get();
+			}
+		}
+
+		int captured = Math.min(len, slot._data.length);
+		System.arraycopy(buf, off, slot._data, 0, captured);
+		slot._length = captured;
+		slot._origLength = len;
+		slot._nanos = System.nanoTime();
+		slot._protocol = protocol;
+		slot._src = src;
+		slot._srcPort = srcPort;
+		slot._dst = dst;
+		slot._dstPort = dstPort;
+
+		// Publish.
+		slot._sequence = pos + 1;
+		return true;
+	}
+
+	/**
+	 * The number of packets dropped, because the buffer was full.
+	 */
+	public long getDropped() {
+		return _dropped.get();
+	}
+
+	/**
+	 * The number of packets written to the sink.
+	 */
+	public long getWritten() {
+		return _written;
+	}
+
+	/**
+	 * Writes all buffered packets and waits until they have been flushed to the sink.
+	 */
+	public void flush() throws InterruptedException {
+		long target = _tail.get();
+		while (!_stopped && _written < target && _writer.isAlive()) {
+			LockSupport.unpark(_writer);
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * Writes the remaining packets, stops the writer thread and closes the sink.
+	 */
+	@Override
+	public void close() {
+		_stopped = true;
+		LockSupport.unpark(_writer);
+		try {
+			_writer.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		try {
+			while (true) {
+				boolean stopped = _stopped;
+				int count = drainAvailable();
+				if (count > 0) {
+					_sink.flush();
+				} else if (stopped) {
+					break;
+				} else {
+					LockSupport.parkNanos(IDLE_NANOS);
+				}
+			}
+		} catch (IOException ex) {
+			LOG.error("Packet capture stopped: " + ex.getMessage(), ex);
+			_stopped = true;
+		} finally {
+			try {
+				_sink.close();
+			} catch (IOException ex) {
+				LOG.warn("Closing packet capture failed: " + ex.getMessage());
+			}
+		}
+	}
+
+	private int drainAvailable() throws IOException {
+		int count = 0;
+		while (true) {
+			long pos = _head;
+			Slot slot = _slots[(int) pos & _mask];
+			if (slot._sequence != pos + 1) {
+				return count;
+			}
+			long micros = _baseMicros + (slot._nanos - _baseNanos) / 1000;
+			_sink.write(micros, slot._protocol, slot._src, slot._srcPort, slot._dst, slot._dstPort, slot._data, 0,
+				slot._length, slot._origLength);
+			slot._src = null;
+			slot._dst = null;
+
+			// Release the slot for the next round.
+			slot._sequence = pos + _slots.length;
+			_head = pos + 1;
+			_written++;
+			count++;
+		}
+	}
+
+	private static final class Slot {
+
+		volatile long _sequence;
+
+		final byte[] _data;
+
+		int _length;
+
+		int _origLength;
+
+		long _nanos;
+
+		IpProtocol _protocol;
+
+		InetAddress _src;
+
+		int _srcPort;
+
+		InetAddress _dst;
+
+		int _dstPort;
+
+		Slot(long sequence, int snapLength) {
+			_sequence = sequence;
+			_data = new byte[snapLength];
+		}
+
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+/**
+ * Decides which packets are captured by a {@link PacketCapture}.
+ *
+ * <p>
+ * A filter is evaluated on the sending or receiving thread before the packet is copied and must
+ * therefore be cheap.
+ * </p>
+ */
+@FunctionalInterface
+public interface PacketFilter {
+
+	/**
+	 * Filter accepting all packets.
+	 */
+	PacketFilter ALL = (protocol, srcPort, dstPort) -> true;
+
+	/**
+	 * Whether to capture a packet.
+	 *
+	 * @param protocol
+	 *        The transport protocol of the packet.
+	 * @param srcPort
+	 *        The source port.
+	 * @param dstPort
+	 *        The destination port.
+	 */
+	boolean accept(IpProtocol protocol, int srcPort, int dstPort);
+
+	/**
+	 * Filter accepting packets accepted by this and the given filter.
+	 */
+	default PacketFilter and(PacketFilter other) {
+		return (protocol, srcPort, dstPort) -> accept(protocol, srcPort, dstPort)
+			&& other.accept(protocol, srcPort, dstPort);
+	}
+
+	/**
+	 * Filter accepting packets accepted by this or the given filter.
+	 */
+	default PacketFilter or(PacketFilter other) {
+		return (protocol, srcPort, dstPort) -> accept(protocol, srcPort, dstPort)
+			|| other.accept(protocol, srcPort, dstPort);
+	}
+
+	/**
+	 * Filter accepting packets of the given protocol.
+	 */
+	static PacketFilter protocol(IpProtocol expected) {
+		return (protocol, srcPort, dstPort) -> protocol == expected;
+	}
+
+	/**
+	 * Filter accepting packets with a source or destination port in the range from
+	 * <code>first</code> to <code>last</code> (inclusive).
+	 */
+	static PacketFilter ports(int first, int last) {
+		return (protocol, srcPort, dstPort) -> (srcPort >= first && srcPort <= last)
+			|| (dstPort >= first && dstPort <= last);
+	}
+
+	/**
+	 * Parses a filter specification.
+	 *
+	 * <p>
+	 * The specification is a comma separated list of alternatives. Each alternative is a protocol
+	 * (<code>udp</code> or <code>tcp</code>), a port or port range (e.g. <code>5060</code> or
+	 * <code>10000-20000</code>), or a protocol followed by a colon and a port or port range (e.g.
+	 * <code>udp:5060</code>). An empty or <code>null</code> specification accepts all packets.
+	 * </p>
+	 *
+	 * @throws IllegalArgumentException
+	 *         If the specification cannot be parsed.
+	 */
+	static PacketFilter parse(String spec) {
+		if (spec == null || spec.isBlank()) {
+			return ALL;
+		}
+		PacketFilter result = null;
+		for (String alternative : spec.split(",")) {
+			PacketFilter filter = parseAlternative(alternative.trim());
+			result = result == null ? filter : result.or(filter);
+		}
+		return result;
+	}
+
+	private static PacketFilter parseAlternative(String alternative) {
+		int colon = alternative.indexOf(':');
+		if (colon >= 0) {
+			return parseProtocol(alternative.substring(0, colon))
+				.and(parsePorts(alternative.substring(colon + 1)));
+		}
+		if (!alternative.isEmpty() && Character.isDigit(alternative.charAt(0))) {
+			return parsePorts(alternative);
+		}
+		return parseProtocol(alternative);
+	}
+
+	private static PacketFilter parseProtocol(String name) {
+		try {
+			return protocol(IpProtocol.valueOf(name.trim().toUpperCase()));
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Unknown protocol in packet filter: " + name);
+		}
+	}
+
+	private static PacketFilter parsePorts(String range) {
+		try {
+			int dash = range.indexOf('-');
+			if (dash < 0) {
+				int port = Integer.parseInt(range.trim());
+				return ports(port, port);
+			}
+			return ports(Integer.parseInt(range.substring(0, dash).trim()),
+				Integer.parseInt(range.substring(dash + 1).trim()));
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid port range in packet filter: " + range);
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Destination of the packets drained from a {@link PacketCapture}.
+ *
+ * <p>
+ * A sink is only used by the writer thread of a capture and needs not be thread-safe.
+ * </p>
+ */
+public interface PacketSink extends AutoCloseable {
+
+	/**
+	 * Writes a packet.
+	 *
+	 * @param timeMicros
+	 *        The capture time in microseconds since the epoch.
+	 * @param protocol
+	 *        The transport protocol.
+	 * @param src
+	 *        The source address, <code>null</code> if unknown.
+	 * @param srcPort
+	 *        The source port.
+	 * @param dst
+	 *        The destination address, <code>null</code> if unknown.
+	 * @param dstPort
+	 *        The destination port.
+	 * @param buf
+	 *        The buffer with the captured payload.
+	 * @param off
+	 *        The offset of the payload in the buffer.
+	 * @param len
+	 *        The number of captured bytes.
+	 * @param origLen
+	 *        The original length of the payload, may exceed <code>len</code>, if the payload was
+	 *        truncated to the snap length.
+	 */
+	void write(long timeMicros, IpProtocol protocol, InetAddress src, int srcPort, InetAddress dst, int dstPort,
+			byte[] buf, int off, int len, int origLen) throws IOException;
+
+	/**
+	 * Writes all buffered packets to the underlying storage.
+	 */
+	void flush() throws IOException;
+
+	@Override
+	void close() throws IOException;
+
+}
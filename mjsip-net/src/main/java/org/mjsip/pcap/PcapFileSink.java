@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link PacketSink} writing pcap files, starting a new file when the current one exceeds a
+ * maximum size.
+ *
+ * <p>
+ * Files are named <code>&lt;prefix&gt;-&lt;yyyyMMdd-HHmmss&gt;-&lt;n&gt;.pcap</code>. Only the given
+ * number of most recent files is kept, older files written by this sink are deleted.
+ * </p>
+ */
+public class PcapFileSink implements PacketSink {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(PcapFileSink.class);
+
+	private final String _prefix;
+
+	private final long _maxFileSize;
+
+	private final int _maxFiles;
+
+	private final int _snapLength;
+
+	private final ArrayDeque<File> _files = new ArrayDeque<>();
+
+	private PcapWriter _writer;
+
+	private int _sequence;
+
+	/**
+	 * Creates a {@link PcapFileSink}.
+	 *
+	 * @param prefix
+	 *        The path and name prefix of the files to write.
+	 * @param maxFileSize
+	 *        The size in bytes after which a new file is started, <code>0</code> for writing a
+	 *        single file.
+	 * @param maxFiles
+	 *        The number of files to keep, <code>0</code> for keeping all files.
+	 * @param snapLength
+	 *        The maximum number of payload bytes written per packet.
+	 */
+	public PcapFileSink(String prefix, long maxFileSize, int maxFiles, int snapLength) {
+		_prefix = prefix.endsWith(".pcap") ? prefix.substring(0, prefix.length() - ".pcap".length()) : prefix;
+		_maxFileSize = maxFileSize;
+		_maxFiles = maxFiles;
+		_snapLength = snapLength;
+	}
+
+	/**
+	 * The file currently written, <code>null</code> before the first packet.
+	 */
+	public File getCurrentFile() {
+		return _files.peekLast();
+	}
+
+	@Override
+	public void write(long timeMicros, IpProtocol protocol, InetAddress src, int srcPort, InetAddress dst,
+			int dstPort, byte[] buf, int off, int len, int origLen) throws IOException {
+		if (_writer == null || (_maxFileSize > 0 && _writer.getSize() >= _maxFileSize)) {
+			rotate(timeMicros);
+		}
+		_writer.write(timeMicros, protocol, src, srcPort, dst, dstPort, buf, off, len, origLen);
+	}
+
+	private void rotate(long timeMicros) throws IOException {
+		if (_writer != null) {
+			_writer.close();
+			_writer = null;
+		}
+
+		String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(timeMicros / 1000));
+		File file = new File(_prefix + "-" + time + "-" + (++_sequence) + ".pcap");
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null) {
+			dir.mkdirs();
+		}
+		_writer = new PcapWriter(new FileOutputStream(file), _snapLength);
+		_files.add(file);
+		LOG.info("Capturing packets to: " + file);
+
+		while (_maxFiles > 0 && _files.size() > _maxFiles) {
+			File oldest = _files.removeFirst();
+			if (!oldest.delete()) {
+				LOG.warn("Cannot delete capture file: " + oldest);
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (_writer != null) {
+			_writer.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (_writer != null) {
+			_writer.close();
+			_writer = null;
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.net.InetAddress;
+
+/**
+ * A UDP datagram or TCP segment read from a capture file by a {@link PcapReader}.
+ */
+public final class PcapPacket {
+
+	private final long _timeMicros;
+
+	private final IpProtocol _protocol;
+
+	private final InetAddress _src;
+
+	private final int _srcPort;
+
+	private final InetAddress _dst;
+
+	private final int _dstPort;
+
+	private final byte[] _payload;
+
+	/**
+	 * Creates a {@link PcapPacket}.
+	 */
+	public PcapPacket(long timeMicros, IpProtocol protocol, InetAddress src, int srcPort, InetAddress dst,
+			int dstPort, byte[] payload) {
+		_timeMicros = timeMicros;
+		_protocol = protocol;
+		_src = src;
+		_srcPort = srcPort;
+		_dst = dst;
+		_dstPort = dstPort;
+		_payload = payload;
+	}
+
+	/**
+	 * The capture time in microseconds since the epoch.
+	 */
+	public long getTimeMicros() {
+		return _timeMicros;
+	}
+
+	/**
+	 * The transport protocol.
+	 */
+	public IpProtocol getProtocol() {
+		return _protocol;
+	}
+
+	/**
+	 * The source address.
+	 */
+	public InetAddress getSource() {
+		return _src;
+	}
+
+	/**
+	 * The source port.
+	 */
+	public int getSourcePort() {
+		return _srcPort;
+	}
+
+	/**
+	 * The destination address.
+	 */
+	public InetAddress getDestination() {
+		return _dst;
+	}
+
+	/**
+	 * The destination port.
+	 */
+	public int getDestinationPort() {
+		return _dstPort;
+	}
+
+	/**
+	 * The captured transport payload, may be truncated to the snap length of the capture.
+	 */
+	public byte[] getPayload() {
+		return _payload;
+	}
+
+	@Override
+	public String toString() {
+		return _protocol + " " + _src.getHostAddress() + ":" + _srcPort + " > " + _dst.getHostAddress() + ":"
+				+ _dstPort + " (" + _payload.length + " bytes)";
+	}
+
+}
@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads UDP datagrams and TCP segments from capture files in the classic libpcap format (with
+ * microsecond or nanosecond time stamps, in either byte order) or in the pcapng format, as written by
+ * tcpdump, Wireshark or a {@link PcapWriter}.
+ *
+ * <p>
+ * Supported link types are Ethernet (with VLAN tags), raw IP, BSD loopback and Linux cooked
+ * captures. Packets of other protocols, IP fragments and packets on unsupported links are skipped.
+ * </p>
+ */
+public class PcapReader implements Closeable {
+
+	/** Magic number of a pcap file with nanosecond time stamps. */
+	public static final int MAGIC_NANOS = 0xA1B23C4D;
+
+	/** Block type of a pcapng section header, also the first four bytes of a pcapng file. */
+	public static final int PCAPNG_SECTION_HEADER = 0x0A0D0D0A;
+
+	private static final int PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+
+	private static final int PCAPNG_INTERFACE_DESCRIPTION = 1;
+
+	private static final int PCAPNG_SIMPLE_PACKET = 3;
+
+	private static final int PCAPNG_ENHANCED_PACKET = 6;
+
+	private static final int PCAPNG_OPTION_TSRESOL = 9;
+
+	private static final int LINKTYPE_NULL = 0;
+
+	private static final int LINKTYPE_ETHERNET = 1;
+
+	private static final int LINKTYPE_LOOP = 108;
+
+	private static final int LINKTYPE_LINUX_SLL = 113;
+
+	private static final int LINKTYPE_IPV4 = 228;
+
+	private static final int LINKTYPE_IPV6 = 229;
+
+	private static final int LINKTYPE_LINUX_SLL2 = 276;
+
+	private static final int ETHERTYPE_IPV4 = 0x0800;
+
+	private static final int ETHERTYPE_IPV6 = 0x86DD;
+
+	private static final int ETHERTYPE_VLAN = 0x8100;
+
+	private static final int ETHERTYPE_QINQ = 0x88A8;
+
+	private final InputStream _in;
+
+	private final boolean _pcapng;
+
+	private boolean _littleEndian;
+
+	/** Link type of the classic format. */
+	private int _linkType;
+
+	/** Divisor converting the fractional time stamp of the classic format to microseconds. */
+	private long _fractionDivisor = 1;
+
+	/** Link types of the pcapng interfaces of the current section. */
+	private final List<Integer> _interfaceLinkTypes = new ArrayList<>();
+
+	/** Time stamp units per second of the pcapng interfaces of the current section. */
+	private final List<Long> _interfaceResolutions = new ArrayList<>();
+
+	private byte[] _block = new byte[64 * 1024];
+
+	private boolean _eof;
+
+	/**
+	 * Creates a {@link PcapReader} and reads the file header.
+	 *
+	 * @param in
+	 *        The stream to read the capture from.
+	 */
+	public PcapReader(InputStream in) throws IOException {
+		_in = new BufferedInputStream(in, 64 * 1024);
+
+		byte[] magic = new byte[4];
+		readFully(magic, 0, 4);
+		int bigEndian = getInt(magic, 0, false);
+		if (bigEndian == PCAPNG_SECTION_HEADER) {
+			_pcapng = true;
+			readSectionHeader();
+		} else {
+			_pcapng = false;
+			int littleEndian = getInt(magic, 0, true);
+			if (bigEndian == PcapWriter.MAGIC || bigEndian == MAGIC_NANOS) {
+				_littleEndian = false;
+			} else if (littleEndian == PcapWriter.MAGIC || littleEndian == MAGIC_NANOS) {
+				_littleEndian = true;
+			} else {
+				throw new IOException("Not a pcap file, magic: " + Integer.toHexString(bigEndian));
+			}
+			if (getInt(magic, 0, _littleEndian) == MAGIC_NANOS) {
+				_fractionDivisor = 1000;
+			}
+
+			byte[] header = new byte[PcapWriter.FILE_HEADER_SIZE - 4];
+			readFully(header, 0, header.length);
+			_linkType = getInt(header, 16, _littleEndian) & 0xFFFF;
+		}
+	}
+
+	/**
+	 * Reads all remaining packets.
+	 */
+	public List<PcapPacket> readAll() throws IOException {
+		List<PcapPacket> result = new ArrayList<>();
+		for (PcapPacket packet = read(); packet != null; packet = read()) {
+			result.add(packet);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the next UDP or TCP packet.
+	 *
+	 * @return The next packet, <code>null</code> at the end of the capture.
+	 */
+	public PcapPacket read() throws IOException {
+		while (!_eof) {
+			PcapPacket result = _pcapng ? readBlock() : readRecord();
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a record of the classic format.
+	 *
+	 * @return The decoded packet, <code>null</code> if the packet was skipped or the end of the
+	 *         capture was reached.
+	 */
+	private PcapPacket readRecord() throws IOException {
+		byte[] header = new byte[PcapWriter.RECORD_HEADER_SIZE];
+		if (!readHeader(header)) {
+			_eof = true;
+			return null;
+		}
+		long seconds = getInt(header, 0, _littleEndian) & 0xFFFFFFFFL;
+		long fraction = getInt(header, 4, _littleEndian) & 0xFFFFFFFFL;
+		int length = getInt(header, 8, _littleEndian);
+		byte[] data = readData(length);
+		return decodeLink(_linkType, seconds * 1000000 + fraction / _fractionDivisor, data, 0, length);
+	}
+
+	/**
+	 * Reads a block of the pcapng format.
+	 *
+	 * @return The decoded packet, <code>null</code> if the block contains no packet, the packet
+	 *         was skipped, or the end of the capture was reached.
+	 */
+	private PcapPacket readBlock() throws IOException {
+		byte[] header = new byte[8];
+		if (!readHeader(header)) {
+			_eof = true;
+			return null;
+		}
+		int type = getInt(header, 0, _littleEndian);
+		if (type == PCAPNG_SECTION_HEADER) {
+			readSectionHeader(header);
+			return null;
+		}
+
+		int totalLength = getInt(header, 4, _littleEndian);
+		if (totalLength < 12 || (totalLength & 3) != 0) {
+			throw new IOException("Invalid pcapng block length: " + totalLength);
+		}
+		int bodyLength = totalLength - 12;
+		byte[] body = readData(bodyLength + 4);
+
+		switch (type) {
+			case PCAPNG_INTERFACE_DESCRIPTION:
+				_interfaceLinkTypes.add(getShort(body, 0, _littleEndian));
+				_interfaceResolutions.add(interfaceResolution(body, 8, bodyLength));
+				return null;
+
+			case PCAPNG_ENHANCED_PACKET: {
+				int iface = getInt(body, 0, _littleEndian);
+				if (iface < 0 || iface >= _interfaceLinkTypes.size()) {
+					throw new IOException("Packet for undefined pcapng interface: " + iface);
+				}
+				long timestamp = ((getInt(body, 4, _littleEndian) & 0xFFFFFFFFL) << 32)
+						| (getInt(body, 8, _littleEndian) & 0xFFFFFFFFL);
+				int length = Math.min(getInt(body, 12, _littleEndian), bodyLength - 20);
+				return decodeLink(_interfaceLinkTypes.get(iface), toMicros(timestamp, _interfaceResolutions.get(iface)),
+					body, 20, length);
+			}
+
+			case PCAPNG_SIMPLE_PACKET: {
+				if (_interfaceLinkTypes.isEmpty()) {
+					throw new IOException("Simple packet without pcapng interface.");
+				}
+				int length = Math.min(getInt(body, 0, _littleEndian), bodyLength - 4);
+				return decodeLink(_interfaceLinkTypes.get(0), 0, body, 4, length);
+			}
+
+			default:
+				// Statistics, name resolution, custom blocks.
+				return null;
+		}
+	}
+
+	private void readSectionHeader() throws IOException {
+		byte[] header = new byte[8];
+		putInt(header, 0, PCAPNG_SECTION_HEADER);
+		readFully(header, 4, 4);
+		readSectionHeader(header);
+	}
+
+	private void readSectionHeader(byte[] header) throws IOException {
+		byte[] magic = new byte[4];
+		readFully(magic, 0, 4);
+		if (getInt(magic, 0, false) == PCAPNG_BYTE_ORDER_MAGIC) {
+			_littleEndian = false;
+		} else if (getInt(magic, 0, true) == PCAPNG_BYTE_ORDER_MAGIC) {
+			_littleEndian = true;
+		} else {
+			throw new IOException("Invalid pcapng byte order magic: " + Integer.toHexString(getInt(magic, 0, false)));
+		}
+		int totalLength = getInt(header, 4, _littleEndian);
+		if (totalLength < 28 || (totalLength & 3) != 0) {
+			throw new IOException("Invalid pcapng section header length: " + totalLength);
+		}
+		readData(totalLength - 12);
+
+		// Interface IDs are local to a section.
+		_interfaceLinkTypes.clear();
+		_interfaceResolutions.clear();
+	}
+
+	private long interfaceResolution(byte[] body, int pos, int end) {
+		while (pos + 4 <= end) {
+			int code = getShort(body, pos, _littleEndian);
+			int length = getShort(body, pos + 2, _littleEndian);
+			if (code == 0) {
+				break;
+			}
+			if (code == PCAPNG_OPTION_TSRESOL && length == 1) {
+				int resolution = body[pos + 4] & 0xFF;
+				int exponent = resolution & 0x7F;
+				if ((resolution & 0x80) != 0) {
+					return exponent >= 63 ? Long.MAX_VALUE : 1L << exponent;
+				}
+				long result = 1;
+				for (int n = 0; n < exponent && result < Long.MAX_VALUE / 10; n++) {
+					result *= 10;
+				}
+				return result;
+			}
+			pos += 4 + ((length + 3) & ~3);
+		}
+		return 1000000;
+	}
+
+	private static long toMicros(long timestamp, long unitsPerSecond) {
+		if (unitsPerSecond == 1000000) {
+			return timestamp;
+		}
+		long seconds = timestamp / unitsPerSecond;
+		long fraction = timestamp % unitsPerSecond;
+		return seconds * 1000000 + (long) (fraction * (1000000.0 / unitsPerSecond));
+	}
+
+	private PcapPacket decodeLink(int linkType, long timeMicros, byte[] buf, int off, int len)
+			throws UnknownHostException {
+		switch (linkType) {
+			case LINKTYPE_ETHERNET: {
+				int pos = off + 12;
+				while (pos + 2 <= off + len) {
+					int etherType = getShort(buf, pos, false);
+					if (etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ) {
+						pos += 4;
+						continue;
+					}
+					return decodeIp(etherType, timeMicros, buf, pos + 2, off + len);
+				}
+				return null;
+			}
+			case PcapWriter.LINKTYPE_RAW:
+			case LINKTYPE_IPV4:
+			case LINKTYPE_IPV6:
+				return decodeIp(0, timeMicros, buf, off, off + len);
+			case LINKTYPE_NULL:
+			case LINKTYPE_LOOP:
+				// The address family is in host byte order, the IP version is checked instead.
+				return decodeIp(0, timeMicros, buf, off + 4, off + len);
+			case LINKTYPE_LINUX_SLL:
+				return len < 16 ? null : decodeIp(getShort(buf, off + 14, false), timeMicros, buf, off + 16, off + len);
+			case LINKTYPE_LINUX_SLL2:
+				return len < 20 ? null : decodeIp(getShort(buf, off, false), timeMicros, buf, off + 20, off + len);
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Decodes an IP packet.
+	 *
+	 * @param etherType
+	 *        The type announced by the link layer, <code>0</code> if the IP version is only known
+	 *        from the packet itself.
+	 */
+	private static PcapPacket decodeIp(int etherType, long timeMicros, byte[] buf, int pos, int end)
+			throws UnknownHostException {
+		if (pos >= end) {
+			return null;
+		}
+		int version = (buf[pos] & 0xFF) >> 4;
+		if (etherType != 0 && etherType != (version == 6 ? ETHERTYPE_IPV6 : ETHERTYPE_IPV4)) {
+			return null;
+		}
+
+		int protocol;
+		InetAddress src;
+		InetAddress dst;
+		if (version == 4) {
+			int headerLength = (buf[pos] & 0x0F) * 4;
+			if (headerLength < 20 || pos + headerLength > end) {
+				return null;
+			}
+			int fragment = getShort(buf, pos + 6, false);
+			if ((fragment & 0x3FFF) != 0) {
+				// More fragments or a fragment offset.
+				return null;
+			}
+			int totalLength = getShort(buf, pos + 2, false);
+			if (totalLength >= headerLength) {
+				// Drop Ethernet padding.
+				end = Math.min(end, pos + totalLength);
+			}
+			protocol = buf[pos + 9] & 0xFF;
+			src = InetAddress.getByAddress(copy(buf, pos + 12, 4));
+			dst = InetAddress.getByAddress(copy(buf, pos + 16, 4));
+			pos += headerLength;
+		} else if (version == 6) {
+			if (pos + 40 > end) {
+				return null;
+			}
+			int payloadLength = getShort(buf, pos + 4, false);
+			if (payloadLength > 0) {
+				end = Math.min(end, pos + 40 + payloadLength);
+			}
+			protocol = buf[pos + 6] & 0xFF;
+			src = InetAddress.getByAddress(copy(buf, pos + 8, 16));
+			dst = InetAddress.getByAddress(copy(buf, pos + 24, 16));
+			pos += 40;
+			while (protocol == 0 || protocol == 43 || protocol == 60) {
+				// Hop-by-hop, routing and destination options.
+				if (pos + 8 > end) {
+					return null;
+				}
+				protocol = buf[pos] & 0xFF;
+				pos += ((buf[pos + 1] & 0xFF) + 1) * 8;
+			}
+		} else {
+			return null;
+		}
+
+		IpProtocol ipProtocol;
+		int srcPort;
+		int dstPort;
+		if (protocol == IpProtocol.UDP.getNumber()) {
+			if (pos + 8 > end) {
+				return null;
+			}
+			ipProtocol = IpProtocol.UDP;
+			srcPort = getShort(buf, pos, false);
+			dstPort = getShort(buf, pos + 2, false);
+			int udpLength = getShort(buf, pos + 4, false);
+			if (udpLength >= 8) {
+				end = Math.min(end, pos + udpLength);
+			}
+			pos += 8;
+		} else if (protocol == IpProtocol.TCP.getNumber()) {
+			if (pos + 20 > end) {
+				return null;
+			}
+			ipProtocol = IpProtocol.TCP;
+			srcPort = getShort(buf, pos, false);
+			dstPort = getShort(buf, pos + 2, false);
+			pos += ((buf[pos + 12] & 0xFF) >> 4) * 4;
+		} else {
+			// Including IPv6 fragments.
+			return null;
+		}
+		if (pos > end) {
+			return null;
+		}
+		return new PcapPacket(timeMicros, ipProtocol, src, srcPort, dst, dstPort, copy(buf, pos, end - pos));
+	}
+
+	private static byte[] copy(byte[] buf, int off, int len) {
+		byte[] result = new byte[len];
+		System.arraycopy(buf, off, result, 0, len);
+		return result;
+	}
+
+	/**
+	 * Reads a record or block header.
+	 *
+	 * @return Whether a header was read, <code>false</code> at the end of the stream.
+	 */
+	private boolean readHeader(byte[] header) throws IOException {
+		int first = _in.read();
+		if (first < 0) {
+			return false;
+		}
+		header[0] = (byte) first;
+		readFully(header, 1, header.length - 1);
+		return true;
+	}
+
+	/**
+	 * Reads the given number of bytes into the internal buffer.
+	 */
+	private byte[] readData(int length) throws IOException {
+		if (length < 0) {
+			throw new IOException("Invalid record length: " + length);
+		}
+		if (length > _block.length) {
+			_block = new byte[length];
+		}
+		readFully(_block, 0, length);
+		return _block;
+	}
+
+	private void readFully(byte[] buf, int off, int len) throws IOException {
+		while (len > 0) {
+			int direct = _in.read(buf, off, len);
+			if (direct < 0) {
+				throw new EOFException("Truncated capture file.");
+			}
+			off += direct;
+			len -= direct;
+		}
+	}
+
+	private static void putInt(byte[] buf, int off, int value) {
+		buf[off] = (byte) (value >> 24);
+		buf[off + 1] = (byte) (value >> 16);
+		buf[off + 2] = (byte) (value >> 8);
+		buf[off + 3] = (byte) value;
+	}
+
+	private static int getShort(byte[] buf, int off, boolean littleEndian) {
+		if (littleEndian) {
+			return (buf[off] & 0xFF) | ((buf[off + 1] & 0xFF) << 8);
+		} else {
+			return ((buf[off] & 0xFF) << 8) | (buf[off + 1] & 0xFF);
+		}
+	}
+
+	private static int getInt(byte[] buf, int off, boolean littleEndian) {
+		if (littleEndian) {
+			return (buf[off] & 0xFF) | ((buf[off + 1] & 0xFF) << 8) | ((buf[off + 2] & 0xFF) << 16)
+					| ((buf[off + 3] & 0xFF) << 24);
+		} else {
+			return ((buf[off] & 0xFF) << 24) | ((buf[off + 1] & 0xFF) << 16) | ((buf[off + 2] & 0xFF) << 8)
+					| (buf[off + 3] & 0xFF);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		_in.close();
+	}
+
+}
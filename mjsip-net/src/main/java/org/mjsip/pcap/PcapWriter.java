@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link PacketSink} writing packets in the classic libpcap file format, as read by Wireshark and
+ * tcpdump.
+ *
+ * <p>
+ * Packets are captured above the socket layer, where only the transport payload and the addresses
+ * are known. The writer therefore uses the link type <code>LINKTYPE_RAW</code> and prepends each
+ * payload with a synthesized IPv4 or IPv6 header and a UDP or TCP header. Checksums of the
+ * transport headers are left zero. TCP sequence and acknowledgement numbers are counted per
+ * direction of each connection, so that stream segments can be reassembled.
+ * </p>
+ */
+public class PcapWriter implements PacketSink {
+
+	/** Magic number of a pcap file with microsecond time stamps. */
+	public static final int MAGIC = 0xA1B2C3D4;
+
+	/** Raw IP packets, the version is taken from the first nibble of the packet. */
+	public static final int LINKTYPE_RAW = 101;
+
+	/** Size of the file header. */
+	public static final int FILE_HEADER_SIZE = 24;
+
+	/** Size of the header of each packet record. */
+	public static final int RECORD_HEADER_SIZE = 16;
+
+	private static final int IPV4_HEADER_SIZE = 20;
+
+	private static final int IPV6_HEADER_SIZE = 40;
+
+	private static final int UDP_HEADER_SIZE = 8;
+
+	private static final int TCP_HEADER_SIZE = 20;
+
+	private static final byte[] IPV4_ANY = new byte[4];
+
+	private static final byte[] IPV6_ANY = new byte[16];
+
+	private final OutputStream _out;
+
+	private final int _snapLength;
+
+	private final byte[] _header = new byte[RECORD_HEADER_SIZE + IPV6_HEADER_SIZE + TCP_HEADER_SIZE];
+
+	private final Map<String, long[]> _tcpSequence = new HashMap<>();
+
+	private int _ipId;
+
+	private long _size;
+
+	/**
+	 * Creates a {@link PcapWriter} and writes the file header.
+	 *
+	 * @param out
+	 *        The stream to write to.
+	 * @param snapLength
+	 *        The maximum number of payload bytes captured per packet.
+	 */
+	public PcapWriter(OutputStream out, int snapLength) throws IOException {
+		_out = new BufferedOutputStream(out, 64 * 1024);
+		_snapLength = snapLength;
+
+		byte[] header = new byte[FILE_HEADER_SIZE];
+		putInt(header, 0, MAGIC);
+		putShort(header, 4, 2);
+		putShort(header, 6, 4);
+		// Time zone offset and accuracy are zero.
+		putInt(header, 16, snapLength + IPV6_HEADER_SIZE + TCP_HEADER_SIZE);
+		putInt(header, 20, LINKTYPE_RAW);
+		_out.write(header);
+		_size = FILE_HEADER_SIZE;
+	}
+
+	/**
+	 * The number of bytes written so far, including the file header.
+	 */
+	public long getSize() {
+		return _size;
+	}
+
+	@Override
+	public void write(long timeMicros, IpProtocol protocol, InetAddress src, int srcPort, InetAddress dst,
+			int dstPort, byte[] buf, int off, int len, int origLen) throws IOException {
+		len = Math.min(len, _snapLength);
+		boolean ipv6 = src instanceof Inet6Address || dst instanceof Inet6Address;
+		int ipHeaderSize = ipv6 ? IPV6_HEADER_SIZE : IPV4_HEADER_SIZE;
+		int transportHeaderSize = protocol == IpProtocol.TCP ? TCP_HEADER_SIZE : UDP_HEADER_SIZE;
+		int headerSize = ipHeaderSize + transportHeaderSize;
+
+		byte[] h = _header;
+		putInt(h, 0, (int) (timeMicros / 1000000));
+		putInt(h, 4, (int) (timeMicros % 1000000));
+		putInt(h, 8, headerSize + len);
+		putInt(h, 12, headerSize + origLen);
+
+		int pos = RECORD_HEADER_SIZE;
+		byte[] srcAddress = address(src, ipv6);
+		byte[] dstAddress = address(dst, ipv6);
+		int ipLength = headerSize + origLen;
+		if (ipv6) {
+			putInt(h, pos, 0x60000000);
+			putShort(h, pos + 4, Math.min(ipLength - IPV6_HEADER_SIZE, 0xFFFF));
+			h[pos + 6] = (byte) protocol.getNumber();
+			h[pos + 7] = 64;
+			System.arraycopy(srcAddress, 0, h, pos + 8, 16);
+			System.arraycopy(dstAddress, 0, h, pos + 24, 16);
+		} else {
+			h[pos] = 0x45;
+			h[pos + 1] = 0;
+			putShort(h, pos + 2, Math.min(ipLength, 0xFFFF));
+			putShort(h, pos + 4, _ipId++);
+			putShort(h, pos + 6, 0x4000);
+			h[pos + 8] = 64;
+			h[pos + 9] = (byte) protocol.getNumber();
+			putShort(h, pos + 10, 0);
+			System.arraycopy(srcAddress, 0, h, pos + 12, 4);
+			System.arraycopy(dstAddress, 0, h, pos + 16, 4);
+			putShort(h, pos + 10, checksum(h, pos, IPV4_HEADER_SIZE));
+		}
+		pos += ipHeaderSize;
+
+		putShort(h, pos, srcPort);
+		putShort(h, pos + 2, dstPort);
+		if (protocol == IpProtocol.TCP) {
+			long[] sequence = sequence(src, srcPort, dst, dstPort);
+			long[] reverse = sequence(dst, dstPort, src, srcPort);
+			putInt(h, pos + 4, (int) sequence[0]);
+			putInt(h, pos + 8, (int) reverse[0]);
+			sequence[0] += origLen;
+			h[pos + 12] = (byte) ((TCP_HEADER_SIZE / 4) << 4);
+			// PSH and ACK
+			h[pos + 13] = 0x18;
+			putShort(h, pos + 14, 0xFFFF);
+			putShort(h, pos + 16, 0);
+			putShort(h, pos + 18, 0);
+		} else {
+			putShort(h, pos + 4, Math.min(UDP_HEADER_SIZE + origLen, 0xFFFF));
+			putShort(h, pos + 6, 0);
+		}
+
+		int recordHeaderSize = RECORD_HEADER_SIZE + headerSize;
+		_out.write(h, 0, recordHeaderSize);
+		_out.write(buf, off, len);
+		_size += recordHeaderSize + len;
+	}
+
+	private long[] sequence(InetAddress src, int srcPort, InetAddress dst, int dstPort) {
+		String key = String.valueOf(src) + ':' + srcPort + '>' + String.valueOf(dst) + ':' + dstPort;
+		return _tcpSequence.computeIfAbsent(key, x -> new long[] { 1 });
+	}
+
+	private static byte[] address(InetAddress address, boolean ipv6) {
+		if (address == null) {
+			return ipv6 ? IPV6_ANY : IPV4_ANY;
+		}
+		byte[] result = address.getAddress();
+		if (ipv6 && result.length == 4) {
+			// IPv4-mapped IPv6 address.
+			byte[] mapped = new byte[16];
+			mapped[10] = (byte) 0xFF;
+			mapped[11] = (byte) 0xFF;
+			System.arraycopy(result, 0, mapped, 12, 4);
+			return mapped;
+		}
+		return result;
+	}
+
+	private static int checksum(byte[] buf, int off, int len) {
+		int sum = 0;
+		for (int n = off; n < off + len; n += 2) {
+			sum += ((buf[n] & 0xFF) << 8) | (buf[n + 1] & 0xFF);
+		}
+		while ((sum >> 16) != 0) {
+			sum = (sum & 0xFFFF) + (sum >> 16);
+		}
+		return ~sum & 0xFFFF;
+	}
+
+	private static void putShort(byte[] buf, int off, int value) {
+		buf[off] = (byte) (value >> 8);
+		buf[off + 1] = (byte) value;
+	}
+
+	private static void putInt(byte[] buf, int off, int value) {
+		buf[off] = (byte) (value >> 24);
+		buf[off + 1] = (byte) (value >> 16);
+		buf[off + 2] = (byte) (value >> 8);
+		buf[off + 3] = (byte) value;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		_out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		_out.close();
+	}
+
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.zoolu.net;
+
+
+
+/** Pool of byte buffers for sending and receiving datagrams.
+  * <p>
+  * A buffer obtained by {@link #lease(int)} is returned to the pool by {@link #release(byte[])},
+  * so that it can be reused instead of being allocated again. A released buffer must not
+  * be used any longer, nor kept by any listener the buffer has been passed to.
+  */
+public interface BufferPool {
+	
+	/** Gets a buffer.
+	  * @param size the minimum size of the buffer
+	  * @return a buffer of at least <i>size</i> bytes, with undefined content */
+	public byte[] lease(int size);
+
+	/** Returns a buffer to the pool.
+	  * @param buf a buffer obtained by {@link #lease(int)} */
+	public void release(byte[] buf);
+}
@@ -31,13 +31,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.InetAddress;
 
+import org.mjsip.pcap.IpProtocol;
+import org.mjsip.pcap.PacketCapture;
+import org.mjsip.time.LoopThreads;
 import org.slf4j.LoggerFactory;
 
 
 /** TcpConnection provides a TCP connection oriented transport service.
   */
-public class TcpConnection extends Thread {
+public class TcpConnection implements Runnable {
 	
 	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(TcpConnection.class);
 
@@ -65,12 +69,21 @@ public class TcpConnection extends Thread {
 	/** Whether it has been halted */
 	boolean stop; 
 
+	/** The threads the loop is started on */
+	LoopThreads loop_threads=LoopThreads.PLATFORM;
+
+	/** The thread running the loop, or <i>null</i> if not yet started */
+	private volatile Thread thread=null;
+
 	/** Whether it is running */
 	boolean is_running; 
 
 	/** TcpConnection listener */
 	TcpConnectionListener listener;
 
+	/** Local and remote addresses reported to the packet capture */
+	InetAddress local_inet_address, remote_inet_address;
+
 
 
 	/** Constructs a new TcpConnection.*/
@@ -87,6 +100,14 @@ public class TcpConnection extends Thread {
 	}
 
 
+	/** Constructs a new TcpConnection that receives on the given threads.*/
+	public TcpConnection(TcpSocket socket, long alive_time, TcpConnectionListener listener, LoopThreads loop_threads) throws IOException {
+		init(socket,alive_time,listener);
+		this.loop_threads=loop_threads;
+		start();
+	}
+
+
 	/** Inits the TcpConnection. */
 	private void init(TcpSocket socket, long alive_time, TcpConnectionListener listener) throws IOException {
 		this.listener=listener;
@@ -98,6 +119,9 @@ public class TcpConnection extends Thread {
 
 		istream=new BufferedInputStream(socket.getInputStream());
 		ostream=new BufferedOutputStream(socket.getOutputStream());
+
+		local_inet_address=socket.getLocalAddress().getInetAddress();
+		remote_inet_address=socket.getAddress().getInetAddress();
 	}
 
 
@@ -151,6 +175,8 @@ public class TcpConnection extends Thread {
 		if (!stop && ostream!=null) {
 			ostream.write(buff,offset,len);
 			ostream.flush();
+			PacketCapture capture=PacketCapture.getDefault();
+			if (capture!=null) capture.capture(IpProtocol.TCP,local_inet_address,socket.getLocalPort(),remote_inet_address,socket.getPort(),buff,offset,len);
 
 			LOG.debug("Sent " + len + " bytes to: " + socket);
 		}
@@ -163,6 +189,36 @@ public class TcpConnection extends Thread {
 	}
 
 
+	/** Starts the loop in a new thread.
+	  * The loop is started by the constructors.
+	  * @throws IllegalThreadStateException if the loop has already been started */
+	public synchronized void start() {
+		if (thread!=null) throw new IllegalThreadStateException("Already started: "+this);
+		thread=loop_threads.start(this,"TcpConnection "+socket);
+	}
+
+
+	/** Whether the thread running the loop is alive. */
+	public boolean isAlive() {
+		Thread t=thread;
+		return t!=null && t.isAlive();
+	}
+
+
+	/** Waits for the loop to terminate. */
+	public void join() throws InterruptedException {
+		join(0);
+	}
+
+
+	/** Waits at most <i>millis</i> milliseconds for the loop to terminate.
+	  * @param millis the time to wait in milliseconds, or 0 to wait forever */
+	public void join(long millis) throws InterruptedException {
+		Thread t=thread;
+		if (t!=null) t.join(millis);
+	}
+
+
 	/** Runs the tcp receiver. */
 	@Override
 	public void run() {
@@ -190,6 +246,8 @@ public class TcpConnection extends Thread {
 					LOG.debug("Connection closed: " + socket);
 					stop=true;
 				} else if (len > 0) {
+					PacketCapture capture=PacketCapture.getDefault();
+					if (capture!=null) capture.capture(IpProtocol.TCP,remote_inet_address,socket.getPort(),local_inet_address,socket.getLocalPort(),buff,0,len);
 					if (listener!=null) listener.onReceivedData(this,buff,len);
 					if (alive_time>0) expire=System.currentTimeMillis()+alive_time;
 				}
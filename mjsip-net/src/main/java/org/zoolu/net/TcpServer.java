@@ -28,11 +28,13 @@ import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 
+import org.mjsip.time.LoopThreads;
+
 
 
 /** TcpServer implements a TCP server wainting for incoming connection.
   */
-public class TcpServer extends Thread {
+public class TcpServer implements Runnable {
 	
 	/** Default value for the maximum time that the tcp server can remain active after been halted (in milliseconds) */
 	public static final int DEFAULT_SOCKET_TIMEOUT=5000; // 5sec 
@@ -61,6 +63,12 @@ public class TcpServer extends Thread {
 	/** Whether it has been halted */
 	boolean stop; 
 
+	/** The threads the loop is started on */
+	LoopThreads loop_threads=LoopThreads.PLATFORM;
+
+	/** The thread running the loop, or <i>null</i> if not yet started */
+	private volatile Thread thread=null;
+
 	/** Whether it is running */
 	boolean is_running; 
 
@@ -100,6 +108,14 @@ public class TcpServer extends Thread {
 	}
 
 
+	/** Costructs a new TcpServer that accepts connections on the given threads */
+	public TcpServer(int port, IpAddress bind_ipaddr, long alive_time, TcpServerListener listener, LoopThreads loop_threads)  throws java.io.IOException {
+		init(null,port,bind_ipaddr,alive_time,listener);
+		this.loop_threads=loop_threads;
+		start();
+	}
+
+
 	/** Inits the TcpServer */
 	private void init(ServerSocket server_socket, int port, IpAddress bind_ipaddr, long alive_time, TcpServerListener listener) throws java.io.IOException {
 		this.listener=listener;
@@ -135,6 +151,36 @@ public class TcpServer extends Thread {
 	}
 
 
+	/** Starts the loop in a new thread.
+	  * The loop is started by the constructors.
+	  * @throws IllegalThreadStateException if the loop has already been started */
+	public synchronized void start() {
+		if (thread!=null) throw new IllegalThreadStateException("Already started: "+this);
+		thread=loop_threads.start(this,"TcpServer "+server_port);
+	}
+
+
+	/** Whether the thread running the loop is alive. */
+	public boolean isAlive() {
+		Thread t=thread;
+		return t!=null && t.isAlive();
+	}
+
+
+	/** Waits for the loop to terminate. */
+	public void join() throws InterruptedException {
+		join(0);
+	}
+
+
+	/** Waits at most <i>millis</i> milliseconds for the loop to terminate.
+	  * @param millis the time to wait in milliseconds, or 0 to wait forever */
+	public void join(long millis) throws InterruptedException {
+		Thread t=thread;
+		if (t!=null) t.join(millis);
+	}
+
+
 	/** Runs the server */
 	@Override
 	public void run() {
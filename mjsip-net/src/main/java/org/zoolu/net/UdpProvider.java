@@ -27,6 +27,8 @@ package org.zoolu.net;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 
+import org.mjsip.time.LoopThreads;
+
 
 /** UdpProvider provides an UDP send/receive service.
   * On the receiver side it waits for UDP datagrams and passes them
@@ -37,11 +39,18 @@ import java.io.InterruptedIOException;
   * method is fired.
   * <p> Method onServiceTerminated(UdpProvider) is fired when the the UdpProvider stops 
   * receiving packets.
+  * <p> The receiving buffer is reused for all packets, and may be leased from a {@link BufferPool}.
+  * Therefore, a listener must not keep the data of a received packet after returning from
+  * onReceivedPacket(UdpProvider,DatagramPacket).
   */
-public class UdpProvider extends Thread {
+public class UdpProvider implements Runnable {
 	
 	/** The reading buffer size */
 	public static final int BUFFER_SIZE=65535;
+
+	/** The size of a reading buffer leased from a {@link BufferPool}: 1500 (Ethernet MTU) - 20 (IPH) - 8 (UDPH).
+	  * Pooled providers serve media streams, longer datagrams are truncated. */
+	public static final int PACKET_BUFFER_SIZE=1472;
 	  
 	/** Default value for the maximum time that the UDP receiver can remain active after been halted (in milliseconds) */
 	public static final int DEFAULT_SOCKET_TIMEOUT=2000; // 2sec 
@@ -61,9 +70,18 @@ public class UdpProvider extends Thread {
 	/** Minimum size for received packets. Shorter packets are silently discarded. */
 	protected int minimum_length; 
 
+	/** Pool of the receiving buffer, or <i>null</i> */
+	protected BufferPool buffer_pool;
+
 	/** Whether it has been halted */
 	protected boolean stop; 
 
+	/** The threads the loop is started on */
+	protected LoopThreads loop_threads=LoopThreads.PLATFORM;
+
+	/** The thread running the loop, or <i>null</i> if not yet started */
+	private volatile Thread thread=null;
+
 	/** Whether it is running */
 	protected boolean is_running; 
 
@@ -71,21 +89,46 @@ public class UdpProvider extends Thread {
 	  
 	/** Creates a new UdpProvider. */ 
 	public UdpProvider(UdpSocket socket, UdpProviderListener listener) {
-		init(socket,0,listener);
+		init(socket,0,listener,null);
 		start();
 	}
 
 
 	/** Creates a new UdpProvider. */ 
 	public UdpProvider(UdpSocket socket, long alive_time, UdpProviderListener listener) {
-		init(socket,alive_time,listener);
+		init(socket,alive_time,listener,null);
+		start();
+	}
+
+
+	/** Creates a new UdpProvider.
+	  * @param socket the UDP socket
+	  * @param alive_time the maximum time the receiver remains active without receiving datagrams, or 0
+	  * @param listener the UdpProvider listener
+	  * @param buffer_pool the pool the receiving buffer of {@link #PACKET_BUFFER_SIZE} bytes is leased from, while the UdpProvider is running */ 
+	public UdpProvider(UdpSocket socket, long alive_time, UdpProviderListener listener, BufferPool buffer_pool) {
+		init(socket,alive_time,listener,buffer_pool);
+		start();
+	}
+
+
+	/** Creates a new UdpProvider.
+	  * @param socket the UDP socket
+	  * @param alive_time the maximum time the receiver remains active without receiving datagrams, or 0
+	  * @param listener the UdpProvider listener
+	  * @param buffer_pool the pool the receiving buffer of {@link #PACKET_BUFFER_SIZE} bytes is leased from, or <i>null</i>
+	  * @param loop_threads the threads the receiver loop is started on */ 
+	public UdpProvider(UdpSocket socket, long alive_time, UdpProviderListener listener, BufferPool buffer_pool, LoopThreads loop_threads) {
+		init(socket,alive_time,listener,buffer_pool);
+		this.loop_threads=loop_threads;
 		start();
 	}
 
 
 	/** Inits the UdpProvider. */ 
-	private void init(UdpSocket socket, long alive_time, UdpProviderListener listener) {
+	private void init(UdpSocket socket, long alive_time, UdpProviderListener listener, BufferPool buffer_pool) {
 		this.listener=listener;
+		this.buffer_pool=buffer_pool;
 		this.socket=socket;
 		this.socket_timeout=DEFAULT_SOCKET_TIMEOUT;
 		this.alive_time=alive_time;
@@ -157,11 +200,41 @@ public class UdpProvider extends Thread {
 	}
 
 
+	/** Starts the loop in a new thread.
+	  * The loop is started by the constructors.
+	  * @throws IllegalThreadStateException if the loop has already been started */
+	public synchronized void start() {
+		if (thread!=null) throw new IllegalThreadStateException("Already started: "+this);
+		thread=loop_threads.start(this,"UdpProvider "+socket.getLocalPort());
+	}
+
+
+	/** Whether the thread running the loop is alive. */
+	public boolean isAlive() {
+		Thread t=thread;
+		return t!=null && t.isAlive();
+	}
+
+
+	/** Waits for the loop to terminate. */
+	public void join() throws InterruptedException {
+		join(0);
+	}
+
+
+	/** Waits at most <i>millis</i> milliseconds for the loop to terminate.
+	  * @param millis the time to wait in milliseconds, or 0 to wait forever */
+	public void join(long millis) throws InterruptedException {
+		Thread t=thread;
+		if (t!=null) t.join(millis);
+	}
+
+
 	/** The main thread. */
 	@Override
 	public void run() {
 		
-		byte[] buf=new byte[BUFFER_SIZE];
+		byte[] buf=(buffer_pool!=null)? buffer_pool.lease(PACKET_BUFFER_SIZE) : new byte[BUFFER_SIZE];
 		UdpPacket packet=new UdpPacket(buf, buf.length);
 					
 		Exception error=null;
@@ -190,6 +263,7 @@ public class UdpProvider extends Thread {
 			error=e;
 			stop=true;
 		} 
+		if (buffer_pool!=null) buffer_pool.release(buf);
 		is_running=false;
 		if (listener!=null) listener.onServiceTerminated(this,error);
 		listener=null;
@@ -26,6 +26,13 @@ package org.zoolu.net;
 
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+
+import org.mjsip.pcap.IpProtocol;
+import org.mjsip.pcap.PacketCapture;
 
 
 /** UdpSocket provides a uniform interface to UDP transport protocol,
@@ -49,6 +56,8 @@ public class UdpSocket {
 	/** Receiver octect counter */
 	long receiver_octect_count=0;   
 
+	/** Local address reported to the packet capture, resolved on first use */
+	InetAddress capture_address=null;
 
 
 	/** Creates a new void UdpSocket */ 
@@ -71,6 +80,43 @@ public class UdpSocket {
 		socket=new DatagramSocket(port,ipaddr.getInetAddress());
 	}
 	
+	/** Creates a new UdpSocket with the SO_REUSEPORT option, allowing other sockets
+	  * created the same way to be bound to the same port.
+	  * <p>
+	  * The kernel distributes the datagrams received on a port among all sockets bound
+	  * to it (e.g. on Linux, based on a hash of the remote address and port).
+	  * @param port the local port, or 0 for an ephemeral port
+	  * @param ipaddr the local address, or <i>null</i> for the wildcard address
+	  * @throws SocketException if the socket cannot be created, or SO_REUSEPORT is not
+	  * supported (see {@link #isReusePortSupported()}) */
+	public static UdpSocket createReusePort(int port, IpAddress ipaddr) throws SocketException {
+		DatagramSocket sock=new DatagramSocket(null);
+		try {
+			if (!sock.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) throw new SocketException("SO_REUSEPORT not supported");
+			sock.setOption(StandardSocketOptions.SO_REUSEPORT,Boolean.TRUE);
+			sock.bind(ipaddr==null? new InetSocketAddress(port) : new InetSocketAddress(ipaddr.getInetAddress(),port));
+		}
+		catch (SocketException e) {
+			sock.close();
+			throw e;
+		}
+		catch (java.io.IOException e) {
+			sock.close();
+			throw new SocketException(e.getMessage());
+		}
+		return new UdpSocket(sock);
+	}
+
+	/** Whether UDP sockets support the SO_REUSEPORT option on this platform. */
+	public static boolean isReusePortSupported() {
+		try (DatagramSocket sock=new DatagramSocket(null)) {
+			return sock.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+		}
+		catch (SocketException e) {
+			return false;
+		}
+	}
+
 	/** Closes this datagram socket. */
 	public void close() {
 		socket.close();
@@ -103,13 +149,42 @@ public class UdpSocket {
 		pkt.setDatagramPacket(dgram);
 		receiver_packet_count++;
 		receiver_octect_count+=pkt.getLength();
+		PacketCapture capture=PacketCapture.getDefault();
+		if (capture!=null) capture.capture(IpProtocol.UDP,dgram.getAddress(),dgram.getPort(),getCaptureAddress(capture,dgram.getAddress()),socket.getLocalPort(),dgram.getData(),dgram.getOffset(),dgram.getLength());
 	}
 	
 	/** Sends an UDP packet from this socket. */ 
 	public void send(UdpPacket pkt) throws java.io.IOException {
-		socket.send(pkt.getDatagramPacket());
+		DatagramPacket dgram=pkt.getDatagramPacket();
+		socket.send(dgram);
 		sender_packet_count++;
 		sender_octect_count+=pkt.getLength();
+		PacketCapture capture=PacketCapture.getDefault();
+		if (capture!=null) capture.capture(IpProtocol.UDP,getCaptureAddress(capture,dgram.getAddress()),socket.getLocalPort(),dgram.getAddress(),dgram.getPort(),dgram.getData(),dgram.getOffset(),dgram.getLength());
+	}
+
+	/** Sets the local address reported to the packet capture, e.g. the media address announced
+	  * for this socket. Is only required for sockets bound to the wildcard address, if the address
+	  * differs from the local address set for the capture.
+	  * @param address the local address, or <i>null</i> to use the bound address
+	  * @see PacketCapture#setLocalAddress(InetAddress) */
+	public void setCaptureAddress(IpAddress address) {
+		capture_address=address!=null? address.getInetAddress() : null;
+	}
+
+	/** Gets the local address of this socket, as reported to the packet capture.
+	  * <p>
+	  * For a socket bound to the wildcard address, the local address of the capture for the
+	  * address family of the remote address is used, since the actual destination address of
+	  * a datagram is not available. */
+	private InetAddress getCaptureAddress(PacketCapture capture, InetAddress remote) {
+		InetAddress address=capture_address;
+		if (address==null) capture_address=address=socket.getLocalAddress();
+		if (address.isAnyLocalAddress()) {
+			InetAddress local=capture.getLocalAddress(remote);
+			if (local!=null) return local;
+		}
+		return address;
 	}
 	
 	/** Converts this object to a String. */
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.zoolu.net.IpAddress;
+import org.zoolu.net.UdpPacket;
+import org.zoolu.net.UdpSocket;
+
+/**
+ * Test for {@link PacketCapture} and {@link PcapWriter}.
+ */
+@SuppressWarnings("javadoc")
+class TestPacketCapture {
+
+	@Test
+	void testUdpSocket() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PacketCapture capture = new PacketCapture(new PcapWriter(out, 1500), PacketFilter.ALL, 16, 1500);
+		IpAddress localhost = new IpAddress(InetAddress.getByName("127.0.0.1"));
+		UdpSocket sender = new UdpSocket(0, localhost);
+		UdpSocket receiver = new UdpSocket(0, localhost);
+		int senderPort = sender.getLocalPort();
+		int receiverPort = receiver.getLocalPort();
+		PacketCapture before = PacketCapture.setDefault(capture);
+		try {
+			byte[] data = "OPTIONS sip:bob@example.com SIP/2.0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+			sender.send(new UdpPacket(data, localhost, receiverPort));
+			UdpPacket received = new UdpPacket(new byte[1500], 1500);
+			receiver.receive(received);
+			capture.flush();
+		} finally {
+			PacketCapture.setDefault(before);
+			capture.close();
+			sender.close();
+			receiver.close();
+		}
+		Assertions.assertEquals(2, capture.getWritten());
+
+		ByteBuffer pcap = ByteBuffer.wrap(out.toByteArray());
+		Assertions.assertEquals(PcapWriter.MAGIC, pcap.getInt(0));
+		Assertions.assertEquals(PcapWriter.LINKTYPE_RAW, pcap.getInt(20));
+
+		int pos = PcapWriter.FILE_HEADER_SIZE;
+		for (int n = 0; n < 2; n++) {
+			int inclLength = pcap.getInt(pos + 8);
+			Assertions.assertEquals(inclLength, pcap.getInt(pos + 12));
+			int ip = pos + PcapWriter.RECORD_HEADER_SIZE;
+			Assertions.assertEquals(0x45, pcap.get(ip));
+			Assertions.assertEquals(inclLength, pcap.getShort(ip + 2));
+			Assertions.assertEquals(17, pcap.get(ip + 9));
+			Assertions.assertEquals(0x7F000001, pcap.getInt(ip + 12));
+			Assertions.assertEquals(0x7F000001, pcap.getInt(ip + 16));
+			Assertions.assertEquals(senderPort, pcap.getShort(ip + 20) & 0xFFFF);
+			Assertions.assertEquals(receiverPort, pcap.getShort(ip + 22) & 0xFFFF);
+			String payload = new String(pcap.array(), ip + 28, inclLength - 28, StandardCharsets.UTF_8);
+			Assertions.assertTrue(payload.startsWith("OPTIONS "));
+			pos += PcapWriter.RECORD_HEADER_SIZE + inclLength;
+		}
+		Assertions.assertEquals(pcap.limit(), pos);
+	}
+
+	@Test
+	void testWildcardSocket() throws Exception {
+		List<String> packets = new CopyOnWriteArrayList<>();
+		PacketSink sink = new PacketSink() {
+			@Override
+			public void write(long timeMicros, IpProtocol protocol, InetAddress src, int srcPort, InetAddress dst,
+					int dstPort, byte[] buf, int off, int len, int origLen) {
+				packets.add(src.getHostAddress() + " -> " + dst.getHostAddress());
+			}
+
+			@Override
+			public void flush() {
+				// Ignore.
+			}
+
+			@Override
+			public void close() {
+				// Ignore.
+			}
+		};
+		PacketCapture capture = new PacketCapture(sink, PacketFilter.ALL, 16, 1500);
+		capture.setLocalAddress(InetAddress.getByName("192.0.2.10"));
+		IpAddress localhost = new IpAddress(InetAddress.getByName("127.0.0.1"));
+		UdpSocket sender = new UdpSocket(0, localhost);
+		UdpSocket receiver = new UdpSocket(0);
+		PacketCapture before = PacketCapture.setDefault(capture);
+		try {
+			byte[] data = new byte[10];
+			UdpPacket received = new UdpPacket(new byte[1500], 1500);
+
+			// The wildcard address is replaced with the local address of the capture.
+			sender.send(new UdpPacket(data, localhost, receiver.getLocalPort()));
+			receiver.receive(received);
+
+			// An explicit address, e.g. the media address, takes precedence.
+			receiver.setCaptureAddress(new IpAddress(InetAddress.getByName("198.51.100.20")));
+			sender.send(new UdpPacket(data, localhost, receiver.getLocalPort()));
+			receiver.receive(received);
+
+			capture.flush();
+		} finally {
+			PacketCapture.setDefault(before);
+			capture.close();
+			sender.close();
+			receiver.close();
+		}
+		Assertions.assertEquals(List.of(
+			"127.0.0.1 -> 127.0.0.1",
+			"127.0.0.1 -> 192.0.2.10",
+			"127.0.0.1 -> 127.0.0.1",
+			"127.0.0.1 -> 198.51.100.20"), packets);
+	}
+
+	@Test
+	void testTcpSequence() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InetAddress a = InetAddress.getByName("192.0.2.1");
+		InetAddress b = InetAddress.getByName("2001:db8::2");
+		byte[] data = new byte[100];
+		try (PcapWriter writer = new PcapWriter(out, 60)) {
+			writer.write(1000000, IpProtocol.TCP, a, 5060, b, 40000, data, 0, data.length, data.length);
+			writer.write(2000000, IpProtocol.TCP, a, 5060, b, 40000, data, 0, 10, 10);
+			writer.write(3000000, IpProtocol.TCP, b, 40000, a, 5060, data, 0, 20, 20);
+		}
+		ByteBuffer pcap = ByteBuffer.wrap(out.toByteArray());
+		int pos = PcapWriter.FILE_HEADER_SIZE;
+
+		// IPv6 with IPv4-mapped source address, truncated to snap length.
+		Assertions.assertEquals(1, pcap.getInt(pos));
+		Assertions.assertEquals(40 + 20 + 60, pcap.getInt(pos + 8));
+		Assertions.assertEquals(40 + 20 + 100, pcap.getInt(pos + 12));
+		int ip = pos + PcapWriter.RECORD_HEADER_SIZE;
+		Assertions.assertEquals(6, pcap.get(ip) >> 4);
+		Assertions.assertEquals(0xFFFF, pcap.getShort(ip + 18) & 0xFFFF);
+		Assertions.assertEquals(0xC0000201, pcap.getInt(ip + 20));
+		Assertions.assertEquals(1, pcap.getInt(ip + 40 + 4));
+
+		pos = ip + 120;
+		ip = pos + PcapWriter.RECORD_HEADER_SIZE;
+		Assertions.assertEquals(101, pcap.getInt(ip + 40 + 4));
+
+		pos = ip + 70;
+		ip = pos + PcapWriter.RECORD_HEADER_SIZE;
+		Assertions.assertEquals(1, pcap.getInt(ip + 40 + 4));
+		Assertions.assertEquals(111, pcap.getInt(ip + 40 + 8));
+	}
+
+	@Test
+	void testDropWhenFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		PacketSink blocked = new PacketSink() {
+			@Override
+			public void write(long timeMicros, IpProtocol protocol, InetAddress src, int srcPort, InetAddress dst,
+					int dstPort, byte[] buf, int off, int len, int origLen) {
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					throw new AssertionError(ex);
+				}
+			}
+
+			@Override
+			public void flush() {
+				// Ignore.
+			}
+
+			@Override
+			public void close() {
+				// Ignore.
+			}
+		};
+		PacketCapture capture = new PacketCapture(blocked, PacketFilter.ALL, 4, 100);
+		byte[] data = new byte[200];
+		int accepted = 0;
+		for (int n = 0; n < 10; n++) {
+			if (capture.capture(IpProtocol.UDP, null, 1, null, 2, data, 0, data.length)) {
+				accepted++;
+			}
+		}
+		Assertions.assertTrue(accepted >= 4 && accepted <= 5, "Accepted: " + accepted);
+		Assertions.assertEquals(10 - accepted, capture.getDropped());
+
+		release.countDown();
+		capture.flush();
+		capture.close();
+		Assertions.assertEquals(accepted, capture.getWritten());
+	}
+
+	@Test
+	void testFilter() {
+		PacketFilter filter = PacketFilter.parse("udp:5060, tcp:5061,10000-20000");
+		Assertions.assertTrue(filter.accept(IpProtocol.UDP, 5060, 1234));
+		Assertions.assertTrue(filter.accept(IpProtocol.UDP, 1234, 5060));
+		Assertions.assertFalse(filter.accept(IpProtocol.TCP, 5060, 1234));
+		Assertions.assertTrue(filter.accept(IpProtocol.TCP, 5061, 1234));
+		Assertions.assertTrue(filter.accept(IpProtocol.TCP, 10000, 1234));
+		Assertions.assertFalse(filter.accept(IpProtocol.UDP, 20001, 1234));
+
+		Assertions.assertTrue(PacketFilter.parse("tcp").accept(IpProtocol.TCP, 1, 2));
+		Assertions.assertFalse(PacketFilter.parse("tcp").accept(IpProtocol.UDP, 1, 2));
+		Assertions.assertSame(PacketFilter.ALL, PacketFilter.parse(" "));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> PacketFilter.parse("sctp:5060"));
+	}
+
+}
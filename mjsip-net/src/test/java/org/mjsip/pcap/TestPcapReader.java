@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pcap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link PcapReader}.
+ */
+@SuppressWarnings("javadoc")
+class TestPcapReader {
+
+	@Test
+	void testReadPcapWriterOutput() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InetAddress a = InetAddress.getByName("192.0.2.1");
+		InetAddress b = InetAddress.getByName("192.0.2.2");
+		InetAddress c = InetAddress.getByName("2001:db8::3");
+		byte[] invite = "INVITE sip:bob@example.com SIP/2.0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		byte[] ok = "SIP/2.0 200 OK\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		try (PcapWriter writer = new PcapWriter(out, 1500)) {
+			writer.write(1000001, IpProtocol.UDP, a, 5060, b, 5070, invite, 0, invite.length, invite.length);
+			writer.write(2000002, IpProtocol.TCP, c, 5061, a, 40000, ok, 0, ok.length, ok.length);
+		}
+
+		List<PcapPacket> packets;
+		try (PcapReader reader = new PcapReader(new ByteArrayInputStream(out.toByteArray()))) {
+			packets = reader.readAll();
+		}
+		Assertions.assertEquals(2, packets.size());
+
+		PcapPacket first = packets.get(0);
+		Assertions.assertEquals(1000001, first.getTimeMicros());
+		Assertions.assertEquals(IpProtocol.UDP, first.getProtocol());
+		Assertions.assertEquals(a, first.getSource());
+		Assertions.assertEquals(5060, first.getSourcePort());
+		Assertions.assertEquals(b, first.getDestination());
+		Assertions.assertEquals(5070, first.getDestinationPort());
+		Assertions.assertArrayEquals(invite, first.getPayload());
+
+		PcapPacket second = packets.get(1);
+		Assertions.assertEquals(2000002, second.getTimeMicros());
+		Assertions.assertEquals(IpProtocol.TCP, second.getProtocol());
+		Assertions.assertEquals(c, second.getSource());
+		Assertions.assertEquals(40000, second.getDestinationPort());
+		Assertions.assertArrayEquals(ok, second.getPayload());
+	}
+
+	@Test
+	void testReadPcapngEthernet() throws IOException {
+		byte[] payload = "REGISTER sip:example.com SIP/2.0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+
+		// Ethernet frame with a VLAN tag, an IPv4 and UDP header, and trailing padding.
+		ByteBuffer frame = ByteBuffer.allocate(14 + 4 + 20 + 8 + payload.length + 6);
+		frame.put(new byte[12]);
+		frame.putShort((short) 0x8100).putShort((short) 42).putShort((short) 0x0800);
+		frame.put((byte) 0x45).put((byte) 0).putShort((short) (20 + 8 + payload.length));
+		frame.putInt(0).put((byte) 64).put((byte) 17).putShort((short) 0);
+		frame.put(new byte[] { 10, 0, 0, 1 }).put(new byte[] { 10, 0, 0, 2 });
+		frame.putShort((short) 5060).putShort((short) 5080).putShort((short) (8 + payload.length)).putShort((short) 0);
+		frame.put(payload);
+		byte[] frameBytes = frame.array();
+
+		ByteBuffer file = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+		// Section header.
+		file.putInt(0x0A0D0D0A).putInt(28).putInt(0x1A2B3C4D).putShort((short) 1).putShort((short) 0);
+		file.putLong(-1).putInt(28);
+
+		// Interface description with nanosecond resolution.
+		file.putInt(1).putInt(32).putShort((short) 1).putShort((short) 0).putInt(65535);
+		file.putShort((short) 9).putShort((short) 1).put((byte) 9).put(new byte[3]);
+		file.putInt(0).putInt(32);
+
+		// Statistics block that is ignored.
+		file.putInt(5).putInt(12).putInt(12);
+
+		// Enhanced packet.
+		int padded = (frameBytes.length + 3) & ~3;
+		int length = 32 + padded;
+		long nanos = 1700000000_123456789L;
+		file.putInt(6).putInt(length).putInt(0).putInt((int) (nanos >>> 32)).putInt((int) nanos);
+		file.putInt(frameBytes.length).putInt(frameBytes.length);
+		file.put(frameBytes).put(new byte[padded - frameBytes.length]);
+		file.putInt(length);
+
+		List<PcapPacket> packets;
+		try (PcapReader reader = new PcapReader(new ByteArrayInputStream(file.array(), 0, file.position()))) {
+			packets = reader.readAll();
+		}
+		Assertions.assertEquals(1, packets.size());
+		PcapPacket packet = packets.get(0);
+		Assertions.assertEquals(1700000000_123456L, packet.getTimeMicros());
+		Assertions.assertEquals(IpProtocol.UDP, packet.getProtocol());
+		Assertions.assertEquals(InetAddress.getByName("10.0.0.1"), packet.getSource());
+		Assertions.assertEquals(5080, packet.getDestinationPort());
+		Assertions.assertArrayEquals(payload, packet.getPayload());
+	}
+
+	@Test
+	void testInvalidMagic() {
+		Assertions.assertThrows(IOException.class,
+			() -> new PcapReader(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 })));
+	}
+
+}
@@ -0,0 +1,251 @@
+package org.mjsip.server;
+
+
+import java.util.Date;
+
+import org.zoolu.util.DateFormat;
+
+
+/** CallDetailRecord (CDR) collects the events of a single call (dialog).
+  * <p>
+  * A record is created when the first INVITE of a call is seen and is updated
+  * by the following responses and the BYE request. Once {@link #isFinished() finished},
+  * the record is no longer modified and can be handed over to a {@link CdrWriter}.
+  * <p>
+  * All times are in milliseconds since the epoch, 0 if the corresponding event
+  * did not occur.
+  */
+public class CallDetailRecord {
+
+	/** Final state of a call. */
+	public enum State {
+		/** The call has not finished yet. */
+		ACTIVE,
+		/** The call has been accepted and terminated by a BYE. */
+		COMPLETED,
+		/** The call has been refused (or cancelled) with a final error response. */
+		REFUSED,
+		/** The record has been dropped from the table of active calls before the call finished. */
+		EVICTED
+	}
+
+	/** Call-Id. */
+	private final String call_id;
+
+	/** Caller (From) address. */
+	private final String caller;
+
+	/** Callee (To) address. */
+	private final String callee;
+
+	/** INVITE date. */
+	private final long invite_time;
+
+	/** 2xx date. */
+	private long accepted_time=0;
+
+	/** BYE or error response date. */
+	private long end_time=0;
+
+	/** Status code of the final response to the INVITE, or 0. */
+	private int status_code=0;
+
+	/** Reason phrase of the final response to the INVITE, or <i>null</i>. */
+	private String reason=null;
+
+	/** Call state. */
+	private State state=State.ACTIVE;
+
+
+	/** Creates a new CallDetailRecord.
+	  * @param call_id the call-id of the call
+	  * @param caller the caller address
+	  * @param callee the callee address
+	  * @param invite_time the time of the INVITE request */
+	public CallDetailRecord(String call_id, String caller, String callee, long invite_time) {
+		this.call_id=call_id;
+		this.caller=caller;
+		this.callee=callee;
+		this.invite_time=invite_time;
+	}
+
+
+	/** Gets the call-id. */
+	public String getCallId() {
+		return call_id;
+	}
+
+	/** Gets the caller address. */
+	public String getCaller() {
+		return caller;
+	}
+
+	/** Gets the callee address. */
+	public String getCallee() {
+		return callee;
+	}
+
+	/** Gets the time of the INVITE request. */
+	public long getInviteTime() {
+		return invite_time;
+	}
+
+	/** Gets the time of the 2xx response, or 0. */
+	public synchronized long getAcceptedTime() {
+		return accepted_time;
+	}
+
+	/** Gets the time the call ended, or 0. */
+	public synchronized long getEndTime() {
+		return end_time;
+	}
+
+	/** Gets the status code of the final response, or 0. */
+	public synchronized int getStatusCode() {
+		return status_code;
+	}
+
+	/** Gets the reason phrase of the final response, or <i>null</i>. */
+	public synchronized String getReason() {
+		return reason;
+	}
+
+	/** Gets the call state. */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/** Whether the record is finished and will no longer be modified. */
+	public synchronized boolean isFinished() {
+		return state!=State.ACTIVE;
+	}
+
+	/** Gets the setup time (from INVITE to 2xx) in milliseconds, or -1 if not accepted. */
+	public synchronized long getSetupTime() {
+		return accepted_time>0? accepted_time-invite_time : -1;
+	}
+
+	/** Gets the call duration (from 2xx to BYE) in milliseconds, or -1 if not completed. */
+	public synchronized long getDuration() {
+		return accepted_time>0 && end_time>0? end_time-accepted_time : -1;
+	}
+
+
+	/** Records a final response to the INVITE.
+	  * @return whether the record has been finished by this response */
+	public synchronized boolean onFinalResponse(int code, String reason, long time) {
+		if (state!=State.ACTIVE || status_code>=200 && status_code<300) return false;
+		status_code=code;
+		this.reason=reason;
+		if (code>=200 && code<300) {
+			accepted_time=time;
+			return false;
+		}
+		end_time=time;
+		state=State.REFUSED;
+		return true;
+	}
+
+	/** Records a BYE request.
+	  * @return whether the record has been finished by this request */
+	public synchronized boolean onBye(long time) {
+		if (state!=State.ACTIVE) return false;
+		end_time=time;
+		state=State.COMPLETED;
+		return true;
+	}
+
+	/** Marks the record as evicted.
+	  * @return whether the record has been finished by this call */
+	public synchronized boolean evict(long time) {
+		if (state!=State.ACTIVE) return false;
+		end_time=time;
+		state=State.EVICTED;
+		return true;
+	}
+
+
+	/** Appends the CSV representation of this record to the given buffer.
+	  * Fields: date, call-id, state, caller, callee, code, reason, setup time, duration. */
+	public synchronized StringBuilder appendCsv(StringBuilder sb) {
+		sb.append(DateFormat.formatYyyyMMddHHmmssSSS(new Date(invite_time))).append(',');
+		appendCsvField(sb,call_id).append(',');
+		sb.append(state).append(',');
+		appendCsvField(sb,caller).append(',');
+		appendCsvField(sb,callee).append(',');
+		sb.append(status_code).append(',');
+		appendCsvField(sb,reason).append(',');
+		sb.append(getSetupTime()).append(',');
+		sb.append(getDuration());
+		return sb;
+	}
+
+	/** Appends the JSON representation of this record to the given buffer. */
+	public synchronized StringBuilder appendJson(StringBuilder sb) {
+		sb.append("{\"callId\":");
+		appendJsonString(sb,call_id);
+		sb.append(",\"state\":\"").append(state).append('"');
+		sb.append(",\"caller\":");
+		appendJsonString(sb,caller);
+		sb.append(",\"callee\":");
+		appendJsonString(sb,callee);
+		sb.append(",\"inviteTime\":").append(invite_time);
+		sb.append(",\"acceptedTime\":").append(accepted_time);
+		sb.append(",\"endTime\":").append(end_time);
+		sb.append(",\"code\":").append(status_code);
+		sb.append(",\"reason\":");
+		appendJsonString(sb,reason);
+		sb.append('}');
+		return sb;
+	}
+
+
+	/** Appends a CSV field, quoted if necessary. */
+	private static StringBuilder appendCsvField(StringBuilder sb, String value) {
+		if (value==null) return sb;
+		boolean quote=false;
+		for (int i=0, len=value.length(); i<len && !quote; i++) {
+			char c=value.charAt(i);
+			quote=c==',' || c=='"' || c=='\n' || c=='\r';
+		}
+		if (!quote) return sb.append(value);
+		sb.append('"');
+		for (int i=0, len=value.length(); i<len; i++) {
+			char c=value.charAt(i);
+			if (c=='"') sb.append('"');
+			sb.append(c);
+		}
+		return sb.append('"');
+	}
+
+	/** Appends a JSON string literal, or <code>null</code>. */
+	private static void appendJsonString(StringBuilder sb, String value) {
+		if (value==null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i=0, len=value.length(); i<len; i++) {
+			char c=value.charAt(i);
+			switch (c) {
+				case '"' : sb.append("\\\""); break;
+				case '\\' : sb.append("\\\\"); break;
+				case '\n' : sb.append("\\n"); break;
+				case '\r' : sb.append("\\r"); break;
+				case '\t' : sb.append("\\t"); break;
+				default :
+					if (c<0x20) sb.append(String.format("\\u%04x",(int)c));
+					else sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+
+	/** Gets the String value. */
+	@Override
+	public String toString() {
+		return appendCsv(new StringBuilder()).toString();
+	}
+
+}
@@ -12,4 +12,7 @@ public interface CallLogger {
 	
 	/** Updates log with the present message. */
 	public void update(SipMessage msg);
+
+	/** Writes pending records and releases all resources. */
+	public void close();
 }
@@ -1,95 +1,100 @@
 package org.mjsip.server;
 
 
-import java.util.Date;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import org.mjsip.sip.header.StatusLine;
 import org.mjsip.sip.message.SipMessage;
 import org.mjsip.sip.message.SipMethods;
-import org.slf4j.LoggerFactory;
-import org.zoolu.util.DateFormat;
 
 
 /** CallLoggerImpl implements a simple CallLogger.
   * <p> A CallLogger keeps trace of all processed calls.
+  * <p>
+  * The events of each call are collected in a {@link CallDetailRecord}. When the call
+  * is terminated (by a BYE or an error response to the INVITE), the record is handed
+  * to a {@link CdrWriter} that writes it in background. Processing a message never
+  * waits for I/O.
+  * <p>
+  * At most {@link #MAX_SIZE} active calls are kept. When a new call exceeds this limit, the
+  * oldest active call is evicted and written with state {@link CallDetailRecord.State#EVICTED}.
+  * Finished calls do not count against the limit.
   */
 public class CallLoggerImpl implements CallLogger {
 	
-	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(CallLoggerImpl.class);
-
-	/** Maximum number of concurrent calls. */
+	/** Maximum number of active calls. */
 	static final int MAX_SIZE=10000;
 
-	/** Table : (String)call_id --> (Long)invite date. */
-	Hashtable invite_dates;
-	/** Table : (String)call_id --> (Long)2xx date. */
-	Hashtable accepted_dates;
-	/** Table : (String)call_id --> (Long)4xx date. */
-	Hashtable refused_dates;
-	/** Table : (String)call_id --> (Long)bye date. */
-	Hashtable bye_dates;
-	
-	/** Table : (String)call_id --> (String)caller. */
-	Hashtable callers;
-	/** Table : (String)call_id --> (String)callee. */
-	Hashtable callees;
+	/** Table : (String)call_id --> (CallDetailRecord)record of active calls, in creation order
+	  * for evicting the oldest call. Guarded by itself. */
+	private final LinkedHashMap<String,CallDetailRecord> records=new LinkedHashMap<>();
 
-	/** Set : (String)call_id. */
-	Vector calls;
+	/** Maximum number of active calls. */
+	private final int max_size;
 
-	/** Costructs a new CallLoggerImpl.
+	/** Writer of finished records. */
+	private final CdrWriter writer;
+
+
+	/** Costructs a new CallLoggerImpl that writes CSV records to the given file.
 	  */
 	public CallLoggerImpl(String filename) {
-		invite_dates=new Hashtable();
-		accepted_dates=new Hashtable();
-		refused_dates=new Hashtable();
-		bye_dates=new Hashtable();   
-		calls=new Vector();
-		callers=new Hashtable();
-		callees=new Hashtable();
-		
-		LOG.info("Date \tCall-Id \tStatus \tCaller \tCallee \tSetup Time \tCall Time");
+		this(new CdrWriter(new File(filename),CdrWriter.Format.CSV),MAX_SIZE);
 	}
- 
-	
+
+	/** Costructs a new CallLoggerImpl.
+	  * @param writer the writer of finished records, started by this constructor
+	  * @param max_size the maximum number of active calls, finished calls are not counted */
+	public CallLoggerImpl(CdrWriter writer, int max_size) {
+		this.writer=writer;
+		this.max_size=max_size;
+		writer.start();
+	}
+
+
+	/** Gets the number of active calls. */
+	public int getActiveCount() {
+		synchronized (records) {
+			return records.size();
+		}
+	}
+
+	/** Gets the writer of finished records. */
+	public CdrWriter getWriter() {
+		return writer;
+	}
+
+
 	/** Updates log with the present message.
 	  */
 	@Override
 	public void update(SipMessage msg) {
+		if (!msg.hasCSeqHeader() || !msg.hasCallIdHeader()) return;
 		
 		String method=msg.getCSeqHeader().getMethod();
-		String call_id=msg.getCallIdHeader().getCallId();
 
 		if (method.equalsIgnoreCase(SipMethods.INVITE)) {
+			String call_id=msg.getCallIdHeader().getCallId();
 			
 			if (msg.isRequest()) {
-				if (!invite_dates.containsKey(call_id)) {
-					Date time=new Date();
+				if (get(call_id)==null) {
 					String caller=msg.getFromHeader().getNameAddress().getAddress().toString();
 					String callee=msg.getToHeader().getNameAddress().getAddress().toString();
-					insert(invite_dates,call_id,time);
-					callers.put(call_id,caller);
-					callees.put(call_id,callee);
-					eventlog(time,call_id,SipMethods.INVITE,caller,callee);
+					insert(new CallDetailRecord(call_id,caller,callee,System.currentTimeMillis()));
 				}
 			}
 			else {
-				StatusLine status_line=msg.getStatusLine();
-				int code=status_line.getCode();
-				if (code>=200 && code<300 && !accepted_dates.containsKey(call_id)) {
-					Date time=new Date();
-					insert(accepted_dates,call_id,time);
-					String reason=status_line.getReason();     
-					eventlog(time,call_id,String.valueOf(code)+" "+reason,"","");
-				}
-				else
-				if (code>=300 && !refused_dates.containsKey(call_id)) {
-					Date time=new Date();
-					insert(refused_dates,call_id,time);
-					String reason=status_line.getReason();     
-					eventlog(time,call_id,String.valueOf(code)+" "+reason,"","");
+				CallDetailRecord record=get(call_id);
+				if (record!=null) {
+					StatusLine status_line=msg.getStatusLine();
+					int code=status_line.getCode();
+					if (code>=200 && record.onFinalResponse(code,status_line.getReason(),System.currentTimeMillis())) {
+						finish(record);
+					}
 				}
 			}
 		}
@@ -97,58 +102,57 @@ public class CallLoggerImpl implements CallLogger {
 		if (method.equalsIgnoreCase(SipMethods.BYE)) {
 			
 			if (msg.isRequest()) {
-				if (!bye_dates.containsKey(call_id)) {
-					Date time=new Date();
-					insert(bye_dates,call_id,time);
-					eventlog(time,call_id,SipMethods.BYE,"","");
-					calllog(call_id);
-				}
+				CallDetailRecord record=get(msg.getCallIdHeader().getCallId());
+				if (record!=null && record.onBye(System.currentTimeMillis())) finish(record);
 			}      
 		}
 	}
 
-
-	/** Insters/updates a call-state table.
-	  */
-	private void insert(Hashtable table, String call_id, Date time) {
-		if (!invite_dates.containsKey(call_id) && !accepted_dates.containsKey(call_id) && !refused_dates.containsKey(call_id) && !bye_dates.containsKey(call_id)); {
-			if (calls.size()>=MAX_SIZE)  {
-				String call_0=(String)calls.elementAt(0);
-				invite_dates.remove(call_0);
-				accepted_dates.remove(call_0);
-				refused_dates.remove(call_0);
-				bye_dates.remove(call_0);
-				callers.remove(call_0);
-				callees.remove(call_0);
-				calls.removeElementAt(0);
-			}
-			calls.addElement(call_id);
+	/** Writes all active calls and stops the writer. */
+	@Override
+	public void close() {
+		long now=System.currentTimeMillis();
+		List<CallDetailRecord> active;
+		synchronized (records) {
+			active=new ArrayList<>(records.values());
 		}
-		table.put(call_id,time);
+		for (CallDetailRecord record : active) {
+			if (record.evict(now)) finish(record);
+		}
+		writer.close();
 	}
 
 
-	/** Prints a generic event log.
-	  */
-	private void eventlog(Date time, String call_id, String event, String caller, String callee) {
-		//call_logger.log(DateFormat.formatHHMMSS(time)+"\t"+call_id+"\t"+event+"\t"+caller+"\t"+callee);
-		LOG.info(DateFormat.formatYyyyMMddHHmmssSSS(time) + "\t" + call_id + "\t" + event + "\t" + caller + "\t"
-				+ callee);
+	/** Gets the record of an active call, or null. */
+	private CallDetailRecord get(String call_id) {
+		synchronized (records) {
+			return records.get(call_id);
+		}
 	}
 
+	/** Adds a new call, unless already present, evicting the oldest active call if the maximum
+	  * number of active calls is exceeded.
+	  */
+	private void insert(CallDetailRecord record) {
+		CallDetailRecord oldest=null;
+		synchronized (records) {
+			if (records.putIfAbsent(record.getCallId(),record)!=null) return;
+			if (records.size()>max_size) {
+				Iterator<CallDetailRecord> it=records.values().iterator();
+				oldest=it.next();
+				it.remove();
+			}
+		}
+		if (oldest!=null && oldest.evict(System.currentTimeMillis())) finish(oldest);
+	}
 
-	/** Prints a call report.
+	/** Removes a finished call and passes its record to the writer.
 	  */
-	private void calllog(String call_id) {
-		Date invite_time=(Date)invite_dates.get(call_id);
-		Date accepted_time=(Date)accepted_dates.get(call_id);
-		Date bye_time=(Date)bye_dates.get(call_id);
-		if (invite_time!=null && accepted_time!=null && bye_time!=null) 
-			//call_logger.log(DateFormat.formatHHMMSS(invite_time)+"\t"+call_id+"\tCALL \t"+callers.get(call_id)+"\t"+callees.get(call_id)+"\t"+(accepted_time.getTime()-invite_time.getTime())+"\t"+(bye_time.getTime()-accepted_time.getTime()));
-			LOG.info(DateFormat.formatYyyyMMddHHmmssSSS(invite_time) + "\t" + call_id + "\tCALL \t"
-					+ callers.get(call_id) + "\t" + callees.get(call_id) + "\t"
-					+ (accepted_time.getTime() - invite_time.getTime()) + "\t"
-					+ (bye_time.getTime() - accepted_time.getTime()));
+	private void finish(CallDetailRecord record) {
+		synchronized (records) {
+			records.remove(record.getCallId(),record);
+		}
+		writer.submit(record);
 	}
 
 }
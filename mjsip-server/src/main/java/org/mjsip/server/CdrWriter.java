@@ -0,0 +1,294 @@
+package org.mjsip.server;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.mjsip.time.LoopThreads;
+import org.slf4j.LoggerFactory;
+
+
+/** CdrWriter writes finished {@link CallDetailRecord}s to a file in a background thread.
+  * <p>
+  * Records are passed through a bounded lock-free queue. {@link #submit(CallDetailRecord)}
+  * never blocks the caller: if the queue is full, the record is dropped and counted
+  * (see {@link #getDroppedCount()}).
+  * <p>
+  * The writer thread collects up to <i>batch_size</i> records (or what is available after
+  * <i>flush_interval</i> milliseconds) and writes them with a single write operation,
+  * one CSV line or JSON object per record. Depending on the {@link Fsync} policy, the file
+  * is forced to the storage device after each batch, or only when it is closed or rotated.
+  * <p>
+  * When the file exceeds <i>max_file_size</i> bytes, it is rotated: the current file is
+  * renamed to <i>file</i>.1, an existing <i>file</i>.1 to <i>file</i>.2, and so on, keeping
+  * at most <i>max_files</i> old files.
+  */
+public class CdrWriter {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(CdrWriter.class);
+
+	/** Output format. */
+	public enum Format {
+		/** One comma separated line per record. */
+		CSV,
+		/** One JSON object per line. */
+		JSON
+	}
+
+	/** Policy for forcing written records to the storage device. */
+	public enum Fsync {
+		/** Leave it to the operating system. */
+		NEVER,
+		/** Force the file only before it is closed or rotated. */
+		ROTATE,
+		/** Force the file after each written batch. */
+		BATCH
+	}
+
+	/** CSV header line. */
+	static final String CSV_HEADER="Date,Call-Id,State,Caller,Callee,Code,Reason,Setup Time,Call Time";
+
+	/** Output file. */
+	private final File file;
+
+	/** Output format. */
+	private final Format format;
+
+	/** Fsync policy. */
+	private final Fsync fsync;
+
+	/** Maximum number of queued records. */
+	private final int queue_size;
+
+	/** Maximum number of records written at once. */
+	private final int batch_size;
+
+	/** Maximum time in milliseconds a record waits before it is written. */
+	private final long flush_interval;
+
+	/** Maximum file size in bytes before rotation, 0 for no rotation. */
+	private final long max_file_size;
+
+	/** Maximum number of rotated files. */
+	private final int max_files;
+
+	/** Queued records. */
+	private final ConcurrentLinkedQueue<CallDetailRecord> queue=new ConcurrentLinkedQueue<>();
+
+	/** Number of queued records. */
+	private final AtomicInteger queued=new AtomicInteger();
+
+	/** Number of dropped records. */
+	private final AtomicLong dropped=new AtomicLong();
+
+	/** Number of written records. */
+	private final AtomicLong written=new AtomicLong();
+
+	/** Writer thread. */
+	private volatile Thread thread=null;
+
+	/** Whether the writer is stopping. */
+	private volatile boolean stopping=false;
+
+	/** Current output channel. */
+	private FileChannel channel=null;
+
+	/** Size of the current output file. */
+	private long file_size=0;
+
+
+	/** Creates a new CdrWriter, with default queue and batch sizes, without rotation.
+	  * @param file the output file
+	  * @param format the output format */
+	public CdrWriter(File file, Format format) {
+		this(file,format,Fsync.ROTATE,10000,100,1000,0,0);
+	}
+
+	/** Creates a new CdrWriter.
+	  * @param file the output file
+	  * @param format the output format
+	  * @param fsync when to force written records to the storage device
+	  * @param queue_size the maximum number of records waiting to be written
+	  * @param batch_size the maximum number of records written at once
+	  * @param flush_interval the maximum time in milliseconds a record waits before it is written
+	  * @param max_file_size the file size in bytes that causes a rotation, 0 for no rotation
+	  * @param max_files the maximum number of rotated files kept */
+	public CdrWriter(File file, Format format, Fsync fsync, int queue_size, int batch_size, long flush_interval, long max_file_size, int max_files) {
+		this.file=file;
+		this.format=format;
+		this.fsync=fsync;
+		this.queue_size=queue_size;
+		this.batch_size=Math.max(1,batch_size);
+		this.flush_interval=Math.max(1,flush_interval);
+		this.max_file_size=max_file_size;
+		this.max_files=max_files;
+	}
+
+
+	/** Starts the writer thread. */
+	public synchronized void start() {
+		if (thread!=null) return;
+		thread=LoopThreads.PLATFORM.start(this::run,"CdrWriter "+file.getName());
+	}
+
+	/** Stops the writer thread after all queued records have been written. */
+	public void close() {
+		Thread writer;
+		synchronized (this) {
+			writer=thread;
+			stopping=true;
+		}
+		if (writer==null) return;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Queues the given record for being written.
+	  * This method never blocks.
+	  * @return whether the record was queued, <i>false</i> if the queue is full or the writer is closed */
+	public boolean submit(CallDetailRecord record) {
+		if (stopping || queued.incrementAndGet()>queue_size) {
+			queued.decrementAndGet();
+			dropped.incrementAndGet();
+			return false;
+		}
+		queue.offer(record);
+		Thread writer=thread;
+		if (writer!=null && queued.get()>=batch_size) LockSupport.unpark(writer);
+		return true;
+	}
+
+	/** Gets the number of records waiting to be written. */
+	public int getQueuedCount() {
+		return queued.get();
+	}
+
+	/** Gets the number of records dropped because the queue was full. */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/** Gets the number of written records. */
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+
+	/** Writer loop. */
+	private void run() {
+		long flush_nanos=TimeUnit.MILLISECONDS.toNanos(flush_interval);
+		StringBuilder sb=new StringBuilder();
+		try {
+			while (true) {
+				boolean stop=stopping;
+				if (queued.get()<batch_size && !stop) LockSupport.parkNanos(this,flush_nanos);
+
+				int cnt;
+				while ((cnt=drain(sb))>0) {
+					write(sb,cnt);
+					if (cnt<batch_size) break;
+				}
+				if (stop && queued.get()==0) break;
+			}
+		}
+		finally {
+			closeChannel();
+		}
+	}
+
+	/** Moves up to <i>batch_size</i> queued records into the given buffer.
+	  * @return the number of records */
+	private int drain(StringBuilder sb) {
+		sb.setLength(0);
+		int cnt=0;
+		CallDetailRecord record;
+		while (cnt<batch_size && (record=queue.poll())!=null) {
+			queued.decrementAndGet();
+			if (format==Format.JSON) record.appendJson(sb);
+			else record.appendCsv(sb);
+			sb.append('\n');
+			cnt++;
+		}
+		return cnt;
+	}
+
+	/** Writes a batch of records. */
+	private void write(StringBuilder sb, int cnt) {
+		ByteBuffer buffer=StandardCharsets.UTF_8.encode(sb.toString());
+		try {
+			if (channel==null) openChannel();
+			else
+			if (max_file_size>0 && file_size+buffer.remaining()>max_file_size) {
+				closeChannel();
+				rotate();
+				openChannel();
+			}
+			while (buffer.hasRemaining()) file_size+=channel.write(buffer);
+			if (fsync==Fsync.BATCH) channel.force(false);
+			written.addAndGet(cnt);
+		}
+		catch (IOException e) {
+			LOG.warn("Cannot write call detail records to: "+file,e);
+			dropped.addAndGet(cnt);
+			closeChannel();
+		}
+	}
+
+	/** Opens the output file for appending. */
+	private void openChannel() throws IOException {
+		channel=new FileOutputStream(file,true).getChannel();
+		file_size=channel.size();
+		if (file_size==0 && format==Format.CSV) {
+			ByteBuffer header=StandardCharsets.UTF_8.encode(CSV_HEADER+"\n");
+			while (header.hasRemaining()) file_size+=channel.write(header);
+		}
+	}
+
+	/** Closes the output file. */
+	private void closeChannel() {
+		if (channel==null) return;
+		try {
+			if (fsync!=Fsync.NEVER) channel.force(false);
+			channel.close();
+		}
+		catch (IOException e) {
+			LOG.warn("Cannot close call detail record file: "+file,e);
+		}
+		channel=null;
+	}
+
+	/** Renames the current file to <i>file</i>.1, shifting older files. */
+	private void rotate() {
+		if (max_files<=0) {
+			if (!file.delete()) LOG.warn("Cannot delete call detail record file: "+file);
+			return;
+		}
+		File oldest=rotated(max_files);
+		if (oldest.exists() && !oldest.delete()) LOG.warn("Cannot delete call detail record file: "+oldest);
+		for (int i=max_files-1; i>0; i--) {
+			File f=rotated(i);
+			if (f.exists() && !f.renameTo(rotated(i+1))) LOG.warn("Cannot rename call detail record file: "+f);
+		}
+		if (!file.renameTo(rotated(1))) LOG.warn("Cannot rename call detail record file: "+file);
+	}
+
+	/** Gets the n-th rotated file. */
+	private File rotated(int n) {
+		return new File(file.getPath()+"."+n);
+	}
+
+}
@@ -26,6 +26,7 @@ import java.util.Vector;
 
 import org.mjsip.config.MetaConfig;
 import org.mjsip.config.OptionParser;
+import org.mjsip.sip.address.AddressCache;
 import org.mjsip.sip.address.GenericURI;
 import org.mjsip.sip.address.NameAddress;
 import org.mjsip.sip.address.SipURI;
@@ -53,6 +54,13 @@ public class Proxy extends Registrar {
 	
 	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(Proxy.class);
 
+	/** Forwarder for requests and responses that can be relayed on their raw bytes, or <i>null</i>. */
+	private StatelessForwarder fast_forwarder=null;
+
+	/** Compiled proxying rules, replaced as a whole when the rules are reloaded. */
+	private volatile ProxyingTables proxying_tables=null;
+
+
 	/** Costructs a void Proxy */
 	protected Proxy() {}
 
@@ -60,6 +68,25 @@ public class Proxy extends Registrar {
 	/** Costructs a new Proxy that acts also as location server for registered users. */
 	public Proxy(SipProvider provider, ServerProfile server_profile) {
 		super(provider,server_profile);
+		// the fast path implements the stateless forwarding of this class, not that of subclasses
+		if (server_profile.fastForwarding && getClass()==Proxy.class) {
+			fast_forwarder=new StatelessForwarder(this);
+			sip_provider.setRawMessageListener(fast_forwarder);
+		}
+	}
+
+
+	/** Gets the forwarder implementing the fast path on raw messages, or <i>null</i> if not enabled. */
+	public StatelessForwarder getFastForwarder() {
+		return fast_forwarder;
+	}
+
+
+	/** Stops receiving messages. */
+	@Override
+	public void halt() {
+		if (fast_forwarder!=null) sip_provider.setRawMessageListener(null);
+		super.halt();
 	}
 
 
@@ -117,7 +144,7 @@ public class Proxy extends Registrar {
 		
 		LOG.debug("message will be forwarded to "+targets.size()+" user's contact(s)"); 
 		for (int i=0; i<targets.size(); i++)  {
-			SipURI target_uri=SipURI.parseSipURI((String)(targets.elementAt(i)));
+			SipURI target_uri=AddressCache.getInstance().getSipURI((String)(targets.elementAt(i)));
 			SipMessage request=new SipMessage(msg);
 			request.removeRequestLine();
 			request.setRequestLine(new RequestLine(msg.getRequestLine().getMethod(),target_uri));
@@ -190,12 +217,7 @@ public class Proxy extends Registrar {
 		}
 		// add Record-Route?
 		if (server_profile.onRoute && msg.isInvite()/* && !is_on_route*/) {
-			SipURI rr_uri;
-			if (sip_provider.getPort()==sip_provider.sipConfig().getDefaultPort()) rr_uri=SipURI.parseSipURI(sip_provider.getViaAddress());
-			else rr_uri=new SipURI(sip_provider.getViaAddress(),sip_provider.getPort());
-			if (server_profile.looseRoute) rr_uri.addLr();
-			RecordRouteHeader rrh=new RecordRouteHeader(new NameAddress(rr_uri));
-			msg.addRecordRouteHeader(rrh);
+			msg.addRecordRouteHeader(createRecordRouteHeader());
 		}
 		// which protocol?
 		String proto=null;
@@ -244,6 +266,16 @@ public class Proxy extends Registrar {
 	}
 	
 
+	/** Creates the Record-Route header field added to forwarded INVITE requests, if the proxy stays on route. */
+	protected RecordRouteHeader createRecordRouteHeader() {
+		SipURI rr_uri;
+		if (sip_provider.getPort()==sip_provider.sipConfig().getDefaultPort()) rr_uri=SipURI.parseSipURI(sip_provider.getViaAddress());
+		else rr_uri=new SipURI(sip_provider.getViaAddress(),sip_provider.getPort());
+		if (server_profile.looseRoute) rr_uri.addLr();
+		return new RecordRouteHeader(new NameAddress(rr_uri));
+	}
+	
+
 	/** When a new response message is received */
 	@Override
 	public void processResponse(SipMessage resp) {
@@ -276,17 +308,7 @@ public class Proxy extends Registrar {
 	protected SipURI getAuthDomainBasedProxyingTarget(GenericURI request_uri) {
 		LOG.debug("inside getAuthDomainBasedProxyingTarget(uri)");
 		// authenticated rules
-		for (int i=0; i<server_profile.authenticatedDomainProxyingRules.length; i++) {
-			ProxyingRule rule=(ProxyingRule)server_profile.authenticatedDomainProxyingRules[i];
-			SipURI nexthop=rule.getNexthop(request_uri);
-			if (nexthop!=null) {
-				LOG.debug("domain-based authenticated forwarding: "+rule.toString()+": YES");
-				LOG.debug("target="+nexthop.toString());
-				return nexthop;
-			}
-			else LOG.debug("domain-based authenticated forwarding: "+rule.toString()+": NO");
-		}
-		return null;
+		return getProxyingTarget(getProxyingTables().authenticatedDomainRules,request_uri,"domain-based authenticated forwarding");
 	}
 
 
@@ -294,17 +316,7 @@ public class Proxy extends Registrar {
 	protected SipURI getDomainBasedProxyingTarget(GenericURI request_uri) {
 		LOG.debug("inside getDomainBasedForwardingTarget(uri)");
 		// non-authenticated rules
-		for (int i=0; i<server_profile.domainProxyingRules.length; i++) {
-			ProxyingRule rule=(ProxyingRule)server_profile.domainProxyingRules[i];
-			SipURI nexthop=rule.getNexthop(request_uri);
-			if (nexthop!=null) {
-				LOG.debug("domain-based forwarding: "+rule.toString()+": YES");
-				LOG.debug("target="+nexthop.toString());
-				return nexthop;
-			}
-			else LOG.debug("domain-based forwarding: "+rule.toString()+": NO");
-		}
-		return null;
+		return getProxyingTarget(getProxyingTables().domainRules,request_uri,"domain-based forwarding");
 	}
 
 
@@ -318,18 +330,9 @@ public class Proxy extends Registrar {
 		if (username==null || !isPhoneNumber(username))  return null;
 		// else
 		// authenticated rules
-		LOG.debug("authenticated prefix-based rules: "+server_profile.authenticatedPhoneProxyingRules.length);
-		for (int i=0; i<server_profile.authenticatedPhoneProxyingRules.length; i++) {
-			ProxyingRule rule=(ProxyingRule)server_profile.authenticatedPhoneProxyingRules[i];
-			SipURI nexthop=rule.getNexthop(request_uri);
-			if (nexthop!=null) {
-				LOG.debug("prefix-based authenticated forwarding: "+rule.toString()+": YES");
-				LOG.debug("target="+nexthop.toString());
-				return nexthop;
-			}
-			else LOG.debug("prefix-based authenticated forwarding: "+rule.toString()+": NO");
-		}
-		return null;
+		ProxyingTable table=getProxyingTables().authenticatedPhoneRules;
+		LOG.debug("authenticated prefix-based rules: "+table.size());
+		return getProxyingTarget(table,request_uri,"prefix-based authenticated forwarding");
 	}
 
 
@@ -343,18 +346,87 @@ public class Proxy extends Registrar {
 		if (username==null || !isPhoneNumber(username))  return null;
 		// else
 		// non-authenticated rules
-		LOG.debug("prefix-based rules: "+server_profile.phoneProxyingRules.length);
-		for (int i=0; i<server_profile.phoneProxyingRules.length; i++) {
-			ProxyingRule rule=(ProxyingRule)server_profile.phoneProxyingRules[i];
-			SipURI nexthop=rule.getNexthop(request_uri);
-			if (nexthop!=null) {
-				LOG.debug("prefix-based forwarding: "+rule.toString()+": YES");
-				LOG.debug("target="+nexthop.toString());
-				return nexthop;
+		ProxyingTable table=getProxyingTables().phoneRules;
+		LOG.debug("prefix-based rules: "+table.size());
+		return getProxyingTarget(table,request_uri,"prefix-based forwarding");
+	}
+
+
+	/** Looks up the next hop for the given URI in the given table. */
+	private SipURI getProxyingTarget(ProxyingTable table, GenericURI request_uri, String kind) {
+		ProxyingRule rule=table.getRule(request_uri);
+		if (rule==null) {
+			LOG.debug(kind+": no matching rule");
+			return null;
+		}
+		SipURI nexthop=rule.getNexthop(request_uri);
+		LOG.debug(kind+": "+rule.toString()+": YES");
+		LOG.debug("target="+nexthop);
+		return nexthop;
+	}
+
+
+	/** Gets the compiled proxying rules, compiling the rules of the server profile on first use. */
+	protected ProxyingTables getProxyingTables() {
+		ProxyingTables tables=proxying_tables;
+		if (tables==null) {
+			synchronized (this) {
+				tables=proxying_tables;
+				if (tables==null) proxying_tables=tables=new ProxyingTables(server_profile);
 			}
-			else LOG.debug("prefix-based forwarding: "+rule.toString()+": NO");
 		}
-		return null;
+		return tables;
+	}
+
+
+	/** Replaces the proxying rules of this proxy at runtime.
+	  * The new rules are compiled before being installed, so that concurrently processed
+	  * requests see either the complete old rule set or the complete new one.
+	  * @param profile the profile containing the new proxying rules; <i>null</i> rule arrays stand for no rules */
+	public void reloadProxyingRules(ServerProfile profile) {
+		ProxyingTables tables=new ProxyingTables(profile);
+		synchronized (this) {
+			server_profile.authenticatedPhoneProxyingRules=nonNull(profile.authenticatedPhoneProxyingRules);
+			server_profile.phoneProxyingRules=nonNull(profile.phoneProxyingRules);
+			server_profile.authenticatedDomainProxyingRules=nonNull(profile.authenticatedDomainProxyingRules);
+			server_profile.domainProxyingRules=nonNull(profile.domainProxyingRules);
+			proxying_tables=tables;
+		}
+		LOG.info("proxying rules reloaded: phone="+tables.phoneRules+", domain="+tables.domainRules);
+	}
+
+
+	private static ProxyingRule[] nonNull(ProxyingRule[] rules) {
+		return rules!=null? rules : new ProxyingRule[0];
+	}
+
+
+	/** Compiled proxying rules of a server profile. */
+	protected static final class ProxyingTables {
+		
+		/** Authenticated prefix-based rules. */
+		public final ProxyingTable authenticatedPhoneRules;
+
+		/** Prefix-based rules. */
+		public final ProxyingTable phoneRules;
+
+		/** Authenticated domain-based rules. */
+		public final ProxyingTable authenticatedDomainRules;
+
+		/** Domain-based rules. */
+		public final ProxyingTable domainRules;
+
+		/** Compiles the rules of the given profile. */
+		ProxyingTables(ServerProfile profile) {
+			authenticatedPhoneRules=compile(profile.authenticatedPhoneProxyingRules);
+			phoneRules=compile(profile.phoneProxyingRules);
+			authenticatedDomainRules=compile(profile.authenticatedDomainProxyingRules);
+			domainRules=compile(profile.domainProxyingRules);
+		}
+
+		private static ProxyingTable compile(ProxyingRule[] rules) {
+			return rules==null || rules.length==0? ProxyingTable.EMPTY : new ProxyingTable(rules);
+		}
 	}
 
 
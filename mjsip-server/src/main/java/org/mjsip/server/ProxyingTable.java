@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.mjsip.sip.address.GenericURI;
+import org.mjsip.sip.address.SipURI;
+
+
+/** ProxyingTable is an immutable index of an array of ProxyingRules.
+  * <p>
+  * Prefix-based rules are compiled into a character trie, so that the rule
+  * with the longest matching prefix is found in O(length of the user name),
+  * regardless of the number of rules. The "default" prefix rule is used when no
+  * other prefix matches. Domain-based rules are compiled into a hash table keyed
+  * by the (lower-case) domain name. Rules of any other type are still evaluated
+  * sequentially, in the configured order, after the indexed rules.
+  * <p>
+  * When two rules have the same prefix (or domain), the first one wins, as with
+  * the sequential evaluation of the rule array.
+  * <p>
+  * A ProxyingTable is never modified after creation; a changed rule set is
+  * installed by creating a new table and replacing the reference to the old one.
+  */
+public class ProxyingTable {
+
+	/** Empty table. */
+	public static final ProxyingTable EMPTY=new ProxyingTable(new ProxyingRule[0]);
+
+
+	/** Root of the prefix trie. */
+	private final Node root=new Node();
+
+	/** Domain rules, by lower-case domain name. */
+	private final Map<String,ProxyingRule> domain_rules=new HashMap<>();
+
+	/** Rules that can not be indexed. */
+	private final ProxyingRule[] other_rules;
+
+	/** Default prefix rule, or <i>null</i>. */
+	private ProxyingRule default_rule=null;
+
+	/** Number of rules. */
+	private final int size;
+
+
+	/** Creates a new ProxyingTable.
+	  * @param rules the proxying rules to be indexed */
+	public ProxyingTable(ProxyingRule[] rules) {
+		List<ProxyingRule> others=new ArrayList<>();
+		for (ProxyingRule rule : rules) {
+			if (rule instanceof PrefixProxyingRule) {
+				String prefix=((PrefixProxyingRule)rule).prefix;
+				if (prefix.equalsIgnoreCase(PrefixProxyingRule.DEFAULT_PREFIX)) {
+					if (default_rule==null) default_rule=rule;
+				}
+				else {
+					Node node=root;
+					for (int i=0; i<prefix.length(); i++) node=node.getOrCreateChild(prefix.charAt(i));
+					if (node.rule==null) node.rule=rule;
+				}
+			}
+			else
+			if (rule instanceof DomainProxyingRule) {
+				String domain=((DomainProxyingRule)rule).domain.toLowerCase(Locale.ROOT);
+				if (!domain_rules.containsKey(domain)) domain_rules.put(domain,rule);
+			}
+			else others.add(rule);
+		}
+		other_rules=others.toArray(new ProxyingRule[others.size()]);
+		size=rules.length;
+	}
+
+
+	/** Gets the number of rules of this table. */
+	public int size() {
+		return size;
+	}
+
+
+	/** Gets the rule that matches the given URI.
+	  * @param uri the selected destination URI
+	  * @return the rule with the longest matching prefix, or the rule matching the URI domain,
+	  * or the first matching non-indexed rule; <i>null</i> if no rule matches. */
+	public ProxyingRule getRule(GenericURI uri) {
+		if (uri.isSipURI()) {
+			SipURI sip_uri=uri.toSipURI();
+			String username=sip_uri.getUserName();
+			if (username!=null) {
+				ProxyingRule rule=getPrefixRule(username);
+				if (rule!=null) return rule;
+			}
+			else
+			if (default_rule!=null) return default_rule;
+
+			if (!domain_rules.isEmpty()) {
+				String host=sip_uri.getHost();
+				if (host!=null) {
+					ProxyingRule rule=domain_rules.get(host.toLowerCase(Locale.ROOT));
+					if (rule!=null) return rule;
+				}
+			}
+		}
+		for (ProxyingRule rule : other_rules) {
+			if (rule.getNexthop(uri)!=null) return rule;
+		}
+		return null;
+	}
+
+
+	/** Gets the proper next-hop SipURI for the selected URI.
+	  * @param uri the selected destination URI
+	  * @return the next-hop SipURI of the matching rule, or <i>null</i> if no rule matches. */
+	public SipURI getNexthop(GenericURI uri) {
+		ProxyingRule rule=getRule(uri);
+		return rule!=null? rule.getNexthop(uri) : null;
+	}
+
+
+	/** Gets the rule with the longest prefix of the given user name. */
+	private ProxyingRule getPrefixRule(String username) {
+		ProxyingRule match=default_rule;
+		Node node=root;
+		for (int i=0, len=username.length(); i<len; i++) {
+			node=node.getChild(username.charAt(i));
+			if (node==null) break;
+			if (node.rule!=null) match=node.rule;
+		}
+		return match;
+	}
+
+
+	/** Gets the String value. */
+	@Override
+	public String toString() {
+		return "{rules="+size+",domains="+domain_rules.size()+",others="+other_rules.length+"}";
+	}
+
+
+	/** Node of the prefix trie.
+	  * Digits, that form the vast majority of phone prefixes, are directly indexed. */
+	private static final class Node {
+
+		/** Children for the characters '0'-'9'. */
+		Node[] digits=null;
+
+		/** Children for all other characters. */
+		Map<Character,Node> others=null;
+
+		/** Rule whose prefix ends at this node, or <i>null</i>. */
+		ProxyingRule rule=null;
+
+		/** Gets the child for the given character, or <i>null</i>. */
+		Node getChild(char c) {
+			if (c>='0' && c<='9') return digits!=null? digits[c-'0'] : null;
+			else return others!=null? others.get(Character.valueOf(c)) : null;
+		}
+
+		/** Gets the child for the given character, creating it if not present. */
+		Node getOrCreateChild(char c) {
+			Node child=getChild(c);
+			if (child==null) {
+				child=new Node();
+				if (c>='0' && c<='9') {
+					if (digits==null) digits=new Node[10];
+					digits[c-'0']=child;
+				}
+				else {
+					if (others==null) others=new HashMap<>();
+					others.put(Character.valueOf(c),child);
+				}
+			}
+			return child;
+		}
+	}
+
+}
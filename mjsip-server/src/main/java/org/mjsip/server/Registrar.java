@@ -28,6 +28,7 @@ import java.util.Vector;
 
 import org.mjsip.config.MetaConfig;
 import org.mjsip.config.OptionParser;
+import org.mjsip.sip.address.AddressCache;
 import org.mjsip.sip.address.GenericURI;
 import org.mjsip.sip.address.NameAddress;
 import org.mjsip.sip.address.SipURI;
@@ -135,7 +136,12 @@ public class Registrar extends ServerEngine {
 	  * @return a vector of target URIs (Vector of <code>String</code>). */
 	protected Vector getTargets(SipMessage msg) {
 		LOG.debug("inside getTargets(msg)");
+		return getTargets(msg.getRequestLine().getAddress());
+	}
+
 
+	/** Gets the contact URIs registered for the given request-URI. */
+	protected Vector getTargets(GenericURI request_uri) {
 		Vector targets=new Vector();
 		
 		if (location_service==null) {
@@ -143,7 +149,6 @@ public class Registrar extends ServerEngine {
 			return targets;
 		}           
 
-		GenericURI request_uri=msg.getRequestLine().getAddress();
 		if (!request_uri.isSipURI()) {
 			LOG.info("request-URI is not a SIP URI");
 			return targets;
@@ -162,8 +167,6 @@ public class Registrar extends ServerEngine {
 			return targets;
 		}
 
-		GenericURI to_uri=msg.getToHeader().getNameAddress().getAddress();
-		
 		Enumeration e=location_service.getUserContactURIs(user);
 		LOG.debug("message targets: ");  
 		for (int i=0; e.hasMoreElements(); i++) {
@@ -182,7 +185,7 @@ public class Registrar extends ServerEngine {
 		// for SIPS request-uri remove non-SIPS targets
 		if (request_uri.equals(GenericURI.SCHEME_SIPS)) {
 			for (int i=0; i<targets.size(); i++) {
-				SipURI uri=SipURI.parseSipURI((String)targets.elementAt(i));
+				SipURI uri=AddressCache.getInstance().getSipURI((String)targets.elementAt(i));
 				if (!uri.isSecure()) {
 					LOG.info(uri.toString()+" has not SIPS scheme: skipped");
 					targets.removeElementAt(i--);
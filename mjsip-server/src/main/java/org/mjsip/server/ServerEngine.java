@@ -22,6 +22,7 @@
 package org.mjsip.server;
 
 
+import java.io.File;
 import java.util.Enumeration;
 import java.util.Vector;
 
@@ -79,6 +80,9 @@ public abstract class ServerEngine implements SipProviderListener {
 
 	/** AuthenticationServer. */
 	protected AuthenticationServer as;
+
+	/** CallLogger, or <i>null</i> if no call log is written. */
+	protected CallLogger call_logger=null;
 	
 	/** List of already supported location services */
 	protected static final String[] LOCATION_SERVICES={ "local" };
@@ -235,6 +239,15 @@ public abstract class ServerEngine implements SipProviderListener {
 		}
 		else as=null;
 
+		// CALL LOG
+		if (profile.callLog!=null) {
+			CdrWriter writer=new CdrWriter(new File(profile.callLog),profile.callLogFormat,profile.callLogFsync,
+					profile.callLogQueueSize,profile.callLogBatchSize,profile.callLogFlushInterval,
+					profile.callLogMaxSize,profile.callLogMaxFiles);
+			call_logger=new CallLoggerImpl(writer,CallLoggerImpl.MAX_SIZE);
+			LOG.info("Call log: "+profile.callLog);
+		}
+
 		// MEMORY MONITOR
 		/*if (server_profile.memory_log) {
 			String filename=SipStack.log_path+"//"+sip_provider.getViaAddress()+"."+sip_provider.getPort()+"_memory.log";
@@ -251,6 +264,13 @@ public abstract class ServerEngine implements SipProviderListener {
 	
 	// **************************** public methods ****************************
 
+	/** Stops receiving messages and closes the call log. */
+	public void halt() {
+		sip_provider.removeSelectiveListener(SipId.ANY_METHOD);
+		if (call_logger!=null) call_logger.close();
+	}
+
+
 	/** When a new message is received by the SipProvider.
 	  * If the received message is a request, it cheks for loops, */
 	@Override
@@ -267,6 +287,7 @@ public abstract class ServerEngine implements SipProviderListener {
 				if (!msg.isAck()) sip_provider.sendMessage(err_resp);
 				return;
 			}
+			if (call_logger!=null) call_logger.update(msg);
 
 			// target
 			GenericURI target=msg.getRequestLine().getAddress();  
@@ -314,7 +335,7 @@ public abstract class ServerEngine implements SipProviderListener {
 			boolean is_from_this_domain=isResponsibleFor(msg.getFromHeader().getNameAddress().getAddress());
 			LOG.debug("is from local doamin? "+((is_from_this_domain)?"yes":"no"));
 
-			if (is_for_this_domain && (target.isSipURI() && (!target.toSipURI().hasUserName() || target.toSipURI().getUserName().equals("34020000002000000001")))) {
+			if (is_for_this_domain && isServerURI(target)) {
 				LOG.debug("the recipient is this server");
 				// check message authentication (server authentication)
 				if (server_profile.doAuthentication && !msg.isAck() && !msg.isCancel()) {
@@ -360,6 +381,7 @@ public abstract class ServerEngine implements SipProviderListener {
 			// the message may be a response
 			if (msg.isResponse()) {
 				LOG.debug("message is a response");
+				if (call_logger!=null) call_logger.update(msg);
 				processResponse(msg);
 			}
 			else LOG.warn("received message is not recognized as a request nor a response: discarded");
@@ -433,6 +455,12 @@ public abstract class ServerEngine implements SipProviderListener {
 		return true;
 	}*/
 
+	/** Whether a request-URI of a domain the server is responsible for addresses the server itself
+	  * rather than a user. */
+	protected boolean isServerURI(GenericURI target) {
+		return target.isSipURI() && (!target.toSipURI().hasUserName() || target.toSipURI().getUserName().equals("34020000002000000001"));
+	}
+
 	/** Gets a String of the list of local domain names. */
 	protected String getLocalDomains() {
 		if (server_profile.domainNames.length>0) {
@@ -510,14 +538,20 @@ public abstract class ServerEngine implements SipProviderListener {
 
 	/** Picks the token used for loop detection. */
 	private String pickLoopTag(SipMessage msg) {
-		StringBuilder sb=new StringBuilder();
-		sb.append(msg.getRequestLine().getAddress().toString());
-		//sb.append(msg.getToHeader().getTag());
-		sb.append(msg.getFromHeader().getTag());
-		sb.append(msg.getCallIdHeader().getCallId());
-		sb.append(msg.getCSeqHeader().getSequenceNumber());
 		MultipleHeader rr=msg.getRoutes();
-		if (rr!=null) sb.append(rr.size());
+		return pickLoopTag(msg.getRequestLine().getAddress().toString(),msg.getFromHeader().getTag(),msg.getCallIdHeader().getCallId(),msg.getCSeqHeader().getSequenceNumber(),(rr!=null)? rr.size() : -1);
+	}
+
+	/** Picks the token used for loop detection.
+	  * @param route_count the number of Route values, or -1 if there is no Route header field */
+	String pickLoopTag(String request_uri, String from_tag, String call_id, long cseq, int route_count) {
+		StringBuilder sb=new StringBuilder();
+		sb.append(request_uri);
+		//sb.append(to_tag);
+		sb.append(from_tag);
+		sb.append(call_id);
+		sb.append(cseq);
+		if (route_count>=0) sb.append(route_count);
 		return (new SimpleDigest(7,sb.toString())).asHex();
 	}
 }
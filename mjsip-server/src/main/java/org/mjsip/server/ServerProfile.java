@@ -86,9 +86,12 @@ public class ServerProfile {
 	@Option(name = "--loop-detection", usage = "Whether checking for loops before forwarding a request (Loop Detection). In RFC3261 it is optional.", handler = YesNoHandler.class)
 	public boolean loopDetection=true;
 
+	@Option(name = "--fast-forwarding", usage = "Whether a stateless proxy forwards plain requests and responses on their raw bytes, without fully parsing them.", handler = YesNoHandler.class)
+	public boolean fastForwarding=false;
+
 	/** Array of ProxyingRules based on pairs of username or phone prefix and corresponding nexthop address.
 	  * It provides static rules for proxying number-based SIP-URI the server is responsible for.
-	  * Use "default" (or "*") as default prefix.
+	  * Use "default" (or "*") as default prefix. The rule with the longest matching prefix is selected.
 	  * Example: <br>
 	  * server is responsible for the domain 'example.com' <br>
 	  * phone_proxying_rules={prefix=0123,nexthop=127.0.0.2:7002} {prefix=*,nexthop=127.0.0.3:7003} <br>
@@ -117,6 +120,31 @@ public class ServerProfile {
 	@Option(name = "--memory-log", usage = "Whether maintaining a memory log.")
 	public boolean memoryLog=false;
 
+	@Option(name = "--call-log", usage = "The file for writing call detail records, none if not set.")
+	public String callLog=null;
+
+	@Option(name = "--call-log-format", usage = "The format of call detail records (CSV, JSON).")
+	public CdrWriter.Format callLogFormat=CdrWriter.Format.CSV;
+
+	@Option(name = "--call-log-fsync", usage = "When call detail records are forced to disk: "
+			+ "NEVER, ROTATE (when the file is closed or rotated), or BATCH (after each written batch).")
+	public CdrWriter.Fsync callLogFsync=CdrWriter.Fsync.ROTATE;
+
+	@Option(name = "--call-log-queue-size", usage = "Maximum number of call detail records waiting to be written; further records are dropped.")
+	public int callLogQueueSize=10000;
+
+	@Option(name = "--call-log-batch-size", usage = "Maximum number of call detail records written at once.")
+	public int callLogBatchSize=100;
+
+	@Option(name = "--call-log-flush-interval", usage = "Maximum time (in milliseconds) a call detail record waits before it is written.")
+	public long callLogFlushInterval=1000;
+
+	@Option(name = "--call-log-max-size", usage = "Size (in bytes) of the call log file that causes a rotation, 0 for no rotation.")
+	public long callLogMaxSize=0;
+
+	@Option(name = "--call-log-max-files", usage = "Maximum number of rotated call log files that are kept.")
+	public int callLogMaxFiles=5;
+
 	public void normalize() {
 		if (authenticationRealm!=null && authenticationRealm.equals(Configure.NONE)) authenticationRealm=null;
 		if (domainNames==null) domainNames=new String[0];
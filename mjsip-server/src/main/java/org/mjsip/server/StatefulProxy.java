@@ -28,6 +28,7 @@ import java.util.Vector;
 
 import org.mjsip.config.MetaConfig;
 import org.mjsip.config.OptionParser;
+import org.mjsip.sip.address.AddressCache;
 import org.mjsip.sip.address.GenericURI;
 import org.mjsip.sip.address.SipURI;
 import org.mjsip.sip.header.RequestLine;
@@ -149,7 +150,7 @@ public class StatefulProxy extends Proxy implements TransactionClientListener {
 
 		LOG.debug("message will be forwarded to "+targets.size()+" user's contact(s)"); 
 		for (int i=0; i<targets.size(); i++)  {
-			SipURI target_uri=SipURI.parseSipURI((String)(targets.elementAt(i)));
+			SipURI target_uri=AddressCache.getInstance().getSipURI((String)(targets.elementAt(i)));
 			SipMessage request=new SipMessage(msg);
 			request.removeRequestLine();
 			request.setRequestLine(new RequestLine(msg.getRequestLine().getMethod(),target_uri));
@@ -0,0 +1,645 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server;
+
+
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mjsip.sip.address.GenericURI;
+import org.mjsip.sip.address.SipURI;
+import org.mjsip.sip.header.CSeqHeader;
+import org.mjsip.sip.header.CallIdHeader;
+import org.mjsip.sip.header.FromHeader;
+import org.mjsip.sip.header.LegacyHeader;
+import org.mjsip.sip.header.RouteHeader;
+import org.mjsip.sip.header.SipHeaders;
+import org.mjsip.sip.header.ToHeader;
+import org.mjsip.sip.header.ViaHeader;
+import org.mjsip.sip.provider.RawMessageListener;
+import org.mjsip.sip.provider.SipParser;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.sip.provider.SipTransport;
+import org.slf4j.LoggerFactory;
+import org.zoolu.net.IpAddress;
+
+
+
+/** StatelessForwarder implements the forwarding of a stateless {@link Proxy} on the
+  * raw bytes of the received messages.
+  * <p>
+  * A received message is scanned once for its start line and for the few header fields
+  * that a stateless proxy inspects or updates: Via, Route, Max-Forwards, and the fields
+  * used for loop detection (From, Call-ID, CSeq). The forwarded message is assembled
+  * by copying the received bytes, patching only the Request-URI, the top Via (received
+  * and rport parameters), the top Route, and Max-Forwards, and by inserting the new Via
+  * and Record-Route header fields. The other header fields and the body are neither
+  * parsed nor re-formatted.
+  * <p>
+  * Only plain cases are handled this way: UDP towards the next hop, no proxy
+  * authentication, no call log, no strict routing, and neither a loop nor an exhausted
+  * Max-Forwards. For any other message, {@link #onReceivedRawMessage} returns
+  * <i>false</i>, and the message takes the usual path through the {@link Proxy},
+  * which produces the same result.
+  */
+public class StatelessForwarder implements RawMessageListener {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(StatelessForwarder.class);
+
+	/** Line terminator of inserted header fields. */
+	private static final byte[] CRLF={ '\r', '\n' };
+
+	/** The proxy whose forwarding is implemented. */
+	private final Proxy proxy;
+
+	/** The SipProvider of the proxy. */
+	private final SipProvider sip_provider;
+
+	/** Number of messages forwarded on their raw bytes. */
+	private final AtomicLong forwarded_count=new AtomicLong();
+
+	/** Number of messages passed to the full processing. */
+	private final AtomicLong fallback_count=new AtomicLong();
+
+
+	/** Creates a new StatelessForwarder for the given proxy. */
+	public StatelessForwarder(Proxy proxy) {
+		this.proxy=proxy;
+		this.sip_provider=proxy.sip_provider;
+	}
+
+
+	/** Gets the number of messages forwarded on their raw bytes. */
+	public long getForwardedCount() {
+		return forwarded_count.get();
+	}
+
+
+	/** Gets the number of messages that have been passed to the full processing. */
+	public long getFallbackCount() {
+		return fallback_count.get();
+	}
+
+
+	/** From RawMessageListener. Forwards the message, if it is a plain case. */
+	@Override
+	public boolean onReceivedRawMessage(SipProvider provider, SipTransport transport, byte[] buf, int off, int len, String remote_addr, int remote_port) {
+		boolean done=false;
+		if (proxy.call_logger==null) {
+			RawMessage msg=RawMessage.scan(buf,off,len);
+			if (msg!=null) {
+				try {
+					done=msg.is_response? forwardResponse(msg) : forwardRequest(msg,remote_addr,remote_port);
+				}
+				catch (RuntimeException e) {
+					// e.g. a malformed header field: let the full processing deal with it
+					LOG.debug("Raw forwarding failed, falling back.", e);
+					done=false;
+				}
+			}
+		}
+		if (done) forwarded_count.incrementAndGet();
+		else fallback_count.incrementAndGet();
+		return done;
+	}
+
+
+	// ***************************** Requests *****************************
+
+	/** Forwards a request as {@link Proxy#processRequestToRemoteUA(org.mjsip.sip.message.SipMessage)}
+	  * or {@link Proxy#processRequestToLocalUser(org.mjsip.sip.message.SipMessage)} would do.
+	  * @return whether the request has been forwarded */
+	private boolean forwardRequest(RawMessage msg, String remote_addr, int remote_port) {
+		ServerProfile profile=proxy.server_profile;
+		if (profile.doProxyAuthentication) return false;
+		if (msg.vias.isEmpty() || msg.from==null || msg.to==null || msg.call_id==null || msg.cseq==null) return false;
+
+		// Max-Forwards
+		int max_forwards=-1;
+		if (msg.max_forwards!=null) {
+			max_forwards=msg.parseInt(msg.max_forwards.value_start,msg.max_forwards.value_end);
+			if (max_forwards<=0) return false;
+		}
+
+		String request_uri=msg.string(msg.uri_start,msg.uri_end);
+		GenericURI target=new SipParser(request_uri).getURI();
+		if (target==null) return false;
+
+		// top Via
+		Field top_via_field=msg.vias.get(0);
+		int top_via_end=msg.elementEnd(top_via_field.value_start,top_via_field.value_end);
+		ViaHeader top_via=ViaHeader.parse(msg.string(top_via_field.value_start,top_via_end));
+		if (!top_via.hasBranch()) return false;
+		String top_via_branch=top_via.getBranch();
+
+		// loop detection
+		String loop_tag=null;
+		if (profile.loopDetection) {
+			String from_tag=new FromHeader(new LegacyHeader(SipHeaders.From,msg.value(msg.from))).getTag();
+			String call_id=new CallIdHeader(msg.value(msg.call_id)).getCallId();
+			long cseq=new CSeqHeader(msg.value(msg.cseq)).getSequenceNumber();
+			int route_count=msg.routes.isEmpty()? -1 : msg.countElements(msg.routes);
+			loop_tag=proxy.pickLoopTag(request_uri,from_tag,call_id,cseq,route_count);
+			if (route_count<0 && isLoop(msg,loop_tag)) return false;
+		}
+
+		// strict route towards this server
+		if (!msg.routes.isEmpty() && proxy.isResponsibleFor(target)) return false;
+
+		// update received and rport of the top Via, as the SipProvider does
+		boolean via_changed=false;
+		String via_addr=top_via.getHost();
+		int via_port=top_via.getPort();
+		if (via_port<=0) via_port=sip_provider.sipConfig().getDefaultPort();
+		if (top_via.hasReceived() || (sip_provider.forceRport() && !via_addr.equals(remote_addr))) {
+			top_via.setReceived(remote_addr);
+			via_changed=true;
+		}
+		if (top_via.hasRport() || (sip_provider.forceRport() && via_port!=remote_port)) {
+			top_via.setRport(remote_port);
+			via_changed=true;
+		}
+
+		// targets
+		Vector<String> targets=new Vector<>();
+		boolean is_for_this_domain=target.isSipURI() && proxy.isResponsibleFor(target.toSipURI().getHost(),target.toSipURI().getPort());
+		if (is_for_this_domain) {
+			if (proxy.isServerURI(target)) return false;
+			Vector contacts=proxy.getTargets(target);
+			if (contacts.isEmpty()) return false;
+			for (int i=0; i<contacts.size(); i++) targets.addElement(SipURI.parseSipURI((String)contacts.elementAt(i)).toString());
+		}
+		else {
+			GenericURI from_uri=null;
+			if (!profile.isOpenProxy) {
+				from_uri=new FromHeader(new LegacyHeader(SipHeaders.From,msg.value(msg.from))).getNameAddress().getAddress();
+				GenericURI to_uri=new ToHeader(new LegacyHeader(SipHeaders.To,msg.value(msg.to))).getNameAddress().getAddress();
+				// denied, answered by the full processing
+				if (!proxy.isResponsibleFor(from_uri) && !proxy.isResponsibleFor(to_uri)) return false;
+			}
+			SipURI nexthop=null;
+			if (proxy.getProxyingTables().authenticatedDomainRules.size()>0) {
+				if (from_uri==null) from_uri=new FromHeader(new LegacyHeader(SipHeaders.From,msg.value(msg.from))).getNameAddress().getAddress();
+				if (proxy.isResponsibleFor(from_uri)) nexthop=proxy.getAuthDomainBasedProxyingTarget(target);
+			}
+			if (nexthop==null) nexthop=proxy.getDomainBasedProxyingTarget(target);
+			targets.addElement(nexthop!=null? nexthop.toString() : request_uri);
+		}
+
+		// top Route pointing to this server
+		Field top_route_field=msg.routes.isEmpty()? null : msg.routes.get(0);
+		int top_route_end=-1;
+		boolean remove_route=false;
+		GenericURI next_route=null;
+		if (top_route_field!=null) {
+			top_route_end=msg.elementEnd(top_route_field.value_start,top_route_field.value_end);
+			GenericURI route=routeURI(msg.string(top_route_field.value_start,top_route_end));
+			if (route.isSipURI()) {
+				SipURI sip_route=route.toSipURI();
+				remove_route=proxy.isResponsibleFor(sip_route.getHost(),sip_route.getPort());
+			}
+			if (!remove_route) next_route=route;
+			else {
+				int next=msg.nextElement(top_route_end,top_route_field.value_end);
+				if (next<top_route_field.value_end) next_route=routeURI(msg.string(next,msg.elementEnd(next,top_route_field.value_end)));
+				else
+				if (msg.routes.size()>1) {
+					Field second=msg.routes.get(1);
+					next_route=routeURI(msg.string(second.value_start,msg.elementEnd(second.value_start,second.value_end)));
+				}
+			}
+			// the next hop requires the RFC2543 Strict Route adaptation
+			if (next_route!=null && !next_route.hasLr()) return false;
+		}
+
+		// prepare all copies before sending any of them
+		ArrayList<Forward> forwards=new ArrayList<>(targets.size());
+		for (int i=0; i<targets.size(); i++) {
+			String new_uri=targets.elementAt(i);
+			GenericURI nexthop_uri=sip_provider.sipConfig().getOutboundProxy();
+			if (nexthop_uri==null) nexthop_uri=next_route;
+			if (nexthop_uri==null) nexthop_uri=new_uri.equals(request_uri)? target : new SipParser(new_uri).getURI();
+			if (nexthop_uri==null || !nexthop_uri.isSipURI()) return false;
+			SipURI nexthop=nexthop_uri.toSipURI();
+			if (nexthop.hasMaddr()) return false;
+			String transport;
+			if (nexthop.isSecure()) transport=SipProvider.PROTO_TLS;
+			else
+			if (nexthop.hasTransport()) transport=nexthop.getTransport();
+			else transport=sip_provider.getDefaultTransport();
+			if (!SipProvider.PROTO_UDP.equalsIgnoreCase(transport)) return false;
+
+			String dest_addr=nexthop.getHost();
+			int dest_port=nexthop.getPort();
+			if (dest_port<=0) dest_port=sip_provider.sipConfig().getDefaultPort();
+
+			// the new Via
+			ViaHeader via=new ViaHeader(SipProvider.PROTO_UDP,sip_provider.getViaAddress(SipURI.isIPv6(dest_addr)),sip_provider.getPort());
+			if (sip_provider.isRportSet()) via.setRport();
+			String branch=sip_provider.pickBranch(new_uri,top_via_branch);
+			if (loop_tag!=null) branch+=loop_tag;
+			via.setBranch(branch);
+
+			Patch patch=new Patch(msg);
+			if (!new_uri.equals(request_uri)) patch.replace(msg.uri_start,msg.uri_end,new_uri);
+			StringBuilder inserted=new StringBuilder();
+			inserted.append(SipHeaders.Via).append(": ").append(via.getValue()).append("\r\n");
+			if (profile.onRoute && msg.isMethod(org.mjsip.sip.message.SipMethods.INVITE)) {
+				inserted.append(SipHeaders.Record_Route).append(": ").append(proxy.createRecordRouteHeader().getValue()).append("\r\n");
+			}
+			patch.replace(msg.start_line_end,msg.start_line_end,inserted.toString());
+			if (via_changed) patch.replace(top_via_field.value_start,top_via_end,top_via.getValue());
+			if (remove_route) {
+				int next=msg.nextElement(top_route_end,top_route_field.value_end);
+				if (next<top_route_field.value_end) patch.replace(top_route_field.value_start,next,"");
+				else patch.replace(top_route_field.line_start,top_route_field.line_end,"");
+			}
+			if (max_forwards>0) patch.replace(msg.max_forwards.value_start,msg.max_forwards.value_end,String.valueOf(max_forwards-1));
+			else patch.replace(msg.headers_end,msg.headers_end,SipHeaders.Max_Forwards+": "+sip_provider.sipConfig().getMaxForwards()+"\r\n");
+
+			forwards.add(new Forward(patch,dest_addr,dest_port));
+		}
+
+		for (Forward forward : forwards) send(forward.patch.apply(),forward.dest_addr,forward.dest_port);
+		return true;
+	}
+
+
+	/** Whether the request loops back to this server, as checked by {@link ServerEngine#validateRequest(org.mjsip.sip.message.SipMessage)}. */
+	private boolean isLoop(RawMessage msg, String loop_tag) {
+		String via_addr=sip_provider.getViaAddress();
+		for (Field field : msg.vias) {
+			for (int pos=field.value_start; pos<field.value_end; pos=msg.nextElement(pos,field.value_end)) {
+				int end=msg.elementEnd(pos,field.value_end);
+				// only Via values mentioning the local address need to be parsed
+				if (msg.indexOf(pos,end,via_addr)<0) {
+					pos=end;
+					continue;
+				}
+				ViaHeader vh=ViaHeader.parse(msg.string(pos,end));
+				if (via_addr.equals(vh.getHost()) && sip_provider.getPort()==vh.getPort()) {
+					if (!vh.hasBranch()) return true;
+					String branch=vh.getBranch();
+					if (branch.indexOf(loop_tag,branch.length()-loop_tag.length())>=0) return true;
+				}
+				pos=end;
+			}
+		}
+		return false;
+	}
+
+
+	/** Gets the URI of a Route value. */
+	private static GenericURI routeURI(String value) {
+		return new RouteHeader(new LegacyHeader(SipHeaders.Route,value)).getNameAddress().getAddress();
+	}
+
+
+	// **************************** Responses *****************************
+
+	/** Forwards a response as {@link Proxy#processResponse(org.mjsip.sip.message.SipMessage)} would do.
+	  * @return whether the response has been forwarded */
+	private boolean forwardResponse(RawMessage msg) {
+		if (msg.vias.isEmpty()) return false;
+		Patch patch=new Patch(msg);
+
+		// remove the top most Via, regardless the Via has been inserted by this node or not
+		Field first=msg.vias.get(0);
+		int first_end=msg.elementEnd(first.value_start,first.value_end);
+		int next=msg.nextElement(first_end,first.value_end);
+		String next_via;
+		if (next<first.value_end) {
+			next_via=msg.string(next,msg.elementEnd(next,first.value_end));
+			patch.replace(first.value_start,next,"");
+		}
+		else {
+			if (msg.vias.size()<2) return false;
+			Field second=msg.vias.get(1);
+			next_via=msg.string(second.value_start,msg.elementEnd(second.value_start,second.value_end));
+			patch.replace(first.line_start,first.line_end,"");
+		}
+
+		// destination, as chosen by the SipProvider
+		ViaHeader via=ViaHeader.parse(next_via);
+		if (!SipProvider.PROTO_UDP.equalsIgnoreCase(via.getTransport())) return false;
+		String dest_addr=via.hasReceived()? via.getReceived() : via.getHost();
+		int dest_port=0;
+		if (via.hasRport()) dest_port=via.getRport();
+		if (dest_port<=0) dest_port=via.getPort();
+		if (dest_port<=0) dest_port=sip_provider.sipConfig().getDefaultPort();
+
+		send(patch.apply(),dest_addr,dest_port);
+		return true;
+	}
+
+
+	/** Sends a forwarded message. */
+	private void send(byte[] data, String dest_addr, int dest_port) {
+		try {
+			sip_provider.sendRawData(SipProvider.PROTO_UDP,data,0,data.length,IpAddress.getByName(dest_addr),dest_port);
+		}
+		catch (Exception e) {
+			LOG.warn("Exception.", e);
+		}
+	}
+
+
+	// ***************************** Scanning *****************************
+
+	/** A header field line of a raw message. */
+	static final class Field {
+
+		/** Start of the line. */
+		final int line_start;
+		/** Start of the value. */
+		final int value_start;
+		/** End of the value, without trailing white space. */
+		final int value_end;
+		/** End of the line, including the line terminator. */
+		final int line_end;
+
+		Field(int line_start, int value_start, int value_end, int line_end) {
+			this.line_start=line_start;
+			this.value_start=value_start;
+			this.value_end=value_end;
+			this.line_end=line_end;
+		}
+	}
+
+
+	/** A copy of a raw message with some ranges replaced. */
+	private static final class Patch {
+
+		private final RawMessage msg;
+		private final ArrayList<int[]> ranges=new ArrayList<>(6);
+		private final ArrayList<byte[]> values=new ArrayList<>(6);
+		private int extra=0;
+
+		Patch(RawMessage msg) {
+			this.msg=msg;
+		}
+
+		/** Replaces the given range of the original message. */
+		void replace(int start, int end, String value) {
+			byte[] data=value.getBytes(StandardCharsets.UTF_8);
+			// keep the ranges ordered by start position (insertions before replacements at the same position)
+			int i=ranges.size();
+			while (i>0 && (ranges.get(i-1)[0]>start || (ranges.get(i-1)[0]==start && start<end))) i--;
+			ranges.add(i,new int[]{ start, end });
+			values.add(i,data);
+			extra+=data.length-(end-start);
+		}
+
+		/** Creates the patched message. */
+		byte[] apply() {
+			byte[] out=new byte[msg.end-msg.off+extra];
+			int len=0;
+			int pos=msg.off;
+			for (int i=0; i<ranges.size(); i++) {
+				int[] range=ranges.get(i);
+				int unchanged=range[0]-pos;
+				System.arraycopy(msg.buf,pos,out,len,unchanged);
+				len+=unchanged;
+				byte[] value=values.get(i);
+				System.arraycopy(value,0,out,len,value.length);
+				len+=value.length;
+				pos=range[1];
+			}
+			System.arraycopy(msg.buf,pos,out,len,msg.end-pos);
+			return out;
+		}
+	}
+
+
+	/** A prepared copy of a forwarded request. */
+	private static final class Forward {
+		final Patch patch;
+		final String dest_addr;
+		final int dest_port;
+
+		Forward(Patch patch, String dest_addr, int dest_port) {
+			this.patch=patch;
+			this.dest_addr=dest_addr;
+			this.dest_port=dest_port;
+		}
+	}
+
+
+	/** The positions of the start line and the relevant header fields of a raw SIP message. */
+	static final class RawMessage {
+
+		final byte[] buf;
+		final int off;
+		final int end;
+
+		/** Whether it is a response. */
+		boolean is_response;
+		/** Start of the method of a request. */
+		int method_start;
+		/** Start of the Request-URI of a request. */
+		int uri_start;
+		/** End of the Request-URI of a request. */
+		int uri_end;
+		/** End of the start line, including the line terminator. */
+		int start_line_end;
+		/** Start of the empty line terminating the header. */
+		int headers_end;
+
+		/** Via header fields. */
+		final ArrayList<Field> vias=new ArrayList<>(2);
+		/** Route header fields. */
+		final ArrayList<Field> routes=new ArrayList<>(2);
+		Field max_forwards;
+		Field call_id;
+		Field from;
+		Field to;
+		Field cseq;
+
+
+		private RawMessage(byte[] buf, int off, int end) {
+			this.buf=buf;
+			this.off=off;
+			this.end=end;
+		}
+
+		/** Scans a raw message.
+		  * @return the scanned message, or <i>null</i> if it cannot be handled without parsing */
+		static RawMessage scan(byte[] buf, int off, int len) {
+			RawMessage msg=new RawMessage(buf,off,off+len);
+			return msg.scan()? msg : null;
+		}
+
+		private boolean scan() {
+			int pos=off;
+			while (pos<end && (buf[pos]=='\r' || buf[pos]=='\n')) pos++;
+			if (end-pos<=4) return false;
+
+			int nl=indexOf(pos,end,(byte)'\n');
+			if (nl<0) return false;
+			int eol=trimEnd(pos,nl);
+			if (startsWith(pos,eol,"SIP/2.0 ")) is_response=true;
+			else {
+				method_start=pos;
+				int sp=indexOf(pos,eol,(byte)' ');
+				if (sp<=pos) return false;
+				uri_start=sp+1;
+				uri_end=indexOf(uri_start,eol,(byte)' ');
+				if (uri_end<=uri_start) return false;
+				if (!startsWith(uri_end+1,eol,"SIP/2.0") || eol-uri_end-1!=7) return false;
+			}
+			start_line_end=nl+1;
+
+			int line=start_line_end;
+			while (true) {
+				nl=indexOf(line,end,(byte)'\n');
+				if (nl<0) return false;
+				eol=trimEnd(line,nl);
+				if (eol==line) {
+					headers_end=line;
+					return true;
+				}
+				// folded lines are left to the parser
+				if (buf[line]==' ' || buf[line]=='\t') return false;
+				int colon=indexOf(line,eol,(byte)':');
+				if (colon<0) return false;
+				int name_end=colon;
+				while (name_end>line && (buf[name_end-1]==' ' || buf[name_end-1]=='\t')) name_end--;
+				int value_start=colon+1;
+				while (value_start<eol && (buf[value_start]==' ' || buf[value_start]=='\t')) value_start++;
+				int value_end=eol;
+				while (value_end>value_start && (buf[value_end-1]==' ' || buf[value_end-1]=='\t')) value_end--;
+				Field field=new Field(line,value_start,value_end,nl+1);
+
+				if (isName(line,name_end,"via","v")) vias.add(field);
+				else
+				if (isName(line,name_end,"route",null)) routes.add(field);
+				else
+				if (isName(line,name_end,"max-forwards",null)) max_forwards=field;
+				else
+				if (isName(line,name_end,"call-id","i")) call_id=field;
+				else
+				if (isName(line,name_end,"from","f")) from=field;
+				else
+				if (isName(line,name_end,"to","t")) to=field;
+				else
+				if (isName(line,name_end,"cseq",null)) cseq=field;
+				line=nl+1;
+			}
+		}
+
+		/** Whether the request has the given method. */
+		boolean isMethod(String method) {
+			return !is_response && uri_start-1-method_start==method.length() && startsWith(method_start,uri_start-1,method);
+		}
+
+		/** Gets the value of a header field. */
+		String value(Field field) {
+			return string(field.value_start,field.value_end);
+		}
+
+		/** Gets the given range as string. */
+		String string(int start, int stop) {
+			return new String(buf,start,stop-start,StandardCharsets.UTF_8);
+		}
+
+		/** Parses a decimal number, -1 if the range is empty or contains non digits. */
+		int parseInt(int start, int stop) {
+			if (stop<=start || stop-start>9) return -1;
+			int value=0;
+			for (int i=start; i<stop; i++) {
+				int digit=buf[i]-'0';
+				if (digit<0 || digit>9) return -1;
+				value=value*10+digit;
+			}
+			return value;
+		}
+
+		/** Gets the end of the comma separated value starting at the given position.
+		  * Commas within quoted strings and angle brackets are skipped. */
+		int elementEnd(int pos, int stop) {
+			boolean quoted=false;
+			boolean bracket=false;
+			for (; pos<stop; pos++) {
+				byte b=buf[pos];
+				if (quoted) {
+					if (b=='\\') pos++;
+					else
+					if (b=='"') quoted=false;
+				}
+				else
+				if (b=='"') quoted=true;
+				else
+				if (b=='<') bracket=true;
+				else
+				if (b=='>') bracket=false;
+				else
+				if (b==',' && !bracket) break;
+			}
+			while (pos>0 && pos<=stop && (buf[pos-1]==' ' || buf[pos-1]=='\t')) pos--;
+			return Math.min(pos,stop);
+		}
+
+		/** Gets the start of the comma separated value following the one ending at the given position,
+		  * or <i>stop</i> if there is none. */
+		int nextElement(int element_end, int stop) {
+			int pos=element_end;
+			while (pos<stop && buf[pos]!=',') pos++;
+			if (pos>=stop) return stop;
+			pos++;
+			while (pos<stop && (buf[pos]==' ' || buf[pos]=='\t')) pos++;
+			return pos;
+		}
+
+		/** Counts the comma separated values of the given header fields. */
+		int countElements(ArrayList<Field> fields) {
+			int count=0;
+			for (Field field : fields) {
+				for (int pos=field.value_start; pos<field.value_end; pos=nextElement(elementEnd(pos,field.value_end),field.value_end)) count++;
+			}
+			return count;
+		}
+
+		/** Gets the position of the given ASCII string within the given range, -1 if not found. */
+		int indexOf(int start, int stop, String str) {
+			for (int i=start; i<=stop-str.length(); i++) {
+				if (startsWith(i,stop,str)) return i;
+			}
+			return -1;
+		}
+
+		private int indexOf(int start, int stop, byte b) {
+			for (int i=start; i<stop; i++) if (buf[i]==b) return i;
+			return -1;
+		}
+
+		private int trimEnd(int start, int nl) {
+			return (nl>start && buf[nl-1]=='\r')? nl-1 : nl;
+		}
+
+		private boolean startsWith(int pos, int stop, String prefix) {
+			if (stop-pos<prefix.length()) return false;
+			for (int i=0; i<prefix.length(); i++) {
+				if (buf[pos+i]!=prefix.charAt(i)) return false;
+			}
+			return true;
+		}
+
+		/** Whether the given range is the given lower case header name, or its compact form. */
+		private boolean isName(int start, int stop, String name, String compact) {
+			return equalsIgnoreCase(start,stop,name) || (compact!=null && equalsIgnoreCase(start,stop,compact));
+		}
+
+		private boolean equalsIgnoreCase(int start, int stop, String name) {
+			if (stop-start!=name.length()) return false;
+			for (int i=0; i<name.length(); i++) {
+				if ((buf[start+i]|0x20)!=name.charAt(i)) return false;
+			}
+			return true;
+		}
+	}
+
+}
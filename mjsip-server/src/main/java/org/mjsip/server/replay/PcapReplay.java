@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.replay;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mjsip.config.OptionParser;
+import org.mjsip.pcap.IpProtocol;
+import org.mjsip.pcap.PcapPacket;
+import org.mjsip.pcap.PcapReader;
+import org.mjsip.pool.PortConfig;
+import org.mjsip.server.Proxy;
+import org.mjsip.server.Registrar;
+import org.mjsip.server.ServerEngine;
+import org.mjsip.server.ServerProfile;
+import org.mjsip.server.StatefulProxy;
+import org.mjsip.server.sbc.ExtendedSipProvider;
+import org.mjsip.server.sbc.SessionBorderController;
+import org.mjsip.server.sbc.SessionBorderControllerProfile;
+import org.mjsip.sip.header.CSeqHeader;
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.provider.SipConfig;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.time.ConfiguredScheduler;
+import org.mjsip.time.SchedulerConfig;
+import org.slf4j.LoggerFactory;
+import org.zoolu.net.IpAddress;
+
+/**
+ * Offline replay of captured SIP traffic against a server.
+ *
+ * <p>
+ * The UDP datagrams of a capture that are addressed to the server port are fed, with the captured or
+ * scaled timing, into a {@link SipProvider} through a {@link ReplayTransport}. Messages sent by the
+ * server are recorded instead of being sent to the network. The replay reports the throughput, the
+ * latency from each request to the first message the server sends for the same transaction, and the
+ * differences between the responses of the server and the responses in the capture.
+ * </p>
+ *
+ * <p>
+ * Latencies measure the processing on the receiving thread, since the transport dispatches injected
+ * datagrams synchronously. Transactions are identified by Call-ID and CSeq, so that responses of a
+ * stateful server to forwarded requests cannot be matched, if the server chooses new branch
+ * parameters.
+ * </p>
+ */
+public class PcapReplay {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(PcapReplay.class);
+
+	private final int _serverPort;
+
+	private final ReplayTransport _transport;
+
+	private final Map<String, Long> _pending = new ConcurrentHashMap<>();
+
+	private final Map<String, Set<Integer>> _responses = new ConcurrentHashMap<>();
+
+	private final AtomicLong _sent = new AtomicLong();
+
+	private long[] _latencies = new long[1024];
+
+	private int _latencyCount;
+
+	/**
+	 * Creates a {@link PcapReplay} and installs its {@link ReplayTransport} as UDP transport of the
+	 * given provider.
+	 *
+	 * @param provider
+	 *        The provider of the server under test.
+	 */
+	public PcapReplay(SipProvider provider) {
+		_serverPort = provider.sipConfig().getHostPort();
+		_transport = new ReplayTransport(_serverPort, this::onSentMessage);
+		provider.setTransport(_transport);
+	}
+
+	/**
+	 * Reads all packets from a pcap or pcapng file.
+	 */
+	public static List<PcapPacket> read(String file) throws IOException {
+		try (PcapReader reader = new PcapReader(new FileInputStream(file))) {
+			return reader.readAll();
+		}
+	}
+
+	/**
+	 * Replays the given packets.
+	 *
+	 * @param packets
+	 *        The captured packets. UDP datagrams addressed to the server port are injected, UDP
+	 *        responses sent from the server port are compared with the responses of the server.
+	 * @param speed
+	 *        Factor scaling the captured timing, <code>1</code> for the original timing,
+	 *        <code>0</code> for replaying as fast as possible.
+	 * @param drainMillis
+	 *        The time to wait for outstanding responses after the last packet.
+	 */
+	public ReplayReport replay(List<PcapPacket> packets, double speed, long drainMillis) throws InterruptedException {
+		Map<String, Set<Integer>> expected = new ConcurrentHashMap<>();
+		List<PcapPacket> input = new ArrayList<>();
+		for (PcapPacket packet : packets) {
+			if (packet.getProtocol() != IpProtocol.UDP) {
+				continue;
+			}
+			if (packet.getDestinationPort() == _serverPort) {
+				input.add(packet);
+			} else if (packet.getSourcePort() == _serverPort) {
+				SipMessage msg = parse(packet);
+				if (msg != null && msg.isResponse()) {
+					addResponse(expected, msg);
+				}
+			}
+		}
+
+		long start = System.nanoTime();
+		long firstMicros = input.isEmpty() ? 0 : input.get(0).getTimeMicros();
+		for (PcapPacket packet : input) {
+			if (speed > 0) {
+				long due = start + (long) ((packet.getTimeMicros() - firstMicros) * 1000 / speed);
+				long delay = due - System.nanoTime();
+				if (delay > 0) {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+			}
+
+			SipMessage msg = parse(packet);
+			if (msg != null && msg.isRequest() && !msg.isAck()) {
+				String key = transaction(msg);
+				if (key != null) {
+					_pending.putIfAbsent(key, System.nanoTime());
+				}
+			}
+			byte[] payload = packet.getPayload();
+			_transport.inject(payload, 0, payload.length, new IpAddress(packet.getSource()),
+				packet.getSourcePort());
+		}
+		long duration = System.nanoTime() - start;
+
+		if (drainMillis > 0) {
+			Thread.sleep(drainMillis);
+		}
+		return report(input.size(), duration, expected);
+	}
+
+	private ReplayReport report(int injected, long duration, Map<String, Set<Integer>> expected) {
+		int matched = 0;
+		List<String> mismatched = new ArrayList<>();
+		List<String> missing = new ArrayList<>();
+		List<String> extra = new ArrayList<>();
+
+		Set<String> keys = new TreeSet<>(expected.keySet());
+		keys.addAll(_responses.keySet());
+		for (String key : keys) {
+			Set<Integer> captured = expected.get(key);
+			Set<Integer> replayed = copy(_responses.get(key));
+			if (captured == null) {
+				extra.add(key + ": " + replayed);
+			} else if (replayed == null) {
+				missing.add(key + ": " + captured);
+			} else if (captured.equals(replayed)) {
+				matched++;
+			} else {
+				mismatched.add(key + ": expected " + captured + ", got " + replayed);
+			}
+		}
+
+		long[] latencies;
+		synchronized (this) {
+			latencies = new long[_latencyCount];
+			System.arraycopy(_latencies, 0, latencies, 0, _latencyCount);
+		}
+		return new ReplayReport(injected, _sent.get(), duration, latencies, matched, mismatched, missing, extra);
+	}
+
+	private static Set<Integer> copy(Set<Integer> codes) {
+		if (codes == null) {
+			return null;
+		}
+		synchronized (codes) {
+			return new LinkedHashSet<>(codes);
+		}
+	}
+
+	private void onSentMessage(SipMessage msg, IpAddress destAddr, int destPort) {
+		_sent.incrementAndGet();
+		String key = transaction(msg);
+		if (key == null) {
+			return;
+		}
+		Long start = _pending.remove(key);
+		if (start != null) {
+			addLatency(System.nanoTime() - start);
+		}
+		if (msg.isResponse()) {
+			addResponse(_responses, msg);
+		}
+	}
+
+	private synchronized void addLatency(long nanos) {
+		if (_latencyCount == _latencies.length) {
+			long[] grown = new long[_latencyCount * 2];
+			System.arraycopy(_latencies, 0, grown, 0, _latencyCount);
+			_latencies = grown;
+		}
+		_latencies[_latencyCount++] = nanos;
+	}
+
+	private static void addResponse(Map<String, Set<Integer>> responses, SipMessage msg) {
+		String key = transaction(msg);
+		if (key == null) {
+			return;
+		}
+		Set<Integer> codes = responses.computeIfAbsent(key, x -> Collections.synchronizedSet(new LinkedHashSet<>()));
+		codes.add(msg.getStatusLine().getCode());
+	}
+
+	/**
+	 * Identifies the transaction of a message by Call-ID and CSeq, <code>null</code> if the message
+	 * lacks one of these headers.
+	 */
+	private static String transaction(SipMessage msg) {
+		if (!msg.hasCallIdHeader() || !msg.hasCSeqHeader()) {
+			return null;
+		}
+		CSeqHeader cseq = msg.getCSeqHeader();
+		return msg.getCallIdHeader().getCallId() + " " + cseq.getSequenceNumber() + " " + cseq.getMethod();
+	}
+
+	private static SipMessage parse(PcapPacket packet) {
+		byte[] payload = packet.getPayload();
+		try {
+			SipMessage msg = new SipMessage(payload, 0, payload.length);
+			return msg.getFirstLine() == null ? null : msg;
+		} catch (RuntimeException ex) {
+			LOG.debug("Skipping non-SIP packet: " + packet);
+			return null;
+		}
+	}
+
+	// ****************************** MAIN *****************************
+
+	/** The main method. */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		SipConfig sipConfig = new SipConfig();
+		SchedulerConfig schedulerConfig = new SchedulerConfig();
+		ServerProfile server_profile = new ServerProfile();
+		SessionBorderControllerProfile sbc_profile = new SessionBorderControllerProfile();
+		PortConfig portConfig = new PortConfig();
+		ReplayConfig replayConfig = new ReplayConfig();
+
+		OptionParser.parseOptions(args, ".mjsip-replay", sipConfig, schedulerConfig, server_profile, sbc_profile,
+			portConfig, replayConfig);
+
+		List<PcapPacket> packets = read(replayConfig.getPcap());
+
+		// All messages go through the replay transport, nothing is bound to the network.
+		sipConfig.setTransportProtocols(new String[0]);
+		sipConfig.normalize();
+		server_profile.normalize();
+		if (server_profile.fastForwarding) {
+			LOG.warn("Fast forwarding requires a UDP socket transport, disabled for the replay.");
+			server_profile.fastForwarding = false;
+		}
+
+		ConfiguredScheduler scheduler = new ConfiguredScheduler(schedulerConfig);
+		String server = replayConfig.getServer();
+		SipProvider sip_provider;
+		if ("sbc".equals(server)) {
+			long keepalive_aggressive_time = (sbc_profile.keepaliveAggressive) ? sbc_profile.keepaliveTime : 0;
+			sip_provider = new ExtendedSipProvider(sipConfig, scheduler, sbc_profile.bindingTimeout,
+				keepalive_aggressive_time, sbc_profile.keepaliveRate, sbc_profile.keepaliveOptions);
+		} else {
+			sip_provider = new SipProvider(sipConfig, scheduler);
+		}
+		PcapReplay replay = new PcapReplay(sip_provider);
+
+		ServerEngine engine;
+		switch (server) {
+			case "proxy":
+				engine = new Proxy(sip_provider, server_profile);
+				break;
+			case "stateful":
+				engine = new StatefulProxy(sip_provider, server_profile);
+				break;
+			case "registrar":
+				engine = new Registrar(sip_provider, server_profile);
+				break;
+			case "sbc":
+				engine = new SessionBorderController((ExtendedSipProvider) sip_provider, portConfig.createPool(),
+					server_profile, sbc_profile);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown server: " + server);
+		}
+
+		try {
+			ReplayReport report = replay.replay(packets, replayConfig.getSpeed(), replayConfig.getDrainTime());
+			report.print(System.out);
+		} finally {
+			engine.halt();
+			sip_provider.halt();
+		}
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.replay;
+
+import org.kohsuke.args4j.Option;
+
+/**
+ * Options of the {@link PcapReplay} tool.
+ */
+public class ReplayConfig {
+
+	@Option(name = "--pcap", required = true, usage = "The pcap or pcapng capture file to replay.")
+	private String _pcap;
+
+	@Option(name = "--server", usage = "The server to replay the capture against: proxy, stateful, registrar or sbc.")
+	private String _server = "proxy";
+
+	@Option(name = "--speed", usage = "Factor scaling the captured timing (1 for the original timing, 0 for replaying as fast as possible).")
+	private double _speed = 0;
+
+	@Option(name = "--drain-time", usage = "The time in milliseconds to wait for outstanding responses after the last packet.")
+	private long _drainTime = 1000;
+
+	/**
+	 * The capture file to replay.
+	 */
+	public String getPcap() {
+		return _pcap;
+	}
+
+	/** @see #getPcap() */
+	public void setPcap(String pcap) {
+		_pcap = pcap;
+	}
+
+	/**
+	 * The kind of server to replay against.
+	 */
+	public String getServer() {
+		return _server;
+	}
+
+	/** @see #getServer() */
+	public void setServer(String server) {
+		_server = server;
+	}
+
+	/**
+	 * Factor scaling the captured timing, <code>0</code> for replaying as fast as possible.
+	 */
+	public double getSpeed() {
+		return _speed;
+	}
+
+	/** @see #getSpeed() */
+	public void setSpeed(double speed) {
+		_speed = speed;
+	}
+
+	/**
+	 * The time in milliseconds to wait for outstanding responses after the last packet.
+	 */
+	public long getDrainTime() {
+		return _drainTime;
+	}
+
+	/** @see #getDrainTime() */
+	public void setDrainTime(long drainTime) {
+		_drainTime = drainTime;
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.replay;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a {@link PcapReplay}.
+ */
+public class ReplayReport {
+
+	private final int _injected;
+
+	private final long _sent;
+
+	private final long _durationNanos;
+
+	private final long[] _latencyNanos;
+
+	private final int _matched;
+
+	private final List<String> _mismatched;
+
+	private final List<String> _missing;
+
+	private final List<String> _extra;
+
+	/**
+	 * Creates a {@link ReplayReport}.
+	 *
+	 * @param injected
+	 *        The number of datagrams fed into the server.
+	 * @param sent
+	 *        The number of messages sent by the server.
+	 * @param durationNanos
+	 *        The time from the first to the last injected datagram.
+	 * @param latencyNanos
+	 *        For each answered request, the time until the server sent the first message of the
+	 *        same transaction.
+	 * @param matched
+	 *        The number of transactions answered with the captured responses.
+	 * @param mismatched
+	 *        Descriptions of transactions answered with other responses than captured.
+	 * @param missing
+	 *        Descriptions of transactions with captured responses but no response in the replay.
+	 * @param extra
+	 *        Descriptions of transactions answered in the replay but without captured response.
+	 */
+	public ReplayReport(int injected, long sent, long durationNanos, long[] latencyNanos, int matched,
+			List<String> mismatched, List<String> missing, List<String> extra) {
+		_injected = injected;
+		_sent = sent;
+		_durationNanos = durationNanos;
+		_latencyNanos = latencyNanos.clone();
+		Arrays.sort(_latencyNanos);
+		_matched = matched;
+		_mismatched = Collections.unmodifiableList(mismatched);
+		_missing = Collections.unmodifiableList(missing);
+		_extra = Collections.unmodifiableList(extra);
+	}
+
+	/**
+	 * The number of datagrams fed into the server.
+	 */
+	public int getInjected() {
+		return _injected;
+	}
+
+	/**
+	 * The number of messages sent by the server, including retransmissions.
+	 */
+	public long getSent() {
+		return _sent;
+	}
+
+	/**
+	 * The time in nanoseconds from the first to the last injected datagram.
+	 */
+	public long getDurationNanos() {
+		return _durationNanos;
+	}
+
+	/**
+	 * The number of injected datagrams per second.
+	 */
+	public double getThroughput() {
+		return _durationNanos == 0 ? 0 : _injected * 1e9 / _durationNanos;
+	}
+
+	/**
+	 * The number of requests with a measured latency.
+	 */
+	public int getLatencyCount() {
+		return _latencyNanos.length;
+	}
+
+	/**
+	 * The latency percentile in nanoseconds.
+	 *
+	 * @param percent
+	 *        The percentile between <code>0</code> and <code>100</code>.
+	 * @return The latency not exceeded by the given percentage of requests, <code>0</code> if no
+	 *         latency was measured.
+	 */
+	public long getLatencyPercentile(double percent) {
+		int count = _latencyNanos.length;
+		if (count == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percent / 100 * count) - 1;
+		return _latencyNanos[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	/**
+	 * The number of transactions answered with the captured responses.
+	 */
+	public int getMatched() {
+		return _matched;
+	}
+
+	/**
+	 * Descriptions of transactions answered with other responses than captured.
+	 */
+	public List<String> getMismatched() {
+		return _mismatched;
+	}
+
+	/**
+	 * Descriptions of transactions with captured responses but no response in the replay.
+	 */
+	public List<String> getMissing() {
+		return _missing;
+	}
+
+	/**
+	 * Descriptions of transactions answered in the replay but without captured response.
+	 */
+	public List<String> getExtra() {
+		return _extra;
+	}
+
+	/**
+	 * Prints a human readable summary.
+	 */
+	public void print(PrintStream out) {
+		out.printf("Injected: %d datagrams in %.1f ms (%.0f/s), sent: %d messages%n", _injected,
+			_durationNanos / 1e6, getThroughput(), _sent);
+		out.printf("Latency (%d requests): p50=%.1f us, p90=%.1f us, p99=%.1f us, max=%.1f us%n",
+			getLatencyCount(), getLatencyPercentile(50) / 1e3, getLatencyPercentile(90) / 1e3,
+			getLatencyPercentile(99) / 1e3, getLatencyPercentile(100) / 1e3);
+		out.printf("Responses: %d matched, %d mismatched, %d missing, %d extra%n", _matched, _mismatched.size(),
+			_missing.size(), _extra.size());
+		print(out, "Mismatched", _mismatched);
+		print(out, "Missing", _missing);
+		print(out, "Extra", _extra);
+	}
+
+	private static void print(PrintStream out, String title, List<String> diffs) {
+		for (String diff : diffs) {
+			out.println(title + ": " + diff);
+		}
+	}
+
+}
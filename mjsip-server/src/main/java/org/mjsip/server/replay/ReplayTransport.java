@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.replay;
+
+import java.io.IOException;
+
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.provider.ConnectionId;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.sip.provider.SipTransport;
+import org.mjsip.sip.provider.SipTransportListener;
+import org.zoolu.net.IpAddress;
+
+/**
+ * In-process UDP {@link SipTransport} that feeds recorded datagrams into a {@link SipProvider} and
+ * reports all messages sent by the provider to a {@link SentMessageListener} instead of the network.
+ *
+ * <p>
+ * Received datagrams take the same path as in the UDP transport: the listener may discard them
+ * before parsing, otherwise the parsed message is dispatched on the calling thread.
+ * </p>
+ */
+public class ReplayTransport implements SipTransport {
+
+	/**
+	 * Callback for messages sent through a {@link ReplayTransport}.
+	 */
+	public interface SentMessageListener {
+
+		/**
+		 * Called for each message sent, including retransmissions.
+		 *
+		 * <p>
+		 * May be called concurrently from timer threads of the provider.
+		 * </p>
+		 */
+		void onSentMessage(SipMessage msg, IpAddress destAddr, int destPort);
+
+	}
+
+	private final int _localPort;
+
+	private final SentMessageListener _sentListener;
+
+	private volatile SipTransportListener _listener;
+
+	/**
+	 * Creates a {@link ReplayTransport}.
+	 *
+	 * @param localPort
+	 *        The port the transport pretends to be bound to.
+	 * @param sentListener
+	 *        The callback for sent messages.
+	 */
+	public ReplayTransport(int localPort, SentMessageListener sentListener) {
+		_localPort = localPort;
+		_sentListener = sentListener;
+	}
+
+	@Override
+	public String getProtocol() {
+		return SipProvider.PROTO_UDP;
+	}
+
+	@Override
+	public int getLocalPort() {
+		return _localPort;
+	}
+
+	@Override
+	public void setListener(SipTransportListener listener) {
+		_listener = listener;
+	}
+
+	/**
+	 * Delivers a datagram as if it was received from the given remote address.
+	 */
+	public void inject(byte[] buf, int off, int len, IpAddress remoteAddr, int remotePort) {
+		long receiveTime = System.nanoTime();
+		SipTransportListener listener = _listener;
+		if (listener == null) {
+			return;
+		}
+		String remote = remoteAddr.toString();
+		if (!listener.onReceivedData(this, buf, off, len, remote, remotePort)) {
+			return;
+		}
+		SipMessage msg = new SipMessage(buf, off, len);
+		msg.setRemoteAddress(remote);
+		msg.setRemotePort(remotePort);
+		msg.setTransportProtocol(SipProvider.PROTO_UDP);
+		msg.setReceiveTime(receiveTime);
+		listener.onReceivedMessage(this, msg);
+	}
+
+	@Override
+	public ConnectionId sendMessage(SipMessage msg, IpAddress destAddr, int destPort, int ttl) throws IOException {
+		_sentListener.onSentMessage(msg, destAddr, destPort);
+		return null;
+	}
+
+	@Override
+	public void halt() {
+		_listener = null;
+	}
+
+	@Override
+	public String toString() {
+		return "replay:" + _localPort;
+	}
+
+}
@@ -23,10 +23,11 @@ package org.mjsip.server.sbc;
 
 
 
-import java.util.Date;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 
 import org.mjsip.sip.provider.SipProvider;
@@ -42,6 +43,9 @@ import org.zoolu.net.SocketAddress;
   * to be used to reach a remote node, against to the address optained in other ways.
   * For example, it can be used to maintain correct remote address mapping
   * for symmetric NAT traversal.
+  * <p>
+  * Bindings are kept in a single concurrent table together with their expiration date,
+  * so that lookups from the receiving and sending threads do not contend on a common lock.
   */
 public class AddressResolver {
 	
@@ -55,11 +59,26 @@ public class AddressResolver {
 	  * The maximum time that a binding is considered active. */
 	long expire_time;
 
-	/** Binding table */
-	Hashtable binding_table;
+	/** An address binding with its expiration date. */
+	protected static final class Binding {
+		/** Actual socket address */
+		volatile SocketAddress actual_soaddr;
+		/** Expiration date [millisecs] */
+		volatile long expire;
+
+		Binding(SocketAddress actual_soaddr, long expire) {
+			this.actual_soaddr=actual_soaddr;
+			this.expire=expire;
+		}
+
+		/** Gets the actual socket address */
+		public SocketAddress getSocketAddress() {
+			return actual_soaddr;
+		}
+	}
 
-	/** Time table */
-	Hashtable time_table;
+	/** Binding table */
+	final ConcurrentHashMap<String,Binding> binding_table=new ConcurrentHashMap<>();
 
 	/** Refresh timer */
 	ScheduledFuture<?> timer;
@@ -67,14 +86,12 @@ public class AddressResolver {
 	protected final SipProvider sip_provider;
 	
 	/**
-	 * Constructs an empty AddressResolve.r
+	 * Constructs an empty AddressResolver.
 	 */
 	public AddressResolver(SipProvider sip_provider, long refresh_time) {
 		this.sip_provider = sip_provider;
 		this.refresh_time=refresh_time;
 		expire_time=refresh_time/2;
-		binding_table=new Hashtable();
-		time_table=new Hashtable();
 		
 		timer=sip_provider.scheduler().schedulerWithFixedDelay(refresh_time, this::onTimeout);
 	}
@@ -87,7 +104,7 @@ public class AddressResolver {
 
 	/** Gets list of all reference SocketAddresses */
 	public Enumeration getAllSocketAddresses() {
-		return binding_table.keys();
+		return Collections.enumeration(binding_table.keySet());
 	}
 
 
@@ -104,25 +121,23 @@ public class AddressResolver {
 	public void updateBinding(SocketAddress refer_soaddr, SocketAddress actual_soaddr) {
 		if (refer_soaddr!=null) {
 			String key=refer_soaddr.toString();
-			Long expire=new Long((new Date()).getTime()+expire_time);
-			if (binding_table.containsKey(key)) {
-				if (!((SocketAddress)binding_table.get(key)).equals(actual_soaddr)) {
-					LOG.info("change BINDING "+refer_soaddr+" >> "+actual_soaddr);
-					binding_table.remove(key);
-					binding_table.put(key,actual_soaddr);
+			long expire=System.currentTimeMillis()+expire_time;
+			Binding binding=binding_table.get(key);
+			if (binding==null) {
+				binding=binding_table.putIfAbsent(key,new Binding(actual_soaddr,expire));
+				if (binding==null) {
+					LOG.info("add BINDING "+refer_soaddr+" >> "+actual_soaddr);
+					return;
 				}
-				else {
-					LOG.debug("update BINDING "+refer_soaddr+" >> "+actual_soaddr);
-					// do not change binding_table
-				}
-				time_table.remove(key);
-				time_table.put(key,expire);
+			}
+			if (!binding.actual_soaddr.equals(actual_soaddr)) {
+				LOG.info("change BINDING "+refer_soaddr+" >> "+actual_soaddr);
+				binding.actual_soaddr=actual_soaddr;
 			}
 			else {
-				LOG.info("add BINDING "+refer_soaddr+" >> "+actual_soaddr);
-				binding_table.put(key,actual_soaddr);
-				time_table.put(key,expire);
+				LOG.debug("update BINDING "+refer_soaddr+" >> "+actual_soaddr);
 			}
+			binding.expire=expire;
 		}
 	}
 
@@ -131,10 +146,8 @@ public class AddressResolver {
 	public void removeBinding(SocketAddress refer_soaddr) {
 		if (refer_soaddr!=null) {
 			String key=refer_soaddr.toString();
-			if (binding_table.containsKey(key)) {
+			if (binding_table.remove(key)!=null) {
 				LOG.info("remove BINDING for "+refer_soaddr);
-				binding_table.remove(key);
-				time_table.remove(key);
 			}
 		}
 	}
@@ -143,32 +156,39 @@ public class AddressResolver {
 	/** Gets the actual SocketAddress for the selected SocketAddress */
 	public SocketAddress getSocketAddress(SocketAddress refer_soaddr) {
 		if (refer_soaddr!=null) {
-			String key=refer_soaddr.toString();
-			if (binding_table.containsKey(key)) return (SocketAddress)binding_table.get(key);
+			Binding binding=binding_table.get(refer_soaddr.toString());
+			if (binding!=null) return binding.actual_soaddr;
 		}
 		return null;
 	}
 
 
+	/** Stops the refresh timer */
+	public void halt() {
+		timer.cancel(false);
+	}
+
+
 	/** When the refresh timeout fires */
 	protected void onTimeout() {
-		// enumerate expired binding
+		// remove expired bindings
 		LOG.debug("refresh all address bindings:");         
-		long now=(new Date()).getTime();
-		Vector aux=new Vector();
-		for (Enumeration e=time_table.keys(); e.hasMoreElements(); ) {
-			String key=(String)e.nextElement();
-			long expire=((Long)time_table.get(key)).longValue();
-			if (expire<now) aux.addElement(key);
-		}
-		// remove expired binding
-		for (int i=0; i<aux.size(); i++) {
-			String key=(String)aux.elementAt(i);
-			LOG.info("remove BINDING for "+key);         
-			binding_table.remove(key);
-			time_table.remove(key);
+		long now=System.currentTimeMillis();
+		for (Iterator<Map.Entry<String,Binding>> i=binding_table.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry<String,Binding> entry=i.next();
+			Binding binding=entry.getValue();
+			if (binding.expire<now && binding_table.remove(entry.getKey(),binding)) {
+				LOG.info("remove BINDING for "+entry.getKey());
+				onBindingExpired(entry.getKey(),binding);
+			}
 		}
 		LOG.debug("done.");         
 	}
 
+
+	/** When a binding has been removed because of its expiration */
+	protected void onBindingExpired(String key, Binding binding) {
+		// no-op
+	}
+
 }
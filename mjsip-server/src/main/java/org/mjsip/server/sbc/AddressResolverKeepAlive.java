@@ -23,14 +23,7 @@ package org.mjsip.server.sbc;
 
 
 
-import java.util.Date;
-import java.util.Enumeration;
-import java.util.Hashtable;
-import java.util.Vector;
-
-import org.mjsip.sip.provider.SipKeepAlive;
 import org.mjsip.sip.provider.SipProvider;
-import org.slf4j.LoggerFactory;
 import org.zoolu.net.SocketAddress;
 
 
@@ -42,44 +35,48 @@ import org.zoolu.net.SocketAddress;
   * to be used to reach a remote node, against to the address optained in other ways.
   * For example, it can be used to maintain correct remote address mapping
   * for symmetric NAT traversal.
+  * <p>
+  * Keep-alive datagrams toward all bindings are sent by one {@link KeepAliveManager},
+  * i.e. by a single task of the SipProvider's scheduler, regardless of the number of bindings.
   */
 public class AddressResolverKeepAlive extends AddressResolver {
-	
-	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(AddressResolverKeepAlive.class);
-
-	/** Keep-alive time [millisecs] */
-	long keepalive_time;
 
-	/** Sip keep-alive daemons */
-	Hashtable keepalive_daemons=null;
+	/** Keep-alive manager */
+	final KeepAliveManager keepalive_manager;
 	
 	/** Costructs an empty AddressResolverKeepAlive */
 	public AddressResolverKeepAlive(SipProvider sip_provider, long refresh_time, long keepalive_time) {
+		this(sip_provider,refresh_time,keepalive_time,KeepAliveManager.DEFAULT_MAX_RATE,false);
+	}
+
+	/** Costructs an empty AddressResolverKeepAlive.
+	  * @param sip_provider the SipProvider
+	  * @param refresh_time the refresh time of the address bindings [millisecs]
+	  * @param keepalive_time the time between two keep-alive datagrams toward the same binding [millisecs]
+	  * @param keepalive_rate the maximum number of keep-alive datagrams per second, or 0 for no limit
+	  * @param sip_ping whether sending OPTIONS requests instead of CRLF tokens */
+	public AddressResolverKeepAlive(SipProvider sip_provider, long refresh_time, long keepalive_time, int keepalive_rate, boolean sip_ping) {
 		super(sip_provider, refresh_time);
-		this.keepalive_time=keepalive_time;
-		keepalive_daemons=new Hashtable();
+		keepalive_manager=new KeepAliveManager(sip_provider,keepalive_time,keepalive_rate,sip_ping);
+	}
+
+
+	/** Gets the keep-alive manager */
+	public KeepAliveManager getKeepAliveManager() {
+		return keepalive_manager;
 	}
 
 	
 	/** Adds or updates a new SocketAddress mapping */
 	@Override
 	public void updateBinding(SocketAddress refer_soaddr, SocketAddress actual_soaddr) {
+		super.updateBinding(refer_soaddr,actual_soaddr);
 		if (refer_soaddr!=null) {
 			String key=refer_soaddr.toString();
-			if (keepalive_daemons.containsKey(key)) {
-				if (!((SocketAddress)binding_table.get(key)).equals(actual_soaddr)) {
-					SipKeepAlive keepalive=(SipKeepAlive)keepalive_daemons.get(key);
-					keepalive.setDestSoAddress(actual_soaddr);
-					LOG.debug("KeepAlive: change dest: "+actual_soaddr);
-				}
-			}
-			else {
-				SipKeepAlive keepalive=new SipKeepAlive(sip_provider,actual_soaddr,keepalive_time);
-				keepalive_daemons.put(key,keepalive);
-				LOG.debug("KeepAlive: start: "+actual_soaddr);
-			}
+			keepalive_manager.update(key,actual_soaddr,0);
+			// the binding has just been refreshed by the remote UA
+			keepalive_manager.touch(key);
 		}
-		super.updateBinding(refer_soaddr,actual_soaddr);
 	}
 
 
@@ -87,38 +84,24 @@ public class AddressResolverKeepAlive extends AddressResolver {
 	@Override
 	public void removeBinding(SocketAddress refer_soaddr) {
 		if (refer_soaddr!=null) {
-			String key=refer_soaddr.toString();
-			if (keepalive_daemons.containsKey(key)) {
-				SipKeepAlive keepalive=(SipKeepAlive)keepalive_daemons.get(key);
-				keepalive_daemons.remove(key);
-				keepalive.halt();
-				LOG.debug("KeepAlive: halt: "+keepalive.getDestSoAddress().toString());
-			}
+			keepalive_manager.remove(refer_soaddr.toString());
 		}
 		super.removeBinding(refer_soaddr);
 	}
 
 
-	/** When the refresh timeout fires */
+	/** Stops the refresh timer and the sending of keep-alive datagrams */
 	@Override
-	protected void onTimeout() {
-		// enumerate expired binding
-		long now=(new Date()).getTime();
-		Vector aux=new Vector();
-		for (Enumeration e=time_table.keys(); e.hasMoreElements(); ) {
-			String key=(String)e.nextElement();
-			long expire=((Long)time_table.get(key)).longValue();
-			if (expire<now) aux.addElement(key);
-		}
-		// remove expired binding
-		for (int i=0; i<aux.size(); i++) {
-			String key=(String)aux.elementAt(i);
-			SipKeepAlive keepalive=(SipKeepAlive)keepalive_daemons.get(key);
-			keepalive_daemons.remove(key);
-			keepalive.halt();
-			LOG.debug("KeepAlive: halt: "+keepalive.getDestSoAddress().toString());
-		}
-		super.onTimeout();
+	public void halt() {
+		keepalive_manager.halt();
+		super.halt();
+	}
+
+
+	/** When a binding has been removed because of its expiration */
+	@Override
+	protected void onBindingExpired(String key, Binding binding) {
+		keepalive_manager.remove(key);
 	}
 
 }
@@ -50,9 +50,9 @@ public class ExtendedSipProvider extends org.mjsip.sip.provider.SipProvider {
 	AddressResolver address_resolver;
 
 	/** Inits private attribute. */ 
-	private void init(long refresh_time, long keepalive_time) {
+	private void init(long refresh_time, long keepalive_time, int keepalive_rate, boolean sip_ping) {
 		if (keepalive_time > 0)
-			address_resolver = new AddressResolverKeepAlive(this, refresh_time, keepalive_time);
+			address_resolver = new AddressResolverKeepAlive(this, refresh_time, keepalive_time, keepalive_rate, sip_ping);
 		else
 			address_resolver = new AddressResolver(this, refresh_time);
 	}
@@ -61,8 +61,29 @@ public class ExtendedSipProvider extends org.mjsip.sip.provider.SipProvider {
 	 * Constructs an {@link ExtendedSipProvider}. 
 	 */ 
 	public ExtendedSipProvider(SipOptions sipConfig, Scheduler scheduler, long refresh_time, long keepalive_time) {
+		this(sipConfig, scheduler, refresh_time, keepalive_time, KeepAliveManager.DEFAULT_MAX_RATE, false);
+	}
+
+	/** 
+	 * Constructs an {@link ExtendedSipProvider} with a limited rate of keep-alive datagrams. 
+	 * 
+	 * @see KeepAliveManager
+	 */ 
+	public ExtendedSipProvider(SipOptions sipConfig, Scheduler scheduler, long refresh_time, long keepalive_time, int keepalive_rate, boolean sip_ping) {
 		super(sipConfig, scheduler);
-		init(refresh_time,keepalive_time);
+		init(refresh_time,keepalive_time,keepalive_rate,sip_ping);
+	}
+
+	/** Gets the address resolver. */
+	public AddressResolver getAddressResolver() {
+		return address_resolver;
+	}
+
+	/** Stops the SipProvider and the address resolver. */
+	@Override
+	public synchronized void halt() {
+		address_resolver.halt();
+		super.halt();
 	}
 
 	//********************** extended methods **********************
@@ -23,6 +23,7 @@ package org.mjsip.server.sbc;
 
 
 
+import org.mjsip.rtp.RtpBufferPool;
 import org.mjsip.time.Scheduler;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.SocketAddress;
@@ -65,10 +66,10 @@ public class InterceptingUdpRelay extends SymmetricUdpRelay {
 		this.active_interception=active_interception;
 
 		try {
-			left_intercept_udp=new UdpProvider(new UdpSocket(left_intercept_port),0,this);
+			left_intercept_udp=new UdpProvider(new UdpSocket(left_intercept_port),0,this,RtpBufferPool.getInstance());
 			LOG.info("intercept udp interface: "+left_intercept_udp.toString()+" started");    
 	
-			right_intercept_udp=new UdpProvider(new UdpSocket(right_intercept_port),0,this);
+			right_intercept_udp=new UdpProvider(new UdpSocket(right_intercept_port),0,this,RtpBufferPool.getInstance());
 			LOG.info("intercept udp interface: "+right_intercept_udp.toString()+" started");
 		}   
 		catch (Exception e) {
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mjsip.sip.address.NameAddress;
+import org.mjsip.sip.address.SipURI;
+import org.mjsip.sip.header.ViaHeader;
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.message.SipMethods;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.sip.provider.UdpKeepAlive;
+import org.slf4j.LoggerFactory;
+import org.zoolu.net.SocketAddress;
+
+
+
+/** KeepAliveManager keeps the NAT bindings toward many remote UAs open.
+  * <p>
+  * Instead of running a keep-alive daemon per remote UA, all targets are kept in one table
+  * and are visited round-robin by a single periodic task of the SipProvider's scheduler.
+  * At each tick only the share of targets that is due within the tick is visited,
+  * so that the keep-alive datagrams of all targets are evenly spread over the keep-alive time,
+  * and never more than <i>max_rate</i> datagrams per second are sent.
+  * <p>
+  * A target is skipped if some traffic from it has been seen (see {@link #touch(String)})
+  * within the last keep-alive time, since such traffic already refreshed the NAT binding.
+  * <p>
+  * Keep-alive datagrams are either CRLF tokens or OPTIONS requests, sent over UDP.
+  */
+public class KeepAliveManager {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(KeepAliveManager.class);
+
+	/** Default maximum number of keep-alive datagrams per second */
+	public static final int DEFAULT_MAX_RATE=1000;
+
+	/** Maximum time between two ticks [millisecs] */
+	static final long MAX_TICK_TIME=1000;
+
+	/** A target of keep-alive datagrams. */
+	static final class Target {
+		/** Destination socket address */
+		volatile SocketAddress soaddr;
+		/** Expiration date [millisecs], or 0 */
+		volatile long expire;
+		/** Time of the last activity of the target [millisecs] */
+		volatile long last_activity;
+
+		Target(SocketAddress soaddr, long expire) {
+			this.soaddr=soaddr;
+			this.expire=expire;
+		}
+	}
+
+	/** SipProvider */
+	final SipProvider sip_provider;
+
+	/** Keep-alive time [millisecs] */
+	final long keepalive_time;
+
+	/** Maximum number of keep-alive datagrams per second, or 0 for no limit */
+	final int max_rate;
+
+	/** Whether sending OPTIONS requests instead of CRLF tokens */
+	final boolean sip_ping;
+
+	/** Time between two ticks [millisecs] */
+	final long tick_time;
+
+	/** Targets */
+	final ConcurrentHashMap<String,Target> targets=new ConcurrentHashMap<>();
+
+	/** Round-robin cursor, only accessed by the timer task */
+	private Iterator<Map.Entry<String,Target>> cursor=null;
+
+	/** Number of targets to be visited, carried over from previous ticks */
+	private double credit=0;
+
+	/** Number of sent keep-alive datagrams */
+	private final AtomicLong sent_count=new AtomicLong();
+
+	/** Timer */
+	private final ScheduledFuture<?> timer;
+
+
+	/** Creates a new KeepAliveManager.
+	  * @param sip_provider the SipProvider used for sending keep-alive datagrams
+	  * @param keepalive_time the time between two keep-alive datagrams toward the same target [millisecs]
+	  * @param max_rate the maximum number of keep-alive datagrams per second, or 0 for no limit
+	  * @param sip_ping whether sending OPTIONS requests instead of CRLF tokens */
+	public KeepAliveManager(SipProvider sip_provider, long keepalive_time, int max_rate, boolean sip_ping) {
+		if (keepalive_time<=0) throw new IllegalArgumentException("Invalid keep-alive time: "+keepalive_time);
+		this.sip_provider=sip_provider;
+		this.keepalive_time=keepalive_time;
+		this.max_rate=max_rate;
+		this.sip_ping=sip_ping;
+		tick_time=Math.min(keepalive_time,MAX_TICK_TIME);
+		timer=sip_provider.scheduler().schedulerWithFixedDelay(tick_time,this::onTick);
+	}
+
+
+	/** Gets the number of targets */
+	public int size() {
+		return targets.size();
+	}
+
+
+	/** Gets the number of keep-alive datagrams sent so far */
+	public long getSentCount() {
+		return sent_count.get();
+	}
+
+
+	/** Whether there is a target with the given key */
+	public boolean contains(String key) {
+		return targets.containsKey(key);
+	}
+
+
+	/** Adds or updates a target.
+	  * @param soaddr the socket address of the target, also used as key
+	  * @param expire_time the time the target is kept [millisecs], or 0 for no expiration */
+	public void update(SocketAddress soaddr, long expire_time) {
+		update(soaddr.toString(),soaddr,expire_time);
+	}
+
+
+	/** Adds or updates a target.
+	  * @param key the key of the target
+	  * @param soaddr the socket address where keep-alive datagrams are sent to
+	  * @param expire_time the time the target is kept [millisecs], or 0 for no expiration */
+	public void update(String key, SocketAddress soaddr, long expire_time) {
+		long expire=(expire_time>0)? System.currentTimeMillis()+expire_time : 0;
+		Target target=targets.get(key);
+		if (target==null) {
+			target=targets.putIfAbsent(key,new Target(soaddr,expire));
+			if (target==null) {
+				LOG.debug("KeepAlive: start: "+soaddr);
+				return;
+			}
+		}
+		if (!target.soaddr.equals(soaddr)) {
+			LOG.debug("KeepAlive: change dest: "+soaddr);
+			target.soaddr=soaddr;
+		}
+		target.expire=expire;
+	}
+
+
+	/** Notifies that some traffic has been received from the given target,
+	  * suspending its keep-alive datagrams for the next keep-alive time. */
+	public void touch(String key) {
+		Target target=targets.get(key);
+		if (target!=null) target.last_activity=System.currentTimeMillis();
+	}
+
+
+	/** Removes a target */
+	public void remove(String key) {
+		Target target=targets.remove(key);
+		if (target!=null) LOG.debug("KeepAlive: halt: "+target.soaddr);
+	}
+
+
+	/** Removes the target with the given socket address as key */
+	public void remove(SocketAddress soaddr) {
+		remove(soaddr.toString());
+	}
+
+
+	/** Stops sending keep-alive datagrams and removes all targets */
+	public void halt() {
+		timer.cancel(false);
+		targets.clear();
+	}
+
+
+	/** When the timer fires. Visits the share of targets that is due within this tick. */
+	void onTick() {
+		try {
+			int size=targets.size();
+			if (size==0) {
+				credit=0;
+				return;
+			}
+			credit+=((double)size)*tick_time/keepalive_time;
+			if (credit>size) credit=size;
+			if (max_rate>0) {
+				double limit=((double)max_rate)*tick_time/1000;
+				if (credit>limit) credit=Math.max(limit,1);
+			}
+			long now=System.currentTimeMillis();
+			for (int visits=(int)credit; visits>0; visits--) {
+				if (cursor==null || !cursor.hasNext()) {
+					cursor=targets.entrySet().iterator();
+					if (!cursor.hasNext()) break;
+				}
+				credit--;
+				Map.Entry<String,Target> entry=cursor.next();
+				Target target=entry.getValue();
+				if (target.expire>0 && target.expire<now) {
+					if (targets.remove(entry.getKey(),target)) LOG.debug("KeepAlive: expired: "+target.soaddr);
+					continue;
+				}
+				// the NAT binding has recently been refreshed by the target itself
+				if (now-target.last_activity<keepalive_time) continue;
+				// else
+				send(target.soaddr);
+			}
+		}
+		catch (RuntimeException e) {
+			LOG.warn("Exception.", e);
+		}
+	}
+
+
+	/** Sends a keep-alive datagram */
+	private void send(SocketAddress soaddr) {
+		if (sip_ping) {
+			sip_provider.sendRawMessage(createOptionsRequest(soaddr),SipProvider.PROTO_UDP,soaddr.getAddress().toString(),soaddr.getPort(),127);
+			sent_count.incrementAndGet();
+		}
+		else {
+			byte[] token=UdpKeepAlive.DEFAULT_TOKEN;
+			if (sip_provider.sendRawData(SipProvider.PROTO_UDP,token,0,token.length,soaddr.getAddress(),soaddr.getPort())) sent_count.incrementAndGet();
+		}
+	}
+
+
+	/** Creates an OPTIONS request toward the given socket address */
+	private SipMessage createOptionsRequest(SocketAddress soaddr) {
+		SipURI target_uri=new SipURI(soaddr.getAddress().toString(),soaddr.getPort());
+		NameAddress local=new NameAddress(new SipURI(sip_provider.getViaAddress(),sip_provider.getPort()));
+		SipMessage req=sip_provider.messageFactory().createRequest(SipMethods.OPTIONS,target_uri,new NameAddress(target_uri),local,sip_provider.pickCallId(),null,null,null);
+		ViaHeader via=new ViaHeader(SipProvider.PROTO_UDP,sip_provider.getViaAddress(),sip_provider.getPort());
+		if (sip_provider.isRportSet()) via.setRport();
+		via.setBranch(SipProvider.pickBranch());
+		req.removeViaHeader();
+		req.addViaHeader(via);
+		return req;
+	}
+
+}
@@ -23,14 +23,14 @@ package org.mjsip.server.sbc;
 
 
 
-import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 
 import org.mjsip.pool.PortPool;
-import org.mjsip.sdp.MediaDescriptor;
-import org.mjsip.sdp.SdpMessage;
-import org.mjsip.sdp.field.MediaField;
+import org.mjsip.pool.RtpSocketPair;
 import org.mjsip.sip.message.SipMessage;
 import org.mjsip.time.Scheduler;
 import org.slf4j.LoggerFactory;
@@ -47,6 +47,14 @@ import org.zoolu.net.SocketAddress;
  * <br> - a Vector of available media ports,
  * <br> - a MGW timeout value,
  * <br> - a SymmetricUdpRelayListener that captures SymmetricUdpRelay events.
+ * <p>
+ * The Masquerades, relays, and ports of a call are kept in a {@link MediaSession}
+ * registered by call-id. A session is released (its relays halted and its ports
+ * returned to the pool)
+ * <br> - when all its relays terminated because of inactivity,
+ * <br> - when the call is terminated (see {@link #releaseSession(String)}),
+ * <br> - when it is found leaked by a {@link #sweep()}, i.e. its relays stopped without
+ * notification, or its relays have not been created within the session timeout.
  */
 public class MediaGw implements SymmetricUdpRelayListener {
 	
@@ -63,11 +71,26 @@ public class MediaGw implements SymmetricUdpRelayListener {
 	/** Media address */
 	//String media_addr=null;
 
-	/** Hashtable of pending Masquerades referred by call_id|leg|media (i.e., call_id|leg|media --> masq) */
-	Hashtable masq_table;
+	/** Media sessions by call-id (i.e., call_id --> session) */
+	private final Map<String,MediaSession> sessions=new HashMap<>();
 
-	/** Hashtable of established call_id. */
-	HashSet call_set;
+	/** Media sessions by relay, including released sessions with running relays. */
+	private final Map<SymmetricUdpRelay,MediaSession> relay_sessions=new HashMap<>();
+
+	/** Number of created sessions. */
+	private long created_count=0;
+
+	/** Number of sessions released because found leaked by a sweep. */
+	private long leaked_count=0;
+
+	/** Number of allocated ports. */
+	private int port_count=0;
+
+	/** Traffic shaper of all regulated relays, or <i>null</i>. */
+	private final TrafficShaper traffic_shaper;
+
+	/** Periodic sweep task, or <i>null</i>. */
+	private ScheduledFuture<?> sweep_task=null;
 
 	private Scheduler _scheduler;
 
@@ -78,8 +101,8 @@ public class MediaGw implements SymmetricUdpRelayListener {
 		_scheduler = scheduler;
 		this.sbc_profile=sbc_profile;
 		_portPool=portPool;
-		masq_table=new Hashtable();
-		call_set=new HashSet();
+		traffic_shaper=(sbc_profile.relayRate>0 || sbc_profile.interpacketTime>0)? new TrafficShaper(scheduler) : null;
+		if (sbc_profile.mediaSweepInterval>0) sweep_task=scheduler.schedulerWithFixedDelay(sbc_profile.mediaSweepInterval,this::sweep);
 	}
 	
 	/**
@@ -91,10 +114,18 @@ public class MediaGw implements SymmetricUdpRelayListener {
 
 	/** Processes the sdp data */
 	public SipMessage processSessionDescriptor(SipMessage msg) {
+		return processSessionDescriptor(msg,new SdpRewriter(msg.getBody()));
+	}
+
+	/** Processes the sdp data, that has already been scanned by the given SdpRewriter */
+	public SipMessage processSessionDescriptor(SipMessage msg, SdpRewriter sdp) {
 		LOG.debug("inside processSessionDescriptor()");
 		
-		SdpMessage sdp=new SdpMessage(msg.getStringBody());
-		String dest_addr=sdp.getConnection().getAddress();
+		String dest_addr=sdp.getConnectionAddress();
+		if (!sdp.isValid() || dest_addr==null) {
+			LOG.warn("invalid sdp: media not relayed");
+			return msg;
+		}
 		// substitute 0.0.0.0 with 127.0.0.1
 		if (dest_addr.equals("0.0.0.0")) dest_addr="127.0.0.1";
 		
@@ -102,68 +133,218 @@ public class MediaGw implements SymmetricUdpRelayListener {
 
 		//String[] media={ "audio" };
 		//int[] masq_port=new int[media.length];                   
-		Vector<MediaDescriptor> mediaDescriptors=sdp.getMediaDescriptors();
-		String[] mediaTypes=new String[mediaDescriptors.size()];                   
-		int[] masq_port=new int[mediaDescriptors.size()];                   
+		String[] mediaTypes=sdp.getMediaTypes();                   
+		int[] masq_port=new int[mediaTypes.length];                   
 			
 		String call_id=msg.getCallIdHeader().getCallId();
 		String leg=(msg.isRequest())? "caller" : "callee";
 
-		//for (int i=0; i<media.length; i++)
-		for (int i=0; i<mediaDescriptors.size(); i++) {
-			//int dest_port=sdp.getMediaDescriptor(media[i]).getMedia().getPort();
-			MediaDescriptor media_descriptor=mediaDescriptors.elementAt(i);
-			MediaField mediaField=media_descriptor.getMediaField();
-			mediaTypes[i]=mediaField.getMediaType();
-			int dest_port=mediaField.getPort();
-						
-			String key=call_id+"-"+leg+"-"+mediaTypes[i];
-			LOG.info("media-id: "+key);
-			if (masq_table.containsKey(key)) {
-				// get masq
-				Masquerade masq=(Masquerade)masq_table.get(key);
-				masq_addr=masq.getMasqSoaddr().getAddress().toString();
-				masq_port[i]=masq.getMasqSoaddr().getPort();
+		synchronized (this) {
+			MediaSession session=sessions.get(call_id);
+			if (session==null) {
+				session=new MediaSession(call_id,System.currentTimeMillis());
+				sessions.put(call_id,session);
+				created_count++;
 			}
-			else {
-				// set masq
-				masq_port[i]=_portPool.allocate();
-				Masquerade masq=new Masquerade(new SocketAddress(dest_addr,dest_port),new SocketAddress(masq_addr,masq_port[i]));
-				masq_table.put(key,masq);
+
+			//for (int i=0; i<media.length; i++)
+			for (int i=0; i<mediaTypes.length; i++) {
+				//int dest_port=sdp.getMediaDescriptor(media[i]).getMedia().getPort();
+				int dest_port=sdp.getMediaPort(i);
+							
+				LOG.info("media-id: "+call_id+"-"+leg+"-"+mediaTypes[i]);
+				Masquerade masq=session.getMasquerade(leg,mediaTypes[i]);
+				if (masq!=null) {
+					// get masq
+					masq_addr=masq.getMasqSoaddr().getAddress().toString();
+					masq_port[i]=masq.getMasqSoaddr().getPort();
+				}
+				else {
+					// set masq
+					masq_port[i]=allocatePort(session);
+					masq=new Masquerade(new SocketAddress(dest_addr,dest_port),new SocketAddress(masq_addr,masq_port[i]));
+					session.setMasquerade(leg,mediaTypes[i],masq);
+				}
 			}
-		}
-		// mangle sdp
-		for (int i=0; i<mediaTypes.length; i++) LOG.info("mangle body: media="+mediaTypes[i]+" masq_port="+masq_port[i]);
-		msg=SipMangler.mangleBody(msg,masq_addr,mediaTypes,masq_port);
-
-		// creates the actual media relay (SymmetricUdpRelay) when both media legs are available
-		if (mediaTypes.length>0) {
-			if(masq_table.containsKey(call_id+"-caller"+"-"+mediaTypes[0]) && masq_table.containsKey(call_id+"-callee"+"-"+mediaTypes[0])) {
-				LOG.info("complete call");
-				if (!call_set.contains(call_id)) {
-					LOG.info("creating new MediaGW");
-					for (int i=0; i<mediaTypes.length; i++) {
-						Masquerade masq_left=(Masquerade)masq_table.get(call_id+"-caller"+"-"+mediaTypes[i]);
-						Masquerade masq_right=(Masquerade)masq_table.get(call_id+"-callee"+"-"+mediaTypes[i]);
-						createSymmetricUdpRelay(masq_left,masq_right);
+
+			// creates the actual media relay (SymmetricUdpRelay) when both media legs are available
+			if (mediaTypes.length>0) {
+				if (session.getMasquerade("caller",mediaTypes[0])!=null && session.getMasquerade("callee",mediaTypes[0])!=null) {
+					LOG.info("complete call");
+					if (!session.hasRelays()) {
+						LOG.info("creating new MediaGW");
+						for (int i=0; i<mediaTypes.length; i++) {
+							Masquerade masq_left=session.getMasquerade("caller",mediaTypes[i]);
+							Masquerade masq_right=session.getMasquerade("callee",mediaTypes[i]);
+							if (masq_left==null || masq_right==null) continue;
+							SymmetricUdpRelay relay=createSymmetricUdpRelay(session,masq_left,masq_right);
+							if (relay!=null) {
+								session.addRelay(relay);
+								relay_sessions.put(relay,session);
+							}
+						}
+					}
+					else {
+						LOG.info("MediaGW exists");
 					}
-					call_set.add(call_id);
 				}
 				else {
-					LOG.info("MediaGW exists");
+					LOG.info("half call");
 				}
 			}
-			else {
-				LOG.info("half call");
-			}
 		}
 
+		// mangle sdp
+		for (int i=0; i<mediaTypes.length; i++) LOG.info("mangle body: media="+mediaTypes[i]+" masq_port="+masq_port[i]);
+		msg=SipMangler.mangleBody(msg,sdp,masq_addr,mediaTypes,masq_port);
+
 		return msg;
 	}
 
 
+	/** Marks the media session of the given call as established.
+	  * Called when a 2xx response to an INVITE is seen. */
+	public synchronized void onCallEstablished(String call_id) {
+		MediaSession session=sessions.get(call_id);
+		if (session!=null) session.setEstablished();
+	}
+
+
+	/** Notes that an INVITE of the given call has been forwarded on the given branch.
+	  * The media session is kept, until all branches have received a final response. */
+	public synchronized void onInviteForwarded(String call_id, String branch) {
+		MediaSession session=sessions.get(call_id);
+		if (session!=null && !session.isEstablished()) session.addPendingBranch(branch);
+	}
+
+
+	/** Handles a failure response (&gt;=300) to an INVITE forwarded on the given branch.
+	  * The media session is released, if no other branch of a forked INVITE is still waiting
+	  * for its final response, and no branch has established the call.
+	  * @return whether the session has been released */
+	public synchronized boolean onInviteFailed(String call_id, String branch) {
+		MediaSession session=sessions.get(call_id);
+		if (session==null || !session.removePendingBranch(branch)) return false;
+		return releaseFailedSession(call_id);
+	}
+
+
+	/** Releases the media session of a call that has been refused or cancelled, unless the
+	  * call has already been established.
+	  * @return whether the session has been released */
+	public synchronized boolean releaseFailedSession(String call_id) {
+		MediaSession session=sessions.get(call_id);
+		if (session==null || session.isEstablished()) return false;
+		release(session,"call failed");
+		return true;
+	}
+
+
+	/** Releases the media session of the given call: halts its relays and returns its ports to
+	  * the pool, as soon as the relays terminated.
+	  * @return whether a session has been released */
+	public synchronized boolean releaseSession(String call_id) {
+		MediaSession session=sessions.get(call_id);
+		if (session==null) return false;
+		release(session,"call terminated");
+		return true;
+	}
+
+
+	/** Releases all leaked media sessions. A session is leaked, if all its relays stopped without
+	  * having been released, or if it has no relays and is older than the media session timeout.
+	  * @return the number of released sessions */
+	public synchronized int sweep() {
+		long timeout=System.currentTimeMillis()-sbc_profile.mediaSessionTimeout;
+		List<MediaSession> leaked=new ArrayList<>();
+		for (MediaSession session : sessions.values()) {
+			if (session.hasRelays()? !session.isRelaying() : session.getCreationTime()<timeout) leaked.add(session);
+		}
+		// released sessions whose relays stopped without notification
+		for (MediaSession session : relay_sessions.values()) {
+			if (session.isReleased() && !session.isRelaying() && !leaked.contains(session)) leaked.add(session);
+		}
+		for (MediaSession session : leaked) {
+			if (session.isReleased()) releaseResources(session);
+			else release(session,"leaked");
+		}
+		leaked_count+=leaked.size();
+		if (leaked.size()>0) LOG.info("released "+leaked.size()+" leaked media sessions");
+		return leaked.size();
+	}
+
+
+	/** Stops the periodic sweep and releases all media sessions. */
+	public synchronized void halt() {
+		if (sweep_task!=null) {
+			sweep_task.cancel(false);
+			sweep_task=null;
+		}
+		for (MediaSession session : new ArrayList<>(sessions.values())) release(session,"halt");
+	}
+
+
+	/** Gets the media session of the given call, or <i>null</i>. */
+	public synchronized MediaSession getSession(String call_id) {
+		return sessions.get(call_id);
+	}
+
+	/** Gets the number of active media sessions. */
+	public synchronized int getActiveSessionCount() {
+		return sessions.size();
+	}
+
+	/** Gets the number of created media sessions. */
+	public synchronized long getCreatedSessionCount() {
+		return created_count;
+	}
+
+	/** Gets the number of media sessions that have been released by a sweep. */
+	public synchronized long getLeakedSessionCount() {
+		return leaked_count;
+	}
+
+	/** Gets the number of media ports currently allocated. */
+	public synchronized int getAllocatedPortCount() {
+		return port_count;
+	}
+
+
+	/** Removes the given session and halts its relays. The ports are released when all relays
+	  * terminated. */
+	private void release(MediaSession session, String reason) {
+		LOG.info("release media session ("+reason+"): "+session);
+		sessions.remove(session.getCallId());
+		session.setReleased();
+		for (SymmetricUdpRelay relay : session.getRelays()) relay.halt();
+		if (!session.isRelaying()) releaseResources(session);
+	}
+
+
+	/** Forgets the relays of the given session and returns its ports to the pool. */
+	private void releaseResources(MediaSession session) {
+		for (SymmetricUdpRelay relay : session.getRelays()) relay_sessions.remove(relay);
+		List<Integer> ports=session.getPorts();
+		for (Integer port : ports) _portPool.release(port.intValue());
+		port_count-=ports.size();
+		ports.clear();
+	}
+
+
+	/** Allocates a media port for a relay.
+	  * The relays bind their ports themselves, so that sockets bound in advance by the pool are closed. */
+	private int allocatePort(MediaSession session) {
+		int port=_portPool.allocate();
+		RtpSocketPair sockets=_portPool.takeSockets(port);
+		if (sockets!=null) sockets.close();
+		session.addPort(port);
+		port_count++;
+		return port;
+	}
+
+
 	/** Creates a new SymmetricUdpRelay */
-	protected SymmetricUdpRelay createSymmetricUdpRelay(Masquerade masq_left, Masquerade masq_right) {
+	protected SymmetricUdpRelay createSymmetricUdpRelay(MediaSession session, Masquerade masq_left, Masquerade masq_right) {
 		try {
 			int left_port=masq_right.getMasqSoaddr().getPort();
 			int right_port=masq_left.getMasqSoaddr().getPort();
@@ -171,8 +352,8 @@ public class MediaGw implements SymmetricUdpRelayListener {
 			SymmetricUdpRelay symm_relay;
 			if (sbc_profile.doInterception) {
 				// intercepting symmetric UDP relay
-				int left_intercept_port=_portPool.allocate();
-				int right_intercept_port=_portPool.allocate();
+				int left_intercept_port=allocatePort(session);
+				int right_intercept_port=allocatePort(session);
 				SocketAddress sink_soaddr=null;
 				if (sbc_profile.sinkAddr!=null && sbc_profile.sinkPort>0) sink_soaddr=new SocketAddress(sbc_profile.sinkAddr,sbc_profile.sinkPort);
 				symm_relay = new InterceptingUdpRelay(scheduler(), left_port, masq_left.getPeerSoaddr(), right_port,
@@ -181,10 +362,11 @@ public class MediaGw implements SymmetricUdpRelayListener {
 				LOG.debug("IMGW started: "+symm_relay);
 			}
 			else
-			if (sbc_profile.interpacketTime>0) {
+			if (traffic_shaper!=null) {
 				// symmetric regulated UDP relay
 				symm_relay = new SymmetricRegulatedUdpRelay(scheduler(), left_port, masq_left.getPeerSoaddr(), right_port,
-						masq_right.getPeerSoaddr(), sbc_profile.relayTimeout, sbc_profile.interpacketTime, this);
+						masq_right.getPeerSoaddr(), sbc_profile.relayTimeout, traffic_shaper, sbc_profile.relayRate,
+						sbc_profile.relayBurst, sbc_profile.interpacketTime, sbc_profile.relayQueueSize, this);
 				LOG.debug("MGW started: "+symm_relay);
 			}
 			else {
@@ -235,6 +417,13 @@ public class MediaGw implements SymmetricUdpRelayListener {
 	@Override
 	public void onSymmetricUdpRelayTerminated(SymmetricUdpRelay symm_relay) {
 		LOG.debug("MGW terminated: "+symm_relay);
+		synchronized (this) {
+			MediaSession session=relay_sessions.get(symm_relay);
+			if (session==null || session.isRelaying()) return;
+			// all relays of the session terminated
+			if (!session.isReleased()) release(session,"media inactive");
+			else releaseResources(session);
+		}
 	}
 	
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+
+/** MediaSession collects the media resources that a {@link MediaGw} uses for a call.
+  * <p>
+  * These are the Masquerades of each call leg and media type, the SymmetricUdpRelays
+  * created when both legs are known, and the media ports allocated for them.
+  * All resources of a session are released together.
+  * <p>
+  * A MediaSession is accessed only while holding the lock of its MediaGw.
+  */
+public class MediaSession {
+
+	/** Call-Id. */
+	private final String call_id;
+
+	/** Creation time (in milliseconds). */
+	private final long creation_time;
+
+	/** Masquerades by leg|media (i.e. leg-media --&gt; masq). */
+	private final Map<String,Masquerade> masquerades=new HashMap<>();
+
+	/** Media relays. */
+	private final List<SymmetricUdpRelay> relays=new ArrayList<>();
+
+	/** Allocated media ports. */
+	private final List<Integer> ports=new ArrayList<>();
+
+	/** Branches of forwarded INVITE requests without final response. */
+	private final Set<String> pending_branches=new HashSet<>();
+
+	/** Whether the call has been accepted by a 2xx response. */
+	private boolean established=false;
+
+	/** Whether the session has been removed from its MediaGw. */
+	private boolean released=false;
+
+
+	/** Creates a new MediaSession. */
+	public MediaSession(String call_id, long creation_time) {
+		this.call_id=call_id;
+		this.creation_time=creation_time;
+	}
+
+
+	/** Gets the call-id. */
+	public String getCallId() {
+		return call_id;
+	}
+
+	/** Gets the creation time (in milliseconds). */
+	public long getCreationTime() {
+		return creation_time;
+	}
+
+	/** Gets the Masquerade of the given leg and media type, or <i>null</i>. */
+	public Masquerade getMasquerade(String leg, String media_type) {
+		return masquerades.get(leg+"-"+media_type);
+	}
+
+	/** Sets the Masquerade of the given leg and media type. */
+	void setMasquerade(String leg, String media_type, Masquerade masq) {
+		masquerades.put(leg+"-"+media_type,masq);
+	}
+
+	/** Gets the media relays. */
+	public List<SymmetricUdpRelay> getRelays() {
+		return relays;
+	}
+
+	/** Whether the media relays have been created. */
+	public boolean hasRelays() {
+		return !relays.isEmpty();
+	}
+
+	/** Adds a media relay. */
+	void addRelay(SymmetricUdpRelay relay) {
+		relays.add(relay);
+	}
+
+	/** Gets the allocated media ports. */
+	public List<Integer> getPorts() {
+		return ports;
+	}
+
+	/** Adds an allocated media port. */
+	void addPort(int port) {
+		ports.add(Integer.valueOf(port));
+	}
+
+	/** Whether any of the media relays is still running. */
+	public boolean isRelaying() {
+		for (SymmetricUdpRelay relay : relays) {
+			if (relay.isRunning()) return true;
+		}
+		return false;
+	}
+
+	/** Whether the call has been accepted. */
+	public boolean isEstablished() {
+		return established;
+	}
+
+	/** Marks the call as accepted. */
+	void setEstablished() {
+		established=true;
+	}
+
+	/** Adds the branch of a forwarded INVITE request that waits for its final response. */
+	void addPendingBranch(String branch) {
+		pending_branches.add(branch);
+	}
+
+	/** Removes the branch of a forwarded INVITE request that received its final response.
+	  * @return whether no other branch is waiting for a final response */
+	boolean removePendingBranch(String branch) {
+		pending_branches.remove(branch);
+		return pending_branches.isEmpty();
+	}
+
+	/** Whether the session has been removed from its MediaGw. */
+	public boolean isReleased() {
+		return released;
+	}
+
+	/** Marks the session as removed from its MediaGw. */
+	void setReleased() {
+		released=true;
+	}
+
+
+	/** Gets a String representation of the Object */
+	@Override
+	public String toString() {
+		return call_id+" "+masquerades.keySet()+" relays="+relays.size()+" ports="+ports;
+	}
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+
+/** SdpRewriter masquerades the media addresses of an SDP body without parsing it
+  * into a {@link org.mjsip.sdp.SdpMessage}.
+  * <p>
+  * The body is scanned once, when the SdpRewriter is created. The scan only records
+  * the position of the tokens that are relevant for an SBC: the address of each
+  * connection field ('c='), and the media type and port of each media field ('m=').
+  * Like the full SDP rewriting, 'a=rtcp' attributes (RFC 3605) are left unchanged,
+  * since only the RTP port of a media description is relayed.
+  * <p>
+  * {@link #rewrite(String, String[], int[])} then creates the new body by copying
+  * the unchanged parts of the original body and patching only these tokens.
+  * <p>
+  * If the body is not a valid SDP as far as these fields are concerned,
+  * {@link #isValid()} returns <i>false</i>, and the full SDP object model should be
+  * used instead.
+  */
+public class SdpRewriter {
+
+	/** Initial capacity of the token tables. */
+	private static final int INITIAL_TOKENS=16;
+
+	/** Token type: connection address. */
+	private static final int CONNECTION_ADDRESS=0;
+	/** Token type: media port (including the optional number of ports). */
+	private static final int MEDIA_PORT=1;
+
+	/** The SDP body. */
+	private final byte[] sdp;
+
+	/** Whether the body is valid. */
+	private boolean valid=true;
+
+	/** Number of recorded tokens. */
+	private int token_count=0;
+
+	/** Per token: type. */
+	private int[] token_type=new int[INITIAL_TOKENS];
+	/** Per token: index of the media description, -1 for the session level. */
+	private int[] token_media=new int[INITIAL_TOKENS];
+	/** Per token: start offset. */
+	private int[] token_start=new int[INITIAL_TOKENS];
+	/** Per token: end offset (exclusive). */
+	private int[] token_end=new int[INITIAL_TOKENS];
+
+	/** Number of media descriptions. */
+	private int media_count=0;
+
+	/** Per media description: media type. */
+	private String[] media_types=new String[2];
+	/** Per media description: media port. */
+	private int[] media_ports=new int[2];
+
+	/** The session-level connection address, or the one of the first media description. */
+	private String connection_address=null;
+
+
+	/** Creates a new SdpRewriter and scans the given SDP body.
+	  * @param sdp the SDP body; it is not modified */
+	public SdpRewriter(byte[] sdp) {
+		this.sdp=sdp;
+		scan();
+	}
+
+
+	/** Whether the relevant fields of the body could be scanned. */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/** Gets the session-level connection address, or the connection address of the first
+	  * media description, if there is no session-level connection field; <i>null</i> if
+	  * there is no connection field. */
+	public String getConnectionAddress() {
+		return connection_address;
+	}
+
+	/** Gets the number of media descriptions. */
+	public int getMediaCount() {
+		return media_count;
+	}
+
+	/** Gets the media type of the i-th media description. */
+	public String getMediaType(int i) {
+		return media_types[i];
+	}
+
+	/** Gets the port of the i-th media description. */
+	public int getMediaPort(int i) {
+		return media_ports[i];
+	}
+
+	/** Gets the media types of all media descriptions. */
+	public String[] getMediaTypes() {
+		return Arrays.copyOf(media_types,media_count);
+	}
+
+
+	/** Creates a new SDP body with all connection addresses replaced by the masquerading
+	  * address, and the ports of the given media types replaced by the masquerading ports.
+	  * <p>
+	  * The port of the i-th media description is replaced by <i>masq_ports[i]</i>, if its
+	  * type is <i>media_types[i]</i>; otherwise, by the port of the first media type that
+	  * matches. Media descriptions of other types are left unchanged.
+	  * @param masq_addr the masquerading address
+	  * @param media_types the media types to be masqueraded
+	  * @param masq_ports the masquerading ports of the media types
+	  * @return the new body */
+	public byte[] rewrite(String masq_addr, String[] media_types, int[] masq_ports) {
+		byte[] addr=masq_addr.getBytes(StandardCharsets.US_ASCII);
+
+		// map media descriptions to masquerading ports
+		int[] ports=new int[media_count];
+		for (int m=0; m<media_count; m++) {
+			ports[m]=-1;
+			if (m<media_types.length && this.media_types[m].equals(media_types[m])) ports[m]=masq_ports[m];
+			else
+			for (int i=0; i<media_types.length; i++) {
+				if (this.media_types[m].equals(media_types[i])) {
+					ports[m]=masq_ports[i];
+					break;
+				}
+			}
+		}
+
+		byte[] out=new byte[sdp.length+token_count*(addr.length+8)];
+		int len=0;
+		int pos=0;
+		for (int t=0; t<token_count; t++) {
+			int type=token_type[t];
+			int media=token_media[t];
+			byte[] value;
+			if (type==CONNECTION_ADDRESS) value=addr;
+			else
+			if (media<0 || ports[media]<0) continue;
+			else value=Integer.toString(ports[media]).getBytes(StandardCharsets.US_ASCII);
+
+			int unchanged=token_start[t]-pos;
+			System.arraycopy(sdp,pos,out,len,unchanged);
+			len+=unchanged;
+			System.arraycopy(value,0,out,len,value.length);
+			len+=value.length;
+			pos=token_end[t];
+		}
+		int unchanged=sdp.length-pos;
+		if (len+unchanged>out.length) out=Arrays.copyOf(out,len+unchanged);
+		System.arraycopy(sdp,pos,out,len,unchanged);
+		len+=unchanged;
+		return len==out.length? out : Arrays.copyOf(out,len);
+	}
+
+
+	/** Scans the body and records the relevant tokens. */
+	private void scan() {
+		int media=-1;
+		int end=sdp.length;
+		for (int line=0; line<end; ) {
+			int eol=line;
+			while (eol<end && sdp[eol]!='\n') eol++;
+			int next=eol+1;
+			if (eol>line && sdp[eol-1]=='\r') eol--;
+
+			if (eol-line>=2 && sdp[line+1]=='=') {
+				switch (sdp[line]) {
+					case 'c' : {
+						// c=<nettype> <addrtype> <connection-address>[/<ttl>][/<number of addresses>]
+						int start=skipTokens(line+2,eol,2);
+						int stop=tokenEnd(start,eol,true);
+						if (stop<=start) {  valid=false;  return;  }
+						addToken(CONNECTION_ADDRESS,media,start,stop);
+						if (connection_address==null || media<0) connection_address=string(start,stop);
+						break;
+					}
+					case 'm' : {
+						// m=<media> <port>[/<number of ports>] <proto> <fmt> ...
+						int type_end=tokenEnd(line+2,eol,false);
+						int start=skipTokens(line+2,eol,1);
+						int stop=tokenEnd(start,eol,false);
+						int port_end=tokenEnd(start,eol,true);
+						int port=parseInt(start,port_end);
+						if (type_end<=line+2 || port<0) {  valid=false;  return;  }
+						media=addMedia(string(line+2,type_end),port);
+						addToken(MEDIA_PORT,media,start,stop);
+						break;
+					}
+					default :
+				}
+			}
+			line=next;
+		}
+	}
+
+	/** Skips the given number of space separated tokens.
+	  * @return the start of the following token */
+	private int skipTokens(int pos, int end, int cnt) {
+		for (int i=0; i<cnt; i++) {
+			pos=tokenEnd(pos,end,false);
+			while (pos<end && sdp[pos]==' ') pos++;
+		}
+		return pos;
+	}
+
+	/** Gets the end of the token starting at the given position. */
+	private int tokenEnd(int pos, int end, boolean stop_at_slash) {
+		while (pos<end && sdp[pos]!=' ' && !(stop_at_slash && sdp[pos]=='/')) pos++;
+		return pos;
+	}
+
+	/** Parses a decimal number, -1 if the range is empty or contains non digits. */
+	private int parseInt(int start, int stop) {
+		if (stop<=start || stop-start>9) return -1;
+		int value=0;
+		for (int i=start; i<stop; i++) {
+			int digit=sdp[i]-'0';
+			if (digit<0 || digit>9) return -1;
+			value=value*10+digit;
+		}
+		return value;
+	}
+
+	/** Gets the given range as string. */
+	private String string(int start, int stop) {
+		return new String(sdp,start,stop-start,StandardCharsets.US_ASCII);
+	}
+
+	/** Records a media description.
+	  * @return its index */
+	private int addMedia(String type, int port) {
+		if (media_count==media_types.length) {
+			media_types=Arrays.copyOf(media_types,2*media_count);
+			media_ports=Arrays.copyOf(media_ports,2*media_count);
+		}
+		media_types[media_count]=type;
+		media_ports[media_count]=port;
+		return media_count++;
+	}
+
+	/** Records a token. */
+	private void addToken(int type, int media, int start, int stop) {
+		if (token_count==token_type.length) {
+			int size=2*token_count;
+			token_type=Arrays.copyOf(token_type,size);
+			token_media=Arrays.copyOf(token_media,size);
+			token_start=Arrays.copyOf(token_start,size);
+			token_end=Arrays.copyOf(token_end,size);
+		}
+		token_type[token_count]=type;
+		token_media[token_count]=media;
+		token_start[token_count]=start;
+		token_end[token_count]=stop;
+		token_count++;
+	}
+
+}
@@ -23,14 +23,12 @@ package org.mjsip.server.sbc;
 
 
 
-import java.util.Hashtable;
 import java.util.Vector;
 
 import org.mjsip.config.MetaConfig;
 import org.mjsip.config.OptionParser;
 import org.mjsip.pool.PortConfig;
 import org.mjsip.pool.PortPool;
-import org.mjsip.sdp.SdpMessage;
 import org.mjsip.server.Proxy;
 import org.mjsip.server.ServerProfile;
 import org.mjsip.sip.address.GenericURI;
@@ -44,7 +42,6 @@ import org.mjsip.sip.header.ViaHeader;
 import org.mjsip.sip.message.SipMessage;
 import org.mjsip.sip.message.SipMethods;
 import org.mjsip.sip.provider.SipConfig;
-import org.mjsip.sip.provider.SipKeepAlive;
 import org.mjsip.time.ConfiguredScheduler;
 import org.mjsip.time.SchedulerConfig;
 import org.slf4j.LoggerFactory;
@@ -97,8 +94,8 @@ public class SessionBorderController extends Proxy {
 	/** The media GW box */
 	MediaGw media_gw;
 
-	/** Sip keep-alive daemons for registered users. */
-	Hashtable keepalive_daemons=null;
+	/** Keep-alive manager for registered users. */
+	KeepAliveManager keepalive_manager=null;
 
 	/** Maximum time between two handovers (in milliseconds). */
 	//long handover_time=5000;
@@ -114,7 +111,7 @@ public class SessionBorderController extends Proxy {
 		this.sip_provider=sip_provider;
 		this.sbc_profile=sbc_profile;
 		
-		if (sbc_profile.keepaliveTime>0 && !sbc_profile.keepaliveAggressive) keepalive_daemons=new Hashtable();
+		if (sbc_profile.keepaliveTime>0 && !sbc_profile.keepaliveAggressive) keepalive_manager=new KeepAliveManager(sip_provider,sbc_profile.keepaliveTime,sbc_profile.keepaliveRate,sbc_profile.keepaliveOptions);
 		if (sbc_profile.mediaAddr==null || sbc_profile.mediaAddr.equals("0.0.0.0")) sbc_profile.mediaAddr=sip_provider.getViaAddress();
 		
 		media_gw = new MediaGw(sip_provider.scheduler(), portPool, sbc_profile);
@@ -123,6 +120,21 @@ public class SessionBorderController extends Proxy {
 		//server_profile.on_route=true;
 	}
 
+	/** Gets the media GW. */
+	public MediaGw getMediaGw() {
+		return media_gw;
+	}
+
+
+	/** Stops the SBC and releases all media sessions. */
+	@Override
+	public void halt() {
+		super.halt();
+		media_gw.halt();
+		if (keepalive_manager!=null) keepalive_manager.halt();
+	}
+
+
 	/** When a new request message is received for a local user. */
 	@Override
 	public void processRequestToLocalUser(SipMessage msg) {
@@ -184,10 +196,15 @@ public class SessionBorderController extends Proxy {
 				}           
 			}
 		}
+		// release the media resources of terminated calls; cancelled calls are released with the
+		// final responses of all branches
+		if (req.isBye()) media_gw.releaseSession(req.getCallIdHeader().getCallId());
 		// update the standard proxy headers
 		req=super.updateProxyingRequest(req);
 		// mangle the sdp
 		if (req.hasBody()) req=mangleBody(req);
+		// track the branches of (possibly forked) INVITEs
+		if (req.isInvite()) media_gw.onInviteForwarded(req.getCallIdHeader().getCallId(),req.getViaHeader().getBranch());
 		// mangle the Contact header field
 		if (req.hasContactHeader()) req=SipMangler.mangleContact(req,sip_provider.getViaAddress(),sip_provider.getPort());   
 		return req;
@@ -199,7 +216,16 @@ public class SessionBorderController extends Proxy {
 	@Override
 	protected SipMessage updateProxyingResponse(SipMessage resp) {
 		LOG.debug("inside updateProxyingResponse(resp)");
+		// the branch of the forwarded request is in the top most via, which is removed by the proxy
+		String branch=resp.hasViaHeader()? resp.getViaHeader().getBranch() : null;
 		resp=super.updateProxyingResponse(resp);
+		// track the state of the call
+		if (resp.getCSeqHeader().getMethod().equalsIgnoreCase(SipMethods.INVITE)) {
+			int code=resp.getStatusLine().getCode();
+			if (code>=200 && code<300) media_gw.onCallEstablished(resp.getCallIdHeader().getCallId());
+			else
+			if (code>=300) media_gw.onInviteFailed(resp.getCallIdHeader().getCallId(),branch);
+		}
 		// mangle the sdp
 		if (resp.hasBody()) resp=mangleBody(resp);
 		// mangle Contact header field
@@ -208,7 +234,7 @@ public class SessionBorderController extends Proxy {
 			else resp=SipMangler.mangleContact(resp,sip_provider.getViaAddress(),sip_provider.getPort());
 		}
 		// update the SIP keep alive daemons
-		if (keepalive_daemons!=null && resp.getCSeqHeader().getMethod().equalsIgnoreCase(SipMethods.REGISTER)) updateKeepAlive(resp);
+		if (keepalive_manager!=null && resp.getCSeqHeader().getMethod().equalsIgnoreCase(SipMethods.REGISTER)) updateKeepAlive(resp);
 		return resp;
 	}
 
@@ -219,12 +245,12 @@ public class SessionBorderController extends Proxy {
 	protected SipMessage updateRegistration(SipMessage msg) {
 		SipMessage resp=super.updateRegistration(msg);
 		// update the SIP keep alive daemons
-		if (keepalive_daemons!=null) updateKeepAlive(resp);
+		if (keepalive_manager!=null) updateKeepAlive(resp);
 		return resp;
 	}
 
 
-	//** Updates the SIP keep alive daemons. */
+	//** Updates the SIP keep-alive targets. */
 	private SipMessage updateKeepAlive(SipMessage resp) {
 		if (resp.hasContactHeader()) {
 			Vector c_headers=resp.getContacts().getHeaders();
@@ -240,33 +266,11 @@ public class SessionBorderController extends Proxy {
 				SocketAddress soaddr=new SocketAddress(host,port);
 				int time=ch.getExpires();
 				if (time>0) {
-					SipKeepAlive keepalive;
-					String key=soaddr.toString();
-					if (keepalive_daemons.containsKey(key)) {
-						keepalive=(SipKeepAlive)keepalive_daemons.get(key);
-						if (!keepalive.isRunning()) {
-							keepalive_daemons.remove(key);
-							keepalive=new SipKeepAlive(sip_provider,soaddr,sbc_profile.keepaliveTime);
-							keepalive_daemons.put(key,keepalive);
-							LOG.debug("KeepAlive: restart: "+soaddr+" ("+time+"secs)");
-						}
-						else LOG.debug("KeepAlive: update: "+soaddr+" ("+time+"secs)");
-					}
-					else {
-						keepalive=new SipKeepAlive(sip_provider,soaddr,sbc_profile.keepaliveTime);
-						keepalive_daemons.put(key,keepalive);
-						LOG.debug("KeepAlive: start: "+soaddr+" ("+time+"secs)");
-					}
-					keepalive.setExpirationTime(((long)time)*1000);
+					keepalive_manager.update(soaddr,((long)time)*1000);
+					LOG.debug("KeepAlive: update: "+soaddr+" ("+time+"secs)");
 				}
 				else {
-					String key=soaddr.toString();
-					if (keepalive_daemons.containsKey(key)) {
-						SipKeepAlive keepalive=(SipKeepAlive)keepalive_daemons.get(key);
-						keepalive_daemons.remove(key);
-						keepalive.halt();
-						LOG.debug("KeepAlive: halt: "+soaddr);
-					}
+					keepalive_manager.remove(soaddr);
 				}
 			}
 		}
@@ -280,13 +284,14 @@ public class SessionBorderController extends Proxy {
 
 		String content_type=msg.getContentTypeHeader().getContentType();
 		if (content_type.equalsIgnoreCase("application/sdp")) {
-			SdpMessage sdp=msg.getSdpBody();
-			String dest_addr=sdp.getConnection().getAddress();
+			SdpRewriter sdp=new SdpRewriter(msg.getBody());
+			String dest_addr=sdp.getConnectionAddress();
+			if (dest_addr==null) return msg;
 			// substitute 0.0.0.0 with 127.0.0.1
 			if (dest_addr.equals("0.0.0.0")) dest_addr="127.0.0.1";
 
 			// checking whether acts as media gw
-			if (doRelay(dest_addr)) msg=media_gw.processSessionDescriptor(msg);
+			if (doRelay(dest_addr)) msg=media_gw.processSessionDescriptor(msg,sdp);
 		}
 		return msg;
 	}
@@ -368,7 +373,7 @@ public class SessionBorderController extends Proxy {
 		
 		// create a new ExtendedSipProvider
 		long keepalive_aggressive_time=(sbc_profile.keepaliveAggressive)? sbc_profile.keepaliveTime : 0;
-		ExtendedSipProvider extended_provider=new ExtendedSipProvider(sipConfig, new ConfiguredScheduler(schedulerConfig), sbc_profile.bindingTimeout,keepalive_aggressive_time);
+		ExtendedSipProvider extended_provider=new ExtendedSipProvider(sipConfig, new ConfiguredScheduler(schedulerConfig), sbc_profile.bindingTimeout,keepalive_aggressive_time,sbc_profile.keepaliveRate,sbc_profile.keepaliveOptions);
 
 		// create and start the SBC
 		new SessionBorderController(extended_provider, portConfig.createPool(), server_profile,sbc_profile);
@@ -13,6 +13,12 @@ public class SessionBorderControllerProfile {
 	@Option(name = "--relay-timeout", usage = "Maximum time that the UDP relay remains active without receiving UDP datagrams (in milliseconds).")
 	public long relayTimeout=60000; // 1min
 
+	@Option(name = "--media-session-timeout", usage = "Maximum time that the media resources of a call are kept without its media relay being created (in milliseconds).")
+	public long mediaSessionTimeout=180000; // 3min
+
+	@Option(name = "--media-sweep-interval", usage = "Interval between two checks for leaked media sessions (in milliseconds). Set media_sweep_interval=0 to disable the check.")
+	public long mediaSweepInterval=60000; // 1min
+
 	@Option(name = "--binding_timeout", usage = "Refresh time of address-binding cache (in milliseconds).")
 	public long bindingTimeout=3600000;
 
@@ -28,12 +34,27 @@ public class SessionBorderControllerProfile {
 	@Option(name = "--keepalive-aggressive", usage = "Whether sending keep-alive datagrams to all user agents (also to non-registered ones).", handler = YesNoHandler.class)
 	public boolean keepaliveAggressive=false;
 
+	@Option(name = "--keepalive-rate", usage = "Maximum number of keep-alive datagrams sent per second toward all UAs. Set keepalive_rate=0 for no limit.")
+	public int keepaliveRate=KeepAliveManager.DEFAULT_MAX_RATE;
+
+	@Option(name = "--keepalive-options", usage = "Whether sending OPTIONS requests instead of CRLF tokens as keep-alive datagrams.", handler = YesNoHandler.class)
+	public boolean keepaliveOptions=false;
+
 	// /** Whether implementing symmetric RTP for NAT traversal. */
 	// boolean symmetric_rtp=false;
 	
 	@Option(name = "--interpacket-time", usage = "Minimum inter-packet departure time.")
 	public long interpacketTime=0; 
 
+	@Option(name = "--relay-rate", usage = "Maximum rate of each direction of a media relay (in bytes per second). Set relay_rate=0 for no rate limit.")
+	public long relayRate=0;
+
+	@Option(name = "--relay-burst", usage = "Maximum burst of each direction of a media relay (in bytes), if a relay rate is set.")
+	public long relayBurst=3000;
+
+	@Option(name = "--relay-queue-size", usage = "Maximum number of packets delayed in each direction of a regulated media relay. Set relay_queue_size=0 for dropping all packets that exceed the rate (policing).")
+	public int relayQueueSize=50;
+
 	@Option(name = "--do-interception", usage = "Whether to intercept media traffic.", handler = YesNoHandler.class)
 	public boolean doInterception=false;
 
@@ -289,6 +289,17 @@ public class SipMangler {
 		if (!msg.hasBody()) {
 			return msg;
 		}
+		return mangleBody(msg,new SdpRewriter(msg.getBody()),masq_addr,mediaTypes,masq_port);
+	}
+
+	/** Mangles the body, that has already been scanned by the given SdpRewriter.
+	  * The body is patched in place of the connection addresses and media ports; the full
+	  * SdpMessage is only used if the body could not be scanned. */
+	public static SipMessage mangleBody(SipMessage msg, SdpRewriter rewriter, String masq_addr, String[] mediaTypes, int[] masq_port) {
+		if (rewriter.isValid()) {
+			msg.setBody(msg.getContentTypeHeader().getContentType(),rewriter.rewrite(masq_addr,mediaTypes,masq_port));
+			return msg;
+		}
 	
 		SdpMessage sdp=msg.getSdpBody();
 		ConnectionField newConn = mapConnection(sdp.getConnection(), masq_addr);
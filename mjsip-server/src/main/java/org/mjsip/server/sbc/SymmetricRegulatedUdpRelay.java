@@ -23,56 +23,99 @@ package org.mjsip.server.sbc;
 
 
 
+import java.io.IOException;
+
+import org.mjsip.rtp.RtpBufferPool;
 import org.mjsip.time.Scheduler;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.SocketAddress;
+import org.zoolu.net.UdpPacket;
+import org.zoolu.net.UdpProvider;
 import org.zoolu.net.UdpSocket;
 
 
 
 /**
   * SymmetricRegulatedUdpRelay implements a shaped symmetric bidirectional UDP relay system.
+  * <p>
+  * The packets relayed in each direction form a {@link TrafficShaper.Flow} with its own
+  * token bucket. All relays may share the same {@link TrafficShaper}.
   */
 public class SymmetricRegulatedUdpRelay extends SymmetricUdpRelay {
 	
 	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(SymmetricRegulatedUdpRelay.class);
 
-	/** Minimum inter-packet departure time */
-	long inter_time=0;
+	/** Flow of packets sent to the left peer. */
+	TrafficShaper.Flow left_flow=null;
+
+	/** Flow of packets sent to the right peer. */
+	TrafficShaper.Flow right_flow=null;
+
+	/** Costructs a new SymmetricRegulatedUdpRelay with a minimum inter-packet departure time.
+	  * @param shaper the traffic shaper
+	  * @param inter_time minimum inter-packet departure time (in milliseconds) */
+	public SymmetricRegulatedUdpRelay(Scheduler scheduler, int left_port, SocketAddress left_soaddr, int right_port,
+			SocketAddress right_soaddr, long relay_time, TrafficShaper shaper, long inter_time, SymmetricUdpRelayListener listener) {
+		this(scheduler, left_port, left_soaddr, right_port, right_soaddr, relay_time, shaper, 0, 1, inter_time, 0, listener);
+	}
 
-	/** Costructs a new SymmetricRegulatedUdpRelay. 
-	 * @param scheduler */
+	/** Costructs a new SymmetricRegulatedUdpRelay.
+	  * @param shaper the traffic shaper
+	  * @param rate maximum rate of each direction (in bytes per second), 0 for using a minimum inter-packet time
+	  * @param burst maximum burst of each direction (in bytes)
+	  * @param inter_time minimum inter-packet departure time (in milliseconds), if no rate is given
+	  * @param queue_size maximum number of delayed packets of each direction; packets exceeding the rate are dropped, if 0 */
 	public SymmetricRegulatedUdpRelay(Scheduler scheduler, int left_port, SocketAddress left_soaddr, int right_port,
-			SocketAddress right_soaddr, long relay_time, long inter_time, SymmetricUdpRelayListener listener) {
+			SocketAddress right_soaddr, long relay_time, TrafficShaper shaper, long rate, long burst, long inter_time,
+			int queue_size, SymmetricUdpRelayListener listener) {
 		super(scheduler);
-		init(left_port, left_soaddr, right_port, right_soaddr, relay_time, inter_time, listener);
+		init(left_port, left_soaddr, right_port, right_soaddr, relay_time, shaper, rate, burst, inter_time, queue_size, listener);
+	}
+
+
+	/** Creates the token bucket of one direction. */
+	private static TokenBucket createBucket(long rate, long burst, long inter_time) {
+		return rate>0? TokenBucket.perSecond(rate,burst) : TokenBucket.perInterval(inter_time);
 	}
 
 
-	/** Initializes the SymmetricUdpRelay. */
+	/** Initializes the SymmetricUdpRelay.
+	  * The flows are set up on the bound sockets before the UDP interfaces start receiving, so that
+	  * no packet is relayed unregulated. */
 	private void init(int left_port, SocketAddress left_soaddr, int right_port, SocketAddress right_soaddr,
-			long relay_time, long inter_time, SymmetricUdpRelayListener listener) {
+			long relay_time, TrafficShaper shaper, long rate, long burst, long inter_time, int queue_size,
+			SymmetricUdpRelayListener listener) {
 		//this.left_port=left_port;
 		this.left_soaddr=left_soaddr;
 		//this.right_port=right_port;
 		this.right_soaddr=right_soaddr;
 		this.relay_time=relay_time;
 		this.listener=listener;
-		this.inter_time=inter_time;
 
+		UdpSocket left_socket=null;
+		UdpSocket right_socket=null;
 		try {
-			//left_udp=new UdpProvider(new OutputRegulatedUdpSocket(left_port,inter_time),0,this);
-			left_udp=new InputRegulatedUdpProvider(new UdpSocket(left_port),0,inter_time,this);
-			LOG.info("udp interfce: "+left_udp.toString()+" started");    
-			LOG.info("udp interfce regulated with "+inter_time+" millisecs of minimum inter-packet departure time");    
-	
-			//right_udp=new UdpProvider(new OutputRegulatedUdpSocket(right_port,inter_time),0,this);
-			right_udp=new InputRegulatedUdpProvider(new UdpSocket(right_port),0,inter_time,this);
-			LOG.info("udp interfce: "+right_udp.toString()+" started");
-			LOG.info("udp interfce regulated with "+inter_time+" millisecs of minimum inter-packet departure time");    
+			left_socket=new UdpSocket(left_port);
+			right_socket=new UdpSocket(right_port);
 		}   
 		catch (Exception e) {
 			LOG.info("Exception.", e);
+			if (left_socket!=null) left_socket.close();
+			left_socket=null;
+		}
+
+		if (left_socket!=null && right_socket!=null) {
+			boolean count_bytes=rate>0;
+			left_flow=shaper.createFlow(left_socket,createBucket(rate,burst,inter_time),count_bytes,queue_size);
+			right_flow=shaper.createFlow(right_socket,createBucket(rate,burst,inter_time),count_bytes,queue_size);
+			if (count_bytes) LOG.info("udp relay regulated with "+rate+" bytes/s (burst "+burst+" bytes)");
+			else LOG.info("udp relay regulated with "+inter_time+" millisecs of minimum inter-packet departure time");
+
+			left_udp=new UdpProvider(left_socket,0,this,RtpBufferPool.getInstance());
+			LOG.info("udp interfce: "+left_udp.toString()+" started");    
+	
+			right_udp=new UdpProvider(right_socket,0,this,RtpBufferPool.getInstance());
+			LOG.info("udp interfce: "+right_udp.toString()+" started");
 		}
 	
 		if (relay_time>0) {
@@ -83,4 +126,34 @@ public class SymmetricRegulatedUdpRelay extends SymmetricUdpRelay {
 		last_left_change=last_right_change=System.currentTimeMillis();
 	}
 
+
+	/** Gets the flow of packets sent to the left peer, or <i>null</i>. */
+	public TrafficShaper.Flow getLeftFlow() {
+		return left_flow;
+	}
+
+
+	/** Gets the flow of packets sent to the right peer, or <i>null</i>. */
+	public TrafficShaper.Flow getRightFlow() {
+		return right_flow;
+	}
+
+
+	/** Sends a received packet through the flow of the given UDP interface. */
+	@Override
+	protected void relay(UdpProvider udp, UdpPacket packet) throws IOException {
+		TrafficShaper.Flow flow=(udp==left_udp)? left_flow : (udp==right_udp)? right_flow : null;
+		if (flow!=null) flow.send(packet);
+		else super.relay(udp,packet);
+	}
+
+
+	/** Stops the SymmetricUdpRelay and drops the delayed packets. */
+	@Override
+	public void halt() {
+		super.halt();
+		if (left_flow!=null) left_flow.clear();
+		if (right_flow!=null) right_flow.clear();
+	}
+
 }
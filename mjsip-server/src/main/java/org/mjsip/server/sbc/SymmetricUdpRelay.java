@@ -25,6 +25,7 @@ package org.mjsip.server.sbc;
 
 import java.util.concurrent.ScheduledFuture;
 
+import org.mjsip.rtp.RtpBufferPool;
 import org.mjsip.time.Scheduler;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.SocketAddress;
@@ -103,10 +104,10 @@ public class SymmetricUdpRelay implements UdpProviderListener {
 		this.listener=listener;
 
 		try {
-			left_udp=new UdpProvider(new UdpSocket(left_port),0,this);
+			left_udp=new UdpProvider(new UdpSocket(left_port),0,this,RtpBufferPool.getInstance());
 			LOG.info("udp interfce: "+left_udp.toString()+" started");    
 	
-			right_udp=new UdpProvider(new UdpSocket(right_port),0,this);
+			right_udp=new UdpProvider(new UdpSocket(right_port),0,this,RtpBufferPool.getInstance());
 			LOG.info("udp interfce: "+right_udp.toString()+" started");
 		}   
 		catch (Exception e) {
@@ -145,6 +146,10 @@ public class SymmetricUdpRelay implements UdpProviderListener {
 
 	/** Stops the SymmetricUdpRelay */
 	public void halt() {
+		if (timer!=null) {
+			timer.cancel(false);
+			timer=null;
+		}
 		if (left_udp!=null) left_udp.halt();
 		if (right_udp!=null) right_udp.halt();
 	}
@@ -226,13 +231,19 @@ public class SymmetricUdpRelay implements UdpProviderListener {
 			packet.setIpAddress(dest_soaddr.getAddress());
 			packet.setPort(dest_soaddr.getPort());
 			try {
-				udp.send(packet);
+				relay(udp,packet);
 			}
 			catch (java.io.IOException e) { }
 		}
 	}
 
 
+	/** Sends a received packet through the given UDP interface. */
+	protected void relay(UdpProvider udp, UdpPacket packet) throws java.io.IOException {
+		udp.send(packet);
+	}
+
+
 	/** When UdpProvider stops receiving UDP datagrams. */
 	@Override
 	public void onServiceTerminated(UdpProvider udp_service, Exception error) {
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/** TokenBucket limits the rate of a flow to a given rate, allowing bursts up to a given size.
+  * <p>
+  * The unit of the rate is up to the user, e.g. bytes or packets.
+  * <p>
+  * The bucket is implemented as virtual scheduling algorithm (GCRA): instead of a token
+  * counter, it keeps the theoretical arrival time of the next unit, that is advanced by the
+  * emission interval of each accepted unit. The state is a single atomic value, so that
+  * {@link #consume(long, long)} is lock-free and can be called from any thread.
+  */
+public class TokenBucket {
+
+	/** Time (in nanoseconds) to earn the token for one unit. */
+	private final long unit_time;
+
+	/** Maximum burst (in nanoseconds), i.e. the time to earn a full bucket. */
+	private final long burst_time;
+
+	/** Theoretical arrival time (in nanoseconds) */
+	private final AtomicLong tat;
+
+
+	/** Creates a new TokenBucket.
+	  * @param unit_time the time (in nanoseconds) to earn the token for one unit
+	  * @param burst the size of the bucket, i.e. the number of units that can be accepted at once */
+	public TokenBucket(long unit_time, long burst) {
+		this.unit_time=Math.max(1,unit_time);
+		this.burst_time=this.unit_time*Math.max(1,burst);
+		this.tat=new AtomicLong(System.nanoTime());
+	}
+
+
+	/** Creates a TokenBucket that accepts the given number of units per second.
+	  * @param rate the rate (in units per second)
+	  * @param burst the size of the bucket (in units) */
+	public static TokenBucket perSecond(long rate, long burst) {
+		return new TokenBucket(TimeUnit.SECONDS.toNanos(1)/Math.max(1,rate),burst);
+	}
+
+
+	/** Creates a TokenBucket that accepts one unit every given time.
+	  * @param inter_time the minimum time between two units (in milliseconds) */
+	public static TokenBucket perInterval(long inter_time) {
+		return new TokenBucket(TimeUnit.MILLISECONDS.toNanos(inter_time),1);
+	}
+
+
+	/** Gets the time (in nanoseconds) to earn the token for one unit. */
+	public long getUnitTime() {
+		return unit_time;
+	}
+
+
+	/** Gets the size of the bucket (in units). */
+	public long getBurst() {
+		return burst_time/unit_time;
+	}
+
+
+	/** Takes the tokens for the given number of units, if available.
+	  * @param amount the number of units
+	  * @param now the current time, as given by {@link System#nanoTime()}
+	  * @return 0 if the tokens have been taken; otherwise, the time (in nanoseconds) to wait
+	  * until enough tokens are available */
+	public long consume(long amount, long now) {
+		long emission=amount*unit_time;
+		while (true) {
+			long current=tat.get();
+			long next=Math.max(current-now,0)+emission;
+			if (next>burst_time) {
+				// a unit larger than the bucket is accepted when the bucket is full
+				if (current-now>0 || emission<=burst_time) return next-Math.max(burst_time,emission);
+			}
+			if (tat.compareAndSet(current,now+next)) return 0;
+		}
+	}
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mjsip.rtp.RtpBufferPool;
+import org.mjsip.time.Scheduler;
+import org.slf4j.LoggerFactory;
+import org.zoolu.net.BufferPool;
+import org.zoolu.net.UdpPacket;
+import org.zoolu.net.UdpSocket;
+
+
+
+/** TrafficShaper polices and shapes any number of UDP flows.
+  * <p>
+  * Each {@link Flow} has its own {@link TokenBucket}. A packet that conforms to the bucket
+  * of its flow is sent immediately, in the thread that passes it to
+  * {@link Flow#send(UdpPacket)}. Other packets are copied into the (lock-free) queue of the
+  * flow, or dropped, if the queue is full or the flow is only policed (queue size 0).
+  * <p>
+  * Queued packets are sent by a single driver for all flows. The driver is a timer wheel
+  * advanced by one scheduler task per tick, that is only scheduled while packets are queued.
+  * A flow with queued packets is placed in the slot of the tick at which its next packet
+  * conforms to its bucket.
+  * <p>
+  * The copies of queued packets are leased from a {@link BufferPool}, and returned to it
+  * as soon as they have been sent or dropped.
+  */
+public class TrafficShaper {
+	
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(TrafficShaper.class);
+
+	/** Default tick (in milliseconds). */
+	public static final long DEFAULT_TICK=1;
+
+	/** Default number of slots of the timer wheel. */
+	public static final int DEFAULT_WHEEL_SIZE=512;
+
+	/** The scheduler running the driver. */
+	private final Scheduler scheduler;
+
+	/** Pool of the copies of queued packets. */
+	private final BufferPool buffer_pool;
+
+	/** Tick (in nanoseconds). */
+	private final long tick;
+
+	/** Timer wheel; accessed only by the driver. */
+	private final ArrayDeque<Flow>[] wheel;
+
+	/** Number of flows in the wheel; accessed only by the driver. */
+	private int wheel_count=0;
+
+	/** The next tick to be processed; accessed only by the driver. */
+	private long next_tick;
+
+	/** Time origin of the ticks (in nanoseconds). */
+	private final long origin=System.nanoTime();
+
+	/** Flows that have queued packets and are not yet in the wheel. */
+	private final ConcurrentLinkedQueue<Flow> pending=new ConcurrentLinkedQueue<>();
+
+	/** Whether the driver task is scheduled. */
+	private final AtomicBoolean running=new AtomicBoolean(false);
+
+
+	/** Creates a new TrafficShaper with default tick and wheel size. */
+	public TrafficShaper(Scheduler scheduler) {
+		this(scheduler,DEFAULT_TICK,DEFAULT_WHEEL_SIZE);
+	}
+
+
+	/** Creates a new TrafficShaper.
+	  * @param scheduler the scheduler running the driver
+	  * @param tick the resolution of the driver (in milliseconds)
+	  * @param wheel_size the number of slots of the timer wheel; delays longer than
+	  * <i>tick*wheel_size</i> are processed in several rounds */
+	public TrafficShaper(Scheduler scheduler, long tick, int wheel_size) {
+		this(scheduler,tick,wheel_size,RtpBufferPool.getInstance());
+	}
+
+
+	/** Creates a new TrafficShaper.
+	  * @param scheduler the scheduler running the driver
+	  * @param tick the resolution of the driver (in milliseconds)
+	  * @param wheel_size the number of slots of the timer wheel
+	  * @param buffer_pool the pool of the copies of queued packets */
+	@SuppressWarnings("unchecked")
+	public TrafficShaper(Scheduler scheduler, long tick, int wheel_size, BufferPool buffer_pool) {
+		this.scheduler=scheduler;
+		this.buffer_pool=buffer_pool;
+		this.tick=TimeUnit.MILLISECONDS.toNanos(Math.max(1,tick));
+		wheel=new ArrayDeque[wheel_size];
+		for (int i=0; i<wheel_size; i++) wheel[i]=new ArrayDeque<>();
+		next_tick=currentTick(origin);
+	}
+
+
+	/** Creates a new flow.
+	  * @param socket the socket for sending the packets of the flow
+	  * @param bucket the token bucket of the flow
+	  * @param count_bytes whether the bucket counts bytes (or packets)
+	  * @param queue_size the maximum number of queued packets, 0 for policing only */
+	public Flow createFlow(UdpSocket socket, TokenBucket bucket, boolean count_bytes, int queue_size) {
+		return new Flow(socket,bucket,count_bytes,queue_size);
+	}
+
+
+	/** Gets the current tick. */
+	private long currentTick(long now) {
+		return (now-origin)/tick;
+	}
+
+
+	/** Passes a flow with newly queued packets to the driver. */
+	private void activate(Flow flow) {
+		pending.offer(flow);
+		if (running.compareAndSet(false,true)) scheduleDriver();
+	}
+
+
+	/** Schedules the next run of the driver. */
+	private void scheduleDriver() {
+		scheduler.schedule(TimeUnit.NANOSECONDS.toMillis(tick),this::onTick);
+	}
+
+
+	/** Advances the timer wheel up to the current time. */
+	private void onTick() {
+		try {
+			long now=System.nanoTime();
+			long current=currentTick(now);
+			if (wheel_count==0) next_tick=current;
+
+			Flow flow;
+			while ((flow=pending.poll())!=null) process(flow,now);
+
+			for (; next_tick<=current; next_tick++) {
+				ArrayDeque<Flow> slot=wheel[(int)(next_tick%wheel.length)];
+				for (int n=slot.size(); n>0; n--) {
+					wheel_count--;
+					process(slot.poll(),now);
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			LOG.warn("Traffic shaper failure.",e);
+		}
+
+		if (wheel_count>0 || !pending.isEmpty()) scheduleDriver();
+		else {
+			running.set(false);
+			// a flow may have been activated concurrently
+			if (!pending.isEmpty() && running.compareAndSet(false,true)) scheduleDriver();
+		}
+	}
+
+
+	/** Sends the conforming packets of a flow, and places it in the wheel if packets remain. */
+	private void process(Flow flow, long now) {
+		long delay=flow.drain(now);
+		if (delay<0) return;
+		long ticks=Math.max(1,(delay+tick-1)/tick);
+		if (ticks>=wheel.length) ticks=wheel.length-1;
+		wheel[(int)((next_tick+ticks)%wheel.length)].add(flow);
+		wheel_count++;
+	}
+
+
+	/** Flow of packets sent through the same socket, and regulated by the same token bucket. */
+	public final class Flow {
+
+		/** Socket for sending the packets. */
+		private final UdpSocket socket;
+
+		/** Token bucket. */
+		private final TokenBucket bucket;
+
+		/** Whether the bucket counts bytes (or packets). */
+		private final boolean count_bytes;
+
+		/** Maximum number of queued packets. */
+		private final int queue_size;
+
+		/** Queued packets. */
+		private final ConcurrentLinkedQueue<UdpPacket> queue=new ConcurrentLinkedQueue<>();
+
+		/** Number of queued packets, including a packet being sent by the driver. */
+		private final AtomicInteger queued=new AtomicInteger();
+
+		/** Whether the flow is pending or in the wheel. */
+		private final AtomicBoolean active=new AtomicBoolean(false);
+
+		/** Number of sent packets. */
+		private final AtomicLong sent=new AtomicLong();
+
+		/** Number of delayed packets. */
+		private final AtomicLong delayed=new AtomicLong();
+
+		/** Number of dropped packets. */
+		private final AtomicLong dropped=new AtomicLong();
+
+		/** Creates a new Flow. */
+		private Flow(UdpSocket socket, TokenBucket bucket, boolean count_bytes, int queue_size) {
+			this.socket=socket;
+			this.bucket=bucket;
+			this.count_bytes=count_bytes;
+			this.queue_size=queue_size;
+		}
+
+		/** Sends a packet, now or later, or drops it. This method never blocks.
+		  * The packet may be reused by the caller after this method returns.
+		  * @return whether the packet has been sent or queued */
+		public boolean send(UdpPacket packet) throws IOException {
+			long now=System.nanoTime();
+			if (queued.get()==0 && bucket.consume(cost(packet),now)==0) {
+				socket.send(packet);
+				sent.incrementAndGet();
+				return true;
+			}
+			if (queued.incrementAndGet()>queue_size) {
+				queued.decrementAndGet();
+				dropped.incrementAndGet();
+				return false;
+			}
+			int length=packet.getLength();
+			byte[] data=buffer_pool.lease(length);
+			System.arraycopy(packet.getData(),packet.getOffset(),data,0,length);
+			queue.offer(new UdpPacket(data,0,length,packet.getIpAddress(),packet.getPort()));
+			delayed.incrementAndGet();
+			if (active.compareAndSet(false,true)) activate(this);
+			return true;
+		}
+
+		/** Sends the queued packets that conform to the bucket. Called by the driver only.
+		  * @return the time (in nanoseconds) until the next packet conforms, or -1 if no
+		  * packets are queued (and the flow has been deactivated) */
+		private long drain(long now) {
+			while (true) {
+				UdpPacket packet=queue.peek();
+				if (packet==null) {
+					active.set(false);
+					// a packet may have been queued concurrently
+					if (queue.isEmpty() || !active.compareAndSet(false,true)) return -1;
+					continue;
+				}
+				long delay=bucket.consume(cost(packet),now);
+				if (delay>0) return delay;
+				// the packet may have been dropped concurrently by clear()
+				if (!queue.remove(packet)) continue;
+				try {
+					socket.send(packet);
+					sent.incrementAndGet();
+				}
+				catch (IOException e) {
+					dropped.incrementAndGet();
+				}
+				buffer_pool.release(packet.getData());
+				queued.decrementAndGet();
+			}
+		}
+
+		/** Gets the number of tokens needed for the given packet. */
+		private long cost(UdpPacket packet) {
+			return count_bytes? packet.getLength() : 1;
+		}
+
+		/** Gets the token bucket. */
+		public TokenBucket getBucket() {
+			return bucket;
+		}
+
+		/** Gets the number of queued packets. */
+		public int getQueuedCount() {
+			return queued.get();
+		}
+
+		/** Gets the number of sent packets. */
+		public long getSentCount() {
+			return sent.get();
+		}
+
+		/** Gets the number of packets that have been queued before being sent. */
+		public long getDelayedCount() {
+			return delayed.get();
+		}
+
+		/** Gets the number of dropped packets. */
+		public long getDroppedCount() {
+			return dropped.get();
+		}
+
+		/** Drops all queued packets. */
+		public void clear() {
+			UdpPacket packet;
+			while ((packet=queue.poll())!=null) {
+				buffer_pool.release(packet.getData());
+				queued.decrementAndGet();
+				dropped.incrementAndGet();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mjsip.sip.message.SipMessage;
+
+/**
+ * Test case for {@link CallLoggerImpl} and {@link CdrWriter}.
+ */
+@SuppressWarnings("javadoc")
+class TestCallLoggerImpl {
+
+	@TempDir
+	File dir;
+
+	@Test
+	void testCallRecords() throws IOException {
+		File file = new File(dir, "cdr.csv");
+		CallLoggerImpl logger = new CallLoggerImpl(new CdrWriter(file, CdrWriter.Format.CSV), 2);
+
+		logger.update(request("INVITE", "call-1", 1));
+		logger.update(response(180, "Ringing", "INVITE", "call-1", 1));
+		logger.update(response(200, "OK", "INVITE", "call-1", 1));
+		logger.update(request("INVITE", "call-2", 1));
+		logger.update(response(486, "Busy Here", "INVITE", "call-2", 1));
+		logger.update(request("BYE", "call-1", 2));
+		Assertions.assertEquals(0, logger.getActiveCount());
+
+		// Exceeds the limit of two calls, evicts call-3.
+		logger.update(request("INVITE", "call-3", 1));
+		logger.update(request("INVITE", "call-4", 1));
+		logger.update(request("INVITE", "call-5", 1));
+		Assertions.assertEquals(2, logger.getActiveCount());
+
+		logger.close();
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		Assertions.assertEquals(CdrWriter.CSV_HEADER, lines.get(0));
+		Assertions.assertEquals(6, lines.size());
+		Assertions.assertTrue(lines.get(1).contains(",call-2,REFUSED,sip:alice@example.com,sip:bob@example.com,486,Busy Here,-1,-1"), lines.get(1));
+		Assertions.assertTrue(lines.get(2).contains(",call-1,COMPLETED,"), lines.get(2));
+		Assertions.assertTrue(lines.get(3).contains(",call-3,EVICTED,"), lines.get(3));
+		Assertions.assertEquals(5, logger.getWriter().getWrittenCount());
+		Assertions.assertEquals(0, logger.getWriter().getDroppedCount());
+	}
+
+	@Test
+	void testFinishedCallsNotEvicted() throws IOException {
+		File file = new File(dir, "long.csv");
+		CallLoggerImpl logger = new CallLoggerImpl(new CdrWriter(file, CdrWriter.Format.CSV), 2);
+
+		logger.update(request("INVITE", "long", 1));
+		logger.update(response(200, "OK", "INVITE", "long", 1));
+		for (int n = 0; n < 3; n++) {
+			String callId = "short-" + n;
+			logger.update(request("INVITE", callId, 1));
+			logger.update(response(200, "OK", "INVITE", callId, 1));
+			logger.update(request("BYE", callId, 2));
+		}
+		Assertions.assertEquals(1, logger.getActiveCount());
+
+		logger.update(request("BYE", "long", 2));
+		Assertions.assertEquals(0, logger.getActiveCount());
+		logger.close();
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		Assertions.assertEquals(5, lines.size());
+		Assertions.assertTrue(lines.get(4).contains(",long,COMPLETED,"), lines.get(4));
+		Assertions.assertFalse(lines.stream().anyMatch(line -> line.contains(",EVICTED,")), lines.toString());
+	}
+
+	@Test
+	void testRotation() throws IOException {
+		File file = new File(dir, "cdr.json");
+		CdrWriter writer = new CdrWriter(file, CdrWriter.Format.JSON, CdrWriter.Fsync.BATCH, 100, 1, 1, 300, 2);
+		writer.start();
+		for (int n = 0; n < 10; n++) {
+			CallDetailRecord record = new CallDetailRecord("call-" + n, "sip:a@x", "sip:\"b\"@x", 1000);
+			record.onFinalResponse(200, "OK", 1100);
+			record.onBye(2100);
+			Assertions.assertTrue(writer.submit(record));
+		}
+		writer.close();
+
+		Assertions.assertEquals(10, writer.getWrittenCount());
+		Assertions.assertTrue(new File(dir, "cdr.json.1").exists());
+		Assertions.assertTrue(new File(dir, "cdr.json.2").exists());
+		Assertions.assertFalse(new File(dir, "cdr.json.3").exists());
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		Assertions.assertTrue(lines.get(lines.size() - 1).startsWith("{\"callId\":\"call-9\",\"state\":\"COMPLETED\",\"caller\":\"sip:a@x\",\"callee\":\"sip:\\\"b\\\"@x\""), lines.get(lines.size() - 1));
+		Assertions.assertFalse(writer.submit(new CallDetailRecord("late", "a", "b", 0)));
+	}
+
+	private static SipMessage request(String method, String callId, int cseq) {
+		return new SipMessage(method + " sip:bob@example.com SIP/2.0\r\n"
+				+ "Via: SIP/2.0/UDP 127.0.0.1:5070;branch=z9hG4bK" + callId + cseq + "\r\n"
+				+ "From: <sip:alice@example.com>;tag=1\r\n"
+				+ "To: <sip:bob@example.com>\r\n"
+				+ "Call-ID: " + callId + "\r\n"
+				+ "CSeq: " + cseq + " " + method + "\r\n"
+				+ "Content-Length: 0\r\n\r\n");
+	}
+
+	private static SipMessage response(int code, String reason, String method, String callId, int cseq) {
+		return new SipMessage("SIP/2.0 " + code + " " + reason + "\r\n"
+				+ "Via: SIP/2.0/UDP 127.0.0.1:5070;branch=z9hG4bK" + callId + cseq + "\r\n"
+				+ "From: <sip:alice@example.com>;tag=1\r\n"
+				+ "To: <sip:bob@example.com>;tag=2\r\n"
+				+ "Call-ID: " + callId + "\r\n"
+				+ "CSeq: " + cseq + " " + method + "\r\n"
+				+ "Content-Length: 0\r\n\r\n");
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.address.SipURI;
+import org.zoolu.net.SocketAddress;
+
+/**
+ * Test case for {@link ProxyingTable}
+ */
+@SuppressWarnings("javadoc")
+class TestProxyingTable {
+
+	@Test
+	void testLongestPrefix() {
+		ProxyingTable table = new ProxyingTable(new ProxyingRule[] {
+			new PrefixProxyingRule("01", new SocketAddress("127.0.0.1:7001")),
+			new PrefixProxyingRule("0123", new SocketAddress("127.0.0.1:7002")),
+			new PrefixProxyingRule("0123", new SocketAddress("127.0.0.1:7009")),
+			new PrefixProxyingRule("+39", new SocketAddress("127.0.0.1:7003")),
+			new PrefixProxyingRule(PrefixProxyingRule.DEFAULT_PREFIX, new SocketAddress("127.0.0.1:7000")),
+		});
+
+		Assertions.assertEquals(7002, table.getNexthop(SipURI.parseSipURI("sip:01234567@example.com")).getPort());
+		Assertions.assertEquals(7001, table.getNexthop(SipURI.parseSipURI("sip:0199@example.com")).getPort());
+		Assertions.assertEquals(7003, table.getNexthop(SipURI.parseSipURI("sip:+3905211234@example.com")).getPort());
+		Assertions.assertEquals(7000, table.getNexthop(SipURI.parseSipURI("sip:0299@example.com")).getPort());
+		Assertions.assertEquals("01234567", table.getNexthop(SipURI.parseSipURI("sip:01234567@example.com")).getUserName());
+	}
+
+	@Test
+	void testNoDefault() {
+		ProxyingTable table = new ProxyingTable(new ProxyingRule[] {
+			new PrefixProxyingRule("0123", new SocketAddress("127.0.0.1:7002")),
+		});
+
+		Assertions.assertNull(table.getNexthop(SipURI.parseSipURI("sip:012@example.com")));
+		Assertions.assertNull(table.getNexthop(SipURI.parseSipURI("sip:example.com")));
+	}
+
+	@Test
+	void testDomain() {
+		ProxyingTable table = new ProxyingTable(new ProxyingRule[] {
+			new DomainProxyingRule("domain1.foo", new SocketAddress("127.0.0.1:5070")),
+			new DomainProxyingRule("domain2.foo", new SocketAddress("127.0.0.1:5080")),
+		});
+
+		Assertions.assertEquals(5070, table.getNexthop(SipURI.parseSipURI("sip:alice@Domain1.FOO")).getPort());
+		Assertions.assertEquals(5080, table.getNexthop(SipURI.parseSipURI("sip:bob@domain2.foo")).getPort());
+		Assertions.assertNull(table.getNexthop(SipURI.parseSipURI("sip:bob@domain3.foo")));
+	}
+
+}
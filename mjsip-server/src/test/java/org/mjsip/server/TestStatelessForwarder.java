@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.provider.SipConfig;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.time.Scheduler;
+
+/**
+ * Test for {@link StatelessForwarder} comparing its results with the full {@link Proxy} processing.
+ */
+@SuppressWarnings("javadoc")
+class TestStatelessForwarder {
+
+	private static final String LOCALHOST = "127.0.0.1";
+
+	@TempDir
+	File dir;
+
+	private ScheduledExecutorService _executor;
+
+	private DatagramSocket _caller;
+
+	private DatagramSocket _callee;
+
+	private int _proxyPort;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		_executor = Executors.newScheduledThreadPool(2);
+		InetAddress localhost = InetAddress.getByName(LOCALHOST);
+		_caller = new DatagramSocket(0, localhost);
+		_caller.setSoTimeout(2000);
+		_callee = new DatagramSocket(0, localhost);
+		_callee.setSoTimeout(2000);
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			_proxyPort = socket.getLocalPort();
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		_caller.close();
+		_callee.close();
+		_executor.shutdownNow();
+	}
+
+	@Test
+	void testSameAsFullProcessing() throws IOException, InterruptedException {
+		String invite = invite(70, "");
+
+		SipMessage[] slow = forward(false, invite);
+		awaitPortFree();
+		SipMessage[] fast = forward(true, invite);
+
+		for (int n = 0; n < 2; n++) {
+			Assertions.assertEquals(slow[n].getFirstLine(), fast[n].getFirstLine());
+			Assertions.assertEquals(slow[n].getVias().toString(), fast[n].getVias().toString());
+			Assertions.assertEquals(slow[n].hasRouteHeader(), fast[n].hasRouteHeader());
+			Assertions.assertEquals(slow[n].hasRecordRouteHeader(), fast[n].hasRecordRouteHeader());
+			Assertions.assertEquals(slow[n].getCallIdHeader().getCallId(), fast[n].getCallIdHeader().getCallId());
+			Assertions.assertEquals(slow[n].getStringBody(), fast[n].getStringBody());
+		}
+
+		SipMessage request = fast[0];
+		Assertions.assertEquals(69, request.getMaxForwardsHeader().getNumber());
+		Assertions.assertEquals(slow[0].getMaxForwardsHeader().getNumber(), request.getMaxForwardsHeader().getNumber());
+		Assertions.assertEquals(2, request.getVias().size());
+		Assertions.assertFalse(request.hasRouteHeader(), "Route to the proxy removed.");
+		Assertions.assertEquals(slow[0].getRecordRoutes().toString(), request.getRecordRoutes().toString());
+		Assertions.assertEquals(1, fast[1].getVias().size());
+	}
+
+	@Test
+	void testFallback() throws IOException, InterruptedException {
+		ServerProfile profile = profile(true);
+		SipProvider provider = new SipProvider(config(_proxyPort), Scheduler.of(_executor));
+		Proxy proxy = new Proxy(provider, profile);
+		try {
+			// Max-Forwards exhausted, answered by the full processing.
+			send(_caller, invite(0, ""), _proxyPort);
+			SipMessage resp = receive(_caller);
+			Assertions.assertEquals(483, resp.getStatusLine().getCode());
+			Assertions.assertEquals(0, proxy.getFastForwarder().getForwardedCount());
+			Assertions.assertEquals(1, proxy.getFastForwarder().getFallbackCount());
+
+			// Strict route, forwarded by the full processing.
+			send(_caller, invite(70, "Route: <sip:10.0.0.99:5060>\r\n"), _proxyPort);
+			for (int n = 0; n < 40 && proxy.getFastForwarder().getFallbackCount() < 2; n++) {
+				Thread.sleep(50);
+			}
+			Assertions.assertEquals(2, proxy.getFastForwarder().getFallbackCount());
+			Assertions.assertEquals(0, proxy.getFastForwarder().getForwardedCount());
+		} finally {
+			proxy.halt();
+			provider.halt();
+		}
+	}
+
+	/**
+	 * Forwards the given request and the response of the callee.
+	 *
+	 * @return the request received by the callee and the response received by the caller.
+	 */
+	private SipMessage[] forward(boolean fast, String invite) throws IOException, InterruptedException {
+		SipProvider provider = new SipProvider(config(_proxyPort), Scheduler.of(_executor));
+		Proxy proxy = new Proxy(provider, profile(fast));
+		try {
+			Assertions.assertEquals(fast, proxy.getFastForwarder() != null);
+
+			send(_caller, invite, _proxyPort);
+			SipMessage request = receive(_callee);
+
+			// The response echoes the request header, apart from the start line.
+			String header = request.toString();
+			header = header.substring(header.indexOf("\r\n") + 2);
+			send(_callee, "SIP/2.0 200 OK\r\n" + header, _proxyPort);
+			SipMessage response = receive(_caller);
+
+			if (fast) {
+				// Counted after sending.
+				for (int n = 0; n < 50 && proxy.getFastForwarder().getForwardedCount() < 2; n++) {
+					Thread.sleep(10);
+				}
+				Assertions.assertEquals(2, proxy.getFastForwarder().getForwardedCount());
+				Assertions.assertEquals(0, proxy.getFastForwarder().getFallbackCount());
+			}
+			return new SipMessage[] { request, response };
+		} finally {
+			proxy.halt();
+			provider.halt();
+		}
+	}
+
+	/**
+	 * Waits until the halted proxy has released its port, so that the next one gets the same Via.
+	 */
+	private void awaitPortFree() throws InterruptedException {
+		for (int n = 0; n < 50; n++) {
+			try (DatagramSocket socket = new DatagramSocket(_proxyPort, InetAddress.getByName(LOCALHOST))) {
+				return;
+			} catch (IOException ex) {
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	private String invite(int maxForwards, String extra) {
+		String body = "v=0\r\no=alice 1 1 IN IP4 127.0.0.1\r\n";
+		return "INVITE sip:bob@" + LOCALHOST + ":" + _callee.getLocalPort() + " SIP/2.0\r\n"
+				+ "Via: SIP/2.0/UDP " + LOCALHOST + ":" + _caller.getLocalPort() + ";branch=z9hG4bK776asdhds\r\n"
+				+ "Max-Forwards: " + maxForwards + "\r\n"
+				+ "Route: <sip:" + LOCALHOST + ":" + _proxyPort + ";lr>\r\n"
+				+ extra
+				+ "To: Bob <sip:bob@" + LOCALHOST + ":" + _callee.getLocalPort() + ">\r\n"
+				+ "From: Alice <sip:alice@" + LOCALHOST + ">;tag=1928301774\r\n"
+				+ "Call-ID: a84b4c76e66710@" + LOCALHOST + "\r\n"
+				+ "CSeq: 314159 INVITE\r\n"
+				+ "Contact: <sip:alice@" + LOCALHOST + ":" + _caller.getLocalPort() + ">\r\n"
+				+ "Content-Type: application/sdp\r\n"
+				+ "Content-Length: " + body.length() + "\r\n"
+				+ "\r\n"
+				+ body;
+	}
+
+	private ServerProfile profile(boolean fast) {
+		ServerProfile profile = new ServerProfile();
+		profile.domainNames = new String[] { "example.org" };
+		profile.isOpenProxy = true;
+		profile.doAuthentication = false;
+		profile.onRoute = true;
+		profile.fastForwarding = fast;
+		profile.locationDb = new File(dir, "users.db").getPath();
+		profile.normalize();
+		return profile;
+	}
+
+	private static SipConfig config(int port) {
+		SipConfig config = new SipConfig();
+		config.setViaAddrIPv4(LOCALHOST);
+		config.setHostPort(port);
+		config.setTransportProtocols(new String[] { SipProvider.PROTO_UDP });
+		config.normalize();
+		return config;
+	}
+
+	private static void send(DatagramSocket socket, String msg, int port) throws IOException {
+		byte[] data = msg.getBytes(StandardCharsets.UTF_8);
+		socket.send(new DatagramPacket(data, data.length, InetAddress.getByName(LOCALHOST), port));
+	}
+
+	private static SipMessage receive(DatagramSocket socket) throws IOException {
+		DatagramPacket packet = new DatagramPacket(new byte[4096], 4096);
+		socket.receive(packet);
+		return new SipMessage(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+	}
+
+}
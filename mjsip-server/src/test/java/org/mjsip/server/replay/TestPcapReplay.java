@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mjsip.pcap.IpProtocol;
+import org.mjsip.pcap.PcapPacket;
+import org.mjsip.pcap.PcapReader;
+import org.mjsip.pcap.PcapWriter;
+import org.mjsip.server.Registrar;
+import org.mjsip.server.ServerProfile;
+import org.mjsip.sip.provider.SipConfig;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.time.Scheduler;
+
+/**
+ * Test for {@link PcapReplay} replaying registrations against a {@link Registrar}.
+ */
+@SuppressWarnings("javadoc")
+class TestPcapReplay {
+
+	@TempDir
+	File dir;
+
+	@Test
+	void testReplayRegistrar() throws IOException, InterruptedException {
+		InetAddress client = InetAddress.getByName("192.0.2.10");
+		InetAddress server = InetAddress.getByName("192.0.2.1");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PcapWriter writer = new PcapWriter(out, 4096)) {
+			write(writer, 1000000, client, 5070, server, 5060, register("a", 1));
+			write(writer, 1000100, server, 5060, client, 5070, response("a", 1, "200 OK"));
+			write(writer, 1001000, client, 5070, server, 5060, register("b", 1));
+			write(writer, 1001100, server, 5060, client, 5070, response("b", 1, "403 Forbidden"));
+			write(writer, 1002000, client, 5070, server, 5060, register("c", 1));
+			// Traffic of other ports is ignored.
+			write(writer, 1003000, client, 5070, server, 5080, register("d", 1));
+		}
+		List<PcapPacket> packets;
+		try (PcapReader reader = new PcapReader(new ByteArrayInputStream(out.toByteArray()))) {
+			packets = reader.readAll();
+		}
+
+		ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+		SipProvider provider = new SipProvider(config(), Scheduler.of(executor));
+		try {
+			PcapReplay replay = new PcapReplay(provider);
+			Registrar registrar = new Registrar(provider, profile());
+			ReplayReport report;
+			try {
+				report = replay.replay(packets, 0, 100);
+			} finally {
+				registrar.halt();
+			}
+
+			Assertions.assertEquals(3, report.getInjected());
+			Assertions.assertEquals(3, report.getLatencyCount());
+			Assertions.assertTrue(report.getLatencyPercentile(50) > 0);
+			Assertions.assertTrue(report.getLatencyPercentile(50) <= report.getLatencyPercentile(100));
+			Assertions.assertEquals(1, report.getMatched());
+			Assertions.assertEquals(List.of("b@example.org 1 REGISTER: expected [403], got [200]"),
+				report.getMismatched());
+			Assertions.assertEquals(List.of(), report.getMissing());
+			Assertions.assertEquals(List.of("c@example.org 1 REGISTER: [200]"), report.getExtra());
+		} finally {
+			provider.halt();
+			executor.shutdownNow();
+		}
+	}
+
+	private static void write(PcapWriter writer, long time, InetAddress src, int srcPort, InetAddress dst,
+			int dstPort, String message) throws IOException {
+		byte[] data = message.getBytes(StandardCharsets.UTF_8);
+		writer.write(time, IpProtocol.UDP, src, srcPort, dst, dstPort, data, 0, data.length, data.length);
+	}
+
+	private static String register(String callId, int cseq) {
+		return "REGISTER sip:example.org SIP/2.0\r\n"
+				+ "Via: SIP/2.0/UDP 192.0.2.10:5070;branch=z9hG4bK" + callId + cseq + "\r\n"
+				+ headers(callId, cseq, "REGISTER")
+				+ "Contact: <sip:" + callId + "@192.0.2.10:5070>\r\n"
+				+ "Expires: 3600\r\n"
+				+ "Content-Length: 0\r\n"
+				+ "\r\n";
+	}
+
+	private static String response(String callId, int cseq, String status) {
+		return "SIP/2.0 " + status + "\r\n"
+				+ "Via: SIP/2.0/UDP 192.0.2.10:5070;branch=z9hG4bK" + callId + cseq + "\r\n"
+				+ headers(callId, cseq, "REGISTER")
+				+ "Content-Length: 0\r\n"
+				+ "\r\n";
+	}
+
+	private static String headers(String callId, int cseq, String method) {
+		return "Max-Forwards: 70\r\n"
+				+ "To: <sip:" + callId + "@example.org>\r\n"
+				+ "From: <sip:" + callId + "@example.org>;tag=" + callId + "\r\n"
+				+ "Call-ID: " + callId + "@example.org\r\n"
+				+ "CSeq: " + cseq + " " + method + "\r\n";
+	}
+
+	private ServerProfile profile() {
+		ServerProfile profile = new ServerProfile();
+		profile.domainNames = new String[] { "example.org" };
+		profile.doAuthentication = false;
+		profile.locationDb = new File(dir, "users.db").getPath();
+		profile.normalize();
+		return profile;
+	}
+
+	private static SipConfig config() {
+		SipConfig config = new SipConfig();
+		config.setViaAddrIPv4("127.0.0.1");
+		config.setHostPort(5060);
+		config.setTransportProtocols(new String[0]);
+		config.normalize();
+		return config;
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.provider.SipConfig;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.time.Scheduler;
+import org.zoolu.net.SocketAddress;
+
+/**
+ * Test for {@link KeepAliveManager} and {@link AddressResolverKeepAlive}.
+ */
+@SuppressWarnings("javadoc")
+class TestKeepAliveManager {
+
+	private static final String LOCALHOST = "127.0.0.1";
+
+	private ScheduledExecutorService _executor;
+
+	private SipProvider _provider;
+
+	private DatagramSocket _target;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		_executor = Executors.newScheduledThreadPool(1);
+		_target = new DatagramSocket(0, InetAddress.getByName(LOCALHOST));
+		_target.setSoTimeout(100);
+
+		SipConfig config = new SipConfig();
+		config.setViaAddrIPv4(LOCALHOST);
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			config.setHostPort(socket.getLocalPort());
+		}
+		config.setTransportProtocols(new String[] { SipProvider.PROTO_UDP });
+		config.normalize();
+		_provider = new SipProvider(config, Scheduler.of(_executor));
+	}
+
+	@AfterEach
+	void tearDown() {
+		_provider.halt();
+		_target.close();
+		_executor.shutdownNow();
+	}
+
+	@Test
+	void testSpreadAndSuspend() throws IOException, InterruptedException {
+		KeepAliveManager manager = new KeepAliveManager(_provider, 200, 0, false);
+		SocketAddress dest = new SocketAddress(LOCALHOST, _target.getLocalPort());
+		for (int n = 0; n < 20; n++) {
+			manager.update("ua" + n, dest, 0);
+		}
+		// Recent traffic from these targets refreshed their bindings.
+		for (int n = 0; n < 10; n++) {
+			manager.touch("ua" + n);
+		}
+		// Expires before the first tick.
+		manager.update("expired", dest, 1);
+		Assertions.assertEquals(21, manager.size());
+
+		int received = receive(1000);
+		Assertions.assertEquals(20, manager.size());
+		Assertions.assertTrue(received >= 10, "received=" + received);
+		Assertions.assertTrue(received < 20 * 6, "received=" + received);
+		// The last datagram may be received before the manager has counted it.
+		for (int n = 0; n < 100 && manager.getSentCount() < received; n++) {
+			Thread.sleep(10);
+		}
+		Assertions.assertTrue(received <= manager.getSentCount());
+		manager.halt();
+		Assertions.assertEquals(0, manager.size());
+	}
+
+	@Test
+	void testRateLimit() throws IOException {
+		KeepAliveManager manager = new KeepAliveManager(_provider, 100, 20, false);
+		SocketAddress dest = new SocketAddress(LOCALHOST, _target.getLocalPort());
+		for (int n = 0; n < 100; n++) {
+			manager.update("ua" + n, dest, 0);
+		}
+		int received = receive(1000);
+		manager.halt();
+		// 20 datagrams per second, instead of 1000 without limit.
+		Assertions.assertTrue(received > 0, "received=" + received);
+		Assertions.assertTrue(received <= 30, "received=" + received);
+	}
+
+	@Test
+	void testResolverBindings() {
+		AddressResolverKeepAlive resolver = new AddressResolverKeepAlive(_provider, 60000, 30000);
+		SocketAddress refer = new SocketAddress("10.0.0.1", 5060);
+		SocketAddress actual = new SocketAddress("192.0.2.1", 40000);
+		SocketAddress moved = new SocketAddress("192.0.2.1", 40002);
+
+		resolver.updateBinding(refer, actual);
+		Assertions.assertTrue(resolver.contains(refer));
+		Assertions.assertEquals(actual, resolver.getSocketAddress(refer));
+		Assertions.assertTrue(resolver.getKeepAliveManager().contains(refer.toString()));
+
+		resolver.updateBinding(refer, moved);
+		Assertions.assertEquals(1, resolver.size());
+		Assertions.assertEquals(moved, resolver.getSocketAddress(refer));
+		Assertions.assertEquals(moved, resolver.getKeepAliveManager().targets.get(refer.toString()).soaddr);
+
+		// Not yet expired.
+		resolver.onTimeout();
+		Assertions.assertEquals(1, resolver.size());
+
+		resolver.binding_table.get(refer.toString()).expire = 0;
+		resolver.onTimeout();
+		Assertions.assertFalse(resolver.contains(refer));
+		Assertions.assertEquals(0, resolver.getKeepAliveManager().size());
+
+		resolver.updateBinding(refer, actual);
+		resolver.removeBinding(refer);
+		Assertions.assertEquals(0, resolver.size());
+		Assertions.assertEquals(0, resolver.getKeepAliveManager().size());
+		resolver.halt();
+	}
+
+	private int receive(long time) throws IOException {
+		int count = 0;
+		long deadline = System.currentTimeMillis() + time;
+		while (System.currentTimeMillis() < deadline) {
+			DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+			try {
+				_target.receive(packet);
+				count++;
+			} catch (SocketTimeoutException ex) {
+				// Retry.
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mjsip.pool.PortPool;
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.time.Scheduler;
+
+/**
+ * Test case for the media session handling of {@link MediaGw}.
+ */
+@SuppressWarnings("javadoc")
+class TestMediaGw {
+
+	private ScheduledExecutorService _executor;
+
+	private PortPool _portPool;
+
+	private MediaGw _mediaGw;
+
+	@BeforeEach
+	void setUp() {
+		_executor = Executors.newSingleThreadScheduledExecutor();
+		_portPool = new PortPool(42000, 10);
+		SessionBorderControllerProfile profile = new SessionBorderControllerProfile();
+		profile.mediaAddr = "127.0.0.1";
+		profile.relayTimeout = 0;
+		profile.mediaSweepInterval = 0;
+		profile.mediaSessionTimeout = 0;
+		_mediaGw = new MediaGw(Scheduler.of(_executor), _portPool, profile);
+	}
+
+	@AfterEach
+	void tearDown() {
+		_mediaGw.halt();
+		_executor.shutdown();
+	}
+
+	@Test
+	void testReleaseOnBye() throws InterruptedException {
+		_mediaGw.processSessionDescriptor(invite("call-1"));
+		Assertions.assertEquals(1, _mediaGw.getActiveSessionCount());
+		Assertions.assertEquals(1, _mediaGw.getAllocatedPortCount());
+		Assertions.assertFalse(_mediaGw.getSession("call-1").hasRelays());
+
+		_mediaGw.processSessionDescriptor(ok("call-1"));
+		_mediaGw.onCallEstablished("call-1");
+		Assertions.assertEquals(2, _mediaGw.getAllocatedPortCount());
+		Assertions.assertTrue(_mediaGw.getSession("call-1").hasRelays());
+
+		// An error response to a re-INVITE does not release an established call.
+		Assertions.assertFalse(_mediaGw.releaseFailedSession("call-1"));
+
+		Assertions.assertTrue(_mediaGw.releaseSession("call-1"));
+		Assertions.assertEquals(0, _mediaGw.getActiveSessionCount());
+
+		// Ports are released, when the relay has stopped.
+		for (int n = 0; n < 50 && _mediaGw.getAllocatedPortCount() > 0; n++) {
+			Thread.sleep(100);
+		}
+		Assertions.assertEquals(0, _mediaGw.getAllocatedPortCount());
+		Assertions.assertEquals(10, available());
+	}
+
+	@Test
+	void testReleaseFailedCall() {
+		_mediaGw.processSessionDescriptor(invite("call-2"));
+		Assertions.assertTrue(_mediaGw.releaseFailedSession("call-2"));
+		Assertions.assertEquals(0, _mediaGw.getActiveSessionCount());
+		Assertions.assertEquals(0, _mediaGw.getAllocatedPortCount());
+	}
+
+	@Test
+	void testForkedCall() {
+		_mediaGw.processSessionDescriptor(invite("call-4"));
+		_mediaGw.onInviteForwarded("call-4", "z9hG4bK-a");
+		_mediaGw.onInviteForwarded("call-4", "z9hG4bK-b");
+
+		// One branch refuses the call, while the other is still ringing.
+		Assertions.assertFalse(_mediaGw.onInviteFailed("call-4", "z9hG4bK-a"));
+		Assertions.assertEquals(1, _mediaGw.getActiveSessionCount());
+
+		// A retransmitted failure response does not release the session either.
+		Assertions.assertFalse(_mediaGw.onInviteFailed("call-4", "z9hG4bK-a"));
+		Assertions.assertEquals(1, _mediaGw.getActiveSessionCount());
+
+		// The last branch fails.
+		Assertions.assertTrue(_mediaGw.onInviteFailed("call-4", "z9hG4bK-b"));
+		Assertions.assertEquals(0, _mediaGw.getActiveSessionCount());
+		Assertions.assertEquals(0, _mediaGw.getAllocatedPortCount());
+	}
+
+	@Test
+	void testForkedCallAnswered() {
+		_mediaGw.processSessionDescriptor(invite("call-5"));
+		_mediaGw.onInviteForwarded("call-5", "z9hG4bK-a");
+		_mediaGw.onInviteForwarded("call-5", "z9hG4bK-b");
+
+		_mediaGw.processSessionDescriptor(ok("call-5"));
+		_mediaGw.onCallEstablished("call-5");
+
+		// The other branch is cancelled after the call has been answered.
+		Assertions.assertFalse(_mediaGw.onInviteFailed("call-5", "z9hG4bK-a"));
+		Assertions.assertEquals(1, _mediaGw.getActiveSessionCount());
+		Assertions.assertTrue(_mediaGw.getSession("call-5").hasRelays());
+	}
+
+	@Test
+	void testSweep() throws InterruptedException {
+		_mediaGw.processSessionDescriptor(invite("call-3"));
+		Thread.sleep(10);
+
+		// No relay has been created within the (zero) session timeout.
+		Assertions.assertEquals(1, _mediaGw.sweep());
+		Assertions.assertEquals(1, _mediaGw.getLeakedSessionCount());
+		Assertions.assertEquals(0, _mediaGw.getActiveSessionCount());
+		Assertions.assertEquals(10, available());
+	}
+
+	private int available() {
+		int cnt = 0;
+		while (_portPool.isAvailable()) {
+			_portPool.allocate();
+			cnt++;
+		}
+		return cnt;
+	}
+
+	private static SipMessage invite(String callId) {
+		return message("INVITE sip:bob@127.0.0.1 SIP/2.0", callId, 43000);
+	}
+
+	private static SipMessage ok(String callId) {
+		return message("SIP/2.0 200 OK", callId, 43002);
+	}
+
+	private static SipMessage message(String firstLine, String callId, int mediaPort) {
+		String sdp = "v=0\r\n"
+				+ "o=- 1 1 IN IP4 127.0.0.1\r\n"
+				+ "s=-\r\n"
+				+ "c=IN IP4 127.0.0.1\r\n"
+				+ "t=0 0\r\n"
+				+ "m=audio " + mediaPort + " RTP/AVP 0\r\n"
+				+ "a=rtpmap:0 PCMU/8000\r\n";
+		return new SipMessage(firstLine + "\r\n"
+				+ "Via: SIP/2.0/UDP 127.0.0.1:5070;branch=z9hG4bK" + callId + "\r\n"
+				+ "From: <sip:alice@127.0.0.1>;tag=1\r\n"
+				+ "To: <sip:bob@127.0.0.1>\r\n"
+				+ "Call-ID: " + callId + "\r\n"
+				+ "CSeq: 1 INVITE\r\n"
+				+ "Content-Type: application/sdp\r\n"
+				+ "Content-Length: " + sdp.length() + "\r\n\r\n"
+				+ sdp);
+	}
+
+}
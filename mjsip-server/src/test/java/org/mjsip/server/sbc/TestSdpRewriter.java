@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sdp.SdpMessage;
+
+/**
+ * Test case for {@link SdpRewriter}.
+ */
+@SuppressWarnings("javadoc")
+class TestSdpRewriter {
+
+	@Test
+	void testRewrite() {
+		String sdp = "v=0\r\n"
+				+ "o=alice 2890844526 2890844526 IN IP4 10.0.0.1\r\n"
+				+ "s=-\r\n"
+				+ "c=IN IP4 10.0.0.1\r\n"
+				+ "t=0 0\r\n"
+				+ "m=audio 49170 RTP/AVP 0 8\r\n"
+				+ "a=rtpmap:0 PCMU/8000\r\n"
+				+ "a=rtcp:49171 IN IP4 10.0.0.1\r\n"
+				+ "m=video 51372/2 RTP/AVP 31\r\n"
+				+ "c=IN IP4 224.2.1.1/127\r\n"
+				+ "a=rtcp:51373\r\n"
+				+ "m=application 9 TCP/MRCPv2 1\r\n";
+
+		SdpRewriter rewriter = new SdpRewriter(sdp.getBytes(StandardCharsets.US_ASCII));
+		Assertions.assertTrue(rewriter.isValid());
+		Assertions.assertEquals("10.0.0.1", rewriter.getConnectionAddress());
+		Assertions.assertEquals(3, rewriter.getMediaCount());
+		Assertions.assertEquals("video", rewriter.getMediaType(1));
+		Assertions.assertEquals(51372, rewriter.getMediaPort(1));
+
+		byte[] result = rewriter.rewrite("192.168.1.1", new String[] { "audio", "video" }, new int[] { 7000, 7002 });
+		Assertions.assertEquals("v=0\r\n"
+				+ "o=alice 2890844526 2890844526 IN IP4 10.0.0.1\r\n"
+				+ "s=-\r\n"
+				+ "c=IN IP4 192.168.1.1\r\n"
+				+ "t=0 0\r\n"
+				+ "m=audio 7000 RTP/AVP 0 8\r\n"
+				+ "a=rtpmap:0 PCMU/8000\r\n"
+				+ "a=rtcp:49171 IN IP4 10.0.0.1\r\n"
+				+ "m=video 7002 RTP/AVP 31\r\n"
+				+ "c=IN IP4 192.168.1.1/127\r\n"
+				+ "a=rtcp:51373\r\n"
+				+ "m=application 9 TCP/MRCPv2 1\r\n", new String(result, StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	void testSameAsObjectModel() {
+		String sdp = "v=0\n"
+				+ "o=- 1 1 IN IP4 127.0.0.1\n"
+				+ "s=-\n"
+				+ "c=IN IP4 127.0.0.1\n"
+				+ "t=0 0\n"
+				+ "m=audio 4000 RTP/AVP 0 8 101\n"
+				+ "a=rtpmap:101 telephone-event/8000\n";
+
+		byte[] result = new SdpRewriter(sdp.getBytes(StandardCharsets.US_ASCII)).rewrite("10.1.1.1", new String[] { "audio" }, new int[] { 5000 });
+
+		SdpMessage expected = new SdpMessage(sdp);
+		SdpMessage actual = new SdpMessage(new String(result, StandardCharsets.US_ASCII));
+		Assertions.assertEquals("10.1.1.1", actual.getConnection().getAddress());
+		Assertions.assertEquals(5000, actual.getMediaDescriptor("audio").getMediaField().getPort());
+		Assertions.assertEquals(expected.getMediaDescriptor("audio").getMediaField().getFormatList(),
+			actual.getMediaDescriptor("audio").getMediaField().getFormatList());
+	}
+
+	@Test
+	void testInvalid() {
+		Assertions.assertFalse(new SdpRewriter("v=0\r\nm=audio x RTP/AVP 0\r\n".getBytes(StandardCharsets.US_ASCII)).isValid());
+		Assertions.assertFalse(new SdpRewriter("v=0\r\nc=IN IP4\r\n".getBytes(StandardCharsets.US_ASCII)).isValid());
+	}
+
+}
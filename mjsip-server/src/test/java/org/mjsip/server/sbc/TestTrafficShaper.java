@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.server.sbc;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.time.Scheduler;
+import org.zoolu.net.IpAddress;
+import org.zoolu.net.UdpPacket;
+import org.zoolu.net.UdpSocket;
+
+/**
+ * Test case for {@link TokenBucket} and {@link TrafficShaper}.
+ */
+@SuppressWarnings("javadoc")
+class TestTrafficShaper {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void testTokenBucket() {
+		// 1000 bytes per second, burst of 100 bytes.
+		TokenBucket bucket = TokenBucket.perSecond(1000, 100);
+		long now = System.nanoTime() + 1000 * MS;
+
+		Assertions.assertEquals(0, bucket.consume(60, now));
+		Assertions.assertEquals(0, bucket.consume(40, now));
+		Assertions.assertEquals(10 * MS, bucket.consume(10, now));
+		Assertions.assertEquals(0, bucket.consume(10, now + 10 * MS));
+
+		// A unit larger than the bucket passes, when the bucket is full.
+		Assertions.assertTrue(bucket.consume(200, now + 50 * MS) > 0);
+		Assertions.assertEquals(0, bucket.consume(200, now + 110 * MS));
+	}
+
+	@Test
+	void testShaping() throws IOException, InterruptedException {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		UdpSocket sender = new UdpSocket(0);
+		UdpSocket receiver = new UdpSocket(0);
+		try {
+			TrafficShaper shaper = new TrafficShaper(Scheduler.of(executor));
+			TrafficShaper.Flow flow = shaper.createFlow(sender, TokenBucket.perInterval(5), false, 100);
+
+			long start = System.nanoTime();
+			byte[] data = new byte[160];
+			for (int n = 0; n < 20; n++) {
+				data[0] = (byte) n;
+				Assertions.assertTrue(flow.send(packet(data, receiver)));
+			}
+			Assertions.assertEquals(19, flow.getDelayedCount());
+
+			receiver.setSoTimeout(2000);
+			byte[] buffer = new byte[200];
+			for (int n = 0; n < 20; n++) {
+				UdpPacket received = new UdpPacket(buffer, buffer.length);
+				receiver.receive(received);
+				Assertions.assertEquals(n, buffer[0], "Packets must be sent in order.");
+			}
+			long duration = System.nanoTime() - start;
+			Assertions.assertTrue(duration >= 19 * 5 * MS - MS, "Too fast: " + duration / MS + "ms");
+			// The driver counts the last packet after it has been received.
+			for (int n = 0; n < 100 && flow.getQueuedCount() > 0; n++) {
+				Thread.sleep(10);
+			}
+			Assertions.assertEquals(20, flow.getSentCount());
+			Assertions.assertEquals(0, flow.getQueuedCount());
+		} finally {
+			sender.close();
+			receiver.close();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testPolicing() throws IOException {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		UdpSocket sender = new UdpSocket(0);
+		UdpSocket receiver = new UdpSocket(0);
+		try {
+			TrafficShaper shaper = new TrafficShaper(Scheduler.of(executor));
+			TrafficShaper.Flow flow = shaper.createFlow(sender, TokenBucket.perSecond(10000, 1000), true, 0);
+
+			byte[] data = new byte[400];
+			Assertions.assertTrue(flow.send(packet(data, receiver)));
+			Assertions.assertTrue(flow.send(packet(data, receiver)));
+			Assertions.assertFalse(flow.send(packet(data, receiver)));
+			Assertions.assertEquals(2, flow.getSentCount());
+			Assertions.assertEquals(1, flow.getDroppedCount());
+		} finally {
+			sender.close();
+			receiver.close();
+			executor.shutdown();
+		}
+	}
+
+	private static UdpPacket packet(byte[] data, UdpSocket receiver) throws IOException {
+		return new UdpPacket(data, IpAddress.getByName("127.0.0.1"), receiver.getLocalPort());
+	}
+
+}
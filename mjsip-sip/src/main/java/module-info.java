@@ -13,10 +13,12 @@ module org.mjsip.sip {
 	requires args4j;
 	requires org.slf4j;
 	requires java.desktop;
+	requires jdk.jfr;
 
 	opens org.mjsip.sip.provider to args4j;
 	opens org.mjsip.pool to args4j;
 
+	exports org.mjsip.jfr;
 	exports org.mjsip.media;
 	exports org.mjsip.media.rx;
 	exports org.mjsip.media.tx;
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded when a SIP dialog, e.g. an INVITE dialog, changes its state.
+ */
+@Name(DialogStateEvent.NAME)
+@Label("SIP Dialog State")
+@Category({ "mjSIP", "SIP" })
+@Description("State change of a SIP dialog.")
+@StackTrace(false)
+public final class DialogStateEvent extends Event {
+
+	/** The name of the event type. */
+	public static final String NAME = "org.mjsip.DialogState";
+
+	/** The Call-ID of the dialog, <code>null</code> before the first request was sent or received. */
+	@Label("Call-ID")
+	public String callId;
+
+	/** The kind of dialog, e.g. <code>InviteDialog</code>. */
+	@Label("Dialog Type")
+	public String dialogType;
+
+	/** The state before the change. */
+	@Label("From State")
+	public String fromState;
+
+	/** The state after the change. */
+	@Label("To State")
+	public String toState;
+
+	/** The time spent in the former state. */
+	@Label("Time in State")
+	@Timespan(Timespan.NANOSECONDS)
+	public long timeInState;
+
+	/** The time since the dialog was created. */
+	@Label("Dialog Age")
+	@Timespan(Timespan.NANOSECONDS)
+	public long age;
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when an RTP stream sender or receiver stops, spanning the lifetime of the stream.
+ */
+@Name(RtpStreamEvent.NAME)
+@Label("RTP Stream")
+@Category({ "mjSIP", "Media" })
+@Description("An RTP stream sent or received, from start to stop.")
+@StackTrace(false)
+public final class RtpStreamEvent extends Event {
+
+	/** The name of the event type. */
+	public static final String NAME = "org.mjsip.RtpStream";
+
+	/** Direction of a sent stream. */
+	public static final String SEND = "send";
+
+	/** Direction of a received stream. */
+	public static final String RECEIVE = "receive";
+
+	/** Either {@link #SEND} or {@link #RECEIVE}. */
+	@Label("Direction")
+	public String direction;
+
+	/** The local RTP port, to be matched with the SDP of the call. */
+	@Label("Local Port")
+	public int localPort;
+
+	/** The remote socket address, <code>null</code> if a receiver got no packet. */
+	@Label("Remote Address")
+	public String remoteAddress;
+
+	/** The RTP payload type, for a receiver the one of the last packet, <code>-1</code> if none was received. */
+	@Label("Payload Type")
+	public int payloadType;
+
+	/** The number of RTP packets sent or received. */
+	@Label("Packets")
+	public long packets;
+
+	/** The number of RTP payload bytes sent or received. */
+	@Label("Payload Bytes")
+	@DataAmount
+	public long bytes;
+
+	/** The message of the error that terminated the stream, <code>null</code> for a regular stop. */
+	@Label("Error")
+	public String error;
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded for each SIP message received by a provider, spanning the dispatch to the transaction,
+ * dialog or server handling it.
+ */
+@Name(SipDispatchEvent.NAME)
+@Label("SIP Message Dispatch")
+@Category({ "mjSIP", "SIP" })
+@Description("Processing of a received SIP message by the listener it is dispatched to.")
+@StackTrace(false)
+public final class SipDispatchEvent extends Event {
+
+	/** The name of the event type. */
+	public static final String NAME = "org.mjsip.SipDispatch";
+
+	/** The Call-ID of the message. */
+	@Label("Call-ID")
+	public String callId;
+
+	/** The method of the request, or of the request answered by the response. */
+	@Label("Method")
+	public String method;
+
+	/** The status code of a response, <code>0</code> for requests. */
+	@Label("Status Code")
+	public int statusCode;
+
+	/** The transport protocol the message was received on. */
+	@Label("Transport")
+	public String transport;
+
+	/** The address of the sender. */
+	@Label("Remote Address")
+	public String remoteAddress;
+
+	/** The kind of listener the message was dispatched to, <code>null</code> if it was discarded. */
+	@Label("Listener")
+	public String listener;
+
+	/**
+	 * The time from receiving the datagram or stream segment until the dispatch started, including
+	 * admission control and parsing.
+	 */
+	@Label("Queue Delay")
+	@Timespan(Timespan.NANOSECONDS)
+	public long queueDelay;
+
+}
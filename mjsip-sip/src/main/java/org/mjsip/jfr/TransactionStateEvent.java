@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded when a SIP client or server transaction changes its state.
+ */
+@Name(TransactionStateEvent.NAME)
+@Label("SIP Transaction State")
+@Category({ "mjSIP", "SIP" })
+@Description("State change of a SIP client or server transaction.")
+@StackTrace(false)
+public final class TransactionStateEvent extends Event {
+
+	/** The name of the event type. */
+	public static final String NAME = "org.mjsip.TransactionState";
+
+	/** The Call-ID of the transaction request. */
+	@Label("Call-ID")
+	public String callId;
+
+	/** The transaction method. */
+	@Label("Method")
+	public String method;
+
+	/** The kind of transaction, e.g. <code>InviteTransactionServer</code>. */
+	@Label("Transaction Type")
+	public String transactionType;
+
+	/** The state before the change. */
+	@Label("From State")
+	public String fromState;
+
+	/** The state after the change. */
+	@Label("To State")
+	public String toState;
+
+	/** The time spent in the former state. */
+	@Label("Time in State")
+	@Timespan(Timespan.NANOSECONDS)
+	public long timeInState;
+
+	/** The time since the transaction was created. */
+	@Label("Transaction Age")
+	@Timespan(Timespan.NANOSECONDS)
+	public long age;
+
+}
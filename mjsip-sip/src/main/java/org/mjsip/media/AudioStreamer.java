@@ -25,7 +25,13 @@ package org.mjsip.media;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import javax.sound.sampled.AudioFormat;
@@ -37,9 +43,11 @@ import org.mjsip.media.rx.AudioReceiver;
 import org.mjsip.media.rx.AudioRxHandle;
 import org.mjsip.media.tx.AudioTXHandle;
 import org.mjsip.media.tx.AudioTransmitter;
+import org.mjsip.pool.RtpSocketPair;
 import org.mjsip.rtp.AmrRtpPayloadFormat;
 import org.mjsip.rtp.RtpControl;
 import org.mjsip.sound.Codec;
+import org.mjsip.sound.CodecRegistry;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.SocketAddress;
 import org.zoolu.net.UdpSocket;
@@ -103,6 +111,9 @@ public class AudioStreamer implements MediaStreamer, RtpStreamSenderListener, Rt
 	/** UDP socket */
 	private final UdpSocket udp_socket;
 
+	/** UDP socket for RTCP bound in advance, or <code>null</code> */
+	private final UdpSocket rtcp_socket;
+
 	private AudioTXHandle _txHandle;
 
 	/** RtpStreamReceiver */
@@ -151,16 +162,21 @@ public class AudioStreamer implements MediaStreamer, RtpStreamSenderListener, Rt
 		}
 	
 		final AudioFormat baseFormat = SimpleAudioSystem.getBaseAudioFormat(sample_rate, channels);
-		LOG.info("Base format: " + baseFormat);
 
-		AudioFormat.Encoding encoding = getEncoding(baseFormat, codec);
-		if (encoding == null) {
-			throw new RuntimeException("Encoding " + codec.getEncoding() + " not found for: " + baseFormat);
-		}
+		AudioFormat targetFormat;
+		CodecRegistry registry = CodecRegistry.getDefault();
+		if (registry.supports(codec)) {
+			targetFormat = registry.getAudioFormat(codec, sample_rate, channels);
+		} else {
+			AudioFormat.Encoding encoding = getEncoding(baseFormat, codec);
+			if (encoding == null) {
+				throw new RuntimeException("Encoding " + codec.getEncoding() + " not found for: " + baseFormat);
+			}
 
-		AudioFormat targetFormat = getTargetFormat(baseFormat, encoding);
-		if (targetFormat == null) {
-			throw new RuntimeException("No target fomat with encoding " + encoding + " found for: " + baseFormat);
+			targetFormat = getTargetFormat(baseFormat, encoding);
+			if (targetFormat == null) {
+				throw new RuntimeException("No target fomat with encoding " + encoding + " found for: " + baseFormat);
+			}
 		}
 		LOG.info("Target format: " + targetFormat);
 
@@ -174,7 +190,14 @@ public class AudioStreamer implements MediaStreamer, RtpStreamSenderListener, Rt
 		
 		try {
 			// 5) udp socket
-			udp_socket = new UdpSocket(flow_spec.getLocalPort());
+			RtpSocketPair sockets = flow_spec.getSockets();
+			if (sockets != null) {
+				udp_socket = sockets.getRtpSocket();
+				rtcp_socket = sockets.getRtcpSocket();
+			} else {
+				udp_socket = new UdpSocket(flow_spec.getLocalPort());
+				rtcp_socket = null;
+			}
 			
 			// 6) sender
 			String remote_addr = flow_spec.getRemoteAddress();
@@ -195,7 +218,11 @@ public class AudioStreamer implements MediaStreamer, RtpStreamSenderListener, Rt
 
 			// RTCP
 			if (options.rtp()) {
-				rtp_control = new RtpControl(null, udp_socket.getLocalPort() + 1, remote_addr, remote_port + 1);
+				if (rtcp_socket != null) {
+					rtp_control = new RtpControl(null, rtcp_socket, remote_addr, remote_port + 1);
+				} else {
+					rtp_control = new RtpControl(null, udp_socket.getLocalPort() + 1, remote_addr, remote_port + 1);
+				}
 			} else {
 				rtp_control = null;
 			}
@@ -247,7 +274,7 @@ public class AudioStreamer implements MediaStreamer, RtpStreamSenderListener, Rt
 		String encodingName = codec.getEncoding();
 		// get the proper audio format encoding
 		AudioFormat.Encoding[] supportedEncodings = AudioSystem.getTargetEncodings(format);
-		LOG.info("Supported codecs: "
+		LOG.debug("Supported codecs: "
 				+ Arrays.stream(supportedEncodings).map(Object::toString).collect(Collectors.joining(", ")));
 		for (Encoding supportedEncoding : supportedEncodings) {
 			if (supportedEncoding.toString().equalsIgnoreCase(encodingName)) {
@@ -261,43 +288,68 @@ public class AudioStreamer implements MediaStreamer, RtpStreamSenderListener, Rt
 	@Override
 	public boolean start() {
 		LOG.info("starting java audio");
-		if (_txHandle != null) {
-			LOG.debug("start sending");
-			_txHandle.start(_executor);
-		}
-		if (_rxHandle != null) {
-			LOG.debug("start receiving");
-			_rxHandle.start(_executor);
+		try {
+			if (_txHandle != null) {
+				LOG.debug("start sending");
+				_txHandle.start(_executor);
+			}
+			if (_rxHandle != null) {
+				LOG.debug("start receiving");
+				_rxHandle.start(_executor);
+			}
+		} catch (RejectedExecutionException ex) {
+			// No capacity left for further media streams.
+			LOG.warn("Cannot start audio streams: " + ex.getMessage());
+			haltAsync();
+			return false;
 		}
 		return true;      
 	}
 
 
-	/** Stops media streams. */
+	/** Stops media streams.
+	  * Waits for the streams to terminate, at most for the receiver socket timeout. */
 	@Override
 	public boolean halt() {
-		LOG.info("stopping java audio");    
+		CompletableFuture<Void> terminated=haltAsync().toCompletableFuture();
+		try {
+			terminated.get(RtpStreamReceiver.SO_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException | ExecutionException e) {
+			// Ignore.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return true;
+	}
+
+
+	/** Stops media streams without waiting for them to terminate.
+	  * The sockets are closed immediately, which unblocks a receiver waiting for packets. */
+	@Override
+	public CompletionStage<Void> haltAsync() {
+		LOG.info("stopping java audio");
+		CompletionStage<Void> tx_terminated=null;
+		CompletionStage<Void> rx_terminated=null;
 		if (_txHandle != null) {
-			_txHandle.halt();
+			tx_terminated = _txHandle.haltAsync();
 			_txHandle = null;
 			LOG.debug("sender halted");
 		}      
 	 
 		if (_rxHandle != null) {
-			_rxHandle.halt();
+			rx_terminated = _rxHandle.haltAsync();
 			_rxHandle = null;
 			LOG.debug("receiver halted");
 		}      
 
-		// try to take into account the resilience of RtpStreamSender
-		try {
-			Thread.sleep(RtpStreamReceiver.SO_TIMEOUT);
-		} catch (Exception e) {
-			// Ignore.
-		}
 		udp_socket.close();
 		if (rtp_control!=null) rtp_control.halt();
-		return true;
+		if (rtcp_socket!=null) rtcp_socket.close();
+
+		CompletableFuture<Void> terminated=CompletableFuture.completedFuture(null);
+		if (tx_terminated!=null) terminated=terminated.thenCombine(tx_terminated, (a, b) -> null);
+		if (rx_terminated!=null) terminated=terminated.thenCombine(rx_terminated, (a, b) -> null);
+		return terminated;
 	}
 
 	/** From RtpStreamReceiverListener. When the remote socket address (source) is changed. */
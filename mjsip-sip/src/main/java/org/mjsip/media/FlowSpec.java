@@ -2,6 +2,8 @@ package org.mjsip.media;
 
 import java.util.NoSuchElementException;
 
+import org.mjsip.pool.RtpSocketPair;
+
 /** Flow(s) specification.
   */
 public class FlowSpec {
@@ -78,6 +80,9 @@ public class FlowSpec {
 	private final Direction direction;
 
 	private String _mediaType;
+
+	/** Sockets bound in advance for the local port, or <code>null</code>. */
+	private RtpSocketPair _sockets;
 	
 	/**
 	 * Creates a new {@link FlowSpec}.
@@ -133,6 +138,23 @@ public class FlowSpec {
 		return remote_port;
 	}
 
+	/**
+	 * Sockets already bound to the local port (RTP) and the next port (RTCP).
+	 * 
+	 * <p>
+	 * The streamer created for this flow takes ownership of the sockets. If <code>null</code>, the
+	 * streamer binds the local port itself.
+	 * </p>
+	 */
+	public RtpSocketPair getSockets() {
+		return _sockets;
+	}
+
+	/** @see #getSockets() */
+	public void setSockets(RtpSocketPair sockets) {
+		_sockets = sockets;
+	}
+
 	/** Gets direction. */
 	public Direction getDirection() {
 		return direction;
@@ -1,5 +1,7 @@
 package org.mjsip.media;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 
 
@@ -11,5 +13,20 @@ public interface MediaStreamer {
 
 	/** Stops media streams. */
 	public boolean halt();
+
+	/**
+	 * Stops media streams without waiting for them to terminate.
+	 * 
+	 * <p>
+	 * The local media resources (e.g. sockets) are released before this method returns. The stream
+	 * loops terminate in the background.
+	 * </p>
+	 * 
+	 * @return A stage that completes when all streams have terminated.
+	 */
+	public default CompletionStage<Void> haltAsync() {
+		halt();
+		return CompletableFuture.completedFuture(null);
+	}
 		
 }
@@ -24,8 +24,13 @@ package org.mjsip.media;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.mjsip.jfr.RtpStreamEvent;
 import org.mjsip.media.rx.RtpReceiverOptions;
+import org.mjsip.rtp.RtpBufferPool;
 import org.mjsip.rtp.RtpPacket;
 import org.mjsip.rtp.RtpPayloadFormat;
 import org.mjsip.rtp.RtpSocket;
@@ -52,7 +57,10 @@ public class RtpStreamReceiver implements Runnable, RtpControlledReceiver {
 	public static final int EARLY_DROP_TIME=200;
 
 	/** Size of the receiver buffer (including the RTP header) */
-	public static final int BUFFER_SIZE=32768;
+	public static final int BUFFER_SIZE=1472; // 1500 (Ethernet MTU) - 20 (IPH) - 8 (UDPH)
+
+	/** Size of the buffer for silence padding */
+	private static final int SILENCE_BUFFER_SIZE=4000;
 
 	/** Maximum blocking time, spent waiting for reading new bytes [milliseconds] */
 	public static final int SO_TIMEOUT=200;
@@ -81,6 +89,15 @@ public class RtpStreamReceiver implements Runnable, RtpControlledReceiver {
 	/** Whether it is running */
 	private volatile boolean running = false;
 
+	/** Whether it has been halted (possibly before being started) */
+	private volatile boolean halted = false;
+
+	/** Completed when the receiver loop has terminated */
+	private final CompletableFuture<Void> terminated = new CompletableFuture<>();
+
+	/** Whether the receiver loop has been entered, or is prevented from being entered by {@link #halt()} */
+	private final AtomicBoolean entered = new AtomicBoolean();
+
 	/** Packet counter (incremented only if packet_drop_rate>0) */
 	private long packet_counter = 0;
 
@@ -201,9 +218,20 @@ public class RtpStreamReceiver implements Runnable, RtpControlledReceiver {
 	}
 
 
-	/** Stops running */
+	/** Stops running.
+	  * The receiver loop terminates with the next received packet, with the next socket timeout,
+	  * or as soon as the socket is closed. If the receiver loop has not yet been entered, it never
+	  * runs and is terminated immediately. */
 	public void halt() {
+		halted=true;
 		running=false;
+		if (entered.compareAndSet(false,true)) terminated.complete(null);
+	}
+
+
+	/** Gets a stage that completes when the receiver loop has terminated. */
+	public CompletionStage<Void> terminated() {
+		return terminated;
 	}
 
 
@@ -211,16 +239,31 @@ public class RtpStreamReceiver implements Runnable, RtpControlledReceiver {
 	@Override
 	public void run() {
 		
+		if (!entered.compareAndSet(false,true)) {
+			// halted before being started
+			return;
+		}
 		if (rtp_socket==null) {
 			LOG.error("RTP socket is null");
+			terminated.complete(null);
 			return;
 		}
 		//else
 
-		byte[] buffer=new byte[BUFFER_SIZE];
+		RtpBufferPool buffer_pool=RtpBufferPool.getInstance();
+		byte[] buffer=buffer_pool.lease(BUFFER_SIZE);
+		byte[] silence_buffer=buffer_pool.lease(SILENCE_BUFFER_SIZE);
 		RtpPacket rtp_packet=new RtpPacket(buffer,0);
 
 		running=true;    
+		if (halted) running=false;
+
+		RtpStreamEvent event=new RtpStreamEvent();
+		event.begin();
+		int local_port=rtp_socket.getUdpSocket().getLocalPort();
+		int payload_type=-1;
+		long packets=0;
+		long bytes=0;
 
 		if (DEBUG)
 			LOG.debug("RTP: localhost:" + rtp_socket.getUdpSocket().getLocalPort() + " <-- remotesocket");
@@ -235,13 +278,15 @@ public class RtpStreamReceiver implements Runnable, RtpControlledReceiver {
 			long ssrc=-1;
 			int last_sqn=-1;
 			long last_timestamp=-1;
-			byte[] silence_buffer=new byte[4000];
 
 			while (running) {
 				
 				try {
 					// read a block of data from the rtp socket
 					rtp_socket.receive(rtp_packet);
+					payload_type=rtp_packet.getPayloadType();
+					packets++;
+					bytes+=rtp_packet.getPayloadLength();
 					// drop the first packets in order to reduce the effect of an eventual initial packet burst
 					if (early_drop_to>0 && System.currentTimeMillis()<early_drop_to) continue;
 					else early_drop_to=-1;
@@ -318,20 +363,42 @@ public class RtpStreamReceiver implements Runnable, RtpControlledReceiver {
 			}
 		}
 		catch (Exception e) {
+			// a socket closed after halting is the regular way to stop a blocked receiver
+			if (!halted) {
+				error=e;
+				if (DEBUG)
+					LOG.debug("Exception.", e);
+			}
 			running=false;
-			error=e;
-			if (DEBUG)
-				LOG.debug("Exception.", e);
 		}
 		
 		// close RtpSocket
 		rtp_socket.close();
 		
 		// free all
+		buffer_pool.release(buffer);
+		buffer_pool.release(silence_buffer);
 		output_stream=null;
 		rtp_socket=null;
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.direction=RtpStreamEvent.RECEIVE;
+			event.localPort=local_port;
+			if (remote_soaddr!=null) event.remoteAddress=remote_soaddr.toString();
+			event.payloadType=payload_type;
+			event.packets=packets;
+			event.bytes=bytes;
+			if (error!=null) event.error=error.toString();
+			event.commit();
+		}
 		
-		onRtpStreamReceiverTerminated(error);
+		try {
+			onRtpStreamReceiverTerminated(error);
+		}
+		finally {
+			terminated.complete(null);
+		}
 	}
 
 	/**
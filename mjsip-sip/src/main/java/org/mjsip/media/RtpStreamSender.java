@@ -23,8 +23,13 @@ package org.mjsip.media;
 
 
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.mjsip.jfr.RtpStreamEvent;
 import org.mjsip.media.tx.RtpSenderOptions;
+import org.mjsip.rtp.RtpBufferPool;
 import org.mjsip.rtp.RtpControl;
 import org.mjsip.rtp.RtpPacket;
 import org.mjsip.rtp.RtpPayloadFormat;
@@ -120,6 +125,12 @@ public class RtpStreamSender implements Runnable, RtpControlledSender {
 
 	private volatile boolean _shouldStop = false;
 
+	/** Completed when the sender loop has terminated. */
+	private final CompletableFuture<Void> _terminated = new CompletableFuture<>();
+
+	/** Whether the sender loop has been entered, or is prevented from being entered by {@link #halt()}. */
+	private final AtomicBoolean _entered = new AtomicBoolean();
+
 	/** Synchronization source (SSRC) identifier. */
 	//long ssrc=0;
 	long ssrc=Random.nextLong()&0xffffffff;
@@ -266,20 +277,41 @@ public class RtpStreamSender implements Runnable, RtpControlledSender {
 		return _running;
 	}
 
-	/** Stops running */
+	/** Stops running.
+	  * If the sender loop has not yet been entered, it never runs and is terminated immediately. */
 	public void halt() {
 		_shouldStop = true;
+		if (_entered.compareAndSet(false, true)) {
+			_running = false;
+			_terminated.complete(null);
+		}
+	}
+
+	/** Gets a stage that completes when the sender loop has terminated. */
+	public CompletionStage<Void> terminated() {
+		return _terminated;
 	}
 
 	/** Runs it in a new Thread. */
 	@Override
 	public void run() {
-		if (rtp_socket==null || input_stream==null) return;
+		if (!_entered.compareAndSet(false, true)) {
+			// Halted before being started.
+			return;
+		}
+		if (rtp_socket==null || input_stream==null) {
+			_terminated.complete(null);
+			return;
+		}
 		//else
+		RtpStreamEvent event=new RtpStreamEvent();
+		event.begin();
+		int local_port=rtp_socket.getUdpSocket().getLocalPort();
 		
 		// number of payload bytes after RTP formatting
 		int formatted_len=(rtp_payload_format!=null)? rtp_payload_format.getRtpPayloadFormatLength(payload_size) : payload_size;		
-		byte[] packet_buffer=new byte[BUFFER_SIZE];
+		RtpBufferPool buffer_pool=RtpBufferPool.getInstance();
+		byte[] packet_buffer=buffer_pool.lease(BUFFER_SIZE);
 		RtpPacket rtp_packet=new RtpPacket(packet_buffer,RTPH_LEN); // empty RTP packet
 		if (STATIC_SSRC>=0) ssrc=STATIC_SSRC;
 		if (STATIC_SQN>=0) sqn=STATIC_SQN;
@@ -380,8 +412,11 @@ public class RtpStreamSender implements Runnable, RtpControlledSender {
 			}
 		}
 		catch (Exception e) {
-			error=e;
-			if (DEBUG) e.printStackTrace();
+			// a socket closed after halting is the regular way to stop the sender
+			if (!_shouldStop) {
+				error=e;
+				if (DEBUG) e.printStackTrace();
+			}
 		} finally {
 			synchronized (this) {
 				_running = false;
@@ -396,12 +431,29 @@ public class RtpStreamSender implements Runnable, RtpControlledSender {
 		rtp_socket.close();
 		
 		// free all references
+		buffer_pool.release(packet_buffer);
 		input_stream=null;
 		rtp_socket=null;
 
 		if (DEBUG)
 			LOG.debug("rtp sender terminated");
-		if (listener!=null) listener.onRtpStreamSenderTerminated(this,error);
+		event.end();
+		if (event.shouldCommit()) {
+			event.direction=RtpStreamEvent.SEND;
+			event.localPort=local_port;
+			event.remoteAddress=remote_soaddr.toString();
+			event.payloadType=p_type;
+			event.packets=packet_count;
+			event.bytes=octect_count;
+			if (error!=null) event.error=error.toString();
+			event.commit();
+		}
+		try {
+			if (listener!=null) listener.onRtpStreamSenderTerminated(this,error);
+		}
+		finally {
+			_terminated.complete(null);
+		}
 	}
 	
 	/** Gets the total number of UDP sent packets. */
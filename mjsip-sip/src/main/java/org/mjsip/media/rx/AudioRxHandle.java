@@ -3,6 +3,8 @@
  */
 package org.mjsip.media.rx;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 
 /**
@@ -24,4 +26,14 @@ public interface AudioRxHandle {
 	 */
 	void halt();
 
+	/**
+	 * Stops the reception without waiting for it to terminate.
+	 *
+	 * @return A stage that completes when the reception has terminated.
+	 */
+	default CompletionStage<Void> haltAsync() {
+		halt();
+		return CompletableFuture.completedFuture(null);
+	}
+
 }
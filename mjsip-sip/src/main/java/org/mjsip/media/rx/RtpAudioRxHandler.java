@@ -3,6 +3,7 @@
  */
 package org.mjsip.media.rx;
 
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 
 import org.mjsip.media.RtpStreamReceiver;
@@ -31,4 +32,10 @@ public class RtpAudioRxHandler implements AudioRxHandle {
 		_rtpReceiver.halt();
 	}
 
+	@Override
+	public CompletionStage<Void> haltAsync() {
+		halt();
+		return _rtpReceiver.terminated();
+	}
+
 }
@@ -4,9 +4,9 @@
 package org.mjsip.media.tx;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 import org.mjsip.media.RtpStreamSender;
@@ -14,9 +14,11 @@ import org.mjsip.media.RtpStreamSenderListener;
 import org.mjsip.rtp.RtpControl;
 import org.mjsip.rtp.RtpPayloadFormat;
 import org.mjsip.sound.AudioFile;
+import org.mjsip.sound.CodecRegistry;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.UdpSocket;
 import org.zoolu.sound.CodecType;
+import org.zoolu.sound.SimpleAudioSystem;
 import org.zoolu.util.Encoder;
 
 /**
@@ -42,7 +44,15 @@ public class AudioFileTransmitter implements AudioTransmitter {
 			int packet_size, String remote_addr, int remote_port, RtpStreamSenderListener listener, RtpControl rtpControl) throws IOException {
 		try {
 			LOG.info("Streaming audio from file " + _audioFile + " format: " + audio_format);
-			AudioInputStream audioIn = AudioFile.getAudioFileInputStream(_audioFile, audio_format);
+			InputStream audioIn;
+			CodecRegistry registry = CodecRegistry.getDefault();
+			if (registry.supports(codec)) {
+				// Encode directly from linear PCM without format conversion lookup.
+				AudioFormat pcmFormat = SimpleAudioSystem.getBaseAudioFormat(sample_rate, channels);
+				audioIn = registry.encode(AudioFile.getAudioFileInputStream(_audioFile, pcmFormat), codec, channels);
+			} else {
+				audioIn = AudioFile.getAudioFileInputStream(_audioFile, audio_format);
+			}
 			RtpStreamSender sender = new RtpStreamSender(options, audioIn, true, payload_type, payloadFormat, sample_rate,
 					channels, packet_time, packet_size, additional_encoder, udp_socket, remote_addr, remote_port, rtpControl, listener);
 			return new RtpAudioTxHandle(sender);
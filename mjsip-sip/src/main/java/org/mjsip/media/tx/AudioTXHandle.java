@@ -4,6 +4,8 @@
 package org.mjsip.media.tx;
 
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 
 import org.mjsip.media.RtpStreamSender;
@@ -30,6 +32,16 @@ public interface AudioTXHandle {
 	 */
 	void halt();
 
+	/**
+	 * Stops the transmission without waiting for it to terminate.
+	 *
+	 * @return A stage that completes when the transmission has terminated.
+	 */
+	default CompletionStage<Void> haltAsync() {
+		halt();
+		return CompletableFuture.completedFuture(null);
+	}
+
 	/**
 	 * Switches the remote socket address.
 	 * 
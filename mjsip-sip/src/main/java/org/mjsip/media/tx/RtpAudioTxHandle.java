@@ -4,6 +4,7 @@
 package org.mjsip.media.tx;
 
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 
 import org.mjsip.media.RtpStreamSender;
@@ -40,6 +41,12 @@ public class RtpAudioTxHandle implements AudioTXHandle {
 		_rtpSender.halt();
 	}
 
+	@Override
+	public CompletionStage<Void> haltAsync() {
+		halt();
+		return _rtpSender.terminated();
+	}
+
 	@Override
 	public void join() throws InterruptedException {
 		_rtpSender.join();
@@ -4,6 +4,7 @@
 package org.mjsip.pool;
 
 import org.kohsuke.args4j.Option;
+import org.mjsip.rtp.RtpBufferPool;
 
 /**
  * Configuration options for specifying a port range to serve RTP streams.
@@ -16,6 +17,12 @@ public class PortConfig implements PortOptions {
 	@Option(name = "--port-count", usage = "The number of ports used for RTP media streaming.")
 	private int _portCount = 100;
 
+	@Option(name = "--socket-warmup", usage = "The number of RTP/RTCP socket pairs to keep bound in advance (0 for binding sockets on call setup).")
+	private int _socketWarmUp = 0;
+
+	@Option(name = "--port-quarantine", usage = "The time in milliseconds a released media port is not reused (0 for immediate reuse).")
+	private long _portQuarantine = 0;
+
 	@Override
 	public int getMediaPort() {
 		return _mediaPort;
@@ -36,10 +43,44 @@ public class PortConfig implements PortOptions {
 		_portCount = portCount;
 	}
 
+	@Override
+	public int getSocketWarmUp() {
+		return _socketWarmUp;
+	}
+
+	/** @see #getSocketWarmUp() */
+	public void setSocketWarmUp(int socketWarmUp) {
+		_socketWarmUp = socketWarmUp;
+	}
+
+	@Override
+	public long getPortQuarantine() {
+		return _portQuarantine;
+	}
+
+	/** @see #getPortQuarantine() */
+	public void setPortQuarantine(long portQuarantine) {
+		_portQuarantine = portQuarantine;
+	}
+
 	/** 
 	 * Creates a {@link PortPool} with this configuration.
+	 * 
+	 * <p>
+	 * If sockets are bound in advance, or released ports are quarantined, a {@link RtpSocketPool} is
+	 * created.
+	 * </p>
+	 *
+	 * <p>
+	 * The retention of the shared {@link RtpBufferPool} is adjusted to the number of streams the
+	 * port range can serve.
+	 * </p>
 	 */
 	public PortPool createPool() {
+		RtpBufferPool.getInstance().setExpectedStreams(Math.max(1, getPortCount() / 2));
+		if (getSocketWarmUp() > 0 || getPortQuarantine() > 0) {
+			return new RtpSocketPool(getMediaPort(), getPortCount(), getSocketWarmUp(), getPortQuarantine());
+		}
 		return new PortPool(getMediaPort(), getPortCount());
 	}
 
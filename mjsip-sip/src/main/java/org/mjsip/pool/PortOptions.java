@@ -27,4 +27,22 @@ public interface PortOptions {
 	 */
 	int getPortCount();
 
+	/**
+	 * The number of RTP/RTCP socket pairs to keep bound in advance.
+	 * 
+	 * <p>
+	 * A value greater than zero moves binding the media sockets out of call setup.
+	 * </p>
+	 * 
+	 * @see RtpSocketPool
+	 */
+	int getSocketWarmUp();
+
+	/**
+	 * The time in milliseconds a released media port is not allocated again.
+	 * 
+	 * @see RtpSocketPool
+	 */
+	long getPortQuarantine();
+
 }
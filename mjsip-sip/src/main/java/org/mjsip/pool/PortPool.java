@@ -55,8 +55,20 @@ public class PortPool {
 	 * Creates a {@link PortPool}.
 	 */
 	public PortPool(int firstPort, int portCnt) {
+		this(firstPort, portCnt, 1);
+	}
+
+	/** 
+	 * Creates a {@link PortPool} with ports that are <code>step</code> apart.
+	 * 
+	 * @param firstPort The first port of the pool.
+	 * @param portCnt The number of ports in the pool.
+	 * @param step The distance between two ports of the pool, e.g. 2 for allocating only every
+	 *        second port.
+	 */
+	protected PortPool(int firstPort, int portCnt, int step) {
 		_ports = new int[portCnt];
-		for (int n = 0, p = firstPort, end = firstPort + portCnt; p < end; n++, p++) {
+		for (int n = 0, p = firstPort, end = firstPort + portCnt * step; p < end; n++, p += step) {
 			Integer port = Integer.valueOf(p);
 			
 			_ports[n] = p;
@@ -120,6 +132,22 @@ public class PortPool {
 		_next = last;
 	}
 
+	/**
+	 * Takes the pre-bound sockets of a port allocated from this pool.
+	 * 
+	 * <p>
+	 * The caller becomes the owner of the returned sockets and is responsible for closing them.
+	 * The port itself must still be returned with {@link #release(int)}.
+	 * </p>
+	 *
+	 * @param port A port allocated with {@link #allocate()}.
+	 * @return The pre-bound sockets, or <code>null</code>, if this pool does not pre-bind sockets,
+	 *         or the sockets of the given port could not be bound in advance.
+	 */
+	public RtpSocketPair takeSockets(int port) {
+		return null;
+	}
+
 	private boolean canRelease(int port) {
 		Integer releasedPort = Integer.valueOf(port);
 		assert _allPorts.contains(releasedPort) : "The released port is not among the ports of this pool: " + port;
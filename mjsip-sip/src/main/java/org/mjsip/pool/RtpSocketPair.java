@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pool;
+
+import java.net.SocketException;
+
+import org.zoolu.net.IpAddress;
+import org.zoolu.net.UdpSocket;
+
+/**
+ * Pair of bound UDP sockets for a RTP stream (even port) and its RTCP control stream (next odd
+ * port).
+ */
+public class RtpSocketPair {
+
+	private final UdpSocket _rtpSocket;
+
+	private final UdpSocket _rtcpSocket;
+
+	/**
+	 * Creates a {@link RtpSocketPair}.
+	 */
+	public RtpSocketPair(UdpSocket rtpSocket, UdpSocket rtcpSocket) {
+		_rtpSocket = rtpSocket;
+		_rtcpSocket = rtcpSocket;
+	}
+
+	/**
+	 * Binds the RTP socket to the given port and the RTCP socket to the next port.
+	 *
+	 * @param rtpPort The RTP port.
+	 * @return The bound sockets.
+	 * @throws SocketException If one of the ports cannot be bound.
+	 */
+	public static RtpSocketPair bind(int rtpPort) throws SocketException {
+		UdpSocket rtpSocket = new UdpSocket(rtpPort);
+		try {
+			return new RtpSocketPair(rtpSocket, new UdpSocket(rtpPort + 1));
+		} catch (SocketException ex) {
+			rtpSocket.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * The socket for the RTP stream.
+	 */
+	public UdpSocket getRtpSocket() {
+		return _rtpSocket;
+	}
+
+	/**
+	 * The socket for RTCP packets, bound to the port following the RTP port.
+	 */
+	public UdpSocket getRtcpSocket() {
+		return _rtcpSocket;
+	}
+
+	/**
+	 * Sets the local address reported to the packet capture for both sockets, e.g. the announced
+	 * media address.
+	 *
+	 * @see UdpSocket#setCaptureAddress(IpAddress)
+	 */
+	public void setCaptureAddress(IpAddress address) {
+		_rtpSocket.setCaptureAddress(address);
+		_rtcpSocket.setCaptureAddress(address);
+	}
+
+	/**
+	 * Closes both sockets.
+	 */
+	public void close() {
+		_rtpSocket.close();
+		_rtcpSocket.close();
+	}
+
+	@Override
+	public String toString() {
+		return _rtpSocket.getLocalPort() + "/" + _rtcpSocket.getLocalPort();
+	}
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.pool;
+
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link PortPool} handing out even RTP ports and keeping bound RTP/RTCP socket pairs ready for
+ * the ports to be allocated next.
+ *
+ * <p>
+ * Creating and binding sockets is moved out of the call setup: The pool binds sockets for the
+ * next {@link #getWarmUp() warm-up} ports in advance, and a media streamer takes them with
+ * {@link #takeSockets(int)} instead of binding the port itself. Taken sockets are replaced in the
+ * background, so that neither the call setup nor the hangup path waits for binding sockets.
+ * </p>
+ *
+ * <p>
+ * A released port is not handed out again before its {@link #getQuarantineTime() quarantine}
+ * has elapsed. This prevents late packets of a terminated call from being received by the next
+ * call using the same port. The sockets of a port are re-bound only by a background refill that
+ * runs after its quarantine has elapsed.
+ * </p>
+ *
+ * <p>
+ * Since ports are handed out last in, first out, a port that is put back into the pool is the next
+ * one to be allocated. Each time a port becomes available again, a refill binds its sockets in
+ * advance. Therefore, the number of bound socket pairs may exceed the warm-up by the peak number
+ * of concurrently allocated ports.
+ * </p>
+ */
+public class RtpSocketPool extends PortPool {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(RtpSocketPool.class);
+
+	private final int _warmUp;
+
+	private final long _quarantineTime;
+
+	private final Executor _executor;
+
+	/**
+	 * Whether a refill task is scheduled but has not yet run.
+	 */
+	private boolean _refillScheduled;
+
+	private boolean _closed;
+
+	/**
+	 * Sockets bound in advance, indexed by their RTP port.
+	 */
+	private final Map<Integer, RtpSocketPair> _bound = new HashMap<>();
+
+	/**
+	 * Released ports waiting for their quarantine to elapse, in release order.
+	 */
+	private final ArrayDeque<Quarantined> _quarantine = new ArrayDeque<>();
+
+	/**
+	 * Creates a {@link RtpSocketPool}.
+	 *
+	 * @param firstPort
+	 *        The first port of the range, rounded up to the next even port.
+	 * @param portCnt
+	 *        The number of ports in the range. Each allocation uses two ports (RTP and RTCP).
+	 * @param warmUp
+	 *        The number of socket pairs to keep bound in advance.
+	 * @param quarantineTime
+	 *        The time in milliseconds a released port is kept out of the pool.
+	 */
+	public RtpSocketPool(int firstPort, int portCnt, int warmUp, long quarantineTime) {
+		this(firstPort, portCnt, warmUp, quarantineTime, Refill.EXECUTOR);
+	}
+
+	/**
+	 * Creates a {@link RtpSocketPool} that binds the replacements for taken sockets using the
+	 * given executor.
+	 *
+	 * @param firstPort
+	 *        The first port of the range, rounded up to the next even port.
+	 * @param portCnt
+	 *        The number of ports in the range. Each allocation uses two ports (RTP and RTCP).
+	 * @param warmUp
+	 *        The number of socket pairs to keep bound in advance.
+	 * @param quarantineTime
+	 *        The time in milliseconds a released port is kept out of the pool.
+	 * @param executor
+	 *        The executor binding sockets in the background.
+	 */
+	public RtpSocketPool(int firstPort, int portCnt, int warmUp, long quarantineTime, Executor executor) {
+		super(firstPort + (firstPort & 1), portCnt / 2, 2);
+		_warmUp = warmUp;
+		_quarantineTime = quarantineTime;
+		_executor = executor;
+
+		synchronized (this) {
+			warmUp();
+		}
+	}
+
+	/**
+	 * The number of socket pairs kept bound in advance.
+	 */
+	public int getWarmUp() {
+		return _warmUp;
+	}
+
+	/**
+	 * The time in milliseconds a released port is not handed out again.
+	 */
+	public long getQuarantineTime() {
+		return _quarantineTime;
+	}
+
+	/**
+	 * The number of socket pairs currently bound in advance.
+	 */
+	public synchronized int getBoundCount() {
+		return _bound.size();
+	}
+
+	/**
+	 * The number of released ports currently in quarantine.
+	 */
+	public synchronized int getQuarantineCount() {
+		return _quarantine.size();
+	}
+
+	@Override
+	public synchronized boolean isAvailable() {
+		endQuarantine();
+		return super.isAvailable();
+	}
+
+	@Override
+	public synchronized int allocate() {
+		endQuarantine();
+		return super.allocate();
+	}
+
+	@Override
+	public synchronized RtpSocketPair takeSockets(int port) {
+		RtpSocketPair sockets = _bound.remove(Integer.valueOf(port));
+		if (sockets != null) {
+			scheduleRefill();
+		}
+		return sockets;
+	}
+
+	@Override
+	public synchronized void release(int port) {
+		// Sockets that were never taken may already have received packets for the terminated call.
+		RtpSocketPair unused = _bound.remove(Integer.valueOf(port));
+		if (unused != null) {
+			unused.close();
+			scheduleRefill();
+		}
+
+		if (_quarantineTime > 0) {
+			_quarantine.addLast(new Quarantined(port, System.nanoTime()));
+		} else {
+			super.release(port);
+
+			// The released port is allocated next.
+			scheduleRefill();
+		}
+
+		endQuarantine();
+	}
+
+	/**
+	 * Closes all sockets bound in advance.
+	 */
+	public synchronized void close() {
+		_closed = true;
+		for (RtpSocketPair sockets : _bound.values()) {
+			sockets.close();
+		}
+		_bound.clear();
+	}
+
+	private void endQuarantine() {
+		if (_quarantine.isEmpty()) {
+			return;
+		}
+
+		long now = System.nanoTime();
+		long quarantine = TimeUnit.MILLISECONDS.toNanos(_quarantineTime);
+		while (!_quarantine.isEmpty()) {
+			Quarantined entry = _quarantine.peekFirst();
+			if (now - entry.releaseTime < quarantine) {
+				break;
+			}
+			_quarantine.removeFirst();
+			super.release(entry.port);
+
+			// The port is allocated next.
+			scheduleRefill();
+		}
+	}
+
+	private void scheduleRefill() {
+		if (_refillScheduled || _closed) {
+			return;
+		}
+		_refillScheduled = true;
+		_executor.execute(this::refill);
+	}
+
+	private synchronized void refill() {
+		if (_closed) {
+			_refillScheduled = false;
+			return;
+		}
+		endQuarantine();
+		_refillScheduled = false;
+		warmUp();
+	}
+
+	/**
+	 * Binds sockets for the next {@link #getWarmUp()} ports being allocated, if not yet bound.
+	 */
+	private void warmUp() {
+		int missing = _warmUp;
+
+		// Peek at the next ports by allocating them and putting them back in reverse order.
+		List<Integer> peeked = new ArrayList<>();
+		int attempts = 2 * _warmUp;
+		while (missing > 0 && attempts > 0 && super.isAvailable()) {
+			Integer port = Integer.valueOf(super.allocate());
+			peeked.add(port);
+
+			if (_bound.containsKey(port)) {
+				missing--;
+				continue;
+			}
+
+			attempts--;
+			try {
+				_bound.put(port, RtpSocketPair.bind(port.intValue()));
+				missing--;
+			} catch (SocketException ex) {
+				LOG.warn("Cannot bind RTP/RTCP sockets in advance for port {}: {}", port, ex.getMessage());
+			}
+		}
+		for (int n = peeked.size() - 1; n >= 0; n--) {
+			super.release(peeked.get(n).intValue());
+		}
+	}
+
+	/**
+	 * Lazily created background thread shared by all pools not given an explicit executor.
+	 */
+	private static final class Refill {
+		static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "rtp-socket-refill");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private static final class Quarantined {
+		final int port;
+		final long releaseTime;
+
+		Quarantined(int port, long releaseTime) {
+			this.port = port;
+			this.releaseTime = releaseTime;
+		}
+	}
+
+}
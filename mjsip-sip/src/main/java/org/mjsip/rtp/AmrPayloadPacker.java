@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.rtp;
+
+import org.zoolu.sound.codec.AMR;
+
+/**
+ * Conversion between AMR frames in storage format and the bandwidth-efficient AMR RTP payload
+ * format of RFC 4867.
+ *
+ * <p>
+ * In storage format, each frame starts with a header byte holding the frame type and the quality
+ * bit, followed by the speech bits padded to whole bytes. In a bandwidth-efficient payload, a 4-bit
+ * codec mode request is followed by a 6-bit table of contents entry per frame, and by the speech
+ * bits of all frames without any padding in between.
+ * </p>
+ *
+ * <p>
+ * Bits are moved with a cursor over the given arrays, a byte at a time, without creating objects.
+ * Source and destination must not overlap.
+ * </p>
+ */
+public final class AmrPayloadPacker {
+
+	/** Bit of a table of contents entry signaling that another entry follows. */
+	private static final int TOC_FOLLOW = 0x20;
+
+	/** Quality bit of a table of contents entry. */
+	private static final int TOC_QUALITY = 0x01;
+
+	private AmrPayloadPacker() {
+		// Utility class.
+	}
+
+	/**
+	 * Converts frames in storage format to a bandwidth-efficient payload.
+	 *
+	 * <p>
+	 * All frames are marked as of good quality. A trailing incomplete frame is dropped.
+	 * </p>
+	 *
+	 * @param src
+	 *        The buffer with the frames in storage format.
+	 * @param srcOffset
+	 *        The offset of the first frame header.
+	 * @param srcLength
+	 *        The number of bytes of all frames.
+	 * @param cmr
+	 *        The 4-bit codec mode request to send.
+	 * @param dst
+	 *        The buffer for the payload.
+	 * @param dstOffset
+	 *        The offset to write the payload to.
+	 * @return The length of the payload in bytes.
+	 */
+	public static int pack(byte[] src, int srcOffset, int srcLength, int cmr, byte[] dst, int dstOffset) {
+		int srcEnd = srcOffset + srcLength;
+		int frames = 0;
+		for (int pos = srcOffset; pos < srcEnd; frames++) {
+			int next = pos + storageSize(frameType(src[pos]));
+			if (next > srcEnd) {
+				break;
+			}
+			pos = next;
+		}
+		if (frames == 0) {
+			return 0;
+		}
+
+		int out = dstOffset << 3;
+		writeBits(dst, out, cmr & 0xF, 4);
+		out += 4;
+		int pos = srcOffset;
+		for (int n = 0; n < frames; n++) {
+			int type = frameType(src[pos]);
+			int toc = (type << 1) | TOC_QUALITY;
+			if (n < frames - 1) {
+				toc |= TOC_FOLLOW;
+			}
+			writeBits(dst, out, toc, 6);
+			out += 6;
+			pos += storageSize(type);
+		}
+
+		pos = srcOffset;
+		for (int n = 0; n < frames; n++) {
+			int type = frameType(src[pos]);
+			int bits = AMR.framePayloadBitSize(type);
+			copyBits(src, (pos + 1) << 3, dst, out, bits);
+			out += bits;
+			pos += storageSize(type);
+		}
+		clearTail(dst, out);
+		return ((out + 7) >> 3) - dstOffset;
+	}
+
+	/**
+	 * Converts a bandwidth-efficient payload to frames in storage format.
+	 *
+	 * <p>
+	 * The codec mode request is ignored. Frames without speech bits (no data) are skipped, and a
+	 * truncated frame at the end of the payload is dropped.
+	 * </p>
+	 *
+	 * @param src
+	 *        The buffer with the payload.
+	 * @param srcOffset
+	 *        The offset of the payload.
+	 * @param srcLength
+	 *        The length of the payload in bytes.
+	 * @param dst
+	 *        The buffer for the frames in storage format, must provide space for
+	 *        {@link #getUnpackedLength(byte[], int, int)} bytes.
+	 * @param dstOffset
+	 *        The offset to write the first frame to.
+	 * @return The number of bytes written.
+	 */
+	public static int unpack(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) {
+		int end = (srcOffset + srcLength) << 3;
+		int tocStart = (srcOffset << 3) + 4;
+		int frames = tocCount(src, tocStart, end);
+
+		int in = tocStart + 6 * frames;
+		int out = dstOffset;
+		for (int n = 0; n < frames; n++) {
+			int toc = readBits(src, tocStart + 6 * n, 6);
+			int bits = AMR.framePayloadBitSize((toc >> 1) & 0xF);
+			if (bits == 0) {
+				continue;
+			}
+			if (in + bits > end) {
+				break;
+			}
+			dst[out++] = (byte) ((toc << 2) & 0x7C);
+			copyBits(src, in, dst, out << 3, bits);
+			in += bits;
+			out += (bits + 7) >> 3;
+		}
+		return out - dstOffset;
+	}
+
+	/**
+	 * The number of bytes {@link #unpack(byte[], int, int, byte[], int)} writes for the given
+	 * payload.
+	 */
+	public static int getUnpackedLength(byte[] src, int srcOffset, int srcLength) {
+		int end = (srcOffset + srcLength) << 3;
+		int tocStart = (srcOffset << 3) + 4;
+		int frames = tocCount(src, tocStart, end);
+
+		int in = tocStart + 6 * frames;
+		int result = 0;
+		for (int n = 0; n < frames; n++) {
+			int bits = AMR.framePayloadBitSize((readBits(src, tocStart + 6 * n, 6) >> 1) & 0xF);
+			if (bits == 0) {
+				continue;
+			}
+			if (in + bits > end) {
+				break;
+			}
+			in += bits;
+			result += 1 + ((bits + 7) >> 3);
+		}
+		return result;
+	}
+
+	/**
+	 * The number of table of contents entries starting at the given bit position.
+	 */
+	private static int tocCount(byte[] src, int tocStart, int end) {
+		int result = 0;
+		for (int pos = tocStart; pos + 6 <= end; pos += 6) {
+			result++;
+			if ((readBits(src, pos, 6) & TOC_FOLLOW) == 0) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The frame type of a storage format frame header.
+	 */
+	private static int frameType(byte header) {
+		return (header >> 3) & 0xF;
+	}
+
+	/**
+	 * The size of a frame in storage format including its header.
+	 */
+	private static int storageSize(int type) {
+		return 1 + ((AMR.framePayloadBitSize(type) + 7) >> 3);
+	}
+
+	/**
+	 * Copies bits between byte arrays, most significant bit first.
+	 *
+	 * <p>
+	 * Bits before the destination position in its first byte are kept, bits after the last copied
+	 * bit in its last byte are cleared.
+	 * </p>
+	 *
+	 * @param src
+	 *        The source buffer.
+	 * @param srcBit
+	 *        The bit position in the source buffer.
+	 * @param dst
+	 *        The destination buffer.
+	 * @param dstBit
+	 *        The bit position in the destination buffer.
+	 * @param count
+	 *        The number of bits to copy.
+	 */
+	private static void copyBits(byte[] src, int srcBit, byte[] dst, int dstBit, int count) {
+		while (count > 0) {
+			// Fill the rest of the current destination byte.
+			int direct = Math.min(count, 8 - (dstBit & 7));
+			writeBits(dst, dstBit, readBits(src, srcBit, direct), direct);
+			srcBit += direct;
+			dstBit += direct;
+			count -= direct;
+		}
+		clearTail(dst, dstBit);
+	}
+
+	/**
+	 * Clears the bits from the given position to the end of its byte.
+	 */
+	private static void clearTail(byte[] buf, int bit) {
+		int used = bit & 7;
+		if (used != 0) {
+			buf[bit >> 3] &= (byte) (0xFF00 >> used);
+		}
+	}
+
+	/**
+	 * Reads up to 8 bits.
+	 */
+	private static int readBits(byte[] buf, int bit, int count) {
+		int index = bit >> 3;
+		int shift = bit & 7;
+		int word = (buf[index] & 0xFF) << 8;
+		if (shift + count > 8) {
+			word |= buf[index + 1] & 0xFF;
+		}
+		return (word >> (16 - shift - count)) & ((1 << count) - 1);
+	}
+
+	/**
+	 * Writes up to 8 bits.
+	 */
+	private static void writeBits(byte[] buf, int bit, int value, int count) {
+		int free = 8 - (bit & 7);
+		if (count > free) {
+			writeBits(buf, bit, value >> (count - free), free);
+			writeBits(buf, bit + free, value, count - free);
+			return;
+		}
+		int index = bit >> 3;
+		int shift = 8 - (bit & 7) - count;
+		int mask = ((1 << count) - 1) << shift;
+		buf[index] = (byte) ((buf[index] & ~mask) | ((value << shift) & mask));
+	}
+
+}
@@ -24,8 +24,6 @@ package org.mjsip.rtp;
 
 
 import org.zoolu.sound.codec.AMR;
-import org.zoolu.util.BitString;
-import org.zoolu.util.BitStringBuffer;
 
 
 
@@ -111,28 +109,23 @@ public class AmrRtpPayloadFormat implements RtpPayloadFormat {
 
 
 	/** Removes RTP payload format in Bandwidth-Efficient Mode.
+	  * <p>
+	  * The payload is copied to a buffer leased from the {@link RtpBufferPool}, since the unpacked frames
+	  * are written to the same buffer and, with more than one frame, may be longer than the payload.
 	  * @param buf the RTP payload buffer
 	  * @param off the offset within the RTP payload buffer
 	  * @param len the number of bytes of the received (formatted) RTP payload.
 	  * @return the number of bytes after removing the RTP payload format */
-	private static int removeRtpPayloadFormatBandwidthEfficient(byte[] buf, int off, int len) throws Exception {
-		BitStringBuffer bb=new BitStringBuffer().append(new BitString(buf,off,len,false));
-		int cmr=(bb.poll(4).toBitString().getBytes(false)[0]&0xf0)>>4;
-		int hdr=bb.poll(6).toBitString().getBytes(false)[0];
-		int type=(hdr>>3)&0xf;
-		int frame_bit_len=AMR.framePayloadBitSize(type);
-		if (frame_bit_len==0) return 0;
-		// else
-		byte[] data=bb.poll(frame_bit_len).toBitString().getBytes(false);
-		//int pad_len=(8-(frame_bit_len+10)%8)%8;
-		//bb.poll(pad_len);
-		//System.out.println("CMR="+cmr+", TF="+type+", pad="+pad_len+", data="+org.zoolu.util.ByteUtils.asHex(data));
-
-		//if (type>=8 || data.length==0) return 0; // AMR SID (comfort noise)
-		// else
-		buf[off]=(byte)hdr;
-		for (int i=0; i<data.length; i++) buf[off+1+i]=data[i];
-		return data.length+1;
+	private static int removeRtpPayloadFormatBandwidthEfficient(byte[] buf, int off, int len) {
+		RtpBufferPool pool=RtpBufferPool.getInstance();
+		byte[] payload=pool.lease(len);
+		try {
+			System.arraycopy(buf,off,payload,0,len);
+			return AmrPayloadPacker.unpack(payload,0,len,buf,off);
+		}
+		finally {
+			pool.release(payload);
+		}
 	}
 
 
@@ -142,18 +135,15 @@ public class AmrRtpPayloadFormat implements RtpPayloadFormat {
 	  * @param len the number of bytes of the original (unformatted) RTP payload.
 	  * @return the number of bytes after additional RTP payload format has been applied */
 	private static int setRtpPayloadFormatBandwidthEfficient(byte[] buf, int off, int len) {
-		BitStringBuffer bb=new BitStringBuffer();
-		//BitString cmr=new BitString("1111"); // no specific mode
-		BitString cmr=new BitString(new byte[]{(byte)DEFAULT_CMR},false).substring(4,8);
-		bb.append(cmr);
-		int hdr=buf[off];
-		int type=(hdr>>3)&0xf;
-		BitString toc=new BitString(new byte[]{(byte)((type<<1)|0x1)},false).substring(2,8);
-		bb.append(toc);
-		bb.append(new BitString(buf,off+1,len-1,false));
-		int frame_bit_len=AMR.framePayloadBitSize(type);
-		bb=bb.substring(0,10+frame_bit_len);
-		return bb.toBitString().getBytes(buf,off,false);
+		RtpBufferPool pool=RtpBufferPool.getInstance();
+		byte[] frames=pool.lease(len);
+		try {
+			System.arraycopy(buf,off,frames,0,len);
+			return AmrPayloadPacker.pack(frames,0,len,DEFAULT_CMR,buf,off);
+		}
+		finally {
+			pool.release(frames);
+		}
 	}
 
 
@@ -57,7 +57,7 @@ public class RtcpProvider implements UdpProviderListener {
 	  * @param udp_socket the local UDP socket used for receiving RTCP packets
 	  * @param listener the RTCP provider listener */
 	public RtcpProvider(UdpSocket udp_socket, RtcpProviderListener listener) {
-		this.udp=new UdpProvider(udp_socket,this);
+		this.udp=new UdpProvider(udp_socket,0,this,RtpBufferPool.getInstance());
 		this.listener=listener;
 	}
 
@@ -66,7 +66,7 @@ public class RtcpProvider implements UdpProviderListener {
 	  * @param remote_dest_soaddr the remote UDP socket address where RTCP packet are sent to
 	  * @param listener the RTCP provider listener */
 	public RtcpProvider(UdpSocket udp_socket, SocketAddress remote_dest_soaddr, RtcpProviderListener listener) {
-		this.udp=new UdpProvider(udp_socket,this);
+		this.udp=new UdpProvider(udp_socket,0,this,RtpBufferPool.getInstance());
 		this.remote_dest_soaddr=remote_dest_soaddr;
 		this.listener=listener;
 	}
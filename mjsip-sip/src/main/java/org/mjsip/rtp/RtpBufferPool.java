@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.rtp;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.zoolu.net.BufferPool;
+
+/**
+ * {@link BufferPool} for the packet buffers of RTP senders, receivers and relays.
+ *
+ * <p>
+ * Buffers are organized in size classes of powers of two from {@link #MIN_SIZE} to
+ * {@link #MAX_SIZE} bytes. A lease is served from the free list of the smallest class that fits
+ * the requested size, and only allocates a new buffer if this list is empty. The free list of each
+ * class retains a number of buffers proportional to the {@link #getExpectedStreams() expected
+ * number of streams}, so that the buffers of all expected streams can be reused, while a burst
+ * of additional streams does not pin its buffers after the streams have terminated.
+ * </p>
+ *
+ * <p>
+ * Buffers larger than {@link #MAX_SIZE} and buffers not obtained from a pool are not retained.
+ * </p>
+ */
+public class RtpBufferPool implements BufferPool {
+
+	/**
+	 * Size of the smallest size class.
+	 */
+	public static final int MIN_SIZE = 256;
+
+	/**
+	 * Size of the largest size class.
+	 */
+	public static final int MAX_SIZE = 65536;
+
+	/**
+	 * Default number of concurrent streams, matching the default port range of
+	 * {@link org.mjsip.pool.PortConfig}.
+	 */
+	public static final int DEFAULT_STREAMS = 50;
+
+	/**
+	 * Number of buffers of the same size class held by a stream, e.g. the receive and the send
+	 * buffer of a media session, or the receive buffers of both sides of a relay.
+	 */
+	private static final int BUFFERS_PER_STREAM = 2;
+
+	/**
+	 * Minimum number of buffers retained in the free list of each size class.
+	 */
+	private static final int MIN_RETAINED = 4;
+
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+
+	private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+
+	private static final RtpBufferPool INSTANCE = new RtpBufferPool(DEFAULT_STREAMS);
+
+	private final ConcurrentLinkedQueue<byte[]>[] _free;
+
+	private final AtomicInteger[] _freeCount;
+
+	private volatile int _expectedStreams;
+
+	private volatile int _maxFree;
+
+	private final AtomicLong _leased = new AtomicLong();
+
+	private final AtomicLong _allocated = new AtomicLong();
+
+	private final AtomicLong _discarded = new AtomicLong();
+
+	/**
+	 * Creates a {@link RtpBufferPool}.
+	 *
+	 * @param expectedStreams
+	 *        The number of streams expected to use the pool concurrently.
+	 */
+	@SuppressWarnings("unchecked")
+	public RtpBufferPool(int expectedStreams) {
+		_free = new ConcurrentLinkedQueue[CLASSES];
+		_freeCount = new AtomicInteger[CLASSES];
+		for (int n = 0; n < CLASSES; n++) {
+			_free[n] = new ConcurrentLinkedQueue<>();
+			_freeCount[n] = new AtomicInteger();
+		}
+		setExpectedStreams(expectedStreams);
+	}
+
+	/**
+	 * The pool shared by all RTP streams and relays.
+	 */
+	public static RtpBufferPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * The number of streams expected to use the pool concurrently.
+	 */
+	public int getExpectedStreams() {
+		return _expectedStreams;
+	}
+
+	/**
+	 * Adjusts the number of buffers retained in each size class to the given number of
+	 * concurrent streams.
+	 *
+	 * <p>
+	 * Free buffers exceeding a reduced limit are not dropped immediately, but are discarded
+	 * instead of being retained when they are released again after their next lease.
+	 * </p>
+	 *
+	 * @see #getExpectedStreams()
+	 */
+	public void setExpectedStreams(int expectedStreams) {
+		_expectedStreams = expectedStreams;
+		_maxFree = Math.max(MIN_RETAINED, expectedStreams * BUFFERS_PER_STREAM);
+	}
+
+	/**
+	 * The maximum number of free buffers retained in each size class.
+	 */
+	public int getMaxFreeCount() {
+		return _maxFree;
+	}
+
+	@Override
+	public byte[] lease(int size) {
+		_leased.incrementAndGet();
+		if (size > MAX_SIZE) {
+			_allocated.incrementAndGet();
+			return new byte[size];
+		}
+		int sizeClass = sizeClass(size);
+		byte[] buf = _free[sizeClass].poll();
+		if (buf != null) {
+			_freeCount[sizeClass].decrementAndGet();
+			return buf;
+		}
+		_allocated.incrementAndGet();
+		return new byte[classSize(sizeClass)];
+	}
+
+	@Override
+	public void release(byte[] buf) {
+		if (buf == null) {
+			return;
+		}
+		int size = buf.length;
+		if (size < MIN_SIZE || size > MAX_SIZE || Integer.bitCount(size) != 1) {
+			_discarded.incrementAndGet();
+			return;
+		}
+		int sizeClass = sizeClass(size);
+		if (_freeCount[sizeClass].incrementAndGet() > _maxFree) {
+			_freeCount[sizeClass].decrementAndGet();
+			_discarded.incrementAndGet();
+			return;
+		}
+		_free[sizeClass].offer(buf);
+	}
+
+	/**
+	 * The number of leases served so far.
+	 */
+	public long getLeasedCount() {
+		return _leased.get();
+	}
+
+	/**
+	 * The number of buffers allocated so far, because no free buffer was available.
+	 */
+	public long getAllocatedCount() {
+		return _allocated.get();
+	}
+
+	/**
+	 * The number of released buffers that have not been retained.
+	 */
+	public long getDiscardedCount() {
+		return _discarded.get();
+	}
+
+	/**
+	 * The number of free buffers of the size class serving the given size.
+	 */
+	public int getFreeCount(int size) {
+		return size > MAX_SIZE ? 0 : _freeCount[sizeClass(size)].get();
+	}
+
+	/**
+	 * The size of the buffers served for the given size.
+	 */
+	public static int bufferSize(int size) {
+		return size > MAX_SIZE ? size : classSize(sizeClass(size));
+	}
+
+	private static int sizeClass(int size) {
+		if (size <= MIN_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+	}
+
+	private static int classSize(int sizeClass) {
+		return MIN_SIZE << sizeClass;
+	}
+
+	@Override
+	public String toString() {
+		return "RtpBufferPool(leased=" + getLeasedCount() + ", allocated=" + getAllocatedCount() + ", discarded="
+				+ getDiscardedCount() + ")";
+	}
+
+}
@@ -57,7 +57,7 @@ public class RtpProvider implements UdpProviderListener {
 	  * @param udp_socket the local UDP socket used for receiving RTP packets
 	  * @param listener the RTP provider listener */
 	public RtpProvider(UdpSocket udp_socket, RtpProviderListener listener) {
-		this.udp=new UdpProvider(udp_socket,this);
+		this.udp=new UdpProvider(udp_socket,0,this,RtpBufferPool.getInstance());
 		this.remote_dest_soaddr=null;
 		this.listener=listener;
 	}
@@ -67,7 +67,7 @@ public class RtpProvider implements UdpProviderListener {
 	  * @param remote_dest_soaddr the remote destination UDP socket address where RTP packet are sent to
 	  * @param listener the RTP provider listener */
 	public RtpProvider(UdpSocket udp_socket, SocketAddress remote_dest_soaddr, RtpProviderListener listener) {
-		this.udp=new UdpProvider(udp_socket,this);
+		this.udp=new UdpProvider(udp_socket,0,this,RtpBufferPool.getInstance());
 		this.remote_dest_soaddr=remote_dest_soaddr;
 		this.listener=listener;
 	}
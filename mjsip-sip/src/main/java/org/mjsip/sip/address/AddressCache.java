@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.address;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mjsip.sip.provider.SipParser;
+import org.zoolu.util.Parser;
+
+/**
+ * Bounded cache of parsed {@link SipURI}s and {@link NameAddress}es, keyed by their source text.
+ *
+ * <p>
+ * A proxy or registrar sees the same address-of-record and contact strings with almost every
+ * request. The cache keeps one parsed instance per distinct text, so that these strings are not
+ * tokenized again and again. Since {@link SipURI} is mutable, the cached instances are never handed
+ * out. Each lookup returns a copy that the caller is free to modify.
+ * </p>
+ *
+ * <p>
+ * The cache is safe for concurrent use. Entries are kept in two generations of at most half the
+ * capacity each. When the current generation is full, it becomes the previous one and the former
+ * previous generation is dropped. A hit in the previous generation moves the entry back to the
+ * current one. Frequently used addresses therefore stay in the cache, while addresses seen only
+ * once are evicted without tracking an access order.
+ * </p>
+ */
+public final class AddressCache {
+
+	/**
+	 * The capacity of the {@link #getInstance() shared instance}.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static final AddressCache INSTANCE = new AddressCache(DEFAULT_CAPACITY);
+
+	private final Generations<SipURI> _sipURIs;
+
+	private final Generations<NameAddress> _nameAddresses;
+
+	/**
+	 * Creates an {@link AddressCache}.
+	 *
+	 * @param capacity
+	 *        The maximum number of {@link SipURI}s and the maximum number of {@link NameAddress}es
+	 *        to keep.
+	 */
+	public AddressCache(int capacity) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+		}
+		_sipURIs = new Generations<>(capacity / 2);
+		_nameAddresses = new Generations<>(capacity / 2);
+	}
+
+	/**
+	 * The cache shared by all SIP providers, proxies and registrars of this VM.
+	 */
+	public static AddressCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Parses a {@link SipURI}, see {@link SipURI#parseSipURI(String)}.
+	 *
+	 * @param uri
+	 *        The URI source text.
+	 * @return A new {@link SipURI} that is not shared with the cache, <code>null</code> if the given
+	 *         text is empty.
+	 */
+	public SipURI getSipURI(String uri) {
+		if (uri == null) {
+			return null;
+		}
+		SipURI result = _sipURIs.get(uri);
+		if (result == null) {
+			result = SipURI.parseSipURI(uri);
+			if (result == null) {
+				return null;
+			}
+			_sipURIs.put(uri, result);
+		}
+		return result.copy();
+	}
+
+	/**
+	 * Parses the {@link NameAddress} from a header value, see {@link SipParser#getNameAddress()}.
+	 *
+	 * <p>
+	 * Header parameters following an address in angle brackets (such as the <code>tag</code> of a
+	 * From header) are not part of the {@link NameAddress} and are not part of the cache key. An
+	 * address without angle brackets cannot be separated from its header parameters before
+	 * parsing. It is only cached, if it has no parameters at all. Otherwise, each tag would add an
+	 * entry that is used only once.
+	 * </p>
+	 *
+	 * @param value
+	 *        The header value starting with the name address.
+	 * @return A new {@link NameAddress} that is not shared with the cache.
+	 */
+	public NameAddress getNameAddress(String value) {
+		String key = nameAddressKey(value);
+		if (key == null) {
+			return new SipParser(value).getNameAddress();
+		}
+		NameAddress result = _nameAddresses.get(key);
+		if (result == null) {
+			result = new SipParser(key).getNameAddress();
+			if (result == null || result.getAddress() == null) {
+				return result;
+			}
+			_nameAddresses.put(key, result);
+		}
+		return new NameAddress(result.getDisplayName(), (GenericURI) result.getAddress().clone());
+	}
+
+	/**
+	 * The cache key for a name address header value, <code>null</code> if the value should not be
+	 * cached.
+	 */
+	private static String nameAddressKey(String value) {
+		if (value.indexOf('<') < 0) {
+			return value.indexOf(';') < 0 ? value : null;
+		}
+		Parser par = new Parser(value);
+		par.goToSkippingQuoted('>');
+		if (!par.hasMore()) {
+			return value;
+		}
+		return value.substring(0, par.getPos() + 1);
+	}
+
+	/**
+	 * The number of cached {@link SipURI}s.
+	 */
+	public int sipURIs() {
+		return _sipURIs.size();
+	}
+
+	/**
+	 * The number of cached {@link NameAddress}es.
+	 */
+	public int nameAddresses() {
+		return _nameAddresses.size();
+	}
+
+	/**
+	 * Drops all cached entries.
+	 */
+	public void clear() {
+		_sipURIs.clear();
+		_nameAddresses.clear();
+	}
+
+	/**
+	 * Two generations of cache entries.
+	 */
+	private static final class Generations<T> {
+
+		private final int _limit;
+
+		private volatile ConcurrentHashMap<String, T> _current = new ConcurrentHashMap<>();
+
+		private volatile ConcurrentHashMap<String, T> _previous = new ConcurrentHashMap<>();
+
+		Generations(int limit) {
+			_limit = limit;
+		}
+
+		T get(String key) {
+			T result = _current.get(key);
+			if (result == null) {
+				result = _previous.get(key);
+				if (result != null) {
+					put(key, result);
+				}
+			}
+			return result;
+		}
+
+		void put(String key, T value) {
+			ConcurrentHashMap<String, T> current = _current;
+			current.put(key, value);
+			if (current.size() >= _limit) {
+				rotate(current);
+			}
+		}
+
+		private synchronized void rotate(ConcurrentHashMap<String, T> full) {
+			if (_current == full) {
+				_previous = full;
+				_current = new ConcurrentHashMap<>();
+			}
+		}
+
+		int size() {
+			return _current.size() + _previous.size();
+		}
+
+		synchronized void clear() {
+			_current = new ConcurrentHashMap<>();
+			_previous = new ConcurrentHashMap<>();
+		}
+
+	}
+
+}
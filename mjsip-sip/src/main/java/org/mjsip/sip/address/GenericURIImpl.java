@@ -96,7 +96,7 @@ public class GenericURIImpl extends GenericURI {
 
 	@Override
 	public SipURI toSipURI() {
-		return SipURI.parseSipURI(uri);
+		return AddressCache.getInstance().getSipURI(uri);
 	}
 
 	@Override
@@ -160,7 +160,7 @@ public class GenericURIImpl extends GenericURI {
 		while (par.hasMore()) {
 			int begin_param=par.getPos();
 			par.skipChar();
-			if (par.getWord(SipParser.param_separators).equals(name)) {
+			if (par.getWord(SipParser.PARAM_SEPARATORS).equals(name)) {
 				String top=uri.substring(0,begin_param); 
 				par.goToSkippingQuoted(';');
 				String bottom="";
@@ -6,11 +6,37 @@ package org.mjsip.sip.address;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.zoolu.util.CharTable;
+
 /**
  * Parser for {@link SipURI}s.
  */
 public class SipURIParser {
 
+	/** Delimiters after the scheme. */
+	private static final CharTable USER_OR_HOST_END = CharTable.of(':', '@', '[', ';', '?');
+
+	/** Delimiters after a token that is either a user name or a host. */
+	private static final CharTable PASSWORD_OR_PORT_END = CharTable.of('@', ';', '?');
+
+	/** Delimiters after the user info. */
+	private static final CharTable HOST_END = CharTable.of(':', '[', ';', '?');
+
+	/** Delimiters after a host. */
+	private static final CharTable PORT_START = CharTable.of(':', ';', '?');
+
+	/** Delimiters after a port or parameter. */
+	private static final CharTable PARAM_END = CharTable.of(';', '?');
+
+	/** Delimiter of headers. */
+	private static final CharTable HEADER_END = CharTable.of('&');
+
+	/** Delimiter of a parameter or header name. */
+	private static final CharTable NAME_END = CharTable.of('=');
+
+	/** End of an IPv6 reference. */
+	private static final CharTable IPV6_END = CharTable.of(']');
+
 	int pos;
 
 	private String uri;
@@ -57,7 +83,7 @@ public class SipURIParser {
 			pos = 0;
 		}
 
-		int index = next(new char[] { ':', '@', '[', ';', '?' });
+		int index = next(USER_OR_HOST_END);
 		if (index < 0) {
 			host = remaining();
 			return uri();
@@ -94,7 +120,7 @@ public class SipURIParser {
 	private SipURI parseUserOrPort(int index) {
 		String token = consume(index);
 
-		int next = next('@', ';', '?');
+		int next = next(PASSWORD_OR_PORT_END);
 		if (next < 0) {
 			// This was the port.
 			host = token;
@@ -130,7 +156,7 @@ public class SipURIParser {
 	 * <code>host:port;uri-parameters?headers</code>
 	 */
 	private SipURI parseHost() {
-		int index = next(new char[] { ':', '[', ';', '?' });
+		int index = next(HOST_END);
 		if (index < 0) {
 			if (done()) {
 				throw new IllegalArgumentException("Missing host at position " + pos + ".");
@@ -168,7 +194,7 @@ public class SipURIParser {
 	 * <code>[fe80::43c6:1e57:8a59:ce55]:port;uri-parameters?headers</code>
 	 */
 	private SipURI parseIPv6() {
-		int index = next(']');
+		int index = next(IPV6_END);
 		if (index < 0) {
 			throw parseError(pos);
 		}
@@ -176,7 +202,7 @@ public class SipURIParser {
 		host = consume(index);
 		ipv6 = true;
 		
-		index = next(':', ';', '?');
+		index = next(PORT_START);
 
 		if (index < 0) {
 			if (done()) {
@@ -213,7 +239,7 @@ public class SipURIParser {
 	 * <code>port;uri-parameters?headers</code>
 	 */
 	private SipURI parsePort() {
-		int index = next(';', '?');
+		int index = next(PARAM_END);
 
 		if (index < 0) {
 			if (done()) {
@@ -245,7 +271,7 @@ public class SipURIParser {
 
 	private SipURI parseParams() {
 		while (true) {
-			int index = next(';', '?');
+			int index = next(PARAM_END);
 
 			if (index < 0) {
 				if (done()) {
@@ -273,7 +299,7 @@ public class SipURIParser {
 	}
 
 	private void parseKeyValue(Map<String, String> map, int limit) {
-		int index = nextLimit(limit, '=');
+		int index = nextLimit(limit, NAME_END);
 		if (index < 0) {
 			String key = consume(limit);
 			map.put(key, null);
@@ -286,7 +312,7 @@ public class SipURIParser {
 
 	private SipURI parseHeaders() {
 		while (true) {
-			int index = next('&');
+			int index = next(HEADER_END);
 
 			if (index < 0) {
 				if (done()) {
@@ -331,22 +357,14 @@ public class SipURIParser {
 	}
 
 	/**
-	 * Finds the position of the next separator character given in the character array.
+	 * Finds the position of the next separator character given in the table.
 	 */
-	private int next(char... separators) {
+	private int next(CharTable separators) {
 		return nextLimit(uri.length(), separators);
 	}
 
-	private int nextLimit(int limit, char... separators) {
-		for (int n = pos; n < limit; n++) {
-			char ch = uri.charAt(n);
-			for (char sep : separators) {
-				if (ch == sep) {
-					return n;
-				}
-			}
-		}
-		return -1;
+	private int nextLimit(int limit, CharTable separators) {
+		return separators.indexIn(uri, pos, limit);
 	}
 
 	private IllegalArgumentException parseError(int pos) {
@@ -22,6 +22,7 @@
  */
 package org.mjsip.sip.dialog;
 
+import org.mjsip.jfr.DialogStateEvent;
 import org.mjsip.sip.message.SipMessage;
 import org.mjsip.sip.provider.SipId;
 import org.mjsip.sip.provider.SipProvider;
@@ -50,6 +51,12 @@ public abstract class Dialog extends DialogInfo implements SipProviderListener {
 	/** Dialog identifier */
 	protected SipId dialog_id;
 
+	/** Creation time in nanoseconds, for the flight recorder */
+	private final long creation_time;
+
+	/** Time of the last state change in nanoseconds, for the flight recorder */
+	private long status_time;
+
 	// ************************* Abstract methods *************************
 
 	/** Gets the dialog state */
@@ -89,13 +96,27 @@ public abstract class Dialog extends DialogInfo implements SipProviderListener {
 		this.dialog_num=dialog_counter++;  
 		this.status = DialogStatus.D_INIT;
 		this.dialog_id=null;
+		this.creation_time=this.status_time=System.nanoTime();
 	}
  
 	// ************************* Protected methods ************************
 
 	/** Changes the internal dialog state */
 	protected void changeStatus(DialogStatus newStatus) {
+		DialogStatus oldStatus = status;
 		status = newStatus;
+		long now = System.nanoTime();
+		DialogStateEvent event = new DialogStateEvent();
+		if (event.shouldCommit()) {
+			event.callId = getCallID();
+			event.dialogType = getClass().getSimpleName();
+			event.fromState = oldStatus.toString();
+			event.toState = newStatus.toString();
+			event.timeInState = now - status_time;
+			event.age = now - creation_time;
+			event.commit();
+		}
+		status_time = now;
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Set state of dialog" + (dialog_id != null ? " " + dialog_id : "") + " to: " + getStatus());
 		}
@@ -25,9 +25,9 @@ package org.mjsip.sip.header;
 
 
 
+import org.mjsip.sip.address.AddressCache;
 import org.mjsip.sip.address.GenericURI;
 import org.mjsip.sip.address.NameAddress;
-import org.mjsip.sip.provider.SipParser;
 
 
 
@@ -99,7 +99,7 @@ public abstract class EndPointHeader extends NameAddressHeader {
 	  * (that leads to the wildcard in case of ContactHeader) */
 	@Override
 	public NameAddress getNameAddress() {
-		NameAddress naddr=(new SipParser(value)).getNameAddress();
+		NameAddress naddr=AddressCache.getInstance().getNameAddress(value);
 		// patch for removing eventual 'tag' or other EndPointHeader parameters from NameAddress
 		GenericURI uri=naddr.getAddress();
 		for (int i=0; i< ENDPOINT_PARAMS.length; i++) {
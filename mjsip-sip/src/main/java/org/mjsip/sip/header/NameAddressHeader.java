@@ -25,9 +25,9 @@ package org.mjsip.sip.header;
 
 
 
+import org.mjsip.sip.address.AddressCache;
 import org.mjsip.sip.address.GenericURI;
 import org.mjsip.sip.address.NameAddress;
-import org.mjsip.sip.provider.SipParser;
 import org.zoolu.util.Parser;
 
 
@@ -59,8 +59,7 @@ public abstract class NameAddressHeader extends ParametricHeader {
 
 	/** Gets NameAddress of NameAddressHeader (Returns null if NameAddress does not exist - i.e. wildcard ContactHeader) */
 	public NameAddress getNameAddress() {
-		NameAddress naddr=(new SipParser(value)).getNameAddress();
-		return naddr;
+		return AddressCache.getInstance().getNameAddress(value);
 	}
 
 	/** Sets NameAddress of NameAddressHeader */
@@ -119,7 +119,7 @@ public abstract class ParametricHeader extends LegacyHeader {
 		while (par.hasMore()) {
 			int begin_param=par.getPos();
 			par.skipChar();
-			if (par.getWord(SipParser.param_separators).equals(pname)) {
+			if (par.getWord(SipParser.PARAM_SEPARATORS).equals(pname)) {
 				String top=header.substring(0,begin_param); 
 				par.goToSkippingQuoted(';');
 				String bottom="";
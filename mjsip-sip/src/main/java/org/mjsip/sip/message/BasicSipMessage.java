@@ -29,6 +29,7 @@ import org.mjsip.sip.header.ContentDispositionHeader;
 import org.mjsip.sip.header.ContentLengthHeader;
 import org.mjsip.sip.header.ContentTypeHeader;
 import org.mjsip.sip.header.Header;
+import org.mjsip.sip.header.LegacyHeader;
 import org.mjsip.sip.header.MultipleHeader;
 import org.mjsip.sip.header.RequestLine;
 import org.mjsip.sip.header.SipHeaders;
@@ -36,7 +37,9 @@ import org.mjsip.sip.header.StatusLine;
 import org.mjsip.sip.provider.ConnectionId;
 import org.mjsip.sip.provider.SipParser;
 import org.slf4j.LoggerFactory;
+import org.zoolu.util.ByteTokenizer;
 import org.zoolu.util.ByteUtils;
+import org.zoolu.util.CharTable;
 
 /** BasicSipMessage is a standard SIP Message as defined by RFC 3261.
   * <p>
@@ -46,6 +49,12 @@ import org.zoolu.util.ByteUtils;
   * <br>
   * It implements one-time-parsing, that is it parses the entire message just one time
   * when it is created by a text String or byte array.
+  * <p>
+  * Copies of a message share the list of header fields and the body with the original
+  * message. The list of header fields is copied only when either message is modified
+  * (copy-on-write), so that creating a copy costs O(1), and modifying it costs O(number of
+  * header fields) once. Header field objects, the request-line, the status-line, and the body
+  * are never modified in place by this class; a modification always replaces them.
   */
 public abstract class BasicSipMessage {
 	
@@ -68,6 +77,12 @@ public abstract class BasicSipMessage {
 	/** SIP version String (actually just "SIP/") */
 	protected static final String SIP_VERSION="SIP/"; 
 
+	/** Delimiter of the message header */
+	private static final byte[] CRLFCRLF={(byte)'\r',(byte)'\n',(byte)'\r',(byte)'\n'};
+
+	/** Delimiter of the message header, if lines are terminated by LF only */
+	private static final byte[] LFLF={(byte)'\n',(byte)'\n'};
+
 	/** Maximum receiving packet size */
 	protected static int MAX_PKT_SIZE=8000; 
 	
@@ -83,6 +98,9 @@ public abstract class BasicSipMessage {
 	/** Connection identifier */
 	protected ConnectionId connection_id=null;
 
+	/** Time in nanoseconds the message was received, 0 if not received from a transport */
+	protected long receive_time=0;
+
 
 	/** Request-line */
 	protected RequestLine request_line=null;
@@ -90,9 +108,12 @@ public abstract class BasicSipMessage {
 	/** Status-line */
 	protected StatusLine status_line=null;
 
-	/** Vector of all header fields */
+	/** Vector of all header fields, possibly shared with copies of this message */
 	protected Vector<Header> headers = new Vector<>();
 
+	/** Whether <i>headers</i> may be shared with another message, and must be copied before being modified */
+	private boolean shared_headers=false;
+
 	/** Message body */
 	protected byte[] body=null;
 
@@ -156,12 +177,24 @@ public abstract class BasicSipMessage {
 		remote_port=msg.remote_port;
 		transport_proto=msg.transport_proto;
 		connection_id=msg.connection_id;
+		receive_time=msg.receive_time;
 		request_line=msg.request_line;
 		status_line=msg.status_line;
-		//headers=new Vector();
-		for (int i=0; i<msg.headers.size(); i++) headers.addElement(msg.headers.elementAt(i));
+		// share the header fields until either message is modified
+		headers=msg.headers;
+		shared_headers=true;
+		msg.shared_headers=true;
 		body=msg.body;
 	}
+
+	/** Prepares the header fields for being modified.
+	  * If they are shared with another message, they are replaced by a private copy. */
+	private void modifyHeaders() {
+		if (shared_headers) {
+			headers=new Vector<>(headers);
+			shared_headers=false;
+		}
+	}
 	
 	/** Sets the message from a string representing the SIP message.
 	  * The string must contain (and start with) a valid SIP message, otherwise a MalformedSipMessageException is thrown.
@@ -183,7 +216,11 @@ public abstract class BasicSipMessage {
 			
 			// parse all header fields
 			//headers=new Vector();
-			if (headers.size()>0) headers.removeAllElements();
+			if (shared_headers) {
+				headers=new Vector<>();
+				shared_headers=false;
+			}
+			else if (headers.size()>0) headers.removeAllElements();
 			Header h = par.getHeader();
 			while (h!=null) {
 				headers.addElement(h);
@@ -229,30 +266,42 @@ public abstract class BasicSipMessage {
 			}*/
 		
 			// find total header length
-			byte[] delim={(byte)'\r',(byte)'\n',(byte)'\r',(byte)'\n'};
-			int siph_len=ByteUtils.indexOf(delim,buf,off,len);
-			if (siph_len<0) {
-				delim=new byte[]{(byte)'\n',(byte)'\n'};
-				siph_len=ByteUtils.indexOf(delim,buf,off,len);
+			ByteTokenizer tok=new ByteTokenizer(buf,off,len);
+			byte[] delim=CRLFCRLF;
+			int siph_end=tok.indexOf(delim);
+			if (siph_end<0) {
+				delim=LFLF;
+				siph_end=tok.indexOf(delim);
 			}
-			if (siph_len<0) throw new MalformedSipMessageException("No SIP header delimiter found.");
+			if (siph_end<0) throw new MalformedSipMessageException("No SIP header delimiter found.");
 			// else
-			siph_len+=delim.length;
-			String siph_str=new String(buf,off,siph_len);
-	
+			int siph_len=siph_end-off+delim.length;
+			if (siph_len<SIP_VERSION.length()) throw new MalformedSipMessageException("SIP header too short.");
+
 			// parse first line
-			SipParser par=new SipParser(siph_str);
-			String proto_version=siph_str.substring(0,SIP_VERSION.length());     
-			if (proto_version.equalsIgnoreCase(SIP_VERSION)) status_line=par.getStatusLine();
+			tok=new ByteTokenizer(buf,off,siph_len);
+			boolean is_response=tok.startsWithIgnoreCase(SIP_VERSION);
+			if (!is_response) tok.skip(CharTable.WSPCRLF);
+			int first_line_end=tok.indexOfEndOfFoldedLine();
+			SipParser par=new SipParser(tok.getString(tok.getPos(),first_line_end));
+			if (is_response) status_line=par.getStatusLine();
 			else request_line=par.getRequestLine();
+			tok.setPos(first_line_end).skipLineBreak();
 	
-			// parse all header fields
+			// parse all header fields directly from the bytes
 			//headers=new Vector();
-			if (headers.size()>0) headers.removeAllElements();
-			Header h = par.getHeader();
-			while (h!=null) {
-				headers.addElement(h);
-				h=par.getHeader();
+			if (shared_headers) {
+				headers=new Vector<>();
+				shared_headers=false;
+			}
+			else if (headers.size()>0) headers.removeAllElements();
+			while (tok.hasMore()) {
+				int begin=tok.getPos();
+				int end=tok.indexOfEndOfFoldedLine();
+				tok.setPos(end).skipLineBreak();
+				int colon=tok.indexOf(':',begin,end);
+				if (colon<0) break;
+				headers.addElement(new LegacyHeader(tok.getTrimmedString(begin,colon),tok.getTrimmedString(colon+1,end)));
 			}
 	
 			// get body
@@ -353,6 +402,16 @@ public abstract class BasicSipMessage {
 		this.connection_id=connection_id;
 	}
 
+	/** Gets the {@link System#nanoTime()} when the message was received, 0 if not received from a transport. */
+	public long getReceiveTime() {
+		return receive_time;
+	}
+
+	/** Sets the {@link System#nanoTime()} when the message was received. */
+	public void setReceiveTime(long time) {
+		receive_time=time;
+	}
+
 	/** Clears transport information (transport protocol, address, port, and connection). */
 	public void clearTransport() {
 		setTransportProtocol(null);
@@ -517,6 +576,7 @@ public abstract class BasicSipMessage {
 			int ct=indexOfHeader(SipHeaders.Content_Type);
 			if (ct>=0 && ct<pos) pos=ct;
 		}
+		modifyHeaders();
 		headers.insertElementAt(header,pos);
 	}
 	
@@ -532,6 +592,7 @@ public abstract class BasicSipMessage {
 			int ct=indexOfHeader(SipHeaders.Content_Type);
 			if (ct>=0 && ct<pos) pos=ct;
 		}
+		modifyHeaders();
 		for (int i=0; i<headers.size(); i++) this.headers.insertElementAt(headers.elementAt(i),pos+i);
 	}
 
@@ -546,6 +607,7 @@ public abstract class BasicSipMessage {
 	public void addHeaderBefore(Header new_header, String refer_hname) {
 		int i=indexOfHeader(refer_hname);
 		if (i<0) i=0;
+		modifyHeaders();
 		headers.insertElementAt(new_header,i);
 	}
 
@@ -557,6 +619,7 @@ public abstract class BasicSipMessage {
 			int index=indexOfHeader(refer_hname);
 			if (index<0) index=0;
 			Vector<Header> hs = mheader.getHeaders();
+			modifyHeaders();
 			for (int k=0; k<hs.size(); k++) headers.insertElementAt(hs.elementAt(k),index+k);
 		}
 	}
@@ -566,6 +629,7 @@ public abstract class BasicSipMessage {
 	public void addHeaderAfter(Header new_header, String refer_hname) {
 		int i=indexOfHeader(refer_hname);
 		if (i>=0) i++; else i=headers.size();
+		modifyHeaders();
 		headers.insertElementAt(new_header,i);
 	}
 
@@ -577,6 +641,7 @@ public abstract class BasicSipMessage {
 			int index=indexOfHeader(refer_hname);
 			if (index>=0) index++; else index=headers.size();
 			Vector<Header> hs = mheader.getHeaders();
+			modifyHeaders();
 			for (int k=0; k<hs.size(); k++) headers.insertElementAt(hs.elementAt(k),index+k);
 		}
 	}
@@ -596,7 +661,10 @@ public abstract class BasicSipMessage {
 				if (first) i=headers.size();
 			}
 		}
-		if (index>=0) headers.removeElementAt(index);
+		if (index>=0) {
+			modifyHeaders();
+			headers.removeElementAt(index);
+		}
 	}
 	
 	/** Removes all Headers of specified name. */
@@ -604,6 +672,7 @@ public abstract class BasicSipMessage {
 		for (int i=0 ; i<headers.size(); i++) {
 			Header hi = headers.elementAt(i);
 			if (hname.equalsIgnoreCase(hi.getName())) {
+				modifyHeaders();
 				headers.removeElementAt(i);
 				i--;
 			}
@@ -614,6 +683,7 @@ public abstract class BasicSipMessage {
 	public void setHeader(Header hd) {
 		boolean not_found=true;
 		String hname=hd.getName();
+		if (indexOfHeader(hname)>=0) modifyHeaders();
 		for (int i=0 ; i<headers.size(); i++) {
 			Header hi = headers.elementAt(i);
 			if (hname.equalsIgnoreCase(hi.getName())) {
@@ -638,6 +708,7 @@ public abstract class BasicSipMessage {
 		else {
 			boolean not_found=true;
 			String hname=mheader.getName();
+			if (indexOfHeader(hname)>=0) modifyHeaders();
 			for (int i=0 ; i<headers.size(); i++) {
 				Header hi = headers.elementAt(i);
 				if (hname.equalsIgnoreCase(hi.getName())) {
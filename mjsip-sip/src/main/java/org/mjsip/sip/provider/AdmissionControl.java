@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.provider;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.message.SipMethods;
+
+/**
+ * Overload protection deciding whether a received message is processed by a {@link SipProvider}.
+ *
+ * <p>
+ * Messages are {@link #classify(byte[], int, int) classified} from their raw bytes, before they
+ * are parsed. Responses and requests within an existing dialog or transaction (requests with a To
+ * tag, ACK and CANCEL) are always accepted, since they complete work that has already been
+ * started. New requests are accepted only if
+ * </p>
+ * <ul>
+ * <li>the number of transactions in progress is below {@link SipOptions#getMaxTransactions()},
+ * and</li>
+ * <li>the source address has not exceeded {@link SipOptions#getMaxSourceRate()}.</li>
+ * </ul>
+ *
+ * <p>
+ * The rate of each source address is limited by a token bucket (implemented as generic cell rate
+ * algorithm), whose state is a single theoretical arrival time updated lock-free. A new INVITE
+ * that is not accepted is {@link Verdict#REJECT rejected}, i.e. answered with a stateless 503
+ * response, all other new requests are silently {@link Verdict#DROP dropped}.
+ * </p>
+ */
+public class AdmissionControl {
+
+	/**
+	 * Decision about a received message.
+	 */
+	public enum Verdict {
+		/** The message is processed. */
+		ACCEPT,
+
+		/** The message is discarded without being parsed. */
+		DROP,
+
+		/** The message is answered with a 503 (Service Unavailable) response. */
+		REJECT
+	}
+
+	/**
+	 * Traffic class of a received message.
+	 */
+	public enum Traffic {
+		/** A response. */
+		RESPONSE,
+
+		/** A request within an existing dialog or transaction. */
+		IN_DIALOG,
+
+		/** A new INVITE. */
+		INVITE,
+
+		/** Any other new request. */
+		REQUEST
+	}
+
+	private static final byte[] SIP_VERSION = { 'S', 'I', 'P', '/' };
+
+	private static final long PURGE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	private final long _interval;
+
+	private final long _tolerance;
+
+	private final int _maxSources;
+
+	private final int _maxTransactions;
+
+	/**
+	 * Theoretical arrival time of the next request of each source address.
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> _sources = new ConcurrentHashMap<>();
+
+	private final AtomicLong _nextPurge;
+
+	private final AtomicLong _accepted = new AtomicLong();
+
+	private final AtomicLong _prioritized = new AtomicLong();
+
+	private final AtomicLong _dropped = new AtomicLong();
+
+	private final AtomicLong _rejected = new AtomicLong();
+
+	/**
+	 * Creates an {@link AdmissionControl} from the given options.
+	 */
+	public AdmissionControl(SipOptions options) {
+		this(options.getMaxSourceRate(), options.getMaxSourceBurst(), options.getMaxSources(),
+				options.getMaxTransactions());
+	}
+
+	/**
+	 * Creates an {@link AdmissionControl}.
+	 *
+	 * @param maxSourceRate
+	 *        The maximum number of new requests per second from a single source, 0 for no limit.
+	 * @param maxSourceBurst
+	 *        The number of new requests a single source may send at once.
+	 * @param maxSources
+	 *        The maximum number of tracked source addresses.
+	 * @param maxTransactions
+	 *        The maximum number of transactions in progress, 0 for no limit.
+	 */
+	public AdmissionControl(int maxSourceRate, int maxSourceBurst, int maxSources, int maxTransactions) {
+		_interval = maxSourceRate > 0 ? TimeUnit.SECONDS.toNanos(1) / maxSourceRate : 0;
+		_tolerance = Math.max(1, maxSourceBurst) * _interval;
+		_maxSources = maxSources;
+		_maxTransactions = maxTransactions;
+		_nextPurge = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Whether any limit is configured.
+	 */
+	public boolean isEnabled() {
+		return _interval > 0 || _maxTransactions > 0;
+	}
+
+	/**
+	 * Decides about a message that has not yet been parsed.
+	 *
+	 * @param buf
+	 *        The buffer containing the message.
+	 * @param off
+	 *        The offset of the message within the buffer.
+	 * @param len
+	 *        The length of the message.
+	 * @param source
+	 *        The source address of the message.
+	 * @param transactions
+	 *        The number of transactions in progress.
+	 * @param now
+	 *        The current time as given by {@link System#nanoTime()}.
+	 */
+	public Verdict admit(byte[] buf, int off, int len, String source, int transactions, long now) {
+		return admit(classify(buf, off, len), source, transactions, now);
+	}
+
+	/**
+	 * Decides about a parsed message.
+	 *
+	 * @see #admit(byte[], int, int, String, int, long)
+	 */
+	public Verdict admit(SipMessage msg, int transactions, long now) {
+		return admit(classify(msg), msg.getRemoteAddress(), transactions, now);
+	}
+
+	/**
+	 * Decides about a message of the given traffic class.
+	 *
+	 * @see #admit(byte[], int, int, String, int, long)
+	 */
+	public Verdict admit(Traffic traffic, String source, int transactions, long now) {
+		if (traffic == Traffic.RESPONSE || traffic == Traffic.IN_DIALOG) {
+			_prioritized.incrementAndGet();
+			return Verdict.ACCEPT;
+		}
+
+		boolean overload = _maxTransactions > 0 && transactions >= _maxTransactions;
+		if (overload || !consume(source, now)) {
+			if (traffic == Traffic.INVITE) {
+				_rejected.incrementAndGet();
+				return Verdict.REJECT;
+			}
+			_dropped.incrementAndGet();
+			return Verdict.DROP;
+		}
+
+		_accepted.incrementAndGet();
+		return Verdict.ACCEPT;
+	}
+
+	/**
+	 * The number of accepted new requests.
+	 */
+	public long getAcceptedCount() {
+		return _accepted.get();
+	}
+
+	/**
+	 * The number of accepted responses and in-dialog requests.
+	 */
+	public long getPrioritizedCount() {
+		return _prioritized.get();
+	}
+
+	/**
+	 * The number of dropped new requests.
+	 */
+	public long getDroppedCount() {
+		return _dropped.get();
+	}
+
+	/**
+	 * The number of new INVITEs rejected with a 503 response.
+	 */
+	public long getRejectedCount() {
+		return _rejected.get();
+	}
+
+	/**
+	 * The number of currently tracked source addresses.
+	 */
+	public int getSourceCount() {
+		return _sources.size();
+	}
+
+	private boolean consume(String source, long now) {
+		if (_interval == 0) {
+			return true;
+		}
+
+		AtomicLong tat = _sources.get(source);
+		if (tat == null) {
+			if (_sources.size() >= _maxSources && !purge(now)) {
+				return false;
+			}
+			tat = _sources.computeIfAbsent(source, s -> new AtomicLong(now));
+		}
+
+		while (true) {
+			long current = tat.get();
+			long next = (current - now > 0 ? current : now) + _interval;
+			if (next - now > _tolerance) {
+				return false;
+			}
+			if (tat.compareAndSet(current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Removes sources that have not sent requests recently, at most once per
+	 * {@link #PURGE_INTERVAL}.
+	 *
+	 * @return Whether there is room for a new source.
+	 */
+	private boolean purge(long now) {
+		long next = _nextPurge.get();
+		if (now - next >= 0 && _nextPurge.compareAndSet(next, now + PURGE_INTERVAL)) {
+			_sources.values().removeIf(tat -> tat.get() - now <= 0);
+		}
+		return _sources.size() < _maxSources;
+	}
+
+	/**
+	 * Classifies a message without parsing it.
+	 *
+	 * <p>
+	 * Only the start line and the To header field are inspected. A message that cannot be
+	 * classified is considered a new request.
+	 * </p>
+	 */
+	public static Traffic classify(byte[] buf, int off, int len) {
+		int end = off + len;
+		int pos = off;
+		while (pos < end && (buf[pos] == '\r' || buf[pos] == '\n')) {
+			pos++;
+		}
+		if (startsWithIgnoreCase(buf, pos, end, SIP_VERSION)) {
+			return Traffic.RESPONSE;
+		}
+
+		int methodEnd = pos;
+		while (methodEnd < end && buf[methodEnd] != ' ') {
+			methodEnd++;
+		}
+		if (isMethod(buf, pos, methodEnd, SipMethods.ACK) || isMethod(buf, pos, methodEnd, SipMethods.CANCEL)) {
+			return Traffic.IN_DIALOG;
+		}
+		Traffic traffic = isMethod(buf, pos, methodEnd, SipMethods.INVITE) ? Traffic.INVITE : Traffic.REQUEST;
+
+		int line = nextLine(buf, methodEnd, end);
+		while (line < end) {
+			int next = nextLine(buf, line, end);
+			int eol = next;
+			while (eol > line && (buf[eol - 1] == '\n' || buf[eol - 1] == '\r')) {
+				eol--;
+			}
+			if (eol == line) {
+				// End of header.
+				break;
+			}
+			int value = toValue(buf, line, eol);
+			if (value > 0) {
+				return hasTag(buf, value, eol) ? Traffic.IN_DIALOG : traffic;
+			}
+			line = next;
+		}
+		return traffic;
+	}
+
+	/**
+	 * Classifies a parsed message.
+	 *
+	 * @see #classify(byte[], int, int)
+	 */
+	public static Traffic classify(SipMessage msg) {
+		if (msg.isResponse()) {
+			return Traffic.RESPONSE;
+		}
+		if (msg.isAck() || msg.isCancel()) {
+			return Traffic.IN_DIALOG;
+		}
+		if (msg.hasToHeader() && msg.getToHeader().hasTag()) {
+			return Traffic.IN_DIALOG;
+		}
+		return msg.isInvite() ? Traffic.INVITE : Traffic.REQUEST;
+	}
+
+	private static int nextLine(byte[] buf, int pos, int end) {
+		while (pos < end && buf[pos] != '\n') {
+			pos++;
+		}
+		return pos < end ? pos + 1 : end;
+	}
+
+	/**
+	 * The start of the value, if the given line is a To header field, -1 otherwise.
+	 */
+	private static int toValue(byte[] buf, int line, int eol) {
+		int pos = line;
+		if (pos < eol && (buf[pos] | 0x20) == 't') {
+			pos++;
+			if (pos < eol && (buf[pos] | 0x20) == 'o') {
+				pos++;
+			}
+			while (pos < eol && (buf[pos] == ' ' || buf[pos] == '\t')) {
+				pos++;
+			}
+			if (pos < eol && buf[pos] == ':') {
+				return pos + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the given header field value contains a tag parameter outside of an angle bracket
+	 * enclosed URI.
+	 */
+	private static boolean hasTag(byte[] buf, int pos, int eol) {
+		for (int n = eol - 1; n >= pos; n--) {
+			if (buf[n] == '>') {
+				pos = n + 1;
+				break;
+			}
+		}
+		for (; pos < eol; pos++) {
+			if (buf[pos] != ';') {
+				continue;
+			}
+			int param = pos + 1;
+			while (param < eol && (buf[param] == ' ' || buf[param] == '\t')) {
+				param++;
+			}
+			if (param + 3 <= eol && (buf[param] | 0x20) == 't' && (buf[param + 1] | 0x20) == 'a'
+					&& (buf[param + 2] | 0x20) == 'g') {
+				int eq = param + 3;
+				while (eq < eol && (buf[eq] == ' ' || buf[eq] == '\t')) {
+					eq++;
+				}
+				if (eq < eol && buf[eq] == '=') {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isMethod(byte[] buf, int start, int stop, String method) {
+		if (stop - start != method.length()) {
+			return false;
+		}
+		for (int n = 0; n < method.length(); n++) {
+			if (buf[start + n] != method.charAt(n)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean startsWithIgnoreCase(byte[] buf, int pos, int end, byte[] prefix) {
+		if (end - pos < prefix.length) {
+			return false;
+		}
+		for (int n = 0; n < prefix.length; n++) {
+			int b = buf[pos + n];
+			if ((b | 0x20) != (prefix[n] | 0x20)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -44,6 +44,13 @@ public abstract class CopyOnWriteListeners<L, M> {
 		return copyWhileIterating().remove(listener);
 	}
 
+	/**
+	 * Whether there are no listeners.
+	 */
+	public boolean isEmpty() {
+		return _list.isEmpty();
+	}
+
 	/**
 	 * Clears this list.
 	 */
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.provider;
+
+/**
+ * Listener of a {@link SipProvider} that may handle a message received through a connection-less
+ * transport from its raw bytes, before it is parsed.
+ *
+ * @see SipProvider#setRawMessageListener(RawMessageListener)
+ */
+public interface RawMessageListener {
+
+	/**
+	 * Called for each message received through a connection-less transport that has been admitted
+	 * by the {@link SipProvider#admissionControl() admission control}.
+	 *
+	 * <p>
+	 * The buffer is only valid during this call.
+	 * </p>
+	 *
+	 * @param provider
+	 *        The provider that received the message.
+	 * @param transport
+	 *        The transport that received the message.
+	 * @param buf
+	 *        The buffer containing the message.
+	 * @param off
+	 *        The offset of the message within the buffer.
+	 * @param len
+	 *        The length of the message.
+	 * @param remote_addr
+	 *        The source address of the message.
+	 * @param remote_port
+	 *        The source port of the message.
+	 * @return Whether the message has been handled. If <code>false</code>, the message is parsed
+	 *         and dispatched to the {@link SipProviderListener}s as usual.
+	 */
+	boolean onReceivedRawMessage(SipProvider provider, SipTransport transport, byte[] buf, int off, int len,
+			String remote_addr, int remote_port);
+
+}
@@ -88,6 +88,28 @@ public class SipConfig implements SipOptions {
 	@Option(name = "--clearing-timeout")
 	private long _clearingTimeout = 5000;
 
+	// *********************** overload control ***********************
+
+	/** @see #getMaxSourceRate() */
+	@Option(name = "--max-source-rate", usage = "Maximum rate of new requests per second accepted from a single source address, 0 for no limit.")
+	private int _maxSourceRate = 0;
+
+	/** @see #getMaxSourceBurst() */
+	@Option(name = "--max-source-burst", usage = "Number of new requests a single source address may send at once.")
+	private int _maxSourceBurst = 20;
+
+	/** @see #getMaxSources() */
+	@Option(name = "--max-sources", usage = "Maximum number of source addresses tracked for rate limiting.")
+	private int _maxSources = 10000;
+
+	/** @see #getMaxTransactions() */
+	@Option(name = "--max-transactions", usage = "Maximum number of transactions in progress before new requests are rejected, 0 for no limit.")
+	private int _maxTransactions = 0;
+
+	/** @see #getOverloadRetryAfter() */
+	@Option(name = "--overload-retry-after", usage = "Retry-After value in seconds of 503 responses sent on overload.")
+	private int _overloadRetryAfter = 5;
+
 	// ******************** general configurations ********************
 
 	@Option(name = "--max-forwards")
@@ -158,6 +180,10 @@ public class SipConfig implements SipOptions {
 	@Option(name = "--max-connections")
 	private int _maxConnections = 0;
 
+	/** @see #getUdpSockets() */
+	@Option(name = "--udp-sockets", usage = "Number of UDP sockets sharing the SIP port (SO_REUSEPORT), each with its own receiver thread.")
+	private int _udpSockets = 1;
+
 	@Option(name = "--outbound-proxy", handler = SipURIHandler.class, usage = "Use the given outbound proxy.")
 	private SipURI _outboundProxy = null;
 
@@ -166,6 +192,22 @@ public class SipConfig implements SipOptions {
 	@Option(name = "--log-all-packets", handler = YesNoHandler.class, usage = "Whether to log all SIP messages.")
 	private boolean _logAllPackets = false;
 
+	/** @see #getCaptureFile() */
+	@Option(name = "--capture-file", usage = "Path and name prefix of pcap files to capture all packets to.")
+	private String _captureFile = null;
+
+	/** @see #getCaptureFilter() */
+	@Option(name = "--capture-filter", usage = "Packets to capture, e.g. 'udp:5060,tcp:5060,10000-20000'.")
+	private String _captureFilter = null;
+
+	/** @see #getCaptureMaxFileSize() */
+	@Option(name = "--capture-max-file-size", usage = "Size in bytes after which a new capture file is started, 0 for a single file.")
+	private long _captureMaxFileSize = 100 * 1024 * 1024;
+
+	/** @see #getCaptureMaxFiles() */
+	@Option(name = "--capture-max-files", usage = "Number of capture files to keep, 0 for keeping all files.")
+	private int _captureMaxFiles = 10;
+
 	@Option(name = "--trust-all", handler = YesNoHandler.class)
 	private boolean _trustAll;
 
@@ -531,6 +573,16 @@ public class SipConfig implements SipOptions {
 		this._maxConnections = maxConnections;
 	}
 
+	@Override
+	public int getUdpSockets() {
+		return _udpSockets;
+	}
+
+	/** @see #getUdpSockets() */
+	public void setUdpSockets(int udpSockets) {
+		this._udpSockets = udpSockets;
+	}
+
 	@Override
 	public SipURI getOutboundProxy() {
 		return _outboundProxy;
@@ -559,6 +611,46 @@ public class SipConfig implements SipOptions {
 		this._logAllPackets = logAllPackets;
 	}
 
+	@Override
+	public String getCaptureFile() {
+		return _captureFile;
+	}
+
+	/** @see #getCaptureFile() */
+	public void setCaptureFile(String captureFile) {
+		this._captureFile = captureFile;
+	}
+
+	@Override
+	public String getCaptureFilter() {
+		return _captureFilter;
+	}
+
+	/** @see #getCaptureFilter() */
+	public void setCaptureFilter(String captureFilter) {
+		this._captureFilter = captureFilter;
+	}
+
+	@Override
+	public long getCaptureMaxFileSize() {
+		return _captureMaxFileSize;
+	}
+
+	/** @see #getCaptureMaxFileSize() */
+	public void setCaptureMaxFileSize(long captureMaxFileSize) {
+		this._captureMaxFileSize = captureMaxFileSize;
+	}
+
+	@Override
+	public int getCaptureMaxFiles() {
+		return _captureMaxFiles;
+	}
+
+	/** @see #getCaptureMaxFiles() */
+	public void setCaptureMaxFiles(int captureMaxFiles) {
+		this._captureMaxFiles = captureMaxFiles;
+	}
+
 	@Override
 	public boolean isTrustAll() {
 		return _trustAll;
@@ -604,6 +696,56 @@ public class SipConfig implements SipOptions {
 		this._keyFile = keyFile;
 	}
 
+	@Override
+	public int getMaxSourceRate() {
+		return _maxSourceRate;
+	}
+
+	/** @see #getMaxSourceRate() */
+	public void setMaxSourceRate(int maxSourceRate) {
+		this._maxSourceRate = maxSourceRate;
+	}
+
+	@Override
+	public int getMaxSourceBurst() {
+		return _maxSourceBurst;
+	}
+
+	/** @see #getMaxSourceBurst() */
+	public void setMaxSourceBurst(int maxSourceBurst) {
+		this._maxSourceBurst = maxSourceBurst;
+	}
+
+	@Override
+	public int getMaxSources() {
+		return _maxSources;
+	}
+
+	/** @see #getMaxSources() */
+	public void setMaxSources(int maxSources) {
+		this._maxSources = maxSources;
+	}
+
+	@Override
+	public int getMaxTransactions() {
+		return _maxTransactions;
+	}
+
+	/** @see #getMaxTransactions() */
+	public void setMaxTransactions(int maxTransactions) {
+		this._maxTransactions = maxTransactions;
+	}
+
+	@Override
+	public int getOverloadRetryAfter() {
+		return _overloadRetryAfter;
+	}
+
+	/** @see #getOverloadRetryAfter() */
+	public void setOverloadRetryAfter(int overloadRetryAfter) {
+		this._overloadRetryAfter = overloadRetryAfter;
+	}
+
 	/** Outbound proxy addr (for backward compatibility). */
 	private String getOutboundAddr() {
 		return _outboundAddr;
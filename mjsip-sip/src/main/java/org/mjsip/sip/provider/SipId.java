@@ -35,6 +35,9 @@ public final class SipId extends Identifier {
 	/** Identifier for ANY messages (regardless their method). */
 	public static final SipId ANY_METHOD = new SipId("ANY");
 
+	/** Whether this identifies a transaction. */
+	private final boolean transaction;
+
 	public static SipId createDialogId(String call_id, String local_tag, String remote_tag) {
 		return new SipId(dialodId(call_id, local_tag, remote_tag));
 	}
@@ -84,12 +87,12 @@ public final class SipId extends Identifier {
 		CSeqHeader cseqh = msg.getCSeqHeader();
 		long seqn = cseqh.getSequenceNumber();
 		String method = cseqh.getMethod();
-		return new SipId(transactionId(uac, call_id, seqn, method, sent_by, branch));
+		return new SipId(transactionId(uac, call_id, seqn, method, sent_by, branch), true);
 	}
 
 	public static SipId createTransactionId(boolean uac, String call_id, long seqn, String method,
 			String sent_by, String branch) {
-		return new SipId(transactionId(uac, call_id, seqn, method, sent_by, branch));
+		return new SipId(transactionId(uac, call_id, seqn, method, sent_by, branch), true);
 	}
 
 	/**
@@ -132,12 +135,26 @@ public final class SipId extends Identifier {
 	/** Creates a new SipId.
 	  * @param str_id the string value of the identifier */
 	private SipId(String str_id) {
+		this(str_id,false);
+	}
+
+	/** Creates a new SipId.
+	  * @param str_id the string value of the identifier
+	  * @param transaction whether the identifier addresses a transaction */
+	private SipId(String str_id, boolean transaction) {
 		super(str_id);
+		this.transaction=transaction;
 	}
 
 	/** Creates a new SipId
 	  * @param id a SIP identifier */
 	private SipId(SipId id) {
 		super(id);
+		this.transaction=id.transaction;
+	}
+
+	/** Whether this identifier addresses a transaction (and not a dialog or a method). */
+	public boolean isTransaction() {
+		return transaction;
 	}
 }
@@ -23,6 +23,8 @@ package org.mjsip.sip.provider;
 
 
 
+import java.nio.charset.StandardCharsets;
+
 import org.mjsip.sip.message.SipMessage;
 import org.zoolu.net.SocketAddress;
 
@@ -33,6 +35,10 @@ import org.zoolu.net.SocketAddress;
   * <p>
   * It periodically sends keep-alive tokens in order to refresh TCP connection timeouts
   * and/or NAT timeouts (for the TCP and/or UDP sessions).
+  * <p>
+  * The keep-alive tokens are sent by a task of the SipProvider's scheduler. Over UDP, the token
+  * is serialized once and sent as raw datagram. The SipProvider reports all messages it sends
+  * toward the target, so that no token is sent while other SIP traffic keeps the binding alive.
   */
 public class SipKeepAlive extends UdpKeepAlive {
 	
@@ -58,17 +64,20 @@ public class SipKeepAlive extends UdpKeepAlive {
 	/** Sip token */
 	SipMessage sip_token=null;
 
+	/** The serialized token */
+	byte[] token_data;
+
 
 	/** Creates a new SipKeepAlive. */
 	public SipKeepAlive(SipProvider sip_provider, SocketAddress target, long delta_time) {
-		super(target,delta_time);
+		super(sip_provider.scheduler(),target,delta_time);
 		init(sip_provider,null);
 		start();
 	}
 	
 	/** Creates a new SipKeepAlive. */
 	public SipKeepAlive(SipProvider sip_provider, SocketAddress target, SipMessage sip_token, long delta_time) {
-		super(target,delta_time);
+		super(sip_provider.scheduler(),target,delta_time);
 		init(sip_provider,sip_token);
 		start();
 	}
@@ -80,29 +89,48 @@ public class SipKeepAlive extends UdpKeepAlive {
 		if (sip_token==null) {
 			sip_token=new SipToken(new String(DEFAULT_TOKEN));
 		}
-		//if (target!=null)
-		//{  sip_token.setRemoteAddress(target.getAddress().toString());
-		//   sip_token.setRemotePort(target.getPort());
-		//}
 		this.sip_token=sip_token;
+		this.token_data=sip_token.toString().getBytes(StandardCharsets.UTF_8);
+		if (target!=null) sip_provider.addKeepAlive(this);
+	}
+
+
+	/** Sets the destination SocketAddress */
+	@Override
+	public void setDestSoAddress(SocketAddress soaddr) {
+		SipProvider provider=sip_provider;
+		if (provider!=null && target!=null) provider.removeKeepAlive(this);
+		super.setDestSoAddress(soaddr);
+		if (provider!=null && target!=null && !stop) provider.addKeepAlive(this);
 	}
 
 
 	/** Sends the kepp-alive packet now. */
 	@Override
 	public void sendToken() throws java.io.IOException {
+		SipProvider provider=sip_provider;
+		SocketAddress dest=target;
 		// do send?
-		if (!stop && target!=null && sip_provider!=null) {
-			sip_provider.sendRawMessage(sip_token,sip_provider.getDefaultTransport(),target.getAddress().toString(),target.getPort(),127);
+		if (!stop && dest!=null && provider!=null) {
+			String proto=provider.getDefaultTransport();
+			if (SipProvider.PROTO_UDP.equalsIgnoreCase(proto)) {
+				provider.sendRawData(proto,token_data,0,token_data.length,dest.getAddress(),dest.getPort());
+			}
+			else {
+				provider.sendRawMessage(sip_token,proto,dest.getAddress().toString(),dest.getPort(),127);
+			}
 		}
 	}
 
 
-	/** Main thread. */
+	/** Stops sending keep-alive tokens */
 	@Override
-	public void run() {
-		super.run();
-		sip_provider=null;
+	public synchronized void halt() {
+		super.halt();
+		if (sip_provider!=null) {
+			if (target!=null) sip_provider.removeKeepAlive(this);
+			sip_provider=null;
+		}
 	}
 	
 		 
@@ -43,6 +43,13 @@ public interface SipOptions {
 	/** Max number of (contemporary) open connections */
 	int getMaxConnections();
 
+	/**
+	 * Number of UDP sockets bound to the {@link #getHostPort() SIP port} with SO_REUSEPORT, each
+	 * served by its own receiver thread. A value greater than 1 spreads the processing of received
+	 * messages over multiple cores, if the platform supports SO_REUSEPORT.
+	 */
+	int getUdpSockets();
+
 	/**
 	 * Outbound proxy URI ([sip:]host_addr[:host_port][;transport=proto]). Use 'NONE' for not using
 	 * an outbound proxy (or let it undefined).
@@ -202,6 +209,31 @@ public interface SipOptions {
 	/** Whether logging all packets (including non-SIP keepalive tokens). */
 	boolean isLogAllPackets();
 
+	/**
+	 * Path and name prefix of the pcap files all sent and received packets (SIP and media) are
+	 * captured to, <code>null</code> for no capture.
+	 * 
+	 * @see org.mjsip.pcap.PacketCapture
+	 */
+	String getCaptureFile();
+
+	/**
+	 * Specification of the packets to capture, <code>null</code> for all packets.
+	 * 
+	 * @see org.mjsip.pcap.PacketFilter#parse(String)
+	 */
+	String getCaptureFilter();
+
+	/**
+	 * Size in bytes after which a new capture file is started, 0 for a single file.
+	 */
+	long getCaptureMaxFileSize();
+
+	/**
+	 * Number of capture files to keep, 0 for keeping all files.
+	 */
+	int getCaptureMaxFiles();
+
 	/**
 	 * Whether forcing this node to stay within the dialog route as peer, by means of the insertion
 	 * of a RecordRoute header. This is a non-standard behaviour and is normally not necessary.
@@ -219,4 +251,40 @@ public interface SipOptions {
 	/** Whether adding (forcing) 'rport' parameter on via header fields of incoming requests. */
 	boolean forceRport();
 
+	/**
+	 * Maximum rate (requests per second) of new requests accepted from a single source address, 0
+	 * for no limit.
+	 * 
+	 * <p>
+	 * Responses and requests within a dialog or transaction (carrying a To tag, or ACK and CANCEL)
+	 * are not limited.
+	 * </p>
+	 * 
+	 * @see AdmissionControl
+	 */
+	int getMaxSourceRate();
+
+	/**
+	 * Number of new requests a single source address may send at once, before
+	 * {@link #getMaxSourceRate()} applies.
+	 */
+	int getMaxSourceBurst();
+
+	/**
+	 * Maximum number of source addresses tracked for {@link #getMaxSourceRate()}. New sources
+	 * exceeding this number are rejected until idle sources expire.
+	 */
+	int getMaxSources();
+
+	/**
+	 * Maximum number of transactions in progress, before new requests are rejected, 0 for no limit.
+	 */
+	int getMaxTransactions();
+
+	/**
+	 * Value in seconds of the Retry-After header field of a 503 response sent to a new INVITE that is
+	 * rejected because of overload.
+	 */
+	int getOverloadRetryAfter();
+
 }
@@ -36,6 +36,7 @@ import org.mjsip.sip.header.Header;
 import org.mjsip.sip.header.LegacyHeader;
 import org.mjsip.sip.header.RequestLine;
 import org.mjsip.sip.header.StatusLine;
+import org.zoolu.util.CharTable;
 import org.zoolu.util.DateFormat;
 import org.zoolu.util.Parser;
 
@@ -79,28 +80,52 @@ public class SipParser extends Parser {
 	/** SEPARATOR char[], composed by: ' ','\t','\r','\n','(',')','&lt;','&gt;',',',';','\','"','/','[',']','?','=','{','}' */
 	public static char[] SEPARATOR={' ','\t','\r','\n','(',')','<','>',',',';','\\','"','/','[',']','?','=','{','}'};
 
+	/** Table of the MARK chars */
+	public static final CharTable MARK_CHARS=CharTable.of(MARK);
+
+	/** Table of the unreserved chars, that are alphanums and marks */
+	public static final CharTable UNRESERVED_CHARS=CharTable.ALPHANUM.or(MARK_CHARS);
+
+	/** Table of the SEPARATOR chars */
+	public static final CharTable SEPARATOR_CHARS=CharTable.of(SEPARATOR);
+
+	/** Table of the token chars (RFC 3261): alphanum, '-', '.', '!', '%', '*', '_', '+', '`', '\'', '~' */
+	public static final CharTable TOKEN_CHARS=CharTable.ALPHANUM.or(CharTable.of("-.!%*_+`'~"));
+
+	/** Table of the reserved chars of a URI (RFC 3261): ';', '/', '?', ':', '@', '&amp;', '=', '+', '$', ',' */
+	public static final CharTable URI_RESERVED_CHARS=CharTable.of(";/?:@&=+$,");
+
 	/** Checks whether a char is any MARK */
 	public static boolean isMark(char c) {
 		//return (c=='-' || c=='_' || c=='.' || c=='!' || c=='~' || c=='*' || c=='\'' || c=='|');
-		return isAnyOf(MARK,c);
+		return MARK_CHARS.contains(c);
 	}
 	
 	/** Unreserved char; that is an alphanum or a mark*/
 	public static boolean isUnreserved(char c) {
-		return (isAlphanum(c) || isMark(c));
+		return UNRESERVED_CHARS.contains(c);
 	}
 	
 	/** Separator; differently form RFC2543, do not include '@' and ':', while include '\r' and '\n'*/
 	public static boolean isSeparator(char c) {
 		//return (isSpace(c) || isCRLF(c) || c=='(' || c==')' || c=='<' || c=='>' || c==',' || c==';' || c=='\\' || c=='"' || c=='/' || c=='[' || c==']' || c=='?' || c=='=' || c=='{' || c=='}');
-		return isAnyOf(SEPARATOR,c);
+		return SEPARATOR_CHARS.contains(c);
+	}
+
+	/** Token char (RFC 3261) */
+	public static boolean isToken(char c) {
+		return TOKEN_CHARS.contains(c);
+	}
+
+	/** Reserved char of a URI (RFC 3261) */
+	public static boolean isURIReserved(char c) {
+		return URI_RESERVED_CHARS.contains(c);
 	}
 	
 	/** Returns the first occurence of a separator or the end of the string*/
 	public int indexOfSeparator() {
-		int begin=index;
-		while(begin<str.length() && !isSeparator(str.charAt(begin))) begin++;
-		return begin;
+		int begin=SEPARATOR_CHARS.indexIn(str,index,str.length());
+		return (begin<0)? str.length() : begin;
 	}  
 	
 	/** Index of the end of the header (EOH) */
@@ -216,6 +241,9 @@ public class SipParser extends Parser {
 	//*************************** URIs ***************************
 
 	public static final char[] uri_separators={' ','>','\n','\r'};
+
+	/** Table of the uri_separators chars */
+	public static final CharTable URI_SEPARATORS=CharTable.of(uri_separators);
 	
 	public static final String[] uri_schemes={"sip:","sips:","tel:"};
 
@@ -235,7 +263,7 @@ public class SipParser extends Parser {
 		goTo(uri_schemes);
 		if (!hasMore()) return null;
 		int begin=getPos();
-		int end=indexOf(uri_separators);
+		int end=indexOf(URI_SEPARATORS);
 		if (end<0) end=str.length();
 		String uri=getString(end-begin);
 		if (hasMore()) skipChar();
@@ -322,16 +350,19 @@ public class SipParser extends Parser {
 
 	public static char[] param_separators={ ' ', '=', ';', ',', '\n', '\r' };   
 
+	/** Table of the param_separators chars */
+	public static final CharTable PARAM_SEPARATORS=CharTable.of(param_separators);
+
 	/** Gets the value of specified parameter.
 	  * @param name the parameter name
 	  * @return the parameter value or null if parameter does not exist or doesn't have a value (i.e. in case of flag parameter). */
 	public String getParameter(String name)  {
 		while (hasMore()) {
-			if (getWord(param_separators).equals(name)) {
+			if (getWord(PARAM_SEPARATORS).equals(name)) {
 				skipWSP();
 				if (nextChar()=='=') {
 					skipChar(); 
-					return getWordSkippingQuoted(param_separators);
+					return getWordSkippingQuoted(PARAM_SEPARATORS);
 				}
 				else return null;
 			}
@@ -347,7 +378,7 @@ public class SipParser extends Parser {
 		String name;
 		Vector params=new Vector();
 		while (hasMore()) {
-			name=getWord(param_separators);
+			name=getWord(PARAM_SEPARATORS);
 			if (name.length()>0) params.addElement(new String(name));
 			goToSkippingQuoted(';');
 			if (hasMore()) skipChar(); // skip ';'
@@ -358,7 +389,7 @@ public class SipParser extends Parser {
 	/** Whether there is the specified parameter */
 	public boolean hasParameter(String name) {
 		while (hasMore()) {
-			if (getWord(param_separators).equals(name)) return true;
+			if (getWord(PARAM_SEPARATORS).equals(name)) return true;
 			goToSkippingQuoted(';');
 			if (hasMore()) skipChar(); // skip ';'
 		}
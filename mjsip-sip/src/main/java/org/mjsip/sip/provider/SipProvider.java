@@ -26,23 +26,33 @@ package org.mjsip.sip.provider;
 
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.mjsip.jfr.SipDispatchEvent;
+import org.mjsip.pcap.PacketCapture;
 import org.mjsip.sip.address.GenericURI;
 import org.mjsip.sip.address.NameAddress;
 import org.mjsip.sip.address.SipURI;
 import org.mjsip.sip.address.UnexpectedUriSchemeException;
+import org.mjsip.sip.header.GenericHeader;
+import org.mjsip.sip.header.SipHeaders;
 import org.mjsip.sip.header.ViaHeader;
 import org.mjsip.sip.message.SipMessage;
 import org.mjsip.sip.message.SipMessageFactory;
+import org.mjsip.sip.message.SipResponses;
+import org.mjsip.sip.provider.AdmissionControl.Verdict;
 import org.mjsip.time.Scheduler;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.AddressType;
 import org.zoolu.net.IpAddress;
 import org.zoolu.net.SocketAddress;
+import org.zoolu.net.UdpSocket;
 import org.zoolu.util.Random;
 import org.zoolu.util.SimpleDigest;
 
@@ -127,6 +137,9 @@ public class SipProvider implements SipTransportListener {
 	
 	/** Table of sip listeners (Hashtable<SipId id, SipProviderListener listener>) */
 	private final Map<SipId, SipProviderListener> sip_listeners = new HashMap<>();
+
+	/** Number of transaction listeners in <i>sip_listeners</i> */
+	private volatile int transaction_count=0;
 	
 	/** Vector of promiscuous listeners (Vector<SipProviderListener>) */
 	private CopyOnWriteListeners<SipProviderListener, SipMessage> promisquousListeners = new CopyOnWriteListeners<>() {
@@ -150,6 +163,14 @@ public class SipProvider implements SipTransportListener {
 
 	private final SipMessageFactory _sipMessageFactory;
 
+	private final AdmissionControl _admissionControl;
+
+	/** Listener handling received raw messages before they are parsed, or <i>null</i>. */
+	private volatile RawMessageListener _rawMessageListener;
+
+	/** Keep-alives of this provider by resolved target address and port. */
+	private final ConcurrentHashMap<InetSocketAddress, SipKeepAlive> _keepAlives = new ConcurrentHashMap<>();
+
 	/**
 	 * Creates a new {@link SipProvider}.
 	 */
@@ -157,7 +178,9 @@ public class SipProvider implements SipTransportListener {
 		this._sipConfig = sipConfig;
 		_scheduler = scheduler;
 		_sipMessageFactory = new SipMessageFactory(sipConfig);
+		_admissionControl = new AdmissionControl(sipConfig);
 		initLog();
+		initCapture();
 		initSipTrasport(sipConfig.getTransportProtocols(),sipConfig.getTransportPorts());
 	}
 
@@ -167,6 +190,29 @@ public class SipProvider implements SipTransportListener {
 		LOG.info("SipProvider: " + toString());
 	}
 
+	/** Starts the packet capture, if configured and not yet running. */
+	private void initCapture() {
+		String capture_file=_sipConfig.getCaptureFile();
+		if (capture_file==null || capture_file.isEmpty()) return;
+		// else
+		PacketCapture capture=PacketCapture.startDefault(capture_file,_sipConfig.getCaptureFilter(),_sipConfig.getCaptureMaxFileSize(),_sipConfig.getCaptureMaxFiles());
+		// sockets bound to the wildcard address are recorded with the via address
+		setCaptureAddress(capture,_sipConfig.getViaAddrIPv4());
+		setCaptureAddress(capture,_sipConfig.getViaAddrIPv6());
+	}
+
+	/** Sets the local address of the packet capture for the address family of the given via address. */
+	private static void setCaptureAddress(PacketCapture capture, String via_addr) {
+		if (via_addr==null) return;
+		// else
+		try {
+			capture.setLocalAddress(IpAddress.getByName(via_addr).getInetAddress());
+		}
+		catch (java.net.UnknownHostException e) {
+			LOG.warn("Cannot resolve via address for packet capture: " + via_addr);
+		}
+	}
+
 	/**
 	 * The {@link SipOptions} used.
 	 */
@@ -188,6 +234,62 @@ public class SipProvider implements SipTransportListener {
 		return _sipMessageFactory;
 	}
 
+	/**
+	 * The {@link AdmissionControl} protecting this provider from overload, also providing the
+	 * overload statistics.
+	 */
+	public AdmissionControl admissionControl() {
+		return _admissionControl;
+	}
+
+	/**
+	 * Sets the listener that may handle messages received through connection-less transports
+	 * before they are parsed, <code>null</code> to parse and dispatch all messages.
+	 *
+	 * <p>
+	 * The listener is not called while promiscuous listeners are registered, since these expect
+	 * to see all received messages.
+	 * </p>
+	 */
+	public void setRawMessageListener(RawMessageListener listener) {
+		_rawMessageListener = listener;
+	}
+
+	/** Registers a keep-alive, for reporting the messages sent toward its target. */
+	void addKeepAlive(SipKeepAlive keep_alive) {
+		SocketAddress target=keep_alive.getDestSoAddress();
+		InetSocketAddress key=keepAliveKey(target.getAddress(),target.getPort());
+		if (key==null) {
+			LOG.warn("Cannot resolve keep-alive target, other traffic does not defer its tokens: " + target);
+			return;
+		}
+		// else
+		_keepAlives.put(key, keep_alive);
+	}
+
+	/** Unregisters a keep-alive. */
+	void removeKeepAlive(SipKeepAlive keep_alive) {
+		SocketAddress target=keep_alive.getDestSoAddress();
+		InetSocketAddress key=keepAliveKey(target.getAddress(),target.getPort());
+		if (key!=null) _keepAlives.remove(key, keep_alive);
+	}
+
+	/** Reports a message sent to the given destination to the keep-alive of that destination, if any. */
+	private void onSent(IpAddress dest_ipaddr, int dest_port) {
+		if (_keepAlives.isEmpty()) return;
+		// else
+		InetSocketAddress key=keepAliveKey(dest_ipaddr,dest_port);
+		SipKeepAlive keep_alive=(key!=null)? _keepAlives.get(key) : null;
+		if (keep_alive != null) keep_alive.touch();
+	}
+
+	/** Gets the key of a keep-alive target, independent of the spelling of its address.
+	  * @return the resolved address and port, or <i>null</i> if the address cannot be resolved */
+	private static InetSocketAddress keepAliveKey(IpAddress ipaddr, int port) {
+		InetAddress inet_addr=ipaddr.getInetAddress();
+		return (inet_addr!=null)? new InetSocketAddress(inet_addr,port) : null;
+	}
+
 	/** Whether the given transport protocol is secure (TLS or DTLS) or not (UDP, TCP, SCTP, etc.).
 	  * @return true for TLS or DTLS, false otherwise */
 	public static boolean isSecureTransport(String proto) {
@@ -209,13 +311,14 @@ public class SipProvider implements SipTransportListener {
 				if (proto.equals(PROTO_UDP)) {
 					if (port == 0)
 						port = _sipConfig.getHostPort();
-					transp = new UdpTransport(port, _sipConfig.getBindingIpAddr());
+					transp = createUdpTransport(port);
 				}
 				else
 				if (proto.equals(PROTO_TCP)) {
 					if (port == 0)
 						port = _sipConfig.getHostPort();
-					transp = new TcpTransport(port, _sipConfig.getBindingIpAddr(), _sipConfig.getMaxConnections());
+					transp = new TcpTransport(port, _sipConfig.getBindingIpAddr(), _sipConfig.getMaxConnections(),
+							_scheduler.loopThreads());
 				}
 				else
 				if (proto.equals(PROTO_TLS)) {
@@ -273,6 +376,16 @@ public class SipProvider implements SipTransportListener {
 	}
 
 
+	/** Creates the UDP transport with the configured number of sockets. */ 
+	private UdpTransport createUdpTransport(int port) throws IOException {
+		int sockets=_sipConfig.getUdpSockets();
+		if (sockets>1 && !UdpSocket.isReusePortSupported()) {
+			LOG.warn("SO_REUSEPORT is not supported, using a single UDP socket instead of " + sockets + ".");
+		}
+		return new UdpTransport(port, _sipConfig.getBindingIpAddr(), sockets, _scheduler.loopThreads());
+	}
+
+
 	/** Stops the transport services. */ 
 	private void stopSipTrasport() {
 		if (sip_transports!=null)  {
@@ -316,8 +429,11 @@ public class SipProvider implements SipTransportListener {
 		LOG.debug("halt: SipProvider is going down");
 		stopSipTrasport();
 		sip_listeners.clear();
+		transaction_count=0;
 		promisquousListeners.clear();
 		exceptionListeners.clear();
+		for (SipKeepAlive keep_alive : _keepAlives.values()) keep_alive.halt();
+		_keepAlives.clear();
 	}
 
 	/** Converts the entire object into lines (to be saved into the config file) */
@@ -520,7 +636,7 @@ public class SipProvider implements SipTransportListener {
 	  * @param listener is the SipProviderListener that the specified type of messages has to be passed to. */
 	public synchronized void addSelectiveListener(SipId id, SipProviderListener listener) {
 		LOG.debug("Adding SipProviderListener: " + id);
-		sip_listeners.put(id,listener);   
+		if (sip_listeners.put(id,listener)==null && id.isTransaction()) transaction_count++;
 	}
 
 
@@ -528,7 +644,12 @@ public class SipProvider implements SipTransportListener {
 	  * @param id specifies the messages that the listener was associated to. */
 	public synchronized void removeSelectiveListener(SipId id) {
 		LOG.debug("Removing SipProviderListener: " + id);
-		sip_listeners.remove(id);
+		if (sip_listeners.remove(id)!=null && id.isTransaction()) transaction_count--;
+	}
+
+	/** Gets the number of transactions in progress. */
+	public int getTransactionCount() {
+		return transaction_count;
 	}
   
 	/** Adds a SipProvider listener for caputering any message in promiscuous mode.
@@ -815,6 +936,36 @@ public class SipProvider implements SipTransportListener {
 	}
 
 
+	/** Sends an already formatted message through a connection-less transport.
+	  * <p>
+	  * The data is sent as is, i.e. no header field is added or updated.
+	  * @param proto the transport protocol, currently only UDP is supported
+	  * @param data buffer containing the message
+	  * @param off the offset of the message within the buffer
+	  * @param len the length of the message
+	  * @param dest_ipaddr the destination address
+	  * @param dest_port the destination port
+	  * @return whether the message has been sent */
+	public boolean sendRawData(String proto, byte[] data, int off, int len, IpAddress dest_ipaddr, int dest_port) {
+		SipTransport sip_transport=(proto!=null)? sip_transports.get(proto.toLowerCase()) : null;
+		if (!(sip_transport instanceof UdpTransport)) {
+			LOG.warn("Unsupported protocol " + proto + " for raw data, message discarded.");
+			return false;
+		}
+		// else
+		try {
+			((UdpTransport)sip_transport).sendData(data,off,len,dest_ipaddr,dest_port);
+			onSent(dest_ipaddr,dest_port);
+			if (LOG.isDebugEnabled()) LOG.debug("Sent raw message to: " + proto + ":" + dest_ipaddr + ":" + dest_port + " (" + len + " bytes)");
+			return true;
+		}
+		catch (IOException e) {
+			LOG.warn("Exception", e);
+			return false;
+		}
+	}
+
+
 	/** Sends the <i>msg</i> message, specifing the transport protocol, nexthop address and port.
 	  * For request messages, no via address is added. */
 	private ConnectionId sendRawMessage(SipMessage msg, String proto, IpAddress dest_ipaddr, int dest_port, int ttl) {
@@ -831,6 +982,7 @@ public class SipProvider implements SipTransportListener {
 		// else
 		try {
 			ConnectionId connection_id=sip_transport.sendMessage(msg,dest_ipaddr,dest_port,ttl);
+			onSent(dest_ipaddr,dest_port);
 
 			logMessage("Sent message to: ", proto, dest_ipaddr.toString(), dest_port, msg);
 
@@ -863,9 +1015,82 @@ public class SipProvider implements SipTransportListener {
 
 	//************************* Callback methods *************************
 	
+	/** From SipTransportListener. When a new SIP message is received, before it is parsed.
+	  * Applies the admission control to messages received through connection-less transports. */
+	@Override
+	public boolean onReceivedData(SipTransport transport, byte[] buf, int off, int len, String remote_addr, int remote_port) {
+		if (_admissionControl.isEnabled()) {
+			Verdict verdict=_admissionControl.admit(buf,off,len,remote_addr,transaction_count,System.nanoTime());
+			if (verdict!=Verdict.ACCEPT) {
+				if (verdict==Verdict.REJECT) {
+					SipMessage msg=new SipMessage(buf,off,len);
+					msg.setRemoteAddress(remote_addr);
+					msg.setRemotePort(remote_port);
+					msg.setTransportProtocol(transport.getProtocol());
+					rejectOverload(msg);
+				}
+				else LOG.debug("Overload: request from " + remote_addr + " discarded.");
+				return false;
+			}
+		}
+		// let the raw message listener handle the message without parsing it
+		RawMessageListener raw_listener=_rawMessageListener;
+		if (raw_listener!=null && promisquousListeners.isEmpty()) {
+			try {
+				if (raw_listener.onReceivedRawMessage(this,transport,buf,off,len,remote_addr,remote_port)) return false;
+			}
+			catch (Exception e) {
+				LOG.warn("Error handling a new incoming raw message", e);
+			}
+		}
+		return true;
+	}
+
+	/** Sends a stateless 503 response with a Retry-After header field to a request that is rejected because of overload. */
+	private void rejectOverload(SipMessage req) {
+		if (!req.isRequest() || !req.hasViaHeader() || !req.hasCallIdHeader() || !req.hasCSeqHeader() || !req.hasFromHeader() || !req.hasToHeader()) {
+			LOG.debug("Overload: invalid request from " + req.getRemoteAddress() + " discarded.");
+			return;
+		}
+		// else
+		LOG.debug("Overload: rejecting request from " + req.getRemoteAddress() + ": " + req.getFirstLine());
+		SipMessage resp=_sipMessageFactory.createResponse(req,SipResponses.SERVICE_UNAVAILABLE,null,null);
+		resp.setHeader(new GenericHeader(SipHeaders.Retry_After,String.valueOf(_sipConfig.getOverloadRetryAfter())));
+		// reply through the receiving connection or to the source address, not to the (possibly spoofed) Via address
+		if (req.getConnectionId()!=null) {
+			resp.setConnectionId(req.getConnectionId());
+			sendMessage(resp);
+		}
+		else sendMessage(resp,req.getTransportProtocol(),req.getRemoteAddress(),req.getRemotePort(),0);
+	}
+
 	/** From SipTransportListener. When a new SIP message is received. */
 	@Override
 	public void onReceivedMessage(SipTransport transport, SipMessage msg) {
+		long dispatch_time=System.nanoTime();
+		SipDispatchEvent event=new SipDispatchEvent();
+		event.begin();
+		try {
+			processReceivedMessage(transport,msg,event);
+		}
+		finally {
+			event.end();
+			if (event.shouldCommit()) {
+				if (msg.hasCallIdHeader()) event.callId=msg.getCallIdHeader().getCallId();
+				if (msg.hasCSeqHeader()) event.method=msg.getCSeqHeader().getMethod();
+				if (msg.isResponse()) event.statusCode=msg.getStatusLine().getCode();
+				event.transport=msg.getTransportProtocol();
+				event.remoteAddress=msg.getRemoteAddress();
+				long receive_time=msg.getReceiveTime();
+				if (receive_time!=0) event.queueDelay=Math.max(0,dispatch_time-receive_time);
+				event.commit();
+			}
+		}
+	}
+
+	/** Parses, checks and dispatches a received message to its listener.
+	  * @param event the flight recorder event to report the listener to */
+	private void processReceivedMessage(SipTransport transport, SipMessage msg, SipDispatchEvent event) {
 		try {
 			// logs
 			logMessage("Received message from: ", msg.getTransportProtocol(), msg.getRemoteAddress(),
@@ -883,6 +1108,16 @@ public class SipProvider implements SipTransportListener {
 				return;
 			}
 			
+			// admission control for messages of connection-oriented transports, that are not checked before parsing
+			if (_admissionControl.isEnabled() && isReliableTransport(transport)) {
+				Verdict verdict=_admissionControl.admit(msg,transaction_count,System.nanoTime());
+				if (verdict!=Verdict.ACCEPT) {
+					if (verdict==Verdict.REJECT) rejectOverload(msg);
+					else LOG.debug("Overload: request from " + msg.getRemoteAddress() + " discarded.");
+					return;
+				}
+			}
+			
 			// if a request, handle "received" and "rport" parameters
 			if (msg.isRequest()) {
 				ViaHeader vh=msg.getViaHeader();
@@ -928,6 +1163,7 @@ public class SipProvider implements SipTransportListener {
 			// look for a specific listener
 			SipProviderListener listener=getListener(msg);
 			if (listener != null) {
+				event.listener=listener.getClass().getName();
 				listener.onReceivedMessage(this, msg);
 			} else {
 				LOG.info("No listener found for message, discarded.");
@@ -991,7 +1227,7 @@ public class SipProvider implements SipTransportListener {
 				// Ignore.
 			}
 			try {
-				SipTransport udp = new UdpTransport(_sipConfig.getHostPort(), _sipConfig.getBindingIpAddr());
+				SipTransport udp = createUdpTransport(_sipConfig.getHostPort());
 				setTransport(udp);
 			}
 			catch (Exception e) {
@@ -1035,25 +1271,35 @@ public class SipProvider implements SipTransportListener {
 	/** Picks an unique branch value based on a SIP message.
 	  * This value could also be used as transaction ID */
 	public String pickBranch(SipMessage msg) {
+		ViaHeader top_via=msg.getViaHeader();
+		if (top_via.hasBranch())
+			return pickBranch(msg.getRequestLine().getAddress().toString(),top_via.getBranch());
+		// else
 		StringBuilder sb=new StringBuilder();
 		sb.append(msg.getRequestLine().getAddress().toString());
 		sb.append(getViaAddress()+getPort());
-		ViaHeader top_via=msg.getViaHeader();
-		if (top_via.hasBranch())
-			sb.append(top_via.getBranch());
-		else {
-			sb.append(top_via.getHost());
-			sb.append(top_via.getPort());
-			//sb.append(msg.getToHeader().getTag());
-			sb.append(msg.getFromHeader().getTag());
-			sb.append(msg.getCallIdHeader().getCallId());
-			sb.append(msg.getCSeqHeader().getSequenceNumber());
-		}
+		sb.append(top_via.getHost());
+		sb.append(top_via.getPort());
+		//sb.append(msg.getToHeader().getTag());
+		sb.append(msg.getFromHeader().getTag());
+		sb.append(msg.getCallIdHeader().getCallId());
+		sb.append(msg.getCSeqHeader().getSequenceNumber());
 		//return "z9hG4bK"+(new MD5(unique_str)).asHex().substring(0,9);
 		//return "z9hG4bK"+(new SimpleDigest(5,sb.toString())).asHex();
 		return ViaHeader.MAGIC_COOKIE+(new SimpleDigest(5,sb.toString())).asHex();
 	}  
 
+	/** Picks an unique branch value for forwarding a request with the given request-URI
+	  * and branch of the top Via header field.
+	  * It returns the same value as {@link #pickBranch(SipMessage)} for such a request. */
+	public String pickBranch(String request_uri, String via_branch) {
+		StringBuilder sb=new StringBuilder();
+		sb.append(request_uri);
+		sb.append(getViaAddress()+getPort());
+		sb.append(via_branch);
+		return ViaHeader.MAGIC_COOKIE+(new SimpleDigest(5,sb.toString())).asHex();
+	}  
+
 
 	/** Picks a new tag.
 	  * A tag  MUST be globally unique and cryptographically random
@@ -34,6 +34,19 @@ import org.zoolu.net.SocketAddress;
   */
 public interface SipTransportListener {
 	
+	/** When a new SIP message is received, before it is parsed.
+	  * It is called only by transports that receive complete messages (e.g. UDP).
+	  * @param transport the transport the message has been received from
+	  * @param buf the buffer containing the message
+	  * @param off the offset of the message within the buffer
+	  * @param len the length of the message
+	  * @param remote_addr the source address
+	  * @param remote_port the source port
+	  * @return whether the message has to be parsed and passed to {@link #onReceivedMessage(SipTransport, SipMessage)} */
+	public default boolean onReceivedData(SipTransport transport, byte[] buf, int off, int len, String remote_addr, int remote_port) {
+		return true;
+	}
+
 	/** When a new SIP message is received. */
 	public void onReceivedMessage(SipTransport transport, SipMessage msg);
 
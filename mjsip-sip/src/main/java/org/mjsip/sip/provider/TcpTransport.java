@@ -27,6 +27,7 @@ package org.mjsip.sip.provider;
 
 import java.io.IOException;
 
+import org.mjsip.time.LoopThreads;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.IpAddress;
 import org.zoolu.net.SocketAddress;
@@ -48,6 +49,9 @@ public class TcpTransport extends SipTransportCO/* implements TcpServerListener*
 	/** TCP server */
 	TcpServer tcp_server=null;
 
+	/** The threads the server and connection loops are started on */
+	LoopThreads loop_threads=LoopThreads.PLATFORM;
+
 
 
 	/** Creates a new TcpTransport */ 
@@ -66,6 +70,15 @@ public class TcpTransport extends SipTransportCO/* implements TcpServerListener*
 	}
 
 
+	/** Creates a new TcpTransport running its loops on the given threads */ 
+	public TcpTransport(int local_port, IpAddress host_ipaddr,
+			int nmax_connections, LoopThreads loop_threads) throws IOException {
+		super(local_port, nmax_connections);
+		this.loop_threads=loop_threads;
+		init(local_port,host_ipaddr);
+	}
+
+
 	/** Inits the TcpTransport */ 
 	private void init(int local_port, IpAddress host_ipaddr) throws IOException {
 		if (tcp_server!=null) tcp_server.halt();
@@ -80,8 +93,7 @@ public class TcpTransport extends SipTransportCO/* implements TcpServerListener*
 				processServerTerminated(tcp_server,error);
 			}
 		};
-		if (host_ipaddr==null) tcp_server=new TcpServer(local_port,this_tcp_server_listener);
-		else tcp_server=new TcpServer(local_port,host_ipaddr,this_tcp_server_listener);
+		tcp_server=new TcpServer(local_port,host_ipaddr,0,this_tcp_server_listener,loop_threads);
 	}
 
 
@@ -113,7 +125,7 @@ public class TcpTransport extends SipTransportCO/* implements TcpServerListener*
 		LOG.debug("incoming connection from "+socket.getAddress()+":"+socket.getPort());
 		if (tcp_server==this.tcp_server) {
 			try {
-				SipTransportConnection conn = new TcpTransportConnection(socket, this_conn_listener);
+				SipTransportConnection conn = new TcpTransportConnection(socket, this_conn_listener, loop_threads);
 				LOG.debug("tcp connection " + conn + " opened");
 				addConnection(conn);
 				if (listener != null)
@@ -136,7 +148,7 @@ public class TcpTransport extends SipTransportCO/* implements TcpServerListener*
 	@Override
 	protected SipTransportConnection createTransportConnection(SocketAddress remote_soaddr) throws IOException {
 		TcpSocket tcp_socket=new TcpSocket(remote_soaddr.getAddress(),remote_soaddr.getPort());
-		return new TcpTransportConnection(tcp_socket,this_conn_listener);
+		return new TcpTransportConnection(tcp_socket,this_conn_listener,loop_threads);
 	}
 
 
@@ -29,6 +29,7 @@ import java.io.IOException;
 
 import org.mjsip.sip.message.SipMessage;
 import org.mjsip.sip.message.SipMessageBuffer;
+import org.mjsip.time.LoopThreads;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.IpAddress;
 import org.zoolu.net.TcpConnection;
@@ -65,7 +66,7 @@ public class TcpTransportConnection implements SipTransportConnection/*, TcpConn
 
 	/** Creates a new TcpTransportConnection. */ 
 	public TcpTransportConnection(IpAddress remote_ipaddr, int remote_port, SipTransportConnectionListener listener) throws IOException {
-		init(new TcpSocket(remote_ipaddr,remote_port),listener);
+		init(new TcpSocket(remote_ipaddr,remote_port),listener,LoopThreads.PLATFORM);
 	}
 
 
@@ -78,7 +79,22 @@ public class TcpTransportConnection implements SipTransportConnection/*, TcpConn
 	 *        the TcpTransportConnection listener
 	 */
 	public TcpTransportConnection(TcpSocket socket, SipTransportConnectionListener listener) throws IOException {
-		init(socket,listener);
+		init(socket,listener,LoopThreads.PLATFORM);
+	}
+
+
+	/**
+	 * Creates a new TcpTransportConnection.
+	 * 
+	 * @param socket
+	 *        the TCP socket
+	 * @param listener
+	 *        the TcpTransportConnection listener
+	 * @param loop_threads
+	 *        the threads the receiver loop is started on
+	 */
+	public TcpTransportConnection(TcpSocket socket, SipTransportConnectionListener listener, LoopThreads loop_threads) throws IOException {
+		init(socket,listener,loop_threads);
 	}
 
 
@@ -89,8 +105,10 @@ public class TcpTransportConnection implements SipTransportConnection/*, TcpConn
 	 *        the TCP socket
 	 * @param listener
 	 *        the TcpTransportConnection listener
+	 * @param loop_threads
+	 *        the threads the receiver loop is started on
 	 */
-	private void init(TcpSocket socket, SipTransportConnectionListener listener) throws IOException {
+	private void init(TcpSocket socket, SipTransportConnectionListener listener, LoopThreads loop_threads) throws IOException {
 		this.listener=listener;
 		TcpConnectionListener this_tcp_conn_listener=new TcpConnectionListener() {
 			@Override
@@ -102,7 +120,7 @@ public class TcpTransportConnection implements SipTransportConnection/*, TcpConn
 				processConnectionTerminated(tcp_conn,error);
 			}
 		};
-		tcp_conn=new TcpConnection(socket,this_tcp_conn_listener);
+		tcp_conn=new TcpConnection(socket,0,this_tcp_conn_listener,loop_threads);
 		connection_id=new ConnectionId(this);
 		last_time=System.currentTimeMillis();
 	}
@@ -200,6 +218,7 @@ public class TcpTransportConnection implements SipTransportConnection/*, TcpConn
 	private void processReceivedData(TcpConnection tcp_conn, byte[] data, int len) {
 		LOG.debug("Received " + len + " bytes of data.");
 		last_time=System.currentTimeMillis();
+		long receive_time=System.nanoTime();
 
 		buffer.append(data,0,len);
 
@@ -211,6 +230,7 @@ public class TcpTransportConnection implements SipTransportConnection/*, TcpConn
 			msg.setRemotePort(tcp_conn.getRemotePort());
 			msg.setTransportProtocol(getProtocol());
 			msg.setConnectionId(connection_id);
+			msg.setReceiveTime(receive_time);
 			if (listener!=null) listener.onReceivedMessage(this,msg);
 		}     
 	}
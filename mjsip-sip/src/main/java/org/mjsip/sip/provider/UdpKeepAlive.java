@@ -23,6 +23,11 @@ package org.mjsip.sip.provider;
 
 
 
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.mjsip.time.Scheduler;
+import org.slf4j.LoggerFactory;
 import org.zoolu.net.SocketAddress;
 import org.zoolu.net.UdpPacket;
 import org.zoolu.net.UdpSocket;
@@ -36,12 +41,24 @@ import org.zoolu.net.UdpSocket;
  * <p>
  * It can be used for both signaling (SIP) or plain data (RTP/UDP).
  * </p>
+ * <p>
+ * Keep-alive tokens are sent by a task of the given {@link Scheduler}, no thread is allocated
+ * per target. The first token is sent after a random delay within the keep-alive time, so that
+ * the tokens of many keep-alives started at the same time are spread over time. A token is
+ * skipped, if other traffic toward the target has been reported through {@link #touch()} within
+ * the last keep-alive time.
+ * </p>
  */
-public class UdpKeepAlive extends Thread {
+public class UdpKeepAlive {
 	
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(UdpKeepAlive.class);
+
 	/** Default udp keep-alive token */
 	public static final byte[] DEFAULT_TOKEN={ (byte)'\r',(byte)'\n' };
 	
+	/** Scheduler running the keep-alive task */
+	protected final Scheduler scheduler;
+
 	/** Destination socket address */
 	protected SocketAddress target;
 
@@ -57,30 +74,35 @@ public class UdpKeepAlive extends Thread {
 	/** Expiration date [millisecs] */
 	protected long expire=0; 
 
+	/** Time of the last traffic toward the target [millisecs] */
+	protected volatile long last_activity=0;
+
 	/** Whether it is running */
-	protected transient boolean stop = false;
+	protected volatile boolean stop = false;
+
+	/** The pending keep-alive task */
+	private ScheduledFuture<?> timer=null;
 
 
 	/** Creates a new UdpKeepAlive daemon */
-	protected UdpKeepAlive(SocketAddress target, long delta_time) {
+	protected UdpKeepAlive(Scheduler scheduler, SocketAddress target, long delta_time) {
+		this.scheduler=scheduler;
 		this.target=target;
 		this.delta_time=delta_time;
 	}
 
 
 	/** Creates a new UdpKeepAlive daemon */
-	public UdpKeepAlive(UdpSocket udp_socket, SocketAddress target, long delta_time) {
-		this.target=target;
-		this.delta_time=delta_time;
+	public UdpKeepAlive(Scheduler scheduler, UdpSocket udp_socket, SocketAddress target, long delta_time) {
+		this(scheduler,target,delta_time);
 		init(udp_socket,null);
 		start();
 	}
 
 
 	/** Creates a new UdpKeepAlive daemon */
-	public UdpKeepAlive(UdpSocket udp_socket, SocketAddress target, UdpPacket udp_token, long delta_time) {
-		this.target=target;
-		this.delta_time=delta_time;
+	public UdpKeepAlive(Scheduler scheduler, UdpSocket udp_socket, SocketAddress target, UdpPacket udp_token, long delta_time) {
+		this(scheduler,target,delta_time);
 		init(udp_socket,udp_token);
 		start();
 	}
@@ -89,15 +111,15 @@ public class UdpKeepAlive extends Thread {
 	/** Inits the UdpKeepAlive */
 	private void init(UdpSocket udp_socket, UdpPacket udp_packet) {
 		this.udp_socket=udp_socket;
-		if (udp_token==null) {
+		if (udp_packet==null) {
 			byte[] buff=DEFAULT_TOKEN;
-			udp_token=new UdpPacket(buff,0,buff.length);
+			udp_packet=new UdpPacket(buff,0,buff.length);
 		}
 		if (target!=null) {
-			udp_token.setIpAddress(target.getAddress());
-			udp_token.setPort(target.getPort());
+			udp_packet.setIpAddress(target.getAddress());
+			udp_packet.setPort(target.getPort());
 		}
-		this.udp_token=udp_token;
+		this.udp_token=udp_packet;
 	}
 
 
@@ -106,7 +128,8 @@ public class UdpKeepAlive extends Thread {
 		return !stop;
 	}
 
-	/** Sets the time (in milliseconds) between two keep-alive tokens */
+	/** Sets the time (in milliseconds) between two keep-alive tokens.
+	  * The new time applies from the next token. */
 	public void setDeltaTime(long delta_time) {
 		this.delta_time=delta_time;
 	}
@@ -140,9 +163,20 @@ public class UdpKeepAlive extends Thread {
 	}
 
 
+	/** Notifies that some traffic has been sent toward the target.
+	  * The next keep-alive token is skipped, if it is due within the keep-alive time. */
+	public void touch() {
+		last_activity=System.currentTimeMillis();
+	}
+
+
 	/** Stops sending keep-alive tokens */
-	public void halt() {
+	public synchronized void halt() {
 		stop=true;
+		if (timer!=null) {
+			timer.cancel(false);
+			timer=null;
+		}
 	}
 
 
@@ -155,18 +189,37 @@ public class UdpKeepAlive extends Thread {
 	}
 
 
-	/** Main thread. */
-	@Override
-	public void run() {
-		try    {
-			while(!stop) {
+	/** Schedules the first keep-alive token at a random time within the keep-alive time.
+	  * Keep-alive is started by the constructors, starting it again has no effect. */
+	public synchronized void start() {
+		if (stop || timer!=null) return;
+		// else
+		long delay=(delta_time>1)? ThreadLocalRandom.current().nextLong(delta_time) : 0;
+		timer=scheduler.schedule(delay,this::onTimeout);
+	}
+
+
+	/** When the keep-alive timer fires. */
+	private void onTimeout() {
+		if (stop) return;
+		// else
+		long now=System.currentTimeMillis();
+		if (expire>0 && now>expire) {
+			halt();
+			return;
+		}
+		// else
+		if (now-last_activity>=delta_time) {
+			try {
 				sendToken();
-				Thread.sleep(delta_time);
-				if (expire>0 && System.currentTimeMillis()>expire) halt(); 
 			}
+			catch (Exception e) {
+				LOG.warn("Sending keep-alive token to " + target + " failed.", e);
+			}
+		}
+		synchronized (this) {
+			if (!stop) timer=scheduler.schedule(delta_time,this::onTimeout);
 		}
-		catch (Exception e) { e.printStackTrace(); }
-		udp_socket=null;
 	}
 	
 		 
@@ -25,6 +25,7 @@ package org.mjsip.sip.provider;
 import java.io.IOException;
 
 import org.mjsip.sip.message.SipMessage;
+import org.mjsip.time.LoopThreads;
 import org.zoolu.net.IpAddress;
 import org.zoolu.net.UdpPacket;
 import org.zoolu.net.UdpProvider;
@@ -33,6 +34,15 @@ import org.zoolu.net.UdpSocket;
 import org.zoolu.util.ByteUtils;
 
 /** UdpTransport provides an UDP transport service for SIP.
+  * <p>
+  * The transport may use several UDP sockets bound to the same port with the SO_REUSEPORT
+  * option, each served by its own UdpProvider thread. The kernel distributes the received
+  * datagrams among the sockets, so that receiving and parsing messages is spread over
+  * several threads.
+  * <p>
+  * A message sent while a received message is processed (e.g. a response sent by the
+  * listener) goes out through the socket that received that message. Other messages are
+  * sent through a socket selected by the destination address and port.
   */
 public class UdpTransport implements SipTransport/*, UdpProviderListener*/ {
 	
@@ -45,54 +55,119 @@ public class UdpTransport implements SipTransport/*, UdpProviderListener*/ {
 	/** UDP protocol type */
 	public static final String PROTO_UDP="udp";
 
+	/** UdpProvider that is currently processing a received packet in the current thread */
+	private static final ThreadLocal<UdpProvider> RECEIVER=new ThreadLocal<>();
 
-	/** UDP provider */
+
+	/** UDP provider of the first socket */
 	UdpProvider udp_provider;  
 
+	/** UDP providers of all sockets */
+	UdpProvider[] udp_providers;  
+
+	/** Number of UDP providers that are still running */
+	int running_providers;
+
+	/** The first error that terminated one of the UDP providers */
+	Exception termination_error;
+
 	/** SipTransport listener */
 	SipTransportListener listener = null;
 
+	/** The threads the receiver loops are started on */
+	LoopThreads loop_threads = LoopThreads.PLATFORM;
+
 	/** Creates a new UdpTransport */ 
 	public UdpTransport(UdpSocket socket) {
-		init(socket);
+		init(new UdpSocket[]{socket});
 	}
 
 
 	/** Creates a new UdpTransport */ 
 	public UdpTransport(int local_port) throws IOException {
-		init(local_port,null);
+		init(local_port,null,1);
 	}
 
 
 	/** Creates a new UdpTransport */ 
 	public UdpTransport(int local_port, IpAddress host_ipaddr) throws IOException {
-		init(local_port,host_ipaddr);
+		init(local_port,host_ipaddr,1);
+	}
+
+
+	/** Creates a new UdpTransport with the given number of sockets bound to the same port.
+	  * <p>
+	  * If SO_REUSEPORT is not supported (see {@link UdpSocket#isReusePortSupported()}), a
+	  * single socket is used. */ 
+	public UdpTransport(int local_port, IpAddress host_ipaddr, int socket_count) throws IOException {
+		init(local_port,host_ipaddr,socket_count);
+	}
+
+
+	/** Creates a new UdpTransport with the given number of sockets bound to the same port, receiving on the given threads.
+	  * @see #UdpTransport(int, IpAddress, int) */ 
+	public UdpTransport(int local_port, IpAddress host_ipaddr, int socket_count, LoopThreads loop_threads) throws IOException {
+		this.loop_threads=loop_threads;
+		init(local_port,host_ipaddr,socket_count);
 	}
 
 
 	/** Inits the UdpTransport */ 
-	private void init(int local_port, IpAddress host_ipaddr) throws IOException {
-		UdpSocket socket=(host_ipaddr==null)? new UdpSocket(local_port) : new UdpSocket(local_port,host_ipaddr);
-		//UdpSocket socket=(host_ipaddr==null)? new org.zoolu.net.JumboUdpSocket(local_port,500) : new org.zoolu.net.JumboUdpSocket(local_port,host_ipaddr,500);
-		init(socket);
+	private void init(int local_port, IpAddress host_ipaddr, int socket_count) throws IOException {
+		if (socket_count<=1 || !UdpSocket.isReusePortSupported()) {
+			UdpSocket socket=(host_ipaddr==null)? new UdpSocket(local_port) : new UdpSocket(local_port,host_ipaddr);
+			//UdpSocket socket=(host_ipaddr==null)? new org.zoolu.net.JumboUdpSocket(local_port,500) : new org.zoolu.net.JumboUdpSocket(local_port,host_ipaddr,500);
+			init(new UdpSocket[]{socket});
+			return;
+		}
+		UdpSocket[] sockets=new UdpSocket[socket_count];
+		try {
+			for (int i=0; i<socket_count; i++) {
+				// all further sockets are bound to the (possibly ephemeral) port of the first one
+				sockets[i]=UdpSocket.createReusePort(i==0? local_port : sockets[0].getLocalPort(),host_ipaddr);
+			}
+		}
+		catch (IOException e) {
+			for (UdpSocket socket : sockets) if (socket!=null) socket.close();
+			throw e;
+		}
+		init(sockets);
 	}
 
 
 	/** Inits the UdpTransport */ 
-	private void init(UdpSocket socket) {
-		if (udp_provider!=null) udp_provider.halt();
+	private void init(UdpSocket[] sockets) {
 		// start udp
 		UdpProviderListener this_udp_provider_listener=new UdpProviderListener() {
 			@Override
 			public void onReceivedPacket(UdpProvider udp, UdpPacket packet) {
-				processReceivedPacket(udp,packet);
+				RECEIVER.set(udp);
+				try {
+					processReceivedPacket(udp,packet);
+				}
+				finally {
+					RECEIVER.remove();
+				}
 			}
 			@Override
 			public void onServiceTerminated(UdpProvider udp, Exception error) {
 				processServiceTerminated(udp,error);
 			}
 		};
-		udp_provider=new UdpProvider(socket,this_udp_provider_listener);
+		UdpProvider[] providers=new UdpProvider[sockets.length];
+		synchronized (this) {
+			running_providers=sockets.length;
+			for (int i=0; i<sockets.length; i++) providers[i]=new UdpProvider(sockets[i],0,this_udp_provider_listener,null,loop_threads);
+			udp_providers=providers;
+			udp_provider=providers[0];
+		}
+	}
+
+
+	/** Gets the number of sockets. */ 
+	public int getSocketCount() {
+		UdpProvider[] providers=udp_providers;
+		return providers!=null? providers.length : 0;
 	}
 
 
@@ -127,22 +202,45 @@ public class UdpTransport implements SipTransport/*, UdpProviderListener*/ {
 	  * @return Returns the id of the used connection for CO transport, or null for CL transport. */      
 	@Override
 	public ConnectionId sendMessage(SipMessage msg, IpAddress dest_ipaddr, int dest_port, int ttl) throws IOException {
-		if (udp_provider!=null) {
-			byte[] data=msg.getBytes();
-			UdpPacket packet=new UdpPacket(data,data.length);
-			// if (ttl>0 && multicast_address) do something?
-			packet.setIpAddress(dest_ipaddr);
-			packet.setPort(dest_port);
-			udp_provider.send(packet);
-		}
+		// if (ttl>0 && multicast_address) do something?
+		byte[] data=msg.getBytes();
+		sendData(data,0,data.length,dest_ipaddr,dest_port);
 		return null;
 	}
 
 
+	/** Sends already formatted data to the given remote address and port. */      
+	public void sendData(byte[] data, int off, int len, IpAddress dest_ipaddr, int dest_port) throws IOException {
+		UdpProvider udp=selectProvider(dest_ipaddr,dest_port);
+		if (udp!=null) {
+			UdpPacket packet=new UdpPacket(data,off,len,dest_ipaddr,dest_port);
+			udp.send(packet);
+		}
+	}
+
+
+	/** Selects the UdpProvider for sending a packet to the given destination.
+	  * @return the provider that is processing a received packet in the current thread, if any,
+	  * otherwise a provider selected by the destination address and port; <i>null</i> if the
+	  * transport has been terminated */
+	private UdpProvider selectProvider(IpAddress dest_ipaddr, int dest_port) {
+		UdpProvider[] providers=udp_providers;
+		if (providers==null) return null;
+		if (providers.length==1) return providers[0];
+		UdpProvider receiver=RECEIVER.get();
+		if (receiver!=null) {
+			for (UdpProvider udp : providers) if (udp==receiver) return udp;
+		}
+		int hash=31*dest_ipaddr.getInetAddress().hashCode()+dest_port;
+		return providers[(hash & 0x7fffffff)%providers.length];
+	}
+
+
 	/** Stops running */
 	@Override
 	public void halt() {
-		if (udp_provider!=null) udp_provider.halt();
+		UdpProvider[] providers=udp_providers;
+		if (providers!=null) for (UdpProvider udp : providers) udp.halt();
 	}
 
 
@@ -158,31 +256,51 @@ public class UdpTransport implements SipTransport/*, UdpProviderListener*/ {
 	
 	/** When a new UDP datagram is received. */
 	private void processReceivedPacket(UdpProvider udp, UdpPacket packet) {
+		long receive_time=System.nanoTime();
 		if (ByteUtils.match(packet.getData(),packet.getOffset(),packet.getLength(),PING,0,PING.length)) {
-			if (udp_provider!=null)
-			try {  udp_provider.send(new UdpPacket(PONG,packet.getIpAddress(),packet.getPort()));  } catch (Exception e) {};
+			try {  udp.send(new UdpPacket(PONG,packet.getIpAddress(),packet.getPort()));  } catch (Exception e) {};
 		}
 		else
 		if (ByteUtils.match(packet.getData(),packet.getOffset(),packet.getLength(),PONG,0,PONG.length)) {
 			// do something..
 		}
 		else {
+			SipTransportListener listener=this.listener;
+			if (listener==null) return;
+			// let the listener discard the message before it is parsed
+			String remote_addr=packet.getIpAddress().toString();
+			if (!listener.onReceivedData(this,packet.getData(),packet.getOffset(),packet.getLength(),remote_addr,packet.getPort())) return;
 			SipMessage msg=new SipMessage(packet.getData(),packet.getOffset(),packet.getLength());
-			msg.setRemoteAddress(packet.getIpAddress().toString());
+			msg.setRemoteAddress(remote_addr);
 			msg.setRemotePort(packet.getPort());
 			msg.setTransportProtocol(PROTO_UDP);
-			if (listener!=null) listener.onReceivedMessage(this,msg);
+			msg.setReceiveTime(receive_time);
+			listener.onReceivedMessage(this,msg);
 		}
 	}   
 
 
-	/** When DatagramService stops receiving UDP datagrams. */
+	/** When DatagramService stops receiving UDP datagrams.
+	  * <p>
+	  * If one of several sockets fails, the others are halted as well, and the transport
+	  * terminates when the last socket has been closed. */
 	private void processServiceTerminated(UdpProvider udp, Exception error) {
-		if (listener!=null) listener.onTransportTerminated(this,error);
 		UdpSocket socket=udp.getUdpSocket();
 		if (socket!=null) try { socket.close(); } catch (Exception e) {}
-		this.udp_provider=null;
-		this.listener=null;
+		SipTransportListener listener;
+		synchronized (this) {
+			if (error!=null && termination_error==null) {
+				termination_error=error;
+				if (udp_providers!=null) for (UdpProvider other : udp_providers) other.halt();
+			}
+			if (--running_providers>0) return;
+			error=termination_error;
+			listener=this.listener;
+			this.udp_provider=null;
+			this.udp_providers=null;
+			this.listener=null;
+		}
+		if (listener!=null) listener.onTransportTerminated(this,error);
 	}   
 
 }
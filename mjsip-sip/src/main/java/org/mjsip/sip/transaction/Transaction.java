@@ -25,6 +25,7 @@ package org.mjsip.sip.transaction;
 
 
 
+import org.mjsip.jfr.TransactionStateEvent;
 import org.mjsip.sip.message.SipMessage;
 import org.mjsip.sip.provider.ConnectionId;
 import org.mjsip.sip.provider.SipId;
@@ -103,6 +104,12 @@ public abstract class Transaction/* extends org.zoolu.util.MonitoredObject */ im
 	/** Transaction connection id */
 	ConnectionId connection_id;
 
+	/** Creation time in nanoseconds, for the flight recorder */
+	private final long creation_time;
+
+	/** Time of the last state change in nanoseconds, for the flight recorder */
+	private long status_time;
+
 
 	/** Costructs a new Transaction */
 	protected Transaction(SipProvider sip_provider) {
@@ -112,11 +119,28 @@ public abstract class Transaction/* extends org.zoolu.util.MonitoredObject */ im
 		this.connection_id=null;
 		this.transaction_sqn=transaction_counter++;
 		this.status=STATE_IDLE;
+		this.creation_time=this.status_time=System.nanoTime();
 	}
 
 	/** Changes the internal status */
 	protected void changeStatus(int newstatus) {
+		int oldstatus=status;
 		status=newstatus;
+		long now=System.nanoTime();
+		TransactionStateEvent event=new TransactionStateEvent();
+		if (event.shouldCommit()) {
+			if (request!=null) {
+				if (request.hasCallIdHeader()) event.callId=request.getCallIdHeader().getCallId();
+				event.method=request.getTransactionMethod();
+			}
+			event.transactionType=getClass().getSimpleName();
+			event.fromState=getStatus(oldstatus);
+			event.toState=getStatus(newstatus);
+			event.timeInState=now-status_time;
+			event.age=now-creation_time;
+			event.commit();
+		}
+		status_time=now;
 		//transaction_listener.onChangedTransactionStatus(status);
 		LOG.debug("changed transaction state: "+getStatus());
 	}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mjsip.sip.provider.SipConfig;
+import org.mjsip.sip.provider.SipId;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.sip.transaction.TransactionServer;
+import org.mjsip.time.Scheduler;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test for the flight recorder events emitted while a {@link SipProvider} answers a request.
+ */
+@SuppressWarnings("javadoc")
+class TestFlightRecorderEvents {
+
+	private static final String LOCALHOST = "127.0.0.1";
+
+	private static final String CALL_ID = "a84b4c76e66710@127.0.0.1";
+
+	@TempDir
+	File dir;
+
+	@Test
+	void testTransactionAndDispatchEvents() throws IOException, InterruptedException {
+		ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+		InetAddress localhost = InetAddress.getByName(LOCALHOST);
+		SipConfig config = new SipConfig();
+		config.setViaAddrIPv4(LOCALHOST);
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			config.setHostPort(socket.getLocalPort());
+		}
+		config.setTransportProtocols(new String[] { SipProvider.PROTO_UDP });
+		config.normalize();
+
+		File file = new File(dir, "events.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(TransactionStateEvent.NAME);
+			recording.enable(SipDispatchEvent.NAME);
+			recording.start();
+
+			SipProvider provider = new SipProvider(config, Scheduler.of(executor));
+			try (DatagramSocket client = new DatagramSocket(0, localhost)) {
+				client.setSoTimeout(2000);
+				provider.addSelectiveListener(SipId.ANY_METHOD,
+					(sipProvider, msg) -> new TransactionServer(sipProvider, msg, null).respondWith(200));
+
+				byte[] data = options(client.getLocalPort()).getBytes(StandardCharsets.US_ASCII);
+				client.send(new DatagramPacket(data, data.length, localhost, config.getHostPort()));
+				DatagramPacket reply = new DatagramPacket(new byte[2048], 2048);
+				client.receive(reply);
+				Assertions.assertTrue(new String(reply.getData(), 0, reply.getLength(), StandardCharsets.US_ASCII)
+					.startsWith("SIP/2.0 200 "));
+			} finally {
+				provider.halt();
+				executor.shutdownNow();
+			}
+
+			recording.stop();
+			recording.dump(file.toPath());
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+
+		List<RecordedEvent> dispatches = events.stream()
+			.filter(e -> e.getEventType().getName().equals(SipDispatchEvent.NAME))
+			.collect(Collectors.toList());
+		Assertions.assertEquals(1, dispatches.size());
+		RecordedEvent dispatch = dispatches.get(0);
+		Assertions.assertEquals(CALL_ID, dispatch.getString("callId"));
+		Assertions.assertEquals("OPTIONS", dispatch.getString("method"));
+		Assertions.assertEquals(0, dispatch.getInt("statusCode"));
+		Assertions.assertEquals(SipProvider.PROTO_UDP, dispatch.getString("transport"));
+		Assertions.assertNotNull(dispatch.getString("listener"));
+		Assertions.assertTrue(dispatch.getLong("queueDelay") > 0);
+
+		List<String> transitions = events.stream()
+			.filter(e -> e.getEventType().getName().equals(TransactionStateEvent.NAME))
+			.filter(e -> CALL_ID.equals(e.getString("callId")))
+			.map(e -> e.getString("transactionType") + " " + e.getString("method") + " " + e.getString("fromState")
+					+ " -> " + e.getString("toState"))
+			.collect(Collectors.toList());
+		Assertions.assertEquals(List.of(
+			"TransactionServer OPTIONS T_Idle -> T_Trying",
+			"TransactionServer OPTIONS T_Trying -> T_Completed"), transitions);
+	}
+
+	private static String options(int clientPort) {
+		return "OPTIONS sip:bob@" + LOCALHOST + " SIP/2.0\r\n"
+				+ "Via: SIP/2.0/UDP " + LOCALHOST + ":" + clientPort + ";branch=z9hG4bK776asdhds\r\n"
+				+ "Max-Forwards: 70\r\n"
+				+ "To: <sip:bob@" + LOCALHOST + ">\r\n"
+				+ "From: <sip:alice@" + LOCALHOST + ">;tag=1928301774\r\n"
+				+ "Call-ID: " + CALL_ID + "\r\n"
+				+ "CSeq: 1 OPTIONS\r\n"
+				+ "Content-Length: 0\r\n"
+				+ "\r\n";
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.media;
+
+import java.io.ByteArrayOutputStream;
+import java.net.SocketException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.media.rx.RtpAudioRxHandler;
+import org.mjsip.media.rx.RtpReceiverOptions;
+import org.zoolu.net.SocketAddress;
+import org.zoolu.net.UdpSocket;
+
+/**
+ * Test for halting RTP streams whose loop has never been started.
+ */
+@SuppressWarnings("javadoc")
+class TestRtpStreamHalt {
+
+	@Test
+	void testHaltNotStarted() throws Exception {
+		AtomicInteger terminations = new AtomicInteger();
+		UdpSocket socket = new UdpSocket(0);
+		try {
+			RtpStreamReceiver receiver = receiver(socket, terminations);
+			RtpAudioRxHandler handle = new RtpAudioRxHandler(receiver);
+
+			// The media executor has no capacity left.
+			Assertions.assertThrows(RejectedExecutionException.class, () -> handle.start(loop -> {
+				throw new RejectedExecutionException();
+			}));
+
+			CompletionStage<Void> terminated = handle.haltAsync();
+			terminated.toCompletableFuture().get(1, TimeUnit.SECONDS);
+
+			// A loop submitted before the halt but started afterwards does not run.
+			receiver.run();
+			Assertions.assertEquals(0, terminations.get());
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test
+	void testHaltStarted() throws Exception {
+		AtomicInteger terminations = new AtomicInteger();
+		UdpSocket socket = new UdpSocket(0);
+		try {
+			RtpStreamReceiver receiver = receiver(socket, terminations);
+			RtpAudioRxHandler handle = new RtpAudioRxHandler(receiver);
+			handle.start(loop -> new Thread(loop).start());
+			for (int n = 0; n < 100 && !receiver.isRunning(); n++) {
+				Thread.sleep(10);
+			}
+			Assertions.assertTrue(receiver.isRunning());
+
+			CompletionStage<Void> terminated = handle.haltAsync();
+			socket.close();
+			terminated.toCompletableFuture().get(5, TimeUnit.SECONDS);
+			Assertions.assertEquals(1, terminations.get());
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static RtpStreamReceiver receiver(UdpSocket socket, AtomicInteger terminations) throws SocketException {
+		RtpReceiverOptions options = new RtpReceiverOptions() {
+			@Override
+			public boolean sequenceCheck() {
+				return false;
+			}
+
+			@Override
+			public boolean silencePadding() {
+				return false;
+			}
+
+			@Override
+			public int randomEarlyDrop() {
+				return 0;
+			}
+
+			@Override
+			public boolean ssrcCheck() {
+				return false;
+			}
+		};
+		return new RtpStreamReceiver(options, new ByteArrayOutputStream(), null, null, socket,
+			new RtpStreamReceiverListener() {
+				@Override
+				public void onRemoteSoAddressChanged(RtpStreamReceiver rr, SocketAddress remote_soaddr) {
+					// Ignore.
+				}
+
+				@Override
+				public void onRtpStreamReceiverTerminated(RtpStreamReceiver rr, Exception error) {
+					terminations.incrementAndGet();
+				}
+			});
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.rtp;
+
+import java.util.Random;
+
+import org.zoolu.sound.codec.AMR;
+
+/**
+ * Micro-benchmark of the per-packet cost of the bandwidth-efficient {@link AmrRtpPayloadFormat},
+ * compared to the former {@link org.zoolu.util.BitString} based implementation.
+ *
+ * <p>
+ * Not a test case; run manually from the test class path.
+ * </p>
+ */
+@SuppressWarnings("javadoc")
+public class AmrPayloadBenchmark {
+
+	private static final int PACKETS = 200000;
+
+	public static void main(String[] args) throws Exception {
+		byte[] frame = new byte[AMR.frameSize(AMR.M7_1220)];
+		new Random(1).nextBytes(frame);
+		frame[0] = (byte) ((AMR.M7_1220 << 3) | 0x04);
+		frame[frame.length - 1] &= (byte) 0xF0;
+
+		AmrRtpPayloadFormat format = new AmrRtpPayloadFormat(true);
+		byte[] buf = new byte[64];
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			int check = 0;
+			for (int n = 0; n < PACKETS; n++) {
+				System.arraycopy(frame, 0, buf, 0, frame.length);
+				int length = TestAmrPayloadPacker.LegacyFormat.set(buf, 0, frame.length);
+				check += TestAmrPayloadPacker.LegacyFormat.remove(buf, 0, length);
+			}
+			report("BitString", start, check);
+
+			start = System.nanoTime();
+			check = 0;
+			for (int n = 0; n < PACKETS; n++) {
+				System.arraycopy(frame, 0, buf, 0, frame.length);
+				int length = format.setRtpPayloadFormat(buf, 0, frame.length);
+				check += format.removeRtpPayloadFormat(buf, 0, length);
+			}
+			report("AmrPayloadPacker", start, check);
+			System.out.println();
+		}
+	}
+
+	private static void report(String name, long start, int check) {
+		double nanos = (double) (System.nanoTime() - start) / PACKETS;
+		System.out.printf("%-18s %8.0f ns/packet (%d)%n", name, nanos, check);
+	}
+
+}
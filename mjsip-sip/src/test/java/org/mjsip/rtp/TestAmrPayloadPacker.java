@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.rtp;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.zoolu.sound.codec.AMR;
+import org.zoolu.util.BitString;
+import org.zoolu.util.BitStringBuffer;
+
+/**
+ * Test for {@link AmrPayloadPacker} and the bandwidth-efficient mode of
+ * {@link AmrRtpPayloadFormat}.
+ */
+@SuppressWarnings("javadoc")
+class TestAmrPayloadPacker {
+
+	private static final int[] MODES = { AMR.M0_0475, AMR.M1_0515, AMR.M2_0590, AMR.M3_0670, AMR.M4_0740,
+		AMR.M5_0795, AMR.M6_1020, AMR.M7_1220, AMR.M8_SID, AMR.M15_NO_DATA };
+
+	private final Random _random = new Random(4711);
+
+	@Test
+	void testConformance() throws Exception {
+		AmrRtpPayloadFormat format = new AmrRtpPayloadFormat(true);
+		for (int mode : MODES) {
+			for (int round = 0; round < 50; round++) {
+				byte[] frame = frame(mode);
+
+				// Sending.
+				byte[] expected = new byte[64];
+				System.arraycopy(frame, 0, expected, 2, frame.length);
+				int expectedLength = LegacyFormat.set(expected, 2, frame.length);
+				byte[] actual = new byte[64];
+				System.arraycopy(frame, 0, actual, 2, frame.length);
+				int actualLength = format.setRtpPayloadFormat(actual, 2, frame.length);
+				Assertions.assertEquals(expectedLength, actualLength, "Mode " + mode);
+				Assertions.assertEquals(format.getRtpPayloadFormatLength(frame.length), actualLength, "Mode " + mode);
+				Assertions.assertArrayEquals(Arrays.copyOfRange(expected, 2, 2 + expectedLength),
+					Arrays.copyOfRange(actual, 2, 2 + actualLength), "Mode " + mode);
+
+				// Receiving.
+				byte[] payload = Arrays.copyOfRange(actual, 2, 2 + actualLength);
+				byte[] expectedFrame = Arrays.copyOf(payload, 64);
+				int expectedFrameLength = LegacyFormat.remove(expectedFrame, 0, payload.length);
+				byte[] actualFrame = Arrays.copyOf(payload, 64);
+				int actualFrameLength = format.removeRtpPayloadFormat(actualFrame, 0, payload.length);
+				Assertions.assertEquals(expectedFrameLength, actualFrameLength, "Mode " + mode);
+				Assertions.assertArrayEquals(Arrays.copyOf(expectedFrame, expectedFrameLength),
+					Arrays.copyOf(actualFrame, actualFrameLength), "Mode " + mode);
+
+				if (mode != AMR.M15_NO_DATA) {
+					Assertions.assertArrayEquals(frame, Arrays.copyOf(actualFrame, actualFrameLength), "Mode " + mode);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testMultiFrame() {
+		byte[] first = frame(AMR.M7_1220);
+		byte[] second = frame(AMR.M0_0475);
+		byte[] third = frame(AMR.M8_SID);
+		byte[] frames = new byte[first.length + second.length + third.length];
+		System.arraycopy(first, 0, frames, 0, first.length);
+		System.arraycopy(second, 0, frames, first.length, second.length);
+		System.arraycopy(third, 0, frames, first.length + second.length, third.length);
+
+		byte[] payload = new byte[64];
+		int length = AmrPayloadPacker.pack(frames, 0, frames.length, 15, payload, 0);
+		Assertions.assertEquals((4 + 3 * 6 + 244 + 95 + 39 + 7) / 8, length);
+
+		// CMR, then TOC entries with follow bits: 1 0111 1, 1 0000 1, 0 1000 1
+		BitString expectedHeader = new BitString("1111" + "101111" + "100001" + "010001");
+		Assertions.assertEquals(expectedHeader, new BitString(payload, 0, 4, false).substring(0, 22));
+
+		Assertions.assertEquals(frames.length, AmrPayloadPacker.getUnpackedLength(payload, 0, length));
+		byte[] unpacked = new byte[64];
+		Assertions.assertEquals(frames.length, AmrPayloadPacker.unpack(payload, 0, length, unpacked, 3));
+		Assertions.assertArrayEquals(frames, Arrays.copyOfRange(unpacked, 3, 3 + frames.length));
+
+		// A truncated last frame is dropped.
+		Assertions.assertEquals(first.length + second.length,
+			AmrPayloadPacker.unpack(payload, 0, length - 1, unpacked, 0));
+		int truncated = AmrPayloadPacker.pack(frames, 0, frames.length - 1, 15, payload, 0);
+		Assertions.assertEquals(first.length + second.length,
+			AmrPayloadPacker.unpack(payload, 0, truncated, unpacked, 0));
+	}
+
+	/**
+	 * Creates a random frame of the given mode in storage format with zero padding.
+	 */
+	private byte[] frame(int mode) {
+		int bits = AMR.framePayloadBitSize(mode);
+		byte[] result = new byte[AMR.frameSize(mode)];
+		_random.nextBytes(result);
+		result[0] = (byte) ((mode << 3) | 0x04);
+		int used = bits & 7;
+		if (used != 0) {
+			result[result.length - 1] &= (byte) (0xFF00 >> used);
+		}
+		return result;
+	}
+
+	/**
+	 * The bandwidth-efficient mode of {@link AmrRtpPayloadFormat} as implemented with
+	 * {@link BitString}s before.
+	 */
+	static class LegacyFormat {
+
+		static int remove(byte[] buf, int off, int len) throws Exception {
+			BitStringBuffer bb = new BitStringBuffer().append(new BitString(buf, off, len, false));
+			bb.poll(4);
+			int hdr = bb.poll(6).toBitString().getBytes(false)[0];
+			int type = (hdr >> 3) & 0xf;
+			int frame_bit_len = AMR.framePayloadBitSize(type);
+			if (frame_bit_len == 0)
+				return 0;
+			byte[] data = bb.poll(frame_bit_len).toBitString().getBytes(false);
+			buf[off] = (byte) hdr;
+			for (int i = 0; i < data.length; i++)
+				buf[off + 1 + i] = data[i];
+			return data.length + 1;
+		}
+
+		static int set(byte[] buf, int off, int len) {
+			BitStringBuffer bb = new BitStringBuffer();
+			BitString cmr = new BitString(new byte[] { (byte) AmrRtpPayloadFormat.DEFAULT_CMR }, false).substring(4, 8);
+			bb.append(cmr);
+			int hdr = buf[off];
+			int type = (hdr >> 3) & 0xf;
+			BitString toc = new BitString(new byte[] { (byte) ((type << 1) | 0x1) }, false).substring(2, 8);
+			bb.append(toc);
+			bb.append(new BitString(buf, off + 1, len - 1, false));
+			int frame_bit_len = AMR.framePayloadBitSize(type);
+			bb = bb.substring(0, 10 + frame_bit_len);
+			return bb.toBitString().getBytes(buf, off, false);
+		}
+
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.rtp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.media.RtpStreamReceiver;
+import org.mjsip.media.RtpStreamSender;
+import org.zoolu.net.UdpProvider;
+
+/**
+ * Test for {@link RtpBufferPool}.
+ */
+@SuppressWarnings("javadoc")
+class TestRtpBufferPool {
+
+	@Test
+	void testSizeClasses() {
+		Assertions.assertEquals(256, RtpBufferPool.bufferSize(1));
+		Assertions.assertEquals(256, RtpBufferPool.bufferSize(256));
+		Assertions.assertEquals(512, RtpBufferPool.bufferSize(257));
+		Assertions.assertEquals(2048, RtpBufferPool.bufferSize(RtpStreamSender.BUFFER_SIZE));
+		Assertions.assertEquals(2048, RtpBufferPool.bufferSize(RtpStreamReceiver.BUFFER_SIZE));
+		Assertions.assertEquals(2048, RtpBufferPool.bufferSize(UdpProvider.PACKET_BUFFER_SIZE));
+		Assertions.assertEquals(65536, RtpBufferPool.bufferSize(UdpProvider.BUFFER_SIZE));
+		Assertions.assertEquals(100000, RtpBufferPool.bufferSize(100000));
+	}
+
+	@Test
+	void testReuse() {
+		RtpBufferPool pool = new RtpBufferPool(RtpBufferPool.DEFAULT_STREAMS);
+		byte[] buf = pool.lease(RtpStreamSender.BUFFER_SIZE);
+		Assertions.assertEquals(2048, buf.length);
+		pool.release(buf);
+		Assertions.assertEquals(1, pool.getFreeCount(2048));
+
+		Assertions.assertSame(buf, pool.lease(1500));
+		Assertions.assertEquals(0, pool.getFreeCount(2048));
+
+		// Different size class.
+		Assertions.assertNotSame(buf, pool.lease(4000));
+		Assertions.assertEquals(3, pool.getLeasedCount());
+		Assertions.assertEquals(2, pool.getAllocatedCount());
+	}
+
+	@Test
+	void testRetention() {
+		RtpBufferPool pool = new RtpBufferPool(8);
+		Assertions.assertEquals(16, pool.getMaxFreeCount());
+		List<byte[]> small = new ArrayList<>();
+		List<byte[]> large = new ArrayList<>();
+		for (int n = 0; n < 100; n++) {
+			small.add(pool.lease(1024));
+			large.add(pool.lease(65535));
+		}
+		small.forEach(pool::release);
+		large.forEach(pool::release);
+
+		// The same number of buffers is retained in each class.
+		Assertions.assertEquals(16, pool.getFreeCount(1024));
+		Assertions.assertEquals(16, pool.getFreeCount(65536));
+		Assertions.assertEquals(100 - 16 + 100 - 16, pool.getDiscardedCount());
+
+		// Buffers not obtained from the pool are not retained.
+		pool.release(new byte[1000]);
+		pool.release(new byte[128]);
+		pool.release(new byte[1 << 17]);
+		pool.release(null);
+		Assertions.assertEquals(16, pool.getFreeCount(1024));
+		Assertions.assertEquals(100 - 16 + 100 - 16 + 3, pool.getDiscardedCount());
+	}
+
+	@Test
+	void testExpectedStreams() {
+		RtpBufferPool pool = new RtpBufferPool(1);
+		// At least some buffers are retained in each class.
+		Assertions.assertEquals(4, pool.getMaxFreeCount());
+
+		pool.setExpectedStreams(100);
+		Assertions.assertEquals(100, pool.getExpectedStreams());
+		Assertions.assertEquals(200, pool.getMaxFreeCount());
+
+		List<byte[]> buffers = new ArrayList<>();
+		for (int n = 0; n < 300; n++) {
+			buffers.add(pool.lease(RtpStreamReceiver.BUFFER_SIZE));
+		}
+		buffers.forEach(pool::release);
+		Assertions.assertEquals(200, pool.getFreeCount(2048));
+	}
+
+	@Test
+	void testConcurrent() throws InterruptedException {
+		RtpBufferPool pool = new RtpBufferPool(RtpBufferPool.DEFAULT_STREAMS);
+		int threads = 8;
+		int rounds = 10000;
+		CountDownLatch done = new CountDownLatch(threads);
+		List<Throwable> errors = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			byte mark = (byte) t;
+			new Thread(() -> {
+				try {
+					for (int n = 0; n < rounds; n++) {
+						byte[] buf = pool.lease(RtpStreamSender.BUFFER_SIZE);
+						buf[0] = mark;
+						Thread.yield();
+						// No other thread uses the buffer while leased.
+						if (buf[0] != mark) {
+							throw new AssertionError("Buffer leased twice.");
+						}
+						pool.release(buf);
+					}
+				} catch (Throwable ex) {
+					synchronized (errors) {
+						errors.add(ex);
+					}
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of(), errors);
+		Assertions.assertEquals(threads * rounds, pool.getLeasedCount());
+		Assertions.assertTrue(pool.getAllocatedCount() <= threads, "allocated=" + pool.getAllocatedCount());
+	}
+
+}
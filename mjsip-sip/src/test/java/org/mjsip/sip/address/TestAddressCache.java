@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.address;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.header.FromHeader;
+import org.mjsip.sip.header.LegacyHeader;
+import org.mjsip.sip.header.SipHeaders;
+import org.mjsip.sip.provider.SipParser;
+
+/**
+ * Test for {@link AddressCache}.
+ */
+@SuppressWarnings("javadoc")
+class TestAddressCache {
+
+	@Test
+	void testSipURICopies() {
+		AddressCache cache = new AddressCache(16);
+		SipURI first = cache.getSipURI("sip:alice@atlanta.example.com:5070;transport=tcp");
+		Assertions.assertEquals(1, cache.sipURIs());
+		first.addParameter("lr");
+		first.setSecure(true);
+
+		SipURI second = cache.getSipURI("sip:alice@atlanta.example.com:5070;transport=tcp");
+		Assertions.assertNotSame(first, second);
+		Assertions.assertEquals("sip:alice@atlanta.example.com:5070;transport=tcp", second.toString());
+		Assertions.assertEquals(1, cache.sipURIs());
+
+		Assertions.assertNull(cache.getSipURI(""));
+		Assertions.assertNull(cache.getSipURI(null));
+	}
+
+	@Test
+	void testNameAddress() {
+		AddressCache cache = new AddressCache(16);
+		String[] values = {
+			"\"Alice Liddell\" <sip:alice@atlanta.example.com>;tag=9fxced76sl",
+			"\"Alice Liddell\" <sip:alice@atlanta.example.com>;tag=1928301774",
+			"\"Alice > Bob\" <sip:alice@atlanta.example.com;transport=udp>",
+			"Bob <sip:bob@biloxi.example.com>",
+			"sip:bob@biloxi.example.com;lr",
+			"<tel:+49-123-456>",
+		};
+		for (String value : values) {
+			for (int n = 0; n < 2; n++) {
+				NameAddress expected = new SipParser(value).getNameAddress();
+				NameAddress actual = cache.getNameAddress(value);
+				Assertions.assertEquals(expected.getDisplayName(), actual.getDisplayName());
+				Assertions.assertEquals(expected.getAddress().toString(), actual.getAddress().toString());
+			}
+		}
+		// Both From values differ in the tag only, the address with parameters but without angle
+		// brackets is not cached.
+		Assertions.assertEquals(values.length - 2, cache.nameAddresses());
+
+		NameAddress modified = cache.getNameAddress(values[2]);
+		modified.getAddress().removeParameter("transport");
+		Assertions.assertEquals("sip:alice@atlanta.example.com;transport=udp",
+			cache.getNameAddress(values[2]).getAddress().toString());
+	}
+
+	@Test
+	void testNameAddressWithoutBrackets() {
+		AddressCache cache = new AddressCache(16);
+		for (int n = 0; n < 10; n++) {
+			NameAddress address = cache.getNameAddress("sip:alice@atlanta.example.com;tag=" + n);
+			Assertions.assertEquals("sip:alice@atlanta.example.com;tag=" + n, address.getAddress().toString());
+		}
+		Assertions.assertEquals(0, cache.nameAddresses(), "Tags must not fill the cache.");
+
+		cache.getNameAddress("sip:alice@atlanta.example.com");
+		Assertions.assertEquals(1, cache.nameAddresses());
+	}
+
+	@Test
+	void testEndPointHeader() {
+		FromHeader from = new FromHeader(new LegacyHeader(SipHeaders.From, "<sip:alice@atlanta.example.com;tag=x>;tag=y"));
+		Assertions.assertEquals("sip:alice@atlanta.example.com", from.getNameAddress().getAddress().toString());
+		Assertions.assertEquals("sip:alice@atlanta.example.com", from.getNameAddress().getAddress().toString());
+		Assertions.assertEquals("y", from.getTag());
+
+		FromHeader plain = new FromHeader(new LegacyHeader(SipHeaders.From, "sip:alice@atlanta.example.com;tag=z"));
+		Assertions.assertEquals("sip:alice@atlanta.example.com", plain.getNameAddress().getAddress().toString());
+		Assertions.assertEquals("z", plain.getTag());
+	}
+
+	@Test
+	void testBounded() {
+		AddressCache cache = new AddressCache(100);
+		for (int n = 0; n < 1000; n++) {
+			cache.getSipURI("sip:user" + n + "@example.com");
+
+			// Frequently used entry.
+			cache.getSipURI("sip:alice@example.com");
+			Assertions.assertTrue(cache.sipURIs() <= 100);
+		}
+		Assertions.assertEquals("sip:user999@example.com", cache.getSipURI("sip:user999@example.com").toString());
+		int size = cache.sipURIs();
+		cache.getSipURI("sip:alice@example.com");
+		Assertions.assertEquals(size, cache.sipURIs(), "Frequently used entry was evicted.");
+
+		cache.clear();
+		Assertions.assertEquals(0, cache.sipURIs());
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.message;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Typical SIP messages as received from user agents and registrars, for parser tests and
+ * benchmarks.
+ */
+@SuppressWarnings("javadoc")
+class SipCorpus {
+
+	static final String INVITE = lines(
+		"INVITE sip:bob@biloxi.example.com SIP/2.0",
+		"Via: SIP/2.0/UDP pc33.atlanta.example.com:5060;branch=z9hG4bK74bf9;rport",
+		"Via: SIP/2.0/UDP bigbox3.site3.atlanta.example.com;branch=z9hG4bK77ef4c2312983.1;received=192.0.2.2",
+		"Max-Forwards: 69",
+		"From: \"Alice Liddell\" <sip:alice@atlanta.example.com>;tag=9fxced76sl",
+		"To: Bob <sip:bob@biloxi.example.com>",
+		"Call-ID: 3848276298220188511@atlanta.example.com",
+		"CSeq: 31862 INVITE",
+		"Contact: <sip:alice@client.atlanta.example.com;transport=udp>",
+		"Allow: INVITE, ACK, CANCEL, OPTIONS, BYE, REFER, NOTIFY, MESSAGE, SUBSCRIBE, INFO",
+		"Supported: replaces, timer",
+		"User-Agent: Softphone/4.2.1 (Linux)",
+		"Content-Type: application/sdp",
+		"Content-Length: 226",
+		"",
+		"v=0",
+		"o=alice 2890844526 2890844526 IN IP4 client.atlanta.example.com",
+		"s=-",
+		"c=IN IP4 192.0.2.101",
+		"t=0 0",
+		"m=audio 49172 RTP/AVP 0 8 101",
+		"a=rtpmap:0 PCMU/8000",
+		"a=rtpmap:8 PCMA/8000",
+		"a=rtpmap:101 telephone-event/8000",
+		"a=sendrecv") + "\r\n";
+
+	static final String REGISTER = lines(
+		"REGISTER sip:registrar.biloxi.example.com SIP/2.0",
+		"Via: SIP/2.0/UDP bobspc.biloxi.example.com:5060;branch=z9hG4bKnashds7",
+		"Max-Forwards: 70",
+		"To: Bob <sip:bob@biloxi.example.com>",
+		"From: Bob <sip:bob@biloxi.example.com>;tag=456248",
+		"Call-ID: 843817637684230@998sdasdh09",
+		"CSeq: 1826 REGISTER",
+		"Contact: <sip:bob@192.0.2.4>;expires=7200",
+		"Expires: 7200",
+		"Content-Length: 0",
+		"",
+		"");
+
+	static final String REGISTER_AUTH = lines(
+		"REGISTER sip:registrar.biloxi.example.com SIP/2.0",
+		"Via: SIP/2.0/TCP bobspc.biloxi.example.com:5060;branch=z9hG4bKnashds8",
+		"Max-Forwards: 70",
+		"To: Bob <sip:bob@biloxi.example.com>",
+		"From: Bob <sip:bob@biloxi.example.com>;tag=456249",
+		"Call-ID: 843817637684230@998sdasdh09",
+		"CSeq: 1827 REGISTER",
+		"Contact: <sip:bob@192.0.2.4;transport=tcp>;expires=7200;+sip.instance=\"<urn:uuid:00000000-0000-1000-8000-000A95A0E128>\"",
+		"Authorization: Digest username=\"bob\", realm=\"biloxi.example.com\",",
+		"  nonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", uri=\"sip:registrar.biloxi.example.com\",",
+		"  response=\"6629fae49393a05397450978507c4ef1\", algorithm=MD5",
+		"Expires: 7200",
+		"Content-Length: 0",
+		"",
+		"");
+
+	static final String OK = lines(
+		"SIP/2.0 200 OK",
+		"Via: SIP/2.0/UDP bobspc.biloxi.example.com:5060;branch=z9hG4bKnashds7;received=192.0.2.4",
+		"To: Bob <sip:bob@biloxi.example.com>;tag=2493k59kd",
+		"From: Bob <sip:bob@biloxi.example.com>;tag=456248",
+		"Call-ID: 843817637684230@998sdasdh09",
+		"CSeq: 1826 REGISTER",
+		"Contact: <sip:bob@192.0.2.4>;expires=7200",
+		"Date: Sat, 13 Nov 2010 23:29:00 GMT",
+		"Content-Length: 0",
+		"",
+		"");
+
+	static final String UNAUTHORIZED = lines(
+		"SIP/2.0 401 Unauthorized",
+		"Via: SIP/2.0/UDP bobspc.biloxi.example.com:5060;branch=z9hG4bKnashds7;received=192.0.2.4",
+		"To: Bob <sip:bob@biloxi.example.com>;tag=2493k59kd",
+		"From: Bob <sip:bob@biloxi.example.com>;tag=456248",
+		"Call-ID: 843817637684230@998sdasdh09",
+		"CSeq: 1826 REGISTER",
+		"WWW-Authenticate: Digest realm=\"biloxi.example.com\", qop=\"auth\",",
+		"\tnonce=\"dcd98b7102dd2f0e8b11d0f600bfb0c093\", opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"",
+		"Content-Length: 0",
+		"",
+		"");
+
+	/** Display name with non-ASCII characters and LF line breaks only. */
+	static final String MESSAGE_LF = String.join("\n",
+		"MESSAGE sip:bob@biloxi.example.com SIP/2.0",
+		"Via: SIP/2.0/UDP pc33.atlanta.example.com;branch=z9hG4bK776sgdkse",
+		"Max-Forwards: 70",
+		"From: \"Jürgen Müßig\" <sip:juergen@atlanta.example.com>;tag=49583",
+		"To: sip:bob@biloxi.example.com",
+		"Call-ID: asd88asd77a@1.2.3.4",
+		"CSeq: 1 MESSAGE",
+		"Subject:   Grüße  ",
+		"Content-Type: text/plain",
+		"Content-Length: 6",
+		"",
+		"Hallo!");
+
+	static final String[] ALL = { INVITE, REGISTER, REGISTER_AUTH, OK, UNAUTHORIZED, MESSAGE_LF };
+
+	static byte[] bytes(String message) {
+		return message.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String lines(String... lines) {
+		return String.join("\r\n", lines);
+	}
+
+}
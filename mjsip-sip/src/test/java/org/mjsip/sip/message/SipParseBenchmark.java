@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.message;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Micro-benchmark of the per-message parse cost for the messages of the {@link SipCorpus}.
+ *
+ * <p>
+ * Compares decoding the received bytes to a {@link String} and parsing this with
+ * {@link org.mjsip.sip.provider.SipParser} to tokenizing the received bytes directly. Each
+ * iteration also accesses the Via, From, To and CSeq headers, as the transaction layer does for
+ * every message.
+ * </p>
+ *
+ * <p>
+ * Not a test case; run manually from the test class path.
+ * </p>
+ */
+@SuppressWarnings("javadoc")
+public class SipParseBenchmark {
+
+	private static final int ROUNDS = 20000;
+
+	public static void main(String[] args) {
+		byte[][] corpus = new byte[SipCorpus.ALL.length][];
+		for (int n = 0; n < corpus.length; n++) {
+			corpus[n] = SipCorpus.bytes(SipCorpus.ALL[n]);
+		}
+
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			int check = 0;
+			for (int n = 0; n < ROUNDS; n++) {
+				for (byte[] data : corpus) {
+					SipMessage msg = new SipMessage(new String(data, 0, data.length, StandardCharsets.UTF_8));
+					check += access(msg);
+				}
+			}
+			report("String", start, corpus.length, check);
+
+			start = System.nanoTime();
+			check = 0;
+			for (int n = 0; n < ROUNDS; n++) {
+				for (byte[] data : corpus) {
+					SipMessage msg = new SipMessage(data, 0, data.length);
+					check += access(msg);
+				}
+			}
+			report("bytes", start, corpus.length, check);
+			System.out.println();
+		}
+	}
+
+	private static int access(SipMessage msg) {
+		return msg.getViaHeader().getBranch().length() + msg.getFromHeader().getTag().length()
+			+ msg.getToHeader().getNameAddress().getAddress().toString().length()
+			+ (int) msg.getCSeqHeader().getSequenceNumber();
+	}
+
+	private static void report(String name, long start, int messages, int check) {
+		double nanos = (double) (System.nanoTime() - start) / ROUNDS / messages;
+		System.out.printf("%-8s %8.0f ns/message (%d)%n", name, nanos, check);
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.message;
+
+import java.util.Vector;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.header.Header;
+import org.mjsip.sip.header.SipHeaders;
+import org.mjsip.sip.provider.SipParser;
+import org.zoolu.util.ByteTokenizer;
+import org.zoolu.util.CharTable;
+import org.zoolu.util.Parser;
+
+/**
+ * Test for parsing {@link SipMessage}s directly from received bytes.
+ */
+@SuppressWarnings("javadoc")
+class TestSipMessageBytes {
+
+	@Test
+	void testSameAsStringParser() {
+		for (String text : SipCorpus.ALL) {
+			byte[] data = SipCorpus.bytes(text);
+			SipMessage expected = new SipMessage(text);
+			SipMessage actual = new SipMessage(data, 0, data.length);
+
+			Assertions.assertEquals(expected.isRequest(), actual.isRequest());
+			if (expected.isRequest()) {
+				Assertions.assertEquals(expected.getRequestLine().toString(), actual.getRequestLine().toString());
+			} else {
+				Assertions.assertEquals(expected.getStatusLine().toString(), actual.getStatusLine().toString());
+			}
+
+			Vector<Header> expectedHeaders = expected.getHeaders();
+			Vector<Header> actualHeaders = actual.getHeaders();
+			Assertions.assertEquals(expectedHeaders.size(), actualHeaders.size());
+			for (int n = 0; n < expectedHeaders.size(); n++) {
+				Assertions.assertEquals(expectedHeaders.get(n).getName(), actualHeaders.get(n).getName());
+				Assertions.assertEquals(expectedHeaders.get(n).getValue(), actualHeaders.get(n).getValue());
+			}
+			// The string parser keeps an empty body, where the byte parser has none.
+			Assertions.assertEquals(body(expected), body(actual));
+		}
+	}
+
+	private static String body(SipMessage msg) {
+		String body = msg.getStringBody();
+		return body == null ? "" : body;
+	}
+
+	@Test
+	void testFoldedAndNonAscii() {
+		byte[] data = SipCorpus.bytes(SipCorpus.UNAUTHORIZED);
+		SipMessage msg = new SipMessage(data, 0, data.length);
+		Assertions.assertEquals(401, msg.getStatusLine().getCode());
+		Assertions.assertTrue(msg.getHeader(SipHeaders.WWW_Authenticate).getValue().endsWith("opaque=\"5ccc069c403ebaf9f0171e9517f40e41\""));
+
+		data = SipCorpus.bytes(SipCorpus.MESSAGE_LF);
+		msg = new SipMessage(data, 0, data.length);
+		Assertions.assertEquals("Jürgen Müßig", msg.getFromHeader().getNameAddress().getDisplayName());
+		Assertions.assertEquals("Grüße", msg.getHeader(SipHeaders.Subject).getValue());
+		Assertions.assertEquals("Hallo!", msg.getStringBody());
+	}
+
+	@Test
+	void testCharTables() {
+		for (char c = 0; c < 300; c++) {
+			Assertions.assertEquals(Parser.isAnyOf(SipParser.SEPARATOR, c), SipParser.isSeparator(c));
+			Assertions.assertEquals(Parser.isAnyOf(SipParser.param_separators, c), SipParser.PARAM_SEPARATORS.contains(c));
+			Assertions.assertEquals(Parser.isAlphanum(c) || Parser.isAnyOf(SipParser.MARK, c), SipParser.isUnreserved(c));
+			Assertions.assertEquals(c == ' ' || c == '\t' || c == '\r' || c == '\n', Parser.isWSPCRLF(c));
+		}
+		Assertions.assertTrue(SipParser.isToken('%'));
+		Assertions.assertFalse(SipParser.isToken(':'));
+		Assertions.assertTrue(SipParser.isURIReserved('@'));
+		Assertions.assertFalse(CharTable.ALPHA.contains((byte) 0xC3));
+	}
+
+	@Test
+	void testTokenizer() {
+		byte[] data = SipCorpus.bytes("A: 1\r\n  2\nB:3\r\rC");
+		ByteTokenizer tok = new ByteTokenizer(data, 0, data.length);
+		int end = tok.indexOfEndOfFoldedLine();
+		Assertions.assertEquals("A: 1\r\n  2", tok.getString(0, end));
+		Assertions.assertEquals("1\r\n  2", tok.getTrimmedString(2, end));
+		tok.setPos(end).skipLineBreak();
+		Assertions.assertEquals("B:3", tok.getString(tok.getPos(), tok.indexOfEndOfFoldedLine()));
+		tok.goToNextLine();
+		Assertions.assertEquals(tok.getPos(), tok.indexOfEndOfFoldedLine());
+		tok.goToNextLine();
+		Assertions.assertEquals("C", tok.toString());
+		Assertions.assertEquals(data.length, tok.indexOfEndOfFoldedLine());
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.message;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.address.SipURI;
+import org.mjsip.sip.header.GenericHeader;
+import org.mjsip.sip.header.MaxForwardsHeader;
+import org.mjsip.sip.header.RequestLine;
+import org.mjsip.sip.header.SipHeaders;
+import org.mjsip.sip.header.ViaHeader;
+
+/**
+ * Test for the copy-on-write behavior of {@link SipMessage} copies.
+ */
+@SuppressWarnings("javadoc")
+class TestSipMessageCopy {
+
+	private static final String INVITE = "INVITE sip:bob@example.com SIP/2.0\r\n"
+			+ "Via: SIP/2.0/UDP 10.0.0.1:5060;branch=z9hG4bK776asdhds\r\n"
+			+ "Max-Forwards: 70\r\n"
+			+ "To: Bob <sip:bob@example.com>\r\n"
+			+ "From: Alice <sip:alice@example.com>;tag=1928301774\r\n"
+			+ "Call-ID: a84b4c76e66710@10.0.0.1\r\n"
+			+ "CSeq: 314159 INVITE\r\n"
+			+ "Content-Type: application/sdp\r\n"
+			+ "Content-Length: 4\r\n"
+			+ "\r\n"
+			+ "v=0\n";
+
+	@Test
+	void testForkedCopies() {
+		SipMessage msg = new SipMessage(INVITE);
+
+		SipMessage first = new SipMessage(msg);
+		SipMessage second = new SipMessage(msg);
+		Assertions.assertSame(msg.getBody(), first.getBody());
+
+		first.setRequestLine(new RequestLine(SipMethods.INVITE, new SipURI("bob", "10.0.0.2")));
+		first.addViaHeader(new ViaHeader("udp", "10.0.0.9", 5060));
+		first.setMaxForwardsHeader(new MaxForwardsHeader(69));
+
+		second.removeMaxForwardsHeader();
+		second.addHeader(new GenericHeader("X-Branch", "2"), false);
+
+		Assertions.assertEquals(INVITE, msg.toString());
+
+		Assertions.assertEquals(2, first.getVias().size());
+		Assertions.assertEquals(69, first.getMaxForwardsHeader().getNumber());
+		Assertions.assertEquals("sip:bob@10.0.0.2", first.getRequestLine().getAddress().toString());
+		Assertions.assertFalse(first.hasHeader("X-Branch"));
+
+		Assertions.assertEquals(1, second.getVias().size());
+		Assertions.assertFalse(second.hasMaxForwardsHeader());
+		Assertions.assertEquals("2", second.getHeader("X-Branch").getValue());
+	}
+
+	@Test
+	void testModifyOriginal() throws MalformedSipMessageException {
+		SipMessage msg = new SipMessage(INVITE);
+		SipMessage copy = new SipMessage(msg);
+
+		msg.removeAllHeaders(SipHeaders.Via);
+		msg.setBody(null);
+
+		Assertions.assertEquals(INVITE, copy.toString());
+		Assertions.assertFalse(msg.hasViaHeader());
+
+		// A copy of a copy still shares nothing that can be modified through another message.
+		SipMessage copy2 = new SipMessage(copy);
+		copy.setMessage(INVITE.replace("Bob", "Carol"));
+		Assertions.assertEquals(INVITE, copy2.toString());
+		Assertions.assertEquals("Carol", copy.getToHeader().getNameAddress().getDisplayName());
+	}
+
+}
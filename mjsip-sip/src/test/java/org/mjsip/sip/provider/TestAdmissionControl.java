@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.provider;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.provider.AdmissionControl.Traffic;
+import org.mjsip.sip.provider.AdmissionControl.Verdict;
+
+/**
+ * Test for {@link AdmissionControl}.
+ */
+@SuppressWarnings("javadoc")
+class TestAdmissionControl {
+
+	private static final String INVITE = "INVITE sip:bob@example.com SIP/2.0\r\n"
+			+ "Via: SIP/2.0/UDP 10.0.0.1:5060;branch=z9hG4bK776asdhds\r\n"
+			+ "Max-Forwards: 70\r\n"
+			+ "To: Bob <sip:bob@example.com>\r\n"
+			+ "From: Alice <sip:alice@example.com>;tag=1928301774\r\n"
+			+ "Call-ID: a84b4c76e66710@10.0.0.1\r\n"
+			+ "CSeq: 314159 INVITE\r\n"
+			+ "Content-Length: 0\r\n"
+			+ "\r\n";
+
+	@Test
+	void testClassify() {
+		Assertions.assertEquals(Traffic.INVITE, classify(INVITE));
+		Assertions.assertEquals(Traffic.IN_DIALOG, classify(INVITE.replace("<sip:bob@example.com>", "<sip:bob@example.com>;tag=a6c85cf")));
+		Assertions.assertEquals(Traffic.IN_DIALOG, classify(INVITE.replace("To: Bob <sip:bob@example.com>", "t:sip:bob@example.com ; TAG = x")));
+		Assertions.assertEquals(Traffic.INVITE, classify(INVITE.replace("To: Bob <sip:bob@example.com>", "To: <sip:bob@example.com;tag=x>")));
+		Assertions.assertEquals(Traffic.REQUEST, classify(INVITE.replace("INVITE sip", "REGISTER sip")));
+		Assertions.assertEquals(Traffic.IN_DIALOG, classify(INVITE.replace("INVITE sip", "CANCEL sip")));
+		Assertions.assertEquals(Traffic.RESPONSE, classify("SIP/2.0 200 OK\r\n" + INVITE.substring(INVITE.indexOf('\n') + 1)));
+
+		// A tag in the body does not count.
+		Assertions.assertEquals(Traffic.INVITE, classify(INVITE.replace("To: Bob <sip:bob@example.com>\r\n", "").replace("\r\n\r\n", "\r\n\r\nTo: <sip:x>;tag=1\r\n")));
+
+		for (String msg : new String[] { INVITE, INVITE.replace("INVITE sip", "BYE sip").replace("<sip:bob@example.com>", "<sip:bob@example.com>;tag=2") }) {
+			SipMessage parsed = new SipMessage(msg);
+			Assertions.assertEquals(classify(msg), AdmissionControl.classify(parsed));
+		}
+	}
+
+	@Test
+	void testSourceRate() {
+		AdmissionControl control = new AdmissionControl(10, 3, 100, 0);
+		long now = System.nanoTime();
+
+		for (int n = 0; n < 3; n++) {
+			Assertions.assertEquals(Verdict.ACCEPT, control.admit(Traffic.REQUEST, "10.0.0.1", 0, now));
+		}
+		Assertions.assertEquals(Verdict.DROP, control.admit(Traffic.REQUEST, "10.0.0.1", 0, now));
+		Assertions.assertEquals(Verdict.REJECT, control.admit(Traffic.INVITE, "10.0.0.1", 0, now));
+
+		// In-dialog traffic and other sources are not affected.
+		Assertions.assertEquals(Verdict.ACCEPT, control.admit(Traffic.IN_DIALOG, "10.0.0.1", 0, now));
+		Assertions.assertEquals(Verdict.ACCEPT, control.admit(Traffic.RESPONSE, "10.0.0.1", 0, now));
+		Assertions.assertEquals(Verdict.ACCEPT, control.admit(Traffic.INVITE, "10.0.0.2", 0, now));
+
+		// One token per 100ms.
+		Assertions.assertEquals(Verdict.ACCEPT, control.admit(Traffic.REQUEST, "10.0.0.1", 0, now + 100_000_000L));
+		Assertions.assertEquals(Verdict.DROP, control.admit(Traffic.REQUEST, "10.0.0.1", 0, now + 100_000_000L));
+
+		Assertions.assertEquals(5, control.getAcceptedCount());
+		Assertions.assertEquals(2, control.getPrioritizedCount());
+		Assertions.assertEquals(2, control.getDroppedCount());
+		Assertions.assertEquals(1, control.getRejectedCount());
+		Assertions.assertEquals(2, control.getSourceCount());
+	}
+
+	@Test
+	void testLimits() {
+		AdmissionControl transactions = new AdmissionControl(0, 0, 0, 10);
+		Assertions.assertEquals(Verdict.ACCEPT, transactions.admit(Traffic.INVITE, "10.0.0.1", 9, 0));
+		Assertions.assertEquals(Verdict.REJECT, transactions.admit(Traffic.INVITE, "10.0.0.1", 10, 0));
+		Assertions.assertEquals(Verdict.DROP, transactions.admit(Traffic.REQUEST, "10.0.0.1", 10, 0));
+		Assertions.assertEquals(Verdict.ACCEPT, transactions.admit(Traffic.IN_DIALOG, "10.0.0.1", 10, 0));
+
+		AdmissionControl sources = new AdmissionControl(100, 1, 2, 0);
+		long now = System.nanoTime();
+		Assertions.assertEquals(Verdict.ACCEPT, sources.admit(Traffic.REQUEST, "10.0.0.1", 0, now));
+		Assertions.assertEquals(Verdict.ACCEPT, sources.admit(Traffic.REQUEST, "10.0.0.2", 0, now));
+		Assertions.assertEquals(Verdict.DROP, sources.admit(Traffic.REQUEST, "10.0.0.3", 0, now));
+
+		// Idle sources are purged.
+		long later = now + 2_000_000_000L;
+		Assertions.assertEquals(Verdict.ACCEPT, sources.admit(Traffic.REQUEST, "10.0.0.3", 0, later));
+		Assertions.assertEquals(1, sources.getSourceCount());
+	}
+
+	private static Traffic classify(String msg) {
+		byte[] data = ("xx" + msg).getBytes(StandardCharsets.US_ASCII);
+		return AdmissionControl.classify(data, 2, data.length - 2);
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.provider;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mjsip.time.Scheduler;
+import org.zoolu.net.IpAddress;
+import org.zoolu.net.SocketAddress;
+
+/**
+ * Test for {@link SipKeepAlive} running on the scheduler of its {@link SipProvider}.
+ */
+@SuppressWarnings("javadoc")
+class TestSipKeepAlive {
+
+	private static final String LOCALHOST = "127.0.0.1";
+
+	private ScheduledExecutorService _executor;
+
+	private SipProvider _provider;
+
+	private DatagramSocket _target;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		_executor = Executors.newScheduledThreadPool(1);
+		_target = new DatagramSocket(0, InetAddress.getByName(LOCALHOST));
+		_target.setSoTimeout(20);
+
+		SipConfig config = new SipConfig();
+		config.setViaAddrIPv4(LOCALHOST);
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			config.setHostPort(socket.getLocalPort());
+		}
+		config.setTransportProtocols(new String[] { SipProvider.PROTO_UDP });
+		config.normalize();
+		_provider = new SipProvider(config, Scheduler.of(_executor));
+	}
+
+	@AfterEach
+	void tearDown() {
+		_provider.halt();
+		_target.close();
+		_executor.shutdownNow();
+	}
+
+	@Test
+	void testKeepAlive() throws IOException {
+		int threads = Thread.activeCount();
+		SocketAddress dest = new SocketAddress(LOCALHOST, _target.getLocalPort());
+		SipKeepAlive[] keepAlives = new SipKeepAlive[50];
+		for (int n = 0; n < keepAlives.length; n++) {
+			keepAlives[n] = new SipKeepAlive(_provider, new SocketAddress(LOCALHOST, 40000 + n), 1000);
+		}
+		Assertions.assertTrue(Thread.activeCount() <= threads + 1, "No thread per keep-alive.");
+		for (SipKeepAlive keepAlive : keepAlives) {
+			keepAlive.halt();
+		}
+
+		SipKeepAlive keepAlive = new SipKeepAlive(_provider, dest, 100);
+		int tokens = countTokens(550, false);
+		Assertions.assertTrue(tokens >= 4 && tokens <= 6, "tokens=" + tokens);
+
+		// Other traffic toward the target suspends the keep-alive tokens.
+		tokens = countTokens(500, true);
+		Assertions.assertTrue(tokens <= 1, "tokens=" + tokens);
+
+		keepAlive.halt();
+		Assertions.assertFalse(keepAlive.isRunning());
+		Assertions.assertEquals(0, countTokens(300, false));
+	}
+
+	@Test
+	void testTargetByHostName() throws IOException {
+		Assumptions.assumeTrue(InetAddress.getByName("localhost").getHostAddress().equals(LOCALHOST),
+			"localhost resolves to " + LOCALHOST);
+
+		// The target is given by name, while other traffic is sent to the numeric address.
+		SipKeepAlive keepAlive = new SipKeepAlive(_provider, new SocketAddress("localhost", _target.getLocalPort()), 100);
+		try {
+			Assertions.assertTrue(countTokens(350, false) >= 2);
+
+			int tokens = countTokens(500, true);
+			Assertions.assertTrue(tokens <= 1, "tokens=" + tokens);
+		} finally {
+			keepAlive.halt();
+		}
+	}
+
+	/**
+	 * Counts the keep-alive tokens received within the given time, optionally sending other traffic
+	 * toward the target through the provider.
+	 */
+	private int countTokens(long time, boolean traffic) throws IOException {
+		byte[] other = "OPTIONS".getBytes(StandardCharsets.US_ASCII);
+		IpAddress ipaddr = new IpAddress(LOCALHOST);
+		int count = 0;
+		long deadline = System.currentTimeMillis() + time;
+		while (System.currentTimeMillis() < deadline) {
+			if (traffic) {
+				_provider.sendRawData(SipProvider.PROTO_UDP, other, 0, other.length, ipaddr, _target.getLocalPort());
+			}
+			DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+			try {
+				_target.receive(packet);
+				if (packet.getLength() == UdpKeepAlive.DEFAULT_TOKEN.length) {
+					count++;
+				}
+			} catch (SocketTimeoutException ex) {
+				// Retry.
+			}
+		}
+		return count;
+	}
+
+}
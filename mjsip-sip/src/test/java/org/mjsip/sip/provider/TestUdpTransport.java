@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sip.provider;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.message.SipMessage;
+import org.zoolu.net.IpAddress;
+import org.zoolu.net.SocketAddress;
+import org.zoolu.net.UdpProvider;
+import org.zoolu.net.UdpSocket;
+
+/**
+ * Test for {@link UdpTransport} with multiple sockets sharing a port.
+ */
+@SuppressWarnings("javadoc")
+class TestUdpTransport {
+
+	private static final String OPTIONS = "OPTIONS sip:bob@127.0.0.1 SIP/2.0\r\n"
+			+ "Via: SIP/2.0/UDP 127.0.0.1:5060;branch=z9hG4bK776asdhds\r\n"
+			+ "Max-Forwards: 70\r\n"
+			+ "To: <sip:bob@127.0.0.1>\r\n"
+			+ "From: <sip:alice@127.0.0.1>;tag=1928301774\r\n"
+			+ "Call-ID: a84b4c76e66710@127.0.0.1\r\n"
+			+ "CSeq: 1 OPTIONS\r\n"
+			+ "Content-Length: 0\r\n"
+			+ "\r\n";
+
+	private static final int CLIENTS = 32;
+
+	@Test
+	void testReusePort() throws IOException, InterruptedException {
+		Assumptions.assumeTrue(UdpSocket.isReusePortSupported());
+
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		UdpTransport transport = new UdpTransport(0, new IpAddress(localhost), 4);
+		try {
+			Assertions.assertEquals(4, transport.getSocketCount());
+			int port = transport.getLocalPort();
+			for (UdpProvider udp : transport.udp_providers) {
+				Assertions.assertEquals(port, udp.getUdpSocket().getLocalPort());
+			}
+
+			CountDownLatch received = new CountDownLatch(CLIENTS);
+			AtomicInteger errors = new AtomicInteger();
+			transport.setListener(new SipTransportListener() {
+				@Override
+				public void onReceivedMessage(SipTransport t, SipMessage msg) {
+					try {
+						// Echo back to the sender.
+						t.sendMessage(msg, new IpAddress(msg.getRemoteAddress()), msg.getRemotePort(), 0);
+					} catch (IOException ex) {
+						errors.incrementAndGet();
+					}
+					received.countDown();
+				}
+
+				@Override
+				public void onIncomingTransportConnection(SipTransport t, SocketAddress remote_soaddr) {
+					// Ignore.
+				}
+
+				@Override
+				public void onTransportConnectionTerminated(SipTransport t, SocketAddress remote_soaddr,
+						Exception error) {
+					// Ignore.
+				}
+
+				@Override
+				public void onTransportTerminated(SipTransport t, Exception error) {
+					// Ignore.
+				}
+			});
+
+			byte[] data = OPTIONS.getBytes(StandardCharsets.US_ASCII);
+			DatagramSocket[] clients = new DatagramSocket[CLIENTS];
+			for (int n = 0; n < CLIENTS; n++) {
+				clients[n] = new DatagramSocket(0, localhost);
+				clients[n].setSoTimeout(2000);
+				clients[n].send(new DatagramPacket(data, data.length, localhost, port));
+			}
+			Assertions.assertTrue(received.await(5, TimeUnit.SECONDS));
+			Assertions.assertEquals(0, errors.get());
+
+			for (DatagramSocket client : clients) {
+				DatagramPacket reply = new DatagramPacket(new byte[2048], 2048);
+				try {
+					client.receive(reply);
+				} catch (SocketTimeoutException ex) {
+					Assertions.fail("No reply.");
+				}
+				Assertions.assertEquals(port, reply.getPort());
+				client.close();
+			}
+
+			// Each reply went out through the socket that received the request.
+			long total = 0;
+			for (UdpProvider udp : transport.udp_providers) {
+				UdpSocket socket = udp.getUdpSocket();
+				Assertions.assertEquals(socket.getReceiverPacketCounter(), socket.getSenderPacketCounter());
+				total += socket.getReceiverPacketCounter();
+			}
+			Assertions.assertEquals(CLIENTS, total);
+		} finally {
+			transport.halt();
+		}
+	}
+
+}
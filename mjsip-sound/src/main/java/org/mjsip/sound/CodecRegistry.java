@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sound;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+import org.zoolu.sound.CodecType;
+import org.zoolu.sound.SimpleAudioSystem;
+import org.zoolu.sound.codec.AMR;
+import org.zoolu.sound.codec.amr.AmrToPcmEncoder;
+import org.zoolu.sound.codec.amr.PcmToAmrEncoder;
+import org.zoolu.sound.codec.g711.G711ToPcmEncoder;
+import org.zoolu.sound.codec.g711.PcmToG711Encoder;
+import org.zoolu.sound.codec.g726.G726Coder;
+import org.zoolu.sound.codec.gsm.GsmToPcmEncoder;
+import org.zoolu.sound.codec.gsm.PcmToGsmEncoder;
+
+/**
+ * Registry of the audio codecs available for media streams, by {@link CodecType} and static RTP
+ * payload type.
+ *
+ * <p>
+ * In contrast to format conversions through the {@link AudioSystem}, the registry creates encoders
+ * and decoders directly, without looking up format conversion providers, and converts data with
+ * a single {@link Transcoder} instead of a stack of {@link javax.sound.sampled.AudioInputStream}s.
+ * </p>
+ *
+ * <p>
+ * All conversions are between the codec format and
+ * {@link SimpleAudioSystem#getBaseAudioFormat(float, int) linear PCM} with 16-bit signed,
+ * little-endian samples.
+ * </p>
+ */
+public class CodecRegistry {
+
+	/**
+	 * The highest static RTP payload type.
+	 */
+	private static final int MAX_STATIC_PAYLOAD_TYPE = 95;
+
+	private static final CodecRegistry INSTANCE = createDefault();
+
+	private final Map<String, Entry> _byName = new ConcurrentHashMap<>();
+
+	private final Entry[] _byPayloadType = new Entry[MAX_STATIC_PAYLOAD_TYPE + 1];
+
+	private final Map<FormatKey, AudioFormat> _formats = new ConcurrentHashMap<>();
+
+	/**
+	 * A registered codec.
+	 */
+	private static final class Entry {
+
+		final CodecType _type;
+
+		final Supplier<Codec> _factory;
+
+		final boolean _multiFrame;
+
+		Entry(CodecType type, Supplier<Codec> factory, boolean multiFrame) {
+			_type = type;
+			_factory = factory;
+			_multiFrame = multiFrame;
+		}
+
+	}
+
+	/**
+	 * Key of a cached {@link AudioFormat}.
+	 */
+	private static final class FormatKey {
+
+		final String _codec;
+
+		final float _sampleRate;
+
+		final int _channels;
+
+		FormatKey(String codec, float sampleRate, int channels) {
+			_codec = codec;
+			_sampleRate = sampleRate;
+			_channels = channels;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FormatKey)) {
+				return false;
+			}
+			FormatKey other = (FormatKey) obj;
+			return _codec.equals(other._codec) && _sampleRate == other._sampleRate && _channels == other._channels;
+		}
+
+		@Override
+		public int hashCode() {
+			return (_codec.hashCode() * 31 + Float.hashCode(_sampleRate)) * 31 + _channels;
+		}
+
+	}
+
+	/**
+	 * The registry with all codecs of this library.
+	 */
+	public static CodecRegistry getDefault() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Creates a registry with all codecs of this library.
+	 *
+	 * <p>
+	 * GSM is only registered, if the GSM implementation it relies on is available.
+	 * </p>
+	 */
+	public static CodecRegistry createDefault() {
+		CodecRegistry result = new CodecRegistry();
+		result.register(CodecType.PCM_LINEAR, null, true);
+		result.register(CodecType.G711_ULAW,
+				() -> new Codec(new PcmToG711Encoder.ULAW(), new G711ToPcmEncoder.ULAW()), true);
+		result.register(CodecType.G711_ALAW,
+				() -> new Codec(new PcmToG711Encoder.ALAW(), new G711ToPcmEncoder.ALAW()), true);
+		result.registerG726(CodecType.G726_16, 16);
+		result.registerG726(CodecType.G726_24, 24);
+		result.registerG726(CodecType.G726_32, 32);
+		result.registerG726(CodecType.G726_40, 40);
+		if (hasClass("org.tritonus.lowlevel.gsm.Encoder")) {
+			result.register(CodecType.GSM0610, () -> new Codec(new PcmToGsmEncoder(), new GsmToPcmEncoder()), false);
+		}
+		result.registerAmr(CodecType.AMR_0475, AMR.M0_0475);
+		result.registerAmr(CodecType.AMR_0515, AMR.M1_0515);
+		result.registerAmr(CodecType.AMR_0590, AMR.M2_0590);
+		result.registerAmr(CodecType.AMR_0670, AMR.M3_0670);
+		result.registerAmr(CodecType.AMR_0740, AMR.M4_0740);
+		result.registerAmr(CodecType.AMR_0795, AMR.M5_0795);
+		result.registerAmr(CodecType.AMR_1020, AMR.M6_1020);
+		result.registerAmr(CodecType.AMR_1220, AMR.M7_1220);
+		return result;
+	}
+
+	private void registerAmr(CodecType type, int mode) {
+		register(type, () -> new Codec(new PcmToAmrEncoder(mode), new AmrToPcmEncoder()), false);
+	}
+
+	private void registerG726(CodecType type, int bitRate) {
+		register(type, () -> {
+			// Encoder and decoder must not share their state.
+			G726Coder encoder = new G726Coder(bitRate);
+			G726Coder decoder = new G726Coder(bitRate);
+			return new Codec(encoder::encode, decoder::decode);
+		}, true);
+	}
+
+	private static boolean hasClass(String name) {
+		try {
+			Class.forName(name);
+			return true;
+		} catch (ClassNotFoundException | LinkageError ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Registers a codec.
+	 *
+	 * @param type
+	 *        The codec type. If its payload type is static, the codec is also registered for this
+	 *        payload type.
+	 * @param factory
+	 *        Creator of a new {@link Codec} instance for each stream, or <code>null</code> for linear
+	 *        PCM that needs no conversion.
+	 * @param multiFrame
+	 *        Whether the encoder and decoder accept any number of frames in one call.
+	 */
+	public void register(CodecType type, Supplier<Codec> factory, boolean multiFrame) {
+		Entry entry = new Entry(type, factory, multiFrame);
+		_byName.put(type.getName(), entry);
+		int payloadType = type.getPayloadType();
+		if (payloadType >= 0 && payloadType <= MAX_STATIC_PAYLOAD_TYPE) {
+			_byPayloadType[payloadType] = entry;
+		}
+	}
+
+	/**
+	 * Whether the given codec can be used with this registry.
+	 */
+	public boolean supports(CodecType type) {
+		return type != null && _byName.containsKey(type.getName());
+	}
+
+	/**
+	 * The codec registered for the given static RTP payload type, or <code>null</code> if there is
+	 * none.
+	 */
+	public CodecType getCodecType(int payloadType) {
+		if (payloadType < 0 || payloadType > MAX_STATIC_PAYLOAD_TYPE) {
+			return null;
+		}
+		Entry entry = _byPayloadType[payloadType];
+		return entry == null ? null : entry._type;
+	}
+
+	/**
+	 * Creates a new {@link Codec} instance for a single stream.
+	 *
+	 * @return The new {@link Codec}, or <code>null</code> if the given codec is not supported or is
+	 *         linear PCM that needs no conversion.
+	 */
+	public Codec createCodec(CodecType type) {
+		Entry entry = entry(type);
+		return entry == null || entry._factory == null ? null : entry._factory.get();
+	}
+
+	/**
+	 * Creates a new {@link Codec} instance for the given static RTP payload type.
+	 *
+	 * @see #createCodec(CodecType)
+	 */
+	public Codec createCodec(int payloadType) {
+		CodecType type = getCodecType(payloadType);
+		return type == null ? null : createCodec(type);
+	}
+
+	/**
+	 * Creates a {@link Transcoder} from linear PCM to the given codec.
+	 *
+	 * @return The new {@link Transcoder}, or <code>null</code> if the codec is linear PCM.
+	 * @throws IllegalArgumentException
+	 *         If the codec is not supported.
+	 */
+	public Transcoder createEncoder(CodecType type, int channels) {
+		Entry entry = supportedEntry(type);
+		if (entry._factory == null) {
+			return null;
+		}
+		return new Transcoder(entry._factory.get().getEncoder(), pcmFrameSize(type, channels),
+			codecFrameSize(type, channels), entry._multiFrame);
+	}
+
+	/**
+	 * Creates a {@link Transcoder} from the given codec to linear PCM.
+	 *
+	 * @return The new {@link Transcoder}, or <code>null</code> if the codec is linear PCM.
+	 * @throws IllegalArgumentException
+	 *         If the codec is not supported.
+	 */
+	public Transcoder createDecoder(CodecType type, int channels) {
+		Entry entry = supportedEntry(type);
+		if (entry._factory == null) {
+			return null;
+		}
+		return new Transcoder(entry._factory.get().getDecoder(), codecFrameSize(type, channels),
+			pcmFrameSize(type, channels), entry._multiFrame);
+	}
+
+	/**
+	 * Wraps a stream of linear PCM into a stream of data encoded with the given codec.
+	 *
+	 * @throws IllegalArgumentException
+	 *         If the codec is not supported.
+	 */
+	public InputStream encode(InputStream pcm, CodecType type, int channels) {
+		Transcoder encoder = createEncoder(type, channels);
+		return encoder == null ? pcm : new TranscodingInputStream(pcm, encoder);
+	}
+
+	/**
+	 * Creates a stream decoding data of the given codec and writing linear PCM to the given stream.
+	 *
+	 * @throws IllegalArgumentException
+	 *         If the codec is not supported.
+	 */
+	public OutputStream decode(OutputStream pcm, CodecType type, int channels) {
+		Transcoder decoder = createDecoder(type, channels);
+		return decoder == null ? pcm : new TranscodingOutputStream(pcm, decoder);
+	}
+
+	/**
+	 * The {@link AudioFormat} of data encoded with the given codec.
+	 *
+	 * <p>
+	 * The format is computed without querying the {@link AudioSystem} and is cached.
+	 * </p>
+	 *
+	 * @throws IllegalArgumentException
+	 *         If the codec is not supported.
+	 */
+	public AudioFormat getAudioFormat(CodecType type, float sampleRate, int channels) {
+		supportedEntry(type);
+		return _formats.computeIfAbsent(new FormatKey(type.getName(), sampleRate, channels),
+			key -> createAudioFormat(type, sampleRate, channels));
+	}
+
+	private static AudioFormat createAudioFormat(CodecType type, float sampleRate, int channels) {
+		if (type.equals(CodecType.PCM_LINEAR)) {
+			return SimpleAudioSystem.getBaseAudioFormat(sampleRate, channels);
+		}
+		if (type.equals(CodecType.G711_ULAW)) {
+			return new AudioFormat(AudioFormat.Encoding.ULAW, sampleRate, 8, channels, channels, sampleRate, false);
+		}
+		if (type.equals(CodecType.G711_ALAW)) {
+			return new AudioFormat(AudioFormat.Encoding.ALAW, sampleRate, 8, channels, channels, sampleRate, false);
+		}
+		AudioFormat format = SimpleAudioSystem.getAudioFormat(type, sampleRate);
+		return new AudioFormat(format.getEncoding(), sampleRate, format.getSampleSizeInBits(), channels,
+			codecFrameSize(type, channels), format.getFrameRate(), false);
+	}
+
+	private static int pcmFrameSize(CodecType type, int channels) {
+		return type.getSamplesPerFrame() * 2 * channels;
+	}
+
+	private static int codecFrameSize(CodecType type, int channels) {
+		return type.getFrameSize() * channels;
+	}
+
+	private Entry entry(CodecType type) {
+		return type == null ? null : _byName.get(type.getName());
+	}
+
+	private Entry supportedEntry(CodecType type) {
+		Entry entry = entry(type);
+		if (entry == null) {
+			throw new IllegalArgumentException("Unsupported codec: " + type);
+		}
+		return entry;
+	}
+
+}
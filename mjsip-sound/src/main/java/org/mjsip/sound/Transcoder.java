@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sound;
+
+import org.zoolu.util.Encoder;
+
+/**
+ * Converts audio data frame by frame with an {@link Encoder}.
+ *
+ * <p>
+ * Input is only passed to the {@link Encoder} in whole frames. Codecs that work on single samples
+ * (like G.711 and G.726) convert any number of frames in one call, while block codecs (like AMR and
+ * GSM) are called once per frame.
+ * </p>
+ */
+public class Transcoder {
+
+	private final Encoder _encoder;
+
+	private final int _inFrameSize;
+
+	private final int _outFrameSize;
+
+	private final boolean _multiFrame;
+
+	/**
+	 * Creates a {@link Transcoder}.
+	 *
+	 * @param encoder
+	 *        The {@link Encoder} converting a frame.
+	 * @param inFrameSize
+	 *        The size of an input frame in bytes.
+	 * @param outFrameSize
+	 *        The maximum size of an output frame in bytes.
+	 * @param multiFrame
+	 *        Whether the {@link Encoder} accepts any number of frames in one call.
+	 */
+	public Transcoder(Encoder encoder, int inFrameSize, int outFrameSize, boolean multiFrame) {
+		_encoder = encoder;
+		_inFrameSize = inFrameSize;
+		_outFrameSize = outFrameSize;
+		_multiFrame = multiFrame;
+	}
+
+	/**
+	 * The size of an input frame in bytes.
+	 */
+	public int getInFrameSize() {
+		return _inFrameSize;
+	}
+
+	/**
+	 * The maximum size of an output frame in bytes.
+	 */
+	public int getOutFrameSize() {
+		return _outFrameSize;
+	}
+
+	/**
+	 * The size of the output buffer required for converting the given number of input bytes.
+	 */
+	public int getOutSize(int inLength) {
+		return inLength / _inFrameSize * _outFrameSize;
+	}
+
+	/**
+	 * Converts the whole frames of the given input.
+	 *
+	 * <p>
+	 * Trailing bytes that do not form a whole frame are not converted.
+	 * </p>
+	 *
+	 * @return The number of output bytes.
+	 */
+	public int transcode(byte[] in, int inOffset, int inLength, byte[] out, int outOffset) {
+		int frames = inLength / _inFrameSize;
+		if (frames == 0) {
+			return 0;
+		}
+		if (_multiFrame) {
+			return Math.max(0, _encoder.encode(in, inOffset, frames * _inFrameSize, out, outOffset));
+		}
+		int outLength = 0;
+		for (int n = 0; n < frames; n++) {
+			outLength += Math.max(0, _encoder.encode(in, inOffset, _inFrameSize, out, outOffset + outLength));
+			inOffset += _inFrameSize;
+		}
+		return outLength;
+	}
+
+}
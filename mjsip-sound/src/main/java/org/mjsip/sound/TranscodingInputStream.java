@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sound;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} converting the data read from a source stream with a {@link Transcoder}.
+ *
+ * <p>
+ * In contrast to an {@link javax.sound.sampled.AudioInputStream} obtained from the
+ * {@link javax.sound.sampled.AudioSystem}, no format conversion provider is looked up and no
+ * further streams are stacked; each read converts whole frames directly into a buffer that is
+ * allocated once.
+ * </p>
+ */
+public class TranscodingInputStream extends InputStream {
+
+	/**
+	 * Approximate size of the input buffer in bytes.
+	 */
+	private static final int BUFFER_SIZE = 640;
+
+	private final InputStream _source;
+
+	private final Transcoder _transcoder;
+
+	private final byte[] _in;
+
+	private final byte[] _out;
+
+	/** Number of bytes in {@link #_in}, including the bytes of an incomplete frame. */
+	private int _inLength;
+
+	/** Position of the next byte to deliver from {@link #_out}. */
+	private int _pos;
+
+	/** Number of valid bytes in {@link #_out}. */
+	private int _limit;
+
+	private boolean _eof;
+
+	/**
+	 * Creates a {@link TranscodingInputStream}.
+	 *
+	 * @param source
+	 *        The stream to read input frames from.
+	 * @param transcoder
+	 *        The {@link Transcoder} to apply.
+	 */
+	public TranscodingInputStream(InputStream source, Transcoder transcoder) {
+		_source = source;
+		_transcoder = transcoder;
+		int frameSize = transcoder.getInFrameSize();
+		_in = new byte[Math.max(1, BUFFER_SIZE / frameSize) * frameSize];
+		_out = new byte[transcoder.getOutSize(_in.length)];
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (_pos == _limit && !fill()) {
+			return -1;
+		}
+		return _out[_pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (_pos == _limit && !fill()) {
+			return -1;
+		}
+		int result = Math.min(length, _limit - _pos);
+		System.arraycopy(_out, _pos, buffer, offset, result);
+		_pos += result;
+		return result;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return _limit - _pos;
+	}
+
+	/**
+	 * Reads at least one whole frame from the source and converts all whole frames read.
+	 *
+	 * @return Whether output is available.
+	 */
+	private boolean fill() throws IOException {
+		int frameSize = _transcoder.getInFrameSize();
+		while (!_eof) {
+			while (_inLength < frameSize) {
+				int direct = _source.read(_in, _inLength, _in.length - _inLength);
+				if (direct < 0) {
+					// An incomplete frame at the end of the stream is dropped.
+					_eof = true;
+					return false;
+				}
+				_inLength += direct;
+			}
+
+			int whole = _inLength / frameSize * frameSize;
+			_pos = 0;
+			_limit = _transcoder.transcode(_in, 0, whole, _out, 0);
+			_inLength -= whole;
+			if (_inLength > 0) {
+				System.arraycopy(_in, whole, _in, 0, _inLength);
+			}
+			if (_limit > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_source.close();
+	}
+
+}
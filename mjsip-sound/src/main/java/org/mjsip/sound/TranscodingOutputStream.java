@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.sound;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@link OutputStream} converting the written data with a {@link Transcoder} before passing it to
+ * a target stream.
+ *
+ * <p>
+ * Bytes of an incomplete frame are kept until the frame is completed by a later write.
+ * </p>
+ */
+public class TranscodingOutputStream extends OutputStream {
+
+	/**
+	 * Approximate size of the input buffer in bytes.
+	 */
+	private static final int BUFFER_SIZE = 640;
+
+	private final OutputStream _target;
+
+	private final Transcoder _transcoder;
+
+	private final byte[] _in;
+
+	private final byte[] _out;
+
+	/** Number of bytes of an incomplete frame in {@link #_in}. */
+	private int _inLength;
+
+	/**
+	 * Creates a {@link TranscodingOutputStream}.
+	 *
+	 * @param target
+	 *        The stream to write the converted frames to.
+	 * @param transcoder
+	 *        The {@link Transcoder} to apply.
+	 */
+	public TranscodingOutputStream(OutputStream target, Transcoder transcoder) {
+		_target = target;
+		_transcoder = transcoder;
+		int frameSize = transcoder.getInFrameSize();
+		_in = new byte[Math.max(1, BUFFER_SIZE / frameSize) * frameSize];
+		_out = new byte[transcoder.getOutSize(_in.length)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		_in[_inLength++] = (byte) b;
+		if (_inLength == _transcoder.getInFrameSize()) {
+			flushFrames();
+		}
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		while (length > 0) {
+			int direct = Math.min(length, _in.length - _inLength);
+			System.arraycopy(buffer, offset, _in, _inLength, direct);
+			_inLength += direct;
+			offset += direct;
+			length -= direct;
+			flushFrames();
+		}
+	}
+
+	private void flushFrames() throws IOException {
+		int frameSize = _transcoder.getInFrameSize();
+		int whole = _inLength / frameSize * frameSize;
+		if (whole == 0) {
+			return;
+		}
+		int outLength = _transcoder.transcode(_in, 0, whole, _out, 0);
+		if (outLength > 0) {
+			_target.write(_out, 0, outLength);
+		}
+		_inLength -= whole;
+		if (_inLength > 0) {
+			System.arraycopy(_in, whole, _in, 0, _inLength);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		_target.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		_target.close();
+	}
+
+}
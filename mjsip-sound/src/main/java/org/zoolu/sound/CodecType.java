@@ -20,6 +20,9 @@ public class CodecType {
 	/** G711 (PCM) A-law */
 	public static final CodecType G711_ALAW=new CodecType("G711_ALAW",8,1,1);
   
+	/** G726_16 */
+	public static final CodecType G726_16=new CodecType("G726_16",101,2,8);
+
 	/** G726_24 */
 	public static final CodecType G726_24=new CodecType("G726_24",101,3,8);
 
@@ -128,6 +131,8 @@ public class CodecType {
 		else
 		if (name.equalsIgnoreCase("PCMA") || name.equalsIgnoreCase("ALAW") || name.equalsIgnoreCase("PCM_ALAW") || name.equalsIgnoreCase("G711_ALAW") || name.equalsIgnoreCase("PCM-alaw") || name.equalsIgnoreCase("G711-alaw")) return G711_ALAW;
 		else
+		if (name.equalsIgnoreCase("G726_16") || name.equalsIgnoreCase("G726-16")) return G726_16;
+		else
 		if (name.equalsIgnoreCase("G726_24") || name.equalsIgnoreCase("G726-24")) return G726_24;
 		else
 		if (name.equalsIgnoreCase("G726_32") || name.equalsIgnoreCase("G726-32")) return G726_32;
@@ -42,7 +42,7 @@ public class PcmToG711Encoder implements Encoder {
 		for (int i=out_offset; i<out_end; i++,j+=2) {
 			// convert little-endian byte array to signed int
 			//int linear=org.zoolu.ext.sound.codec.G726.signedIntLittleEndian(in_buff[j+1],in_buff[j]);
-			int linear=((in_buff[j+1]&0xFF)<<8)+(in_buff[j]&0xFF);
+			int linear=(short)(((in_buff[j+1]&0xFF)<<8)+(in_buff[j]&0xFF));
 			if (g711_encoding==G711Encoding.G711_ULAW) out_buff[i]=(byte)G711.linear2ulaw(linear);
 			else out_buff[i]=(byte)G711.linear2alaw(linear);
 		}
@@ -0,0 +1,651 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.zoolu.sound.codec.g726;
+
+/**
+ * Stateful G.726 ADPCM coder for 16, 24, 32 and 40 kbit/s, converting whole arrays of 16-bit
+ * linear PCM samples.
+ *
+ * <p>
+ * A coder keeps the adaptive predictor and quantizer state of a single direction of a single
+ * stream, so a stream needs one instance for encoding and another one for decoding. The state is
+ * held in fields and arrays allocated once, so that no allocation takes place while coding. An
+ * instance can be reused for another stream after {@link #reset()}.
+ * </p>
+ *
+ * <p>
+ * The arithmetic is the one of the CCITT reference implementation released by Sun Microsystems,
+ * and produces the same codes and samples as {@link org.zoolu.sound.codec.G726_24},
+ * {@link org.zoolu.sound.codec.G726_32} and {@link org.zoolu.sound.codec.G726_40} with linear
+ * input and output. The 16 kbit/s variant follows G.726 Annex A tables. Codes are packed most
+ * significant bits first, in groups of samples filling whole bytes (4 samples per byte at 16
+ * kbit/s, 2 samples per byte at 32 kbit/s, and 8 samples in 3 or 5 bytes at 24 or 40 kbit/s).
+ * </p>
+ */
+public final class G726Coder {
+
+	/**
+	 * Quantizer decision levels for 16 kbit/s.
+	 */
+	private static final int[] QTAB_16 = { 261 };
+
+	private static final int[] DQLNTAB_16 = { 116, 365, 365, 116 };
+
+	private static final int[] WITAB_16 = { -704, 14048, 14048, -704 };
+
+	private static final int[] FITAB_16 = { 0, 0xE00, 0xE00, 0 };
+
+	private static final int[] QTAB_24 = { 8, 218, 331 };
+
+	private static final int[] DQLNTAB_24 = { -2048, 135, 273, 373, 373, 273, 135, -2048 };
+
+	private static final int[] WITAB_24 = { -128, 960, 4384, 18624, 18624, 4384, 960, -128 };
+
+	private static final int[] FITAB_24 = { 0, 0x200, 0x400, 0xE00, 0xE00, 0x400, 0x200, 0 };
+
+	private static final int[] QTAB_32 = { -124, 80, 178, 246, 300, 349, 400 };
+
+	private static final int[] DQLNTAB_32 =
+		{ -2048, 4, 135, 213, 273, 323, 373, 425, 425, 373, 323, 273, 213, 135, 4, -2048 };
+
+	/**
+	 * Multipliers for 32 kbit/s, already scaled like the ones of the other rates.
+	 */
+	private static final int[] WITAB_32 = {
+		-12 << 5, 18 << 5, 41 << 5, 64 << 5, 112 << 5, 198 << 5, 355 << 5, 1122 << 5,
+		1122 << 5, 355 << 5, 198 << 5, 112 << 5, 64 << 5, 41 << 5, 18 << 5, -12 << 5 };
+
+	private static final int[] FITAB_32 =
+		{ 0, 0, 0, 0x200, 0x200, 0x200, 0x600, 0xE00, 0xE00, 0x600, 0x200, 0x200, 0x200, 0, 0, 0 };
+
+	private static final int[] QTAB_40 =
+		{ -122, -16, 68, 139, 198, 250, 298, 339, 378, 413, 445, 475, 502, 528, 553 };
+
+	private static final int[] DQLNTAB_40 = { -2048, -66, 28, 104, 169, 224, 274, 318, 358, 395, 429, 459, 488,
+		514, 539, 566, 566, 539, 514, 488, 459, 429, 395, 358, 318, 274, 224, 169, 104, 28, -66, -2048 };
+
+	private static final int[] WITAB_40 = { 448, 448, 768, 1248, 1280, 1312, 1856, 3200, 4512, 5728, 7008, 8960,
+		11456, 14080, 16928, 22272, 22272, 16928, 14080, 11456, 8960, 7008, 5728, 4512, 3200, 1856, 1312, 1280,
+		1248, 768, 448, 448 };
+
+	private static final int[] FITAB_40 = { 0, 0, 0, 0, 0, 0x200, 0x200, 0x200, 0x200, 0x200, 0x400, 0x600,
+		0x800, 0xA00, 0xC00, 0xC00, 0xC00, 0xC00, 0xA00, 0x800, 0x600, 0x400, 0x200, 0x200, 0x200, 0x200,
+		0x200, 0, 0, 0, 0, 0 };
+
+	private final int _bits;
+
+	private final int _codeMask;
+
+	private final int _signBit;
+
+	private final int _dqMask;
+
+	private final int[] _qtab;
+
+	private final int[] _dqlntab;
+
+	private final int[] _witab;
+
+	private final int[] _fitab;
+
+	/** Number of samples whose codes fill whole bytes. */
+	private final int _groupSamples;
+
+	/** Number of bytes of a group of codes. */
+	private final int _groupBytes;
+
+	/** Locked or steady state step size multiplier. */
+	private int _yl;
+
+	/** Unlocked or non-steady state step size multiplier. */
+	private int _yu;
+
+	/** Short term energy estimate. */
+	private int _dms;
+
+	/** Long term energy estimate. */
+	private int _dml;
+
+	/** Linear weighting coefficient of yl and yu. */
+	private int _ap;
+
+	/** Coefficients of the pole portion of the prediction filter. */
+	private int _a0, _a1;
+
+	/** Signs of the previous two samples of the partially reconstructed signal. */
+	private int _pk0, _pk1;
+
+	/** Previous two samples of the reconstructed signal in floating point format. */
+	private int _sr0, _sr1;
+
+	/** Delayed tone detect. */
+	private int _td;
+
+	/** Coefficients of the zero portion of the prediction filter. */
+	private final int[] _b = new int[6];
+
+	/** Previous six samples of the quantized difference signal in floating point format. */
+	private final int[] _dq = new int[6];
+
+	/**
+	 * Creates a {@link G726Coder}.
+	 *
+	 * @param bitRate
+	 *        The bit rate in kbit/s, one of 16, 24, 32 or 40.
+	 */
+	public G726Coder(int bitRate) {
+		switch (bitRate) {
+			case 16:
+				_bits = 2;
+				_qtab = QTAB_16;
+				_dqlntab = DQLNTAB_16;
+				_witab = WITAB_16;
+				_fitab = FITAB_16;
+				break;
+			case 24:
+				_bits = 3;
+				_qtab = QTAB_24;
+				_dqlntab = DQLNTAB_24;
+				_witab = WITAB_24;
+				_fitab = FITAB_24;
+				break;
+			case 32:
+				_bits = 4;
+				_qtab = QTAB_32;
+				_dqlntab = DQLNTAB_32;
+				_witab = WITAB_32;
+				_fitab = FITAB_32;
+				break;
+			case 40:
+				_bits = 5;
+				_qtab = QTAB_40;
+				_dqlntab = DQLNTAB_40;
+				_witab = WITAB_40;
+				_fitab = FITAB_40;
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported G.726 bit rate: " + bitRate);
+		}
+		_codeMask = (1 << _bits) - 1;
+		_signBit = 1 << (_bits - 1);
+		_dqMask = _bits == 5 ? 0x7FFF : 0x3FFF;
+		_groupSamples = _bits == 2 ? 4 : _bits == 4 ? 2 : 8;
+		_groupBytes = _groupSamples * _bits / 8;
+		reset();
+	}
+
+	/**
+	 * The bit rate in kbit/s.
+	 */
+	public int getBitRate() {
+		return _bits * 8;
+	}
+
+	/**
+	 * The number of bits of a code.
+	 */
+	public int getBitsPerSample() {
+		return _bits;
+	}
+
+	/**
+	 * The number of samples whose codes are packed into {@link #getGroupBytes()} bytes.
+	 */
+	public int getGroupSamples() {
+		return _groupSamples;
+	}
+
+	/**
+	 * The number of bytes of a group of {@link #getGroupSamples()} packed codes.
+	 */
+	public int getGroupBytes() {
+		return _groupBytes;
+	}
+
+	/**
+	 * Resets the coder to its initial state, e.g. for coding another stream.
+	 */
+	public void reset() {
+		_yl = 34816;
+		_yu = 544;
+		_dms = 0;
+		_dml = 0;
+		_ap = 0;
+		_a0 = 0;
+		_a1 = 0;
+		_pk0 = 0;
+		_pk1 = 0;
+		_sr0 = 32;
+		_sr1 = 32;
+		for (int n = 0; n < 6; n++) {
+			_b[n] = 0;
+			_dq[n] = 32;
+		}
+		_td = 0;
+	}
+
+	/**
+	 * Encodes 16-bit little-endian linear PCM samples.
+	 *
+	 * <p>
+	 * Only whole groups of {@link #getGroupSamples()} samples are encoded.
+	 * </p>
+	 *
+	 * @param pcm
+	 *        The input samples.
+	 * @param offset
+	 *        The offset of the first sample in bytes.
+	 * @param length
+	 *        The length of the input in bytes.
+	 * @param out
+	 *        The buffer for the packed codes.
+	 * @param outOffset
+	 *        The offset to write to.
+	 * @return The number of bytes written.
+	 */
+	public int encode(byte[] pcm, int offset, int length, byte[] out, int outOffset) {
+		int groups = length / (2 * _groupSamples);
+		int bits = _bits;
+		int in = offset;
+		int pos = outOffset;
+		for (int g = 0; g < groups; g++) {
+			long packed = 0;
+			for (int n = 0; n < _groupSamples; n++) {
+				int sample = (short) (((pcm[in + 1] & 0xFF) << 8) | (pcm[in] & 0xFF));
+				in += 2;
+				packed = (packed << bits) | encodeSample(sample);
+			}
+			for (int k = _groupBytes - 1; k >= 0; k--) {
+				out[pos++] = (byte) (packed >> (8 * k));
+			}
+		}
+		return groups * _groupBytes;
+	}
+
+	/**
+	 * Encodes 16-bit linear PCM samples.
+	 *
+	 * @param samples
+	 *        The input samples.
+	 * @param offset
+	 *        The index of the first sample.
+	 * @param count
+	 *        The number of samples, only whole groups of {@link #getGroupSamples()} samples are
+	 *        encoded.
+	 * @param out
+	 *        The buffer for the packed codes.
+	 * @param outOffset
+	 *        The offset to write to.
+	 * @return The number of bytes written.
+	 */
+	public int encode(short[] samples, int offset, int count, byte[] out, int outOffset) {
+		int groups = count / _groupSamples;
+		int bits = _bits;
+		int in = offset;
+		int pos = outOffset;
+		for (int g = 0; g < groups; g++) {
+			long packed = 0;
+			for (int n = 0; n < _groupSamples; n++) {
+				packed = (packed << bits) | encodeSample(samples[in++]);
+			}
+			for (int k = _groupBytes - 1; k >= 0; k--) {
+				out[pos++] = (byte) (packed >> (8 * k));
+			}
+		}
+		return groups * _groupBytes;
+	}
+
+	/**
+	 * Decodes packed codes to 16-bit little-endian linear PCM samples.
+	 *
+	 * <p>
+	 * Only whole groups of {@link #getGroupBytes()} bytes are decoded.
+	 * </p>
+	 *
+	 * @param in
+	 *        The packed codes.
+	 * @param offset
+	 *        The offset of the first code byte.
+	 * @param length
+	 *        The number of code bytes.
+	 * @param pcm
+	 *        The buffer for the samples.
+	 * @param pcmOffset
+	 *        The offset to write to.
+	 * @return The number of bytes written.
+	 */
+	public int decode(byte[] in, int offset, int length, byte[] pcm, int pcmOffset) {
+		int groups = length / _groupBytes;
+		int bits = _bits;
+		int pos = offset;
+		int out = pcmOffset;
+		for (int g = 0; g < groups; g++) {
+			long packed = 0;
+			for (int k = 0; k < _groupBytes; k++) {
+				packed = (packed << 8) | (in[pos++] & 0xFF);
+			}
+			for (int n = _groupSamples - 1; n >= 0; n--) {
+				int sample = decodeSample((int) (packed >> (bits * n)));
+				pcm[out++] = (byte) sample;
+				pcm[out++] = (byte) (sample >> 8);
+			}
+		}
+		return groups * _groupSamples * 2;
+	}
+
+	/**
+	 * Decodes packed codes to 16-bit linear PCM samples.
+	 *
+	 * @return The number of samples written.
+	 * @see #decode(byte[], int, int, byte[], int)
+	 */
+	public int decode(byte[] in, int offset, int length, short[] samples, int sampleOffset) {
+		int groups = length / _groupBytes;
+		int bits = _bits;
+		int pos = offset;
+		int out = sampleOffset;
+		for (int g = 0; g < groups; g++) {
+			long packed = 0;
+			for (int k = 0; k < _groupBytes; k++) {
+				packed = (packed << 8) | (in[pos++] & 0xFF);
+			}
+			for (int n = _groupSamples - 1; n >= 0; n--) {
+				samples[out++] = (short) decodeSample((int) (packed >> (bits * n)));
+			}
+		}
+		return groups * _groupSamples;
+	}
+
+	/**
+	 * Encodes a single 16-bit linear PCM sample.
+	 *
+	 * @return The code of the sample.
+	 */
+	public int encodeSample(int sample) {
+		int sl = sample >> 2; // 14-bit dynamic range
+
+		int sezi = predictorZero();
+		int sez = sezi >> 1;
+		int se = (sezi + predictorPole()) >> 1; // estimated signal
+
+		int d = sl - se; // estimation difference
+
+		int y = stepSize();
+		int i = quantize(d, y);
+		int dq = reconstruct(i & _signBit, _dqlntab[i], y);
+
+		int sr = (dq < 0) ? se - (dq & _dqMask) : se + dq; // reconstructed signal
+		int dqsez = sr + sez - se; // pole prediction difference
+
+		update(y, _witab[i], _fitab[i], dq, sr, dqsez);
+		return i;
+	}
+
+	/**
+	 * Decodes a single code.
+	 *
+	 * @return The 16-bit linear PCM sample.
+	 */
+	public int decodeSample(int code) {
+		int i = code & _codeMask;
+
+		int sezi = predictorZero();
+		int sez = sezi >> 1;
+		int se = (sezi + predictorPole()) >> 1; // estimated signal
+
+		int y = stepSize();
+		int dq = reconstruct(i & _signBit, _dqlntab[i], y);
+
+		int sr = (dq < 0) ? se - (dq & _dqMask) : se + dq; // reconstructed signal
+		int dqsez = sr - se + sez; // pole prediction difference
+
+		update(y, _witab[i], _fitab[i], dq, sr, dqsez);
+		return sr << 2; // sr has 14-bit dynamic range
+	}
+
+	/**
+	 * Integer part of the base 2 logarithm plus one, limited to 15, as computed by a search in the
+	 * table of the first 15 powers of two.
+	 */
+	private static int log2(int value) {
+		return value <= 0 ? 0 : Math.min(15, 32 - Integer.numberOfLeadingZeros(value));
+	}
+
+	/**
+	 * Product of the 14-bit integer an and the floating point value srn (4-bit exponent, 6-bit
+	 * mantissa).
+	 */
+	private static int fmult(int an, int srn) {
+		int anmag = (an > 0) ? an : ((-an) & 0x1FFF);
+		int anexp = log2(anmag) - 6;
+		int anmant = (anmag == 0) ? 32 : (anexp >= 0) ? anmag >> anexp : anmag << -anexp;
+		int wanexp = anexp + ((srn >> 6) & 0xF) - 13;
+		int wanmant = (anmant * (srn & 077) + 0x30) >> 4;
+		int retval = (wanexp >= 0) ? ((wanmant << wanexp) & 0x7FFF) : (wanmant >> -wanexp);
+		return ((an ^ srn) < 0) ? -retval : retval;
+	}
+
+	/**
+	 * Estimated signal from the 6-zero predictor.
+	 */
+	private int predictorZero() {
+		int[] b = _b;
+		int[] dq = _dq;
+		return fmult(b[0] >> 2, dq[0]) + fmult(b[1] >> 2, dq[1]) + fmult(b[2] >> 2, dq[2])
+			+ fmult(b[3] >> 2, dq[3]) + fmult(b[4] >> 2, dq[4]) + fmult(b[5] >> 2, dq[5]);
+	}
+
+	/**
+	 * Estimated signal from the 2-pole predictor.
+	 */
+	private int predictorPole() {
+		return fmult(_a1 >> 2, _sr1) + fmult(_a0 >> 2, _sr0);
+	}
+
+	/**
+	 * Quantization step size of the adaptive quantizer.
+	 */
+	private int stepSize() {
+		if (_ap >= 256) {
+			return _yu;
+		}
+		int y = _yl >> 6;
+		int dif = _yu - y;
+		int al = _ap >> 2;
+		if (dif > 0) {
+			y += (dif * al) >> 6;
+		} else if (dif < 0) {
+			y += (dif * al + 0x3F) >> 6;
+		}
+		return y;
+	}
+
+	/**
+	 * The code of the difference signal d for the step size multiplier y.
+	 */
+	private int quantize(int d, int y) {
+		int dqm = Math.abs(d);
+		int exp = log2(dqm >> 1);
+		int mant = ((dqm << 7) >> exp) & 0x7F;
+		int dl = (exp << 7) + mant;
+		int dln = dl - (y >> 2);
+
+		int[] table = _qtab;
+		int size = table.length;
+		int i = 0;
+		while (i < size && dln >= table[i]) {
+			i++;
+		}
+		if (d < 0) {
+			return (size << 1) + 1 - i;
+		}
+		if (i == 0 && _bits > 2) {
+			// Zero is not a valid code with an odd number of quantizer levels.
+			return (size << 1) + 1;
+		}
+		return i;
+	}
+
+	/**
+	 * The reconstructed difference signal for the log magnitude dqln and step size multiplier y.
+	 */
+	private static int reconstruct(int sign, int dqln, int y) {
+		int dql = dqln + (y >> 2);
+		if (dql < 0) {
+			return (sign != 0) ? -0x8000 : 0;
+		}
+		int dex = (dql >> 7) & 15;
+		int dqt = 128 + (dql & 127);
+		int dq = (dqt << 7) >> (14 - dex);
+		return (sign != 0) ? (dq - 0x8000) : dq;
+	}
+
+	/**
+	 * Updates the state after coding a sample.
+	 */
+	private void update(int y, int wi, int fi, int dq, int sr, int dqsez) {
+		int a2p = 0;
+		int pk0 = (dqsez < 0) ? 1 : 0;
+		int mag = dq & 0x7FFF;
+
+		// TRANS: tone/transition detector
+		int ylint = _yl >> 15;
+		int ylfrac = (_yl >> 10) & 0x1F;
+		int thr1 = (32 + ylfrac) << ylint;
+		int thr2 = (ylint > 9) ? 31 << 10 : thr1;
+		int dqthr = (thr2 + (thr2 >> 1)) >> 1;
+		boolean tr = _td != 0 && mag > dqthr;
+
+		// Quantizer scale factor adaptation.
+		int yu = y + ((wi - y) >> 5);
+		if (yu < 544) {
+			yu = 544;
+		} else if (yu > 5120) {
+			yu = 5120;
+		}
+		_yu = yu;
+		_yl += yu + ((-_yl) >> 6);
+
+		// Adaptive predictor coefficients.
+		int[] b = _b;
+		int[] dqs = _dq;
+		if (tr) {
+			// Reset for modem signal.
+			_a0 = 0;
+			_a1 = 0;
+			for (int n = 0; n < 6; n++) {
+				b[n] = 0;
+			}
+		} else {
+			int pks1 = pk0 ^ _pk0;
+
+			// Update predictor pole a[1].
+			a2p = _a1 - (_a1 >> 7);
+			if (dqsez != 0) {
+				int fa1 = (pks1 != 0) ? _a0 : -_a0;
+				if (fa1 < -8191) {
+					a2p -= 0x100;
+				} else if (fa1 > 8191) {
+					a2p += 0xFF;
+				} else {
+					a2p += fa1 >> 5;
+				}
+
+				if ((pk0 ^ _pk1) != 0) {
+					if (a2p <= -12160) {
+						a2p = -12288;
+					} else if (a2p >= 12416) {
+						a2p = 12288;
+					} else {
+						a2p -= 0x80;
+					}
+				} else if (a2p <= -12416) {
+					a2p = -12288;
+				} else if (a2p >= 12160) {
+					a2p = 12288;
+				} else {
+					a2p += 0x80;
+				}
+			}
+			_a1 = a2p;
+
+			// Update predictor pole a[0].
+			int a0 = _a0 - (_a0 >> 8);
+			if (dqsez != 0) {
+				a0 += (pks1 == 0) ? 192 : -192;
+			}
+			int a1ul = 15360 - a2p;
+			if (a0 < -a1ul) {
+				a0 = -a1ul;
+			} else if (a0 > a1ul) {
+				a0 = a1ul;
+			}
+			_a0 = a0;
+
+			// Update predictor zeros.
+			int leak = (_bits == 5) ? 9 : 8;
+			boolean nonZero = mag != 0;
+			for (int n = 0; n < 6; n++) {
+				int bn = b[n] - (b[n] >> leak);
+				if (nonZero) {
+					bn += ((dq ^ dqs[n]) >= 0) ? 128 : -128;
+				}
+				b[n] = bn;
+			}
+		}
+
+		System.arraycopy(dqs, 0, dqs, 1, 5);
+		// FLOAT A: convert dq to 4-bit exponent, 6-bit mantissa.
+		if (mag == 0) {
+			dqs[0] = (dq >= 0) ? 0x20 : 0xFC20;
+		} else {
+			int exp = log2(mag);
+			dqs[0] = (dq >= 0) ? (exp << 6) + ((mag << 6) >> exp) : (exp << 6) + ((mag << 6) >> exp) - 0x400;
+		}
+
+		_sr1 = _sr0;
+		// FLOAT B: convert sr to 4-bit exponent, 6-bit mantissa.
+		if (sr == 0) {
+			_sr0 = 0x20;
+		} else if (sr > 0) {
+			int exp = log2(sr);
+			_sr0 = (exp << 6) + ((sr << 6) >> exp);
+		} else if (sr > -32768) {
+			int srMag = -sr;
+			int exp = log2(srMag);
+			_sr0 = (exp << 6) + ((srMag << 6) >> exp) - 0x400;
+		} else {
+			_sr0 = 0xFC20;
+		}
+
+		_pk1 = _pk0;
+		_pk0 = pk0;
+
+		// TONE
+		if (tr) {
+			_td = 0;
+		} else if (a2p < -11776) {
+			_td = 1;
+		} else {
+			_td = 0;
+		}
+
+		// Adaptation speed control.
+		_dms += (fi - _dms) >> 5;
+		_dml += ((fi << 2) - _dml) >> 7;
+
+		if (tr) {
+			_ap = 256;
+		} else if (y < 1536) {
+			_ap += (0x200 - _ap) >> 4;
+		} else if (_td == 1) {
+			_ap += (0x200 - _ap) >> 4;
+		} else if (Math.abs((_dms << 2) - _dml) >= (_dml >> 3)) {
+			_ap += (0x200 - _ap) >> 4;
+		} else {
+			_ap += (-_ap) >> 4;
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package test.org.mjsip.sound;
+
+import org.zoolu.sound.codec.G711;
+import org.zoolu.sound.codec.G726;
+import org.zoolu.sound.codec.G726_32;
+import org.zoolu.sound.codec.g726.G726Coder;
+
+/**
+ * Micro-benchmark comparing {@link G726Coder} with the reference {@link G726} implementation and
+ * G.711.
+ *
+ * <p>
+ * Not a test case; run manually from the test class path. The result is given as the number of
+ * concurrent 8 kHz channels a single core can encode and decode in real time.
+ * </p>
+ */
+@SuppressWarnings("javadoc")
+public class G726Benchmark {
+
+	private static final int FRAME = 320;
+
+	private static final int FRAMES = 50 * 60;
+
+	public static void main(String[] args) {
+		byte[] pcm = new byte[FRAME];
+		for (int n = 0; n < FRAME / 2; n++) {
+			int value = (int) (8000 * Math.sin(2 * Math.PI * 440 * n / 8000));
+			pcm[2 * n] = (byte) value;
+			pcm[2 * n + 1] = (byte) (value >> 8);
+		}
+
+		for (int round = 0; round < 5; round++) {
+			run("G.726-32 legacy", pcm, new Codec() {
+				private final G726 _encoder = new G726_32();
+
+				private final G726 _decoder = new G726_32();
+
+				@Override
+				public int encode(byte[] in, byte[] out) {
+					return _encoder.encode(in, 0, in.length, G726.AUDIO_ENCODING_LINEAR, out, 0);
+				}
+
+				@Override
+				public int decode(byte[] in, int length, byte[] out) {
+					return _decoder.decode(in, 0, length, G726.AUDIO_ENCODING_LINEAR, out, 0);
+				}
+			});
+			for (int bitRate : new int[] { 16, 32, 40 }) {
+				G726Coder encoder = new G726Coder(bitRate);
+				G726Coder decoder = new G726Coder(bitRate);
+				run("G.726-" + bitRate, pcm, new Codec() {
+					@Override
+					public int encode(byte[] in, byte[] out) {
+						return encoder.encode(in, 0, in.length, out, 0);
+					}
+
+					@Override
+					public int decode(byte[] in, int length, byte[] out) {
+						return decoder.decode(in, 0, length, out, 0);
+					}
+				});
+			}
+			run("G.711 u-law", pcm, new Codec() {
+				@Override
+				public int encode(byte[] in, byte[] out) {
+					for (int n = 0; n < in.length / 2; n++) {
+						out[n] = (byte) G711.linear2ulaw((short) (((in[2 * n + 1] & 0xFF) << 8) | (in[2 * n] & 0xFF)));
+					}
+					return in.length / 2;
+				}
+
+				@Override
+				public int decode(byte[] in, int length, byte[] out) {
+					for (int n = 0; n < length; n++) {
+						int value = G711.ulaw2linear(in[n] & 0xFF);
+						out[2 * n] = (byte) value;
+						out[2 * n + 1] = (byte) (value >> 8);
+					}
+					return 2 * length;
+				}
+			});
+			System.out.println();
+		}
+	}
+
+	private static void run(String name, byte[] pcm, Codec codec) {
+		byte[] encoded = new byte[FRAME];
+		byte[] decoded = new byte[FRAME];
+		int check = 0;
+		long start = System.nanoTime();
+		for (int n = 0; n < FRAMES; n++) {
+			int length = codec.encode(pcm, encoded);
+			check += codec.decode(encoded, length, decoded);
+		}
+		long elapsed = System.nanoTime() - start;
+		double seconds = FRAMES * (FRAME / 2) / 8000.0;
+		double channels = seconds / (elapsed / 1e9);
+		System.out.printf("%-16s %8.0f channels/core (%d)%n", name, channels, check);
+	}
+
+	interface Codec {
+
+		int encode(byte[] in, byte[] out);
+
+		int decode(byte[] in, int length, byte[] out);
+
+	}
+
+}
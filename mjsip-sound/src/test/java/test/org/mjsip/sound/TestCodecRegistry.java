@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package test.org.mjsip.sound;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sound.CodecRegistry;
+import org.mjsip.sound.Transcoder;
+import org.mjsip.sound.TranscodingInputStream;
+import org.zoolu.sound.CodecType;
+import org.zoolu.sound.SimpleAudioSystem;
+import org.zoolu.sound.codec.G711;
+
+/**
+ * Test for {@link CodecRegistry} and its transcoding streams.
+ */
+@SuppressWarnings("javadoc")
+class TestCodecRegistry {
+
+	private final CodecRegistry _registry = CodecRegistry.getDefault();
+
+	@Test
+	void testPayloadTypes() {
+		Assertions.assertEquals(CodecType.G711_ULAW, _registry.getCodecType(0));
+		Assertions.assertEquals(CodecType.G711_ALAW, _registry.getCodecType(8));
+		Assertions.assertNull(_registry.getCodecType(96));
+		Assertions.assertNull(_registry.getCodecType(200));
+		Assertions.assertNotNull(_registry.createCodec(0));
+		Assertions.assertNotSame(_registry.createCodec(0), _registry.createCodec(0));
+		Assertions.assertTrue(_registry.supports(CodecType.G726_32));
+		Assertions.assertFalse(_registry.supports(CodecType.Clear_Mode));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> _registry.createEncoder(CodecType.Clear_Mode, 1));
+	}
+
+	@Test
+	void testFormats() {
+		AudioFormat base = SimpleAudioSystem.getBaseAudioFormat(8000, 1);
+		for (CodecType codec : new CodecType[] { CodecType.G711_ULAW, CodecType.G711_ALAW }) {
+			AudioFormat direct = _registry.getAudioFormat(codec, 8000, 1);
+			Assertions.assertSame(direct, _registry.getAudioFormat(codec, 8000, 1));
+
+			// Same as the format found through the audio system.
+			boolean found = false;
+			for (AudioFormat format : AudioSystem.getTargetFormats(direct.getEncoding(), base)) {
+				found |= format.matches(direct);
+			}
+			Assertions.assertTrue(found, "No match for: " + direct);
+		}
+		Assertions.assertTrue(base.matches(_registry.getAudioFormat(CodecType.PCM_LINEAR, 8000, 1)));
+		Assertions.assertEquals(4, _registry.getAudioFormat(CodecType.G726_32, 8000, 1).getFrameSize());
+	}
+
+	@Test
+	void testEncodeUlaw() throws IOException {
+		byte[] pcm = pcm(1000);
+		InputStream in = _registry.encode(new TrickleInputStream(pcm), CodecType.G711_ULAW, 1);
+		byte[] encoded = in.readAllBytes();
+
+		Assertions.assertEquals(pcm.length / 2, encoded.length);
+		for (int n = 0; n < encoded.length; n++) {
+			int linear = (short) (((pcm[2 * n + 1] & 0xFF) << 8) | (pcm[2 * n] & 0xFF));
+			Assertions.assertEquals((byte) G711.linear2ulaw(linear), encoded[n]);
+		}
+
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		OutputStream out = _registry.decode(decoded, CodecType.G711_ULAW, 1);
+		// Writes not aligned to any buffer.
+		for (int off = 0; off < encoded.length; off += 7) {
+			out.write(encoded, off, Math.min(7, encoded.length - off));
+		}
+		out.close();
+		Assertions.assertEquals(pcm.length, decoded.size());
+		assertClose(pcm, decoded.toByteArray(), 1024);
+	}
+
+	@Test
+	void testG726() throws IOException {
+		for (CodecType codec : new CodecType[] { CodecType.G726_24, CodecType.G726_32, CodecType.G726_40 }) {
+			// 160ms and a partial frame, which is dropped.
+			byte[] pcm = pcm(1280 + 3);
+			byte[] encoded = _registry.encode(new ByteArrayInputStream(pcm), codec, 1).readAllBytes();
+			Assertions.assertEquals(1280 / 8 * codec.getFrameSize(), encoded.length, codec.getName());
+
+			ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+			try (OutputStream out = _registry.decode(decoded, codec, 1)) {
+				out.write(encoded);
+			}
+			Assertions.assertEquals(1280 * 2, decoded.size(), codec.getName());
+		}
+	}
+
+	@Test
+	void testPcmPassThrough() {
+		ByteArrayInputStream in = new ByteArrayInputStream(new byte[10]);
+		Assertions.assertSame(in, _registry.encode(in, CodecType.PCM_LINEAR, 1));
+	}
+
+	@Test
+	void testBlockCodec() throws IOException {
+		// A block codec must see exactly one frame per call.
+		Transcoder transcoder = new Transcoder((in, inOffset, inLength, out, outOffset) -> {
+			Assertions.assertEquals(320, inLength);
+			out[outOffset] = in[inOffset];
+			return 1;
+		}, 320, 1, false);
+		byte[] pcm = new byte[320 * 5];
+		for (int n = 0; n < 5; n++) {
+			pcm[320 * n] = (byte) n;
+		}
+		byte[] encoded = new TranscodingInputStream(new TrickleInputStream(pcm), transcoder).readAllBytes();
+		Assertions.assertArrayEquals(new byte[] { 0, 1, 2, 3, 4 }, encoded);
+	}
+
+	/**
+	 * Creates a sine wave of the given number of 16-bit little-endian samples.
+	 */
+	private static byte[] pcm(int samples) {
+		byte[] result = new byte[samples * 2];
+		for (int n = 0; n < samples; n++) {
+			int value = (int) (8000 * Math.sin(2 * Math.PI * 440 * n / 8000));
+			result[2 * n] = (byte) value;
+			result[2 * n + 1] = (byte) (value >> 8);
+		}
+		return result;
+	}
+
+	private static void assertClose(byte[] expected, byte[] actual, int delta) {
+		for (int n = 0; n < expected.length; n += 2) {
+			int e = (short) (((expected[n + 1] & 0xFF) << 8) | (expected[n] & 0xFF));
+			int a = (short) (((actual[n + 1] & 0xFF) << 8) | (actual[n] & 0xFF));
+			Assertions.assertTrue(Math.abs(e - a) <= delta, "Sample " + n / 2 + ": " + e + " vs. " + a);
+		}
+	}
+
+	/**
+	 * Delivers at most 3 bytes per read, like a slow source.
+	 */
+	private static class TrickleInputStream extends ByteArrayInputStream {
+
+		TrickleInputStream(byte[] buf) {
+			super(buf);
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(3, len));
+		}
+
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package test.org.mjsip.sound;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.zoolu.sound.codec.G726;
+import org.zoolu.sound.codec.G726_24;
+import org.zoolu.sound.codec.G726_32;
+import org.zoolu.sound.codec.G726_40;
+import org.zoolu.sound.codec.g726.G726Coder;
+
+/**
+ * Test for {@link G726Coder} against the reference implementation in {@link G726}.
+ */
+@SuppressWarnings("javadoc")
+class TestG726Coder {
+
+	@Test
+	void testConformance24() {
+		assertConformance(24, new G726_24(), new G726_24());
+	}
+
+	@Test
+	void testConformance32() {
+		assertConformance(32, new G726_32(), new G726_32());
+	}
+
+	@Test
+	void testConformance40() {
+		assertConformance(40, new G726_40(), new G726_40());
+	}
+
+	@Test
+	void testRoundTrip16() {
+		G726Coder encoder = new G726Coder(16);
+		G726Coder decoder = new G726Coder(16);
+		Assertions.assertEquals(4, encoder.getGroupSamples());
+		Assertions.assertEquals(1, encoder.getGroupBytes());
+
+		short[] samples = sine(8000);
+		byte[] encoded = new byte[samples.length / 4];
+		Assertions.assertEquals(encoded.length, encoder.encode(samples, 0, samples.length, encoded, 0));
+
+		short[] decoded = new short[samples.length];
+		Assertions.assertEquals(samples.length, decoder.decode(encoded, 0, encoded.length, decoded, 0));
+
+		// After adaptation, the decoded signal follows the input.
+		double signal = 0;
+		double noise = 0;
+		for (int n = 800; n < samples.length; n++) {
+			signal += (double) samples[n] * samples[n];
+			double error = samples[n] - decoded[n];
+			noise += error * error;
+		}
+		Assertions.assertTrue(signal > 4 * noise, "SNR too low: " + signal / noise);
+	}
+
+	@Test
+	void testReset() {
+		for (int bitRate : new int[] { 16, 24, 32, 40 }) {
+			G726Coder coder = new G726Coder(bitRate);
+			byte[] pcm = noise(800, 42);
+			byte[] first = new byte[pcm.length];
+			int length = coder.encode(pcm, 0, pcm.length, first, 0);
+			Assertions.assertEquals(800 * bitRate / 8 / 8, length);
+
+			byte[] second = new byte[pcm.length];
+			coder.encode(pcm, 0, pcm.length, second, 0);
+			Assertions.assertFalse(Arrays.equals(first, second));
+
+			coder.reset();
+			coder.encode(pcm, 0, pcm.length, second, 0);
+			Assertions.assertArrayEquals(first, second);
+		}
+	}
+
+	@Test
+	void testPartialGroup() {
+		G726Coder coder = new G726Coder(24);
+		byte[] out = new byte[10];
+		// 7 samples do not fill a group of 3 bytes.
+		Assertions.assertEquals(0, coder.encode(new byte[14], 0, 14, out, 0));
+		Assertions.assertEquals(3, coder.encode(new byte[18], 0, 18, out, 0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new G726Coder(48));
+	}
+
+	private static void assertConformance(int bitRate, G726 legacyEncoder, G726 legacyDecoder) {
+		G726Coder encoder = new G726Coder(bitRate);
+		G726Coder decoder = new G726Coder(bitRate);
+
+		// Speech like signal and white noise, encoded in frames of 20ms.
+		byte[] pcm = concat(toBytes(sine(4000)), noise(4000, 13));
+		int frame = 320;
+		byte[] expected = new byte[frame];
+		byte[] actual = new byte[frame];
+		byte[] expectedPcm = new byte[frame];
+		byte[] actualPcm = new byte[frame];
+		for (int offset = 0; offset < pcm.length; offset += frame) {
+			int expectedLength = legacyEncoder.encode(pcm, offset, frame, G726.AUDIO_ENCODING_LINEAR, expected, 0);
+			int actualLength = encoder.encode(pcm, offset, frame, actual, 0);
+			Assertions.assertEquals(expectedLength, actualLength);
+			Assertions.assertArrayEquals(Arrays.copyOf(expected, expectedLength), Arrays.copyOf(actual, actualLength),
+				"Codes differ at offset " + offset);
+
+			int expectedPcmLength =
+				legacyDecoder.decode(expected, 0, expectedLength, G726.AUDIO_ENCODING_LINEAR, expectedPcm, 0);
+			int actualPcmLength = decoder.decode(actual, 0, actualLength, actualPcm, 0);
+			Assertions.assertEquals(frame, actualPcmLength);
+			Assertions.assertEquals(expectedPcmLength, actualPcmLength);
+			Assertions.assertArrayEquals(expectedPcm, actualPcm, "Samples differ at offset " + offset);
+		}
+	}
+
+	private static short[] sine(int count) {
+		short[] result = new short[count];
+		for (int n = 0; n < count; n++) {
+			double t = n / 8000.0;
+			result[n] = (short) (9000 * Math.sin(2 * Math.PI * 440 * t) + 4000 * Math.sin(2 * Math.PI * 1230 * t));
+		}
+		return result;
+	}
+
+	private static byte[] noise(int count, long seed) {
+		Random random = new Random(seed);
+		byte[] result = new byte[count * 2];
+		for (int n = 0; n < count; n++) {
+			int value = (int) (random.nextGaussian() * 6000);
+			value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+			result[2 * n] = (byte) value;
+			result[2 * n + 1] = (byte) (value >> 8);
+		}
+		return result;
+	}
+
+	private static byte[] toBytes(short[] samples) {
+		byte[] result = new byte[samples.length * 2];
+		for (int n = 0; n < samples.length; n++) {
+			result[2 * n] = (byte) samples[n];
+			result[2 * n + 1] = (byte) (samples[n] >> 8);
+		}
+		return result;
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+
+}
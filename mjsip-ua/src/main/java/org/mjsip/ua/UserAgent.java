@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
 
 import org.mjsip.media.FlowSpec;
@@ -32,6 +33,7 @@ import org.mjsip.media.MediaDesc;
 import org.mjsip.media.MediaSpec;
 import org.mjsip.media.MediaStreamer;
 import org.mjsip.pool.PortPool;
+import org.mjsip.pool.RtpSocketPair;
 import org.mjsip.sdp.MediaDescriptor;
 import org.mjsip.sdp.OfferAnswerModel;
 import org.mjsip.sdp.SdpMessage;
@@ -53,6 +55,7 @@ import org.mjsip.ua.registration.RegistrationClient;
 import org.mjsip.ua.registration.RegistrationClientListener;
 import org.slf4j.LoggerFactory;
 import org.zoolu.net.AddressType;
+import org.zoolu.net.IpAddress;
 import org.zoolu.util.VectorUtils;
 
 /** Simple SIP call agent (signaling and media).
@@ -319,16 +322,17 @@ public class UserAgent extends CallListenerAdapter implements SipProviderListene
 			// stop previous media streamer (just in case something was wrong..)
 			MediaStreamer existing = _mediaSessions.remove(mediaType);
 			if (existing != null) {
-				existing.halt();
+				existing.haltAsync();
 			}
 			
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("Starting media session: " + flow_spec);
 			}
-			MediaStreamer streamer = _mediaAgent.startMediaSession(sip_provider.scheduler(), flow_spec);
+			MediaStreamer streamer = _mediaAgent.startMediaSession(sip_provider.scheduler().mediaExecutor(), flow_spec);
 			
 			if (streamer == null) {
 				LOG.warn("No media streamer found for type: " + mediaType);
+				closeSockets(flow_spec);
 				continue;
 			}
 			 
@@ -338,10 +342,25 @@ public class UserAgent extends CallListenerAdapter implements SipProviderListene
 				
 				String codec = flow_spec.getMediaSpec().getCodec();
 				if (listener!=null) listener.onUaMediaSessionStarted(this,mediaType,codec);
+			} else {
+				LOG.warn("Media streamer failed to start: " + flow_spec);
+				closeSockets(flow_spec);
 			}
 		}
 	}
 
+	/**
+	 * Closes the sockets taken from the port pool for a flow that is not streamed, the port
+	 * itself is released with the other media ports of the call.
+	 */
+	private static void closeSockets(FlowSpec flow_spec) {
+		RtpSocketPair sockets = flow_spec.getSockets();
+		if (sockets != null) {
+			flow_spec.setSockets(null);
+			sockets.close();
+		}
+	}
+
 	private FlowSpec buildFlowSpec(String mediaType, MediaDescriptor remoteDescriptor, MediaDescriptor matchingDescriptor, FlowSpec.Direction dir, String remote_address) {
 		MediaField mediaField=matchingDescriptor.getMediaField();
 		String transport=mediaField.getTransport();
@@ -359,7 +378,15 @@ public class UserAgent extends CallListenerAdapter implements SipProviderListene
 		MediaSpec media_spec = findMatchingMediaSpec(mediaType, avp);
 		
 		if (local_port!=0 && remote_port!=0 && media_spec!=null) {
-			return new FlowSpec(mediaType,media_spec,local_port,remote_address,remote_port, dir);
+			FlowSpec flow_spec = new FlowSpec(mediaType,media_spec,local_port,remote_address,remote_port, dir);
+			RtpSocketPair sockets = _portPool.takeSockets(local_port);
+			String mediaAddr = _config.getMediaAddr();
+			if (sockets != null && mediaAddr != null) {
+				// The pooled sockets are bound to the wildcard address.
+				sockets.setCaptureAddress(new IpAddress(mediaAddr));
+			}
+			flow_spec.setSockets(sockets);
+			return flow_spec;
 		} else {
 			LOG.warn("No matching media found (local_port="+local_port+", remote_port="+remote_port+", remoteDescriptor="+remoteDescriptor+").");
 			return null;
@@ -380,17 +407,21 @@ public class UserAgent extends CallListenerAdapter implements SipProviderListene
 		return null;
 	}
 	
-	/** Closes media sessions.  */
+	/** Closes media sessions.
+	  * The streamers are halted without waiting for their termination, so that the calling (SIP) thread is not blocked.
+	  * The media ports are released as soon as all streams have terminated. */
 	protected void closeMediaSessions() {
+		CompletableFuture<Void> terminated = CompletableFuture.completedFuture(null);
 		for (Entry<String, MediaStreamer> entry : _mediaSessions.entrySet()) {
-			entry.getValue().halt();
+			terminated = terminated.thenCombine(entry.getValue().haltAsync(), (a, b) -> null);
 			
 			if (listener!=null) listener.onUaMediaSessionStopped(this,entry.getKey());
 		}
 		_mediaSessions.clear();
-		if (_mediaAgent != null) {
-			_mediaAgent.releaseMediaPorts(_portPool);
-			_mediaAgent = null;
+		MediaAgent mediaAgent = _mediaAgent;
+		_mediaAgent = null;
+		if (mediaAgent != null) {
+			terminated.whenComplete((result, error) -> mediaAgent.releaseMediaPorts(_portPool));
 		}
 	}
 
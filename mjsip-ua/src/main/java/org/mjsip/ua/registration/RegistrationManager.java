@@ -0,0 +1,830 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.ua.registration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Vector;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.mjsip.sip.address.GenericURI;
+import org.mjsip.sip.address.NameAddress;
+import org.mjsip.sip.address.SipNameAddress;
+import org.mjsip.sip.address.SipURI;
+import org.mjsip.sip.authentication.DigestAuthentication;
+import org.mjsip.sip.header.AuthenticationHeader;
+import org.mjsip.sip.header.CSeqHeader;
+import org.mjsip.sip.header.ContactHeader;
+import org.mjsip.sip.header.ExpiresHeader;
+import org.mjsip.sip.header.Header;
+import org.mjsip.sip.header.ProxyAuthenticateHeader;
+import org.mjsip.sip.header.RouteHeader;
+import org.mjsip.sip.header.WwwAuthenticateHeader;
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.message.SipMethods;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.sip.transaction.TransactionClient;
+import org.mjsip.sip.transaction.TransactionClientListener;
+import org.slf4j.LoggerFactory;
+import org.zoolu.net.AddressType;
+
+/**
+ * Registers and periodically refreshes many bindings (AORs) through a single {@link SipProvider}.
+ *
+ * <p>
+ * In contrast to a {@link RegistrationClient} per AOR, the manager
+ * </p>
+ * <ul>
+ * <li>spreads the initial registrations over a {@link #getStartSpread() start interval} and
+ * randomly advances each refresh by up to {@link #getJitter() jitter} of the refresh interval, so
+ * that refreshes of bindings registered at the same time drift apart,</li>
+ * <li>limits the number of REGISTER transactions in progress to {@link #getMaxInFlight()}; due
+ * bindings wait in a queue,</li>
+ * <li>keeps the Call-ID of a binding across refreshes and answers the digest challenge of the
+ * registrar in advance, using the last nonce with an incremented nonce count, so that a refresh
+ * needs a single round-trip as long as the registrar accepts the nonce,</li>
+ * <li>provides the {@link #getStatus() status} of all bindings at once.</li>
+ * </ul>
+ */
+public class RegistrationManager implements TransactionClientListener {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(RegistrationManager.class);
+
+	/**
+	 * State of a {@link Binding}.
+	 */
+	public enum State {
+		/** Waiting for the first registration. */
+		IDLE,
+
+		/** Due for (re-)registration, waiting for a free transaction slot. */
+		QUEUED,
+
+		/** A REGISTER transaction is in progress. */
+		REGISTERING,
+
+		/** Registered, waiting for the next refresh. */
+		REGISTERED,
+
+		/** The last registration attempt failed, waiting for the next attempt. */
+		FAILED,
+
+		/** Unregistered and removed from the manager. */
+		UNREGISTERED
+	}
+
+	/**
+	 * Callback informed about {@link Binding} state changes.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called after the {@link Binding#getState() state} of the given binding has changed.
+		 */
+		void onBindingChanged(Binding binding);
+
+	}
+
+	private final SipProvider _sipProvider;
+
+	private final int _maxInFlight;
+
+	private final double _jitter;
+
+	private final long _startSpread;
+
+	private final Listener _listener;
+
+	/**
+	 * All bindings indexed by their Call-ID.
+	 */
+	private final Map<String, Binding> _bindings = new HashMap<>();
+
+	/**
+	 * Bindings due for registration, waiting for a free transaction slot.
+	 */
+	private final ArrayDeque<Binding> _queue = new ArrayDeque<>();
+
+	private int _inFlight;
+
+	private boolean _halted;
+
+	/**
+	 * Creates a {@link RegistrationManager}.
+	 *
+	 * @param sipProvider
+	 *        The provider to send REGISTER requests with.
+	 * @param maxInFlight
+	 *        The maximum number of REGISTER transactions in progress.
+	 * @param jitter
+	 *        The fraction (0 to 1) of the refresh interval by which each refresh is randomly
+	 *        advanced.
+	 * @param startSpread
+	 *        The time in milliseconds over which the first registrations of the added bindings are
+	 *        spread.
+	 * @param listener
+	 *        Callback for binding state changes, or <code>null</code>.
+	 */
+	public RegistrationManager(SipProvider sipProvider, int maxInFlight, double jitter, long startSpread,
+			Listener listener) {
+		_sipProvider = sipProvider;
+		_maxInFlight = Math.max(1, maxInFlight);
+		_jitter = Math.min(1.0, Math.max(0.0, jitter));
+		_startSpread = Math.max(0, startSpread);
+		_listener = listener;
+	}
+
+	/**
+	 * The maximum number of REGISTER transactions in progress.
+	 */
+	public int getMaxInFlight() {
+		return _maxInFlight;
+	}
+
+	/**
+	 * The fraction of the refresh interval by which each refresh is randomly advanced.
+	 */
+	public double getJitter() {
+		return _jitter;
+	}
+
+	/**
+	 * The time in milliseconds over which first registrations are spread.
+	 */
+	public long getStartSpread() {
+		return _startSpread;
+	}
+
+	/**
+	 * Adds a binding and schedules its registration.
+	 *
+	 * @param options
+	 *        The AOR, registrar, credentials, and expiration time of the binding.
+	 * @return The new binding.
+	 */
+	public Binding add(RegistrationOptions options) {
+		Binding binding = new Binding(_sipProvider, options);
+		synchronized (this) {
+			if (_halted) {
+				throw new IllegalStateException("Registration manager has been halted.");
+			}
+			_bindings.put(binding._callId, binding);
+			long delay = _startSpread > 0 ? ThreadLocalRandom.current().nextLong(_startSpread) : 0;
+			schedule(binding, delay);
+		}
+		return binding;
+	}
+
+	/**
+	 * Unregisters the given binding and removes it from the manager.
+	 *
+	 * <p>
+	 * A binding that is not registered is removed immediately.
+	 * </p>
+	 */
+	public void remove(Binding binding) {
+		List<TransactionClient> started;
+		synchronized (this) {
+			if (binding._removed) {
+				return;
+			}
+			binding._removed = true;
+			binding._expires = 0;
+			cancelTimer(binding);
+
+			switch (binding._state) {
+			case IDLE:
+			case FAILED:
+				_queue.remove(binding);
+				release(binding);
+				return;
+			case REGISTERED:
+				enqueue(binding);
+				break;
+			case QUEUED:
+			case REGISTERING:
+			case UNREGISTERED:
+				// Handled when dispatched or completed.
+				break;
+			}
+			started = dispatch();
+		}
+		start(started);
+	}
+
+	/**
+	 * Stops all registration activities without unregistering.
+	 */
+	public void halt() {
+		synchronized (this) {
+			_halted = true;
+			_queue.clear();
+			for (Binding binding : _bindings.values()) {
+				cancelTimer(binding);
+			}
+		}
+	}
+
+	/**
+	 * All bindings of this manager.
+	 */
+	public synchronized List<Binding> getBindings() {
+		return new ArrayList<>(_bindings.values());
+	}
+
+	/**
+	 * The number of REGISTER transactions in progress.
+	 */
+	public synchronized int getInFlight() {
+		return _inFlight;
+	}
+
+	/**
+	 * A snapshot of the states of all bindings.
+	 */
+	public synchronized Status getStatus() {
+		int[] counts = new int[State.values().length];
+		int registered = 0;
+		long now = System.currentTimeMillis();
+		for (Binding binding : _bindings.values()) {
+			counts[binding._state.ordinal()]++;
+			if (binding.isRegistered(now)) {
+				registered++;
+			}
+		}
+		return new Status(_bindings.size(), registered, counts);
+	}
+
+	// **************** Transaction callback functions *****************
+
+	@Override
+	public void onTransProvisionalResponse(TransactionClient transaction, SipMessage resp) {
+		// Ignore.
+	}
+
+	@Override
+	public void onTransSuccessResponse(TransactionClient transaction, SipMessage resp) {
+		List<TransactionClient> started;
+		Binding changed;
+		synchronized (this) {
+			Binding binding = completed(transaction);
+			if (binding == null) {
+				return;
+			}
+
+			if (resp.hasAuthenticationInfoHeader()) {
+				String nextNonce = resp.getAuthenticationInfoHeader().getNextnonceParam();
+				if (nextNonce != null && binding._challenge != null) {
+					binding._challenge = withNonce(binding._challenge, nextNonce);
+					binding._nc = 0;
+				}
+			}
+			binding._authAttempts = 0;
+			binding._failures = 0;
+			binding._result = resp.getStatusLine().getCode() + " " + resp.getStatusLine().getReason();
+
+			int requested = requestedExpires(transaction);
+			if (requested == 0) {
+				binding._expiresAt = 0;
+				if (binding._removed) {
+					release(binding);
+				} else {
+					setState(binding, State.UNREGISTERED);
+				}
+			} else if (binding._removed) {
+				// Removed while registering.
+				enqueue(binding);
+			} else {
+				int expires = grantedExpires(resp, binding._contactNAddr, requested);
+				long now = System.currentTimeMillis();
+				binding._expiresAt = now + expires * 1000L;
+				setState(binding, State.REGISTERED);
+				schedule(binding, refreshDelay(expires));
+			}
+			changed = binding;
+			started = dispatch();
+		}
+		notifyListener(changed);
+		start(started);
+	}
+
+	@Override
+	public void onTransFailureResponse(TransactionClient transaction, SipMessage resp) {
+		List<TransactionClient> started;
+		Binding changed;
+		synchronized (this) {
+			Binding binding = activeBinding(transaction);
+			if (binding == null) {
+				return;
+			}
+
+			int code = resp.getStatusLine().getCode();
+			AuthenticationHeader challenge = null;
+			if (code == 401 && resp.hasWwwAuthenticateHeader()) {
+				challenge = resp.getWwwAuthenticateHeader();
+			} else if (code == 407 && resp.hasProxyAuthenticateHeader()) {
+				challenge = resp.getProxyAuthenticateHeader();
+			}
+
+			if (challenge != null && binding.accepts(challenge)
+					&& binding._authAttempts < _sipProvider.sipConfig().getRegAuthAttempts()) {
+				// Answer the new challenge, keeping the transaction slot.
+				binding._authAttempts++;
+				binding._challenge = challenge;
+				binding._nc = 0;
+				TransactionClient retry = createTransaction(binding, requestedExpires(transaction));
+				started = new ArrayList<>(1);
+				started.add(retry);
+				changed = null;
+			} else {
+				completed(transaction);
+				failed(binding, code + " " + resp.getStatusLine().getReason(),
+						_sipProvider.sipConfig().getRegMaxAttemptTimeout());
+				changed = binding;
+				started = dispatch();
+			}
+		}
+		notifyListener(changed);
+		start(started);
+	}
+
+	@Override
+	public void onTransTimeout(TransactionClient transaction) {
+		List<TransactionClient> started;
+		Binding changed;
+		synchronized (this) {
+			Binding binding = completed(transaction);
+			if (binding == null) {
+				return;
+			}
+
+			failed(binding, "Timeout", binding.nextAttemptTimeout(_sipProvider));
+			changed = binding;
+			started = dispatch();
+		}
+		notifyListener(changed);
+		start(started);
+	}
+
+	// ************************* Internals ******************************
+
+	private Binding activeBinding(TransactionClient transaction) {
+		Binding binding = _bindings.get(transaction.getRequestMessage().getCallIdHeader().getCallId());
+		if (binding == null || binding._transaction != transaction) {
+			return null;
+		}
+		return binding;
+	}
+
+	/**
+	 * Releases the transaction slot of the given transaction.
+	 *
+	 * @return The binding of the transaction, or <code>null</code> if the transaction is not the
+	 *         active transaction of any binding.
+	 */
+	private Binding completed(TransactionClient transaction) {
+		Binding binding = activeBinding(transaction);
+		if (binding == null) {
+			return null;
+		}
+		binding._transaction = null;
+		_inFlight--;
+		return binding;
+	}
+
+	private void failed(Binding binding, String result, long retryTimeout) {
+		binding._result = result;
+		binding._failures++;
+		binding._authAttempts = 0;
+		LOG.info("Registration of {} failed: {}", binding._toNAddr, result);
+
+		if (binding._removed) {
+			// Unregistration failed, give up.
+			release(binding);
+			return;
+		}
+
+		setState(binding, State.FAILED);
+		if (!_halted) {
+			schedule(binding, jittered(retryTimeout));
+		}
+	}
+
+	private void release(Binding binding) {
+		_bindings.remove(binding._callId);
+		setState(binding, State.UNREGISTERED);
+	}
+
+	private void schedule(Binding binding, long delay) {
+		cancelTimer(binding);
+		binding._timer = _sipProvider.scheduler().schedule(delay, () -> onDue(binding));
+	}
+
+	private static void cancelTimer(Binding binding) {
+		if (binding._timer != null) {
+			binding._timer.cancel(false);
+			binding._timer = null;
+		}
+	}
+
+	private void onDue(Binding binding) {
+		List<TransactionClient> started;
+		synchronized (this) {
+			binding._timer = null;
+			if (_halted || binding._state == State.UNREGISTERED || binding._state == State.QUEUED
+					|| binding._state == State.REGISTERING) {
+				return;
+			}
+			enqueue(binding);
+			started = dispatch();
+		}
+		start(started);
+	}
+
+	private void enqueue(Binding binding) {
+		binding._state = State.QUEUED;
+		_queue.addLast(binding);
+	}
+
+	/**
+	 * Starts transactions for queued bindings while transaction slots are free.
+	 *
+	 * @return The transactions to start after releasing the lock.
+	 */
+	private List<TransactionClient> dispatch() {
+		List<TransactionClient> started = null;
+		while (_inFlight < _maxInFlight && !_halted) {
+			Binding binding = _queue.pollFirst();
+			if (binding == null) {
+				break;
+			}
+			if (binding._state != State.QUEUED) {
+				continue;
+			}
+
+			_inFlight++;
+			binding._state = State.REGISTERING;
+			binding._authAttempts = 0;
+			if (started == null) {
+				started = new ArrayList<>();
+			}
+			started.add(createTransaction(binding, binding._expires));
+		}
+		return started;
+	}
+
+	private TransactionClient createTransaction(Binding binding, int expires) {
+		SipMessage req = binding.createRequest(_sipProvider, expires);
+		TransactionClient transaction = new TransactionClient(_sipProvider, req, this);
+		binding._transaction = transaction;
+		return transaction;
+	}
+
+	private static void start(List<TransactionClient> started) {
+		if (started == null) {
+			return;
+		}
+		for (TransactionClient transaction : started) {
+			transaction.request();
+		}
+	}
+
+	private void setState(Binding binding, State state) {
+		binding._state = state;
+	}
+
+	private void notifyListener(Binding binding) {
+		if (binding != null && _listener != null) {
+			_listener.onBindingChanged(binding);
+		}
+	}
+
+	/**
+	 * The delay in milliseconds until the refresh of a binding that expires after the given
+	 * number of seconds.
+	 */
+	long refreshDelay(int expires) {
+		return jittered(expires * 1000L / 2);
+	}
+
+	private long jittered(long delay) {
+		if (_jitter == 0 || delay <= 0) {
+			return delay;
+		}
+		return delay - (long) (delay * _jitter * ThreadLocalRandom.current().nextDouble());
+	}
+
+	private static int requestedExpires(TransactionClient transaction) {
+		SipMessage req = transaction.getRequestMessage();
+		return req.hasExpiresHeader() ? req.getExpiresHeader().getDeltaSeconds() : 0;
+	}
+
+	/**
+	 * The expiration interval in seconds granted by the registrar for the given contact.
+	 *
+	 * <p>
+	 * A registrar lists all current bindings of the AOR in the response, each with its own
+	 * <code>expires</code> parameter. Only the entry of the given contact applies to this binding.
+	 * If it is missing, the <code>Expires</code> header, and finally the requested interval is used.
+	 * </p>
+	 */
+	static int grantedExpires(SipMessage resp, NameAddress contact, int requested) {
+		int expires = 0;
+		if (resp.hasContactHeader()) {
+			Vector<Header> contacts = resp.getContacts().getHeaders();
+			for (int i = 0; i < contacts.size(); i++) {
+				ContactHeader header = new ContactHeader(contacts.elementAt(i));
+				if (!header.isStar() && sameContact(header.getNameAddress().getAddress(), contact.getAddress())) {
+					expires = header.getExpires();
+					break;
+				}
+			}
+		}
+		if (expires <= 0 && resp.hasExpiresHeader()) {
+			expires = resp.getExpiresHeader().getDeltaSeconds();
+		}
+		return expires > 0 ? expires : requested;
+	}
+
+	private static boolean sameContact(GenericURI uri, GenericURI contact) {
+		if (!uri.isSipURI() || !contact.isSipURI()) {
+			return uri.equals(contact);
+		}
+		SipURI sipUri = uri.toSipURI();
+		SipURI sipContact = contact.toSipURI();
+		return Objects.equals(sipUri.getUserName(), sipContact.getUserName())
+				&& sipUri.getHost().equalsIgnoreCase(sipContact.getHost())
+				&& (sipUri.getPort() == sipContact.getPort() || !sipUri.hasPort() || !sipContact.hasPort());
+	}
+
+	private static AuthenticationHeader withNonce(AuthenticationHeader challenge, String nonce) {
+		String value = challenge.getValue().replace("nonce=\"" + challenge.getNonceParam() + "\"",
+				"nonce=\"" + nonce + "\"");
+		if (challenge instanceof ProxyAuthenticateHeader) {
+			return new ProxyAuthenticateHeader(value);
+		}
+		return new WwwAuthenticateHeader(value);
+	}
+
+	/**
+	 * A single AOR registered by a {@link RegistrationManager}.
+	 *
+	 * <p>
+	 * The state of a binding is guarded by its manager.
+	 * </p>
+	 */
+	public static final class Binding {
+
+		final String _callId;
+
+		private final SipURI _registrarUri;
+
+		private final GenericURI _routeUri;
+
+		final NameAddress _toNAddr;
+
+		private final NameAddress _fromNAddr;
+
+		private final NameAddress _contactNAddr;
+
+		private final String _username;
+
+		private final String _realm;
+
+		private final String _passwd;
+
+		int _expires;
+
+		long _cseq;
+
+		State _state = State.IDLE;
+
+		boolean _removed;
+
+		long _expiresAt;
+
+		String _result;
+
+		int _failures;
+
+		long _attemptTimeout;
+
+		int _authAttempts;
+
+		/**
+		 * The last digest challenge, answered in advance by the following requests.
+		 */
+		AuthenticationHeader _challenge;
+
+		/**
+		 * The nonce count of the last answer to {@link #_challenge}.
+		 */
+		int _nc;
+
+		TransactionClient _transaction;
+
+		ScheduledFuture<?> _timer;
+
+		Binding(SipProvider sipProvider, RegistrationOptions options) {
+			NameAddress toNAddr = options.getUserURI();
+			NameAddress fromNAddr = toNAddr;
+			SipURI registrarUri = options.getRegistrar();
+
+			NameAddress contactNAddr;
+			GenericURI toUri = toNAddr.getAddress();
+			if (toUri.isSipURI()) {
+				SipURI sipURI = toUri.toSipURI();
+				contactNAddr = sipProvider.getContactAddress(sipURI.getUserName(), sipURI.getAddressType());
+			} else {
+				contactNAddr = sipProvider.getContactAddress(null, AddressType.DEFAULT);
+			}
+
+			if (SipNameAddress.isSIPS(contactNAddr)) {
+				toNAddr = SipNameAddress.toSIPS(toNAddr);
+				fromNAddr = SipNameAddress.toSIPS(fromNAddr);
+				if (registrarUri != null) {
+					registrarUri = new SipURI(registrarUri.toString());
+					registrarUri.setSecure(true);
+				}
+			}
+
+			_callId = sipProvider.pickCallId();
+			_cseq = SipProvider.pickInitialCSeq();
+			_registrarUri = registrarUri;
+			_routeUri = options.getRoute();
+			_toNAddr = toNAddr;
+			_fromNAddr = fromNAddr;
+			_contactNAddr = contactNAddr;
+			_username = options.getAuthUser();
+			_realm = options.getAuthRealm();
+			_passwd = options.getAuthPasswd();
+			_expires = options.getExpires() > 0 ? options.getExpires()
+					: sipProvider.sipConfig().getDefaultExpires();
+			_attemptTimeout = sipProvider.sipConfig().getRegMinAttemptTimeout();
+		}
+
+		/**
+		 * The registered AOR.
+		 */
+		public NameAddress getTargetAOR() {
+			return _toNAddr;
+		}
+
+		/**
+		 * The registered contact address.
+		 */
+		public NameAddress getContact() {
+			return _contactNAddr;
+		}
+
+		/**
+		 * The Call-ID used for all REGISTER requests of this binding.
+		 */
+		public String getCallId() {
+			return _callId;
+		}
+
+		/**
+		 * The current state.
+		 */
+		public State getState() {
+			return _state;
+		}
+
+		/**
+		 * Whether the binding is currently registered.
+		 */
+		public boolean isRegistered() {
+			return isRegistered(System.currentTimeMillis());
+		}
+
+		boolean isRegistered(long now) {
+			return _expiresAt > now
+					&& (_state == State.REGISTERED || _state == State.QUEUED || _state == State.REGISTERING);
+		}
+
+		/**
+		 * The time in milliseconds since the epoch when the registration expires, 0 if not
+		 * registered.
+		 */
+		public long getExpiresAt() {
+			return _expiresAt;
+		}
+
+		/**
+		 * The status line of the last final response, or a failure description.
+		 */
+		public String getResult() {
+			return _result;
+		}
+
+		/**
+		 * The number of failed attempts since the last successful registration.
+		 */
+		public int getFailures() {
+			return _failures;
+		}
+
+		boolean accepts(AuthenticationHeader challenge) {
+			String realm = challenge.getRealmParam();
+			return _realm == null || (realm != null && realm.equalsIgnoreCase(_realm));
+		}
+
+		long nextAttemptTimeout(SipProvider sipProvider) {
+			long result = _attemptTimeout;
+			_attemptTimeout = Math.min(2 * _attemptTimeout, sipProvider.sipConfig().getRegMaxAttemptTimeout());
+			return result;
+		}
+
+		SipMessage createRequest(SipProvider sipProvider, int expires) {
+			SipMessage req = sipProvider.messageFactory().createRegisterRequest(_registrarUri, _toNAddr, _fromNAddr,
+					_contactNAddr, _callId);
+			req.setCSeqHeader(new CSeqHeader(++_cseq, SipMethods.REGISTER));
+			if (_routeUri != null) {
+				req.addRouteHeader(new RouteHeader(new NameAddress(_routeUri)));
+			}
+			req.setExpiresHeader(new ExpiresHeader(String.valueOf(expires)));
+
+			if (_challenge != null) {
+				String qop = _challenge.getQopOptionsParam() != null ? "auth" : null;
+				DigestAuthentication digest = new DigestAuthentication(SipMethods.REGISTER,
+						req.getRequestLine().getAddress().toString(), _challenge, qop, null, ++_nc, null, _username,
+						_passwd);
+				if (_challenge instanceof ProxyAuthenticateHeader) {
+					req.setProxyAuthorizationHeader(digest.getProxyAuthorizationHeader());
+				} else {
+					req.setAuthorizationHeader(digest.getAuthorizationHeader());
+				}
+			}
+			return req;
+		}
+
+		@Override
+		public String toString() {
+			return _toNAddr + " (" + _state + ")";
+		}
+	}
+
+	/**
+	 * Snapshot of the states of all bindings of a {@link RegistrationManager}.
+	 */
+	public static final class Status {
+
+		private final int _total;
+
+		private final int _registered;
+
+		private final int[] _counts;
+
+		Status(int total, int registered, int[] counts) {
+			_total = total;
+			_registered = registered;
+			_counts = counts;
+		}
+
+		/**
+		 * The number of bindings.
+		 */
+		public int getTotal() {
+			return _total;
+		}
+
+		/**
+		 * The number of bindings in the given state.
+		 */
+		public int getCount(State state) {
+			return _counts[state.ordinal()];
+		}
+
+		/**
+		 * The number of registered bindings, including those currently being refreshed.
+		 */
+		public int getRegistered() {
+			return _registered;
+		}
+
+		/**
+		 * The number of bindings whose last attempt failed.
+		 */
+		public int getFailed() {
+			return getCount(State.FAILED);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+			result.append("total=").append(_total).append(", active=").append(_registered);
+			for (State state : State.values()) {
+				result.append(", ").append(state.name().toLowerCase()).append('=').append(getCount(state));
+			}
+			return result.toString();
+		}
+	}
+
+}
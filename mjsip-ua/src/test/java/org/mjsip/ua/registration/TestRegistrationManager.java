@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.ua.registration;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mjsip.sip.address.NameAddress;
+import org.mjsip.sip.address.SipURI;
+import org.mjsip.sip.authentication.DigestAuthentication;
+import org.mjsip.sip.header.ExpiresHeader;
+import org.mjsip.sip.header.WwwAuthenticateHeader;
+import org.mjsip.sip.message.SipMessage;
+import org.mjsip.sip.message.SipMethods;
+import org.mjsip.sip.provider.SipConfig;
+import org.mjsip.sip.provider.SipId;
+import org.mjsip.sip.provider.SipProvider;
+import org.mjsip.time.Scheduler;
+import org.mjsip.ua.registration.RegistrationManager.Binding;
+import org.mjsip.ua.registration.RegistrationManager.State;
+import org.mjsip.ua.registration.RegistrationManager.Status;
+
+/**
+ * Test for {@link RegistrationManager} against a registrar stub on the loopback interface.
+ */
+@SuppressWarnings("javadoc")
+class TestRegistrationManager {
+
+	private static final String LOCALHOST = "127.0.0.1";
+
+	private static final String PASSWD = "secret";
+
+	private static final int BINDINGS = 20;
+
+	private static final int MAX_IN_FLIGHT = 3;
+
+	private ScheduledExecutorService _executor;
+
+	private SipProvider _registrar;
+
+	private SipProvider _client;
+
+	private final AtomicInteger _registers = new AtomicInteger();
+
+	private final AtomicInteger _challenges = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() throws IOException {
+		_executor = Executors.newScheduledThreadPool(2);
+		_registrar = new SipProvider(config(freePort()), Scheduler.of(_executor));
+		_client = new SipProvider(config(freePort()), Scheduler.of(_executor));
+
+		_registrar.addSelectiveListener(SipId.createMethodId(SipMethods.REGISTER), (provider, req) -> {
+			_registers.incrementAndGet();
+
+			SipMessage resp;
+			if (req.hasAuthorizationHeader() && new DigestAuthentication(SipMethods.REGISTER,
+					req.getAuthorizationHeader(), null, PASSWD).checkResponse()) {
+				resp = provider.messageFactory().createResponse(req, 200, null, null);
+				resp.setExpiresHeader(new ExpiresHeader(req.getExpiresHeader().getDeltaSeconds()));
+			} else {
+				_challenges.incrementAndGet();
+				resp = provider.messageFactory().createResponse(req, 401, null, null);
+				resp.setWwwAuthenticateHeader(
+						new WwwAuthenticateHeader("Digest realm=\"test\", nonce=\"n1\", qop=\"auth\", algorithm=MD5"));
+			}
+			provider.sendMessage(resp);
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		_client.halt();
+		_registrar.halt();
+		_executor.shutdownNow();
+	}
+
+	@Test
+	void testRegisterRefreshUnregister() throws InterruptedException {
+		AtomicInteger maxInFlight = new AtomicInteger();
+		RegistrationManager[] self = { null };
+		RegistrationManager manager = new RegistrationManager(_client, MAX_IN_FLIGHT, 0.5, 200,
+				binding -> maxInFlight.accumulateAndGet(self[0].getInFlight(), Math::max));
+		self[0] = manager;
+
+		Binding[] bindings = new Binding[BINDINGS];
+		for (int n = 0; n < BINDINGS; n++) {
+			bindings[n] = manager.add(options("user" + n, 2));
+		}
+
+		awaitStatus(manager, BINDINGS);
+		Assertions.assertEquals(BINDINGS, _challenges.get(), "One challenge per binding.");
+		Assertions.assertTrue(maxInFlight.get() <= MAX_IN_FLIGHT);
+
+		// Refreshes reuse the cached challenge.
+		int registers = _registers.get();
+		Thread.sleep(1500);
+		Assertions.assertTrue(_registers.get() >= registers + BINDINGS, "Bindings have been refreshed.");
+		Assertions.assertEquals(BINDINGS, _challenges.get(), "No challenges for refreshes.");
+		awaitStatus(manager, BINDINGS);
+
+		for (Binding binding : bindings) {
+			Assertions.assertTrue(binding.getExpiresAt() > System.currentTimeMillis());
+			manager.remove(binding);
+		}
+		for (int n = 0; n < 50 && manager.getStatus().getTotal() > 0; n++) {
+			Thread.sleep(100);
+		}
+		Assertions.assertEquals(0, manager.getStatus().getTotal());
+		for (Binding binding : bindings) {
+			Assertions.assertEquals(State.UNREGISTERED, binding.getState());
+			Assertions.assertEquals(0, binding.getExpiresAt());
+		}
+		manager.halt();
+	}
+
+	@Test
+	void testRefreshDelay() {
+		RegistrationManager manager = new RegistrationManager(_client, 1, 0.2, 0, null);
+		for (int n = 0; n < 100; n++) {
+			long delay = manager.refreshDelay(3600);
+			Assertions.assertTrue(delay <= 1800_000L);
+			Assertions.assertTrue(delay >= 1440_000L);
+		}
+	}
+
+	@Test
+	void testGrantedExpires() {
+		NameAddress contact = NameAddress.parse("<sip:alice@192.0.2.1:5070>");
+		SipMessage resp = new SipMessage("SIP/2.0 200 OK\r\n"
+				+ "Contact: <sip:alice@192.0.2.2:5060>;expires=60\r\n"
+				+ "Contact: <sip:alice@192.0.2.1:5070;transport=udp>;expires=1800\r\n"
+				+ "Expires: 3600\r\n"
+				+ "Content-Length: 0\r\n"
+				+ "\r\n");
+
+		// Other devices registered for the same AOR do not shorten the own binding.
+		Assertions.assertEquals(1800, RegistrationManager.grantedExpires(resp, contact, 900));
+
+		// Without an entry for the own contact, the Expires header applies.
+		Assertions.assertEquals(3600,
+			RegistrationManager.grantedExpires(resp, NameAddress.parse("<sip:alice@192.0.2.3>"), 900));
+
+		SipMessage plain = new SipMessage("SIP/2.0 200 OK\r\nContent-Length: 0\r\n\r\n");
+		Assertions.assertEquals(900, RegistrationManager.grantedExpires(plain, contact, 900));
+	}
+
+	private void awaitStatus(RegistrationManager manager, int registered) throws InterruptedException {
+		Status status = manager.getStatus();
+		for (int n = 0; n < 100 && status.getRegistered() < registered; n++) {
+			Thread.sleep(50);
+			status = manager.getStatus();
+		}
+		Assertions.assertEquals(registered, status.getRegistered(), status.toString());
+		Assertions.assertEquals(0, status.getFailed());
+	}
+
+	private RegistrationOptions options(String user, int expires) {
+		NameAddress aor = new NameAddress(new SipURI(user, LOCALHOST, _registrar.getPort()));
+		SipURI registrar = new SipURI(LOCALHOST, _registrar.getPort());
+		return new RegistrationOptions() {
+			@Override
+			public NameAddress getUserURI() {
+				return aor;
+			}
+
+			@Override
+			public String getAuthUser() {
+				return user;
+			}
+
+			@Override
+			public String getAuthPasswd() {
+				return PASSWD;
+			}
+
+			@Override
+			public String getAuthRealm() {
+				return "test";
+			}
+
+			@Override
+			public SipURI getRoute() {
+				return null;
+			}
+
+			@Override
+			public SipURI getRegistrar() {
+				return registrar;
+			}
+
+			@Override
+			public int getExpires() {
+				return expires;
+			}
+		};
+	}
+
+	private static SipConfig config(int port) {
+		SipConfig config = new SipConfig();
+		config.setViaAddrIPv4(LOCALHOST);
+		config.setHostPort(port);
+		config.setTransportProtocols(new String[] { SipProvider.PROTO_UDP });
+		config.normalize();
+		return config;
+	}
+
+	private static int freePort() throws IOException {
+		try (DatagramSocket socket = new DatagramSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+}
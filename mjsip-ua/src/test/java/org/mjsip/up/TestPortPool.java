@@ -3,10 +3,15 @@
  */
 package org.mjsip.up;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mjsip.pool.PortPool;
 import org.mjsip.pool.PortPool.Exhausted;
+import org.mjsip.pool.RtpSocketPair;
+import org.mjsip.pool.RtpSocketPool;
 
 /**
  * Test case for {@link PortPool}
@@ -39,5 +44,54 @@ class TestPortPool {
 		Assertions.assertEquals(10, pool.allocate());
 		Assertions.assertTrue(pool.isAvailable());
 	}
-	
+
+	@Test
+	void testRtpSocketPool() {
+		List<Runnable> tasks = new ArrayList<>();
+		RtpSocketPool pool = new RtpSocketPool(41001, 8, 2, 0, tasks::add);
+		try {
+			Assertions.assertEquals(2, pool.getBoundCount());
+
+			int port = pool.allocate();
+			Assertions.assertEquals(41002, port);
+			RtpSocketPair sockets = pool.takeSockets(port);
+			Assertions.assertNotNull(sockets);
+			Assertions.assertEquals(41002, sockets.getRtpSocket().getLocalPort());
+			Assertions.assertEquals(41003, sockets.getRtcpSocket().getLocalPort());
+			Assertions.assertNull(pool.takeSockets(port), "Sockets must only be taken once.");
+
+			Assertions.assertEquals(1, pool.getBoundCount(), "Sockets must not be bound on the calling thread.");
+			Assertions.assertEquals(1, tasks.size());
+			tasks.remove(0).run();
+			Assertions.assertEquals(2, pool.getBoundCount());
+
+			sockets.close();
+			pool.release(port);
+			Assertions.assertEquals(1, tasks.size(), "The released port must be refilled.");
+			tasks.remove(0).run();
+
+			// The released port is allocated next, with sockets bound in advance.
+			Assertions.assertEquals(port, pool.allocate());
+			RtpSocketPair again = pool.takeSockets(port);
+			Assertions.assertNotNull(again);
+			again.close();
+			pool.release(port);
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	void testQuarantine() throws InterruptedException {
+		RtpSocketPool pool = new RtpSocketPool(41100, 2, 0, 50);
+		int port = pool.allocate();
+		Assertions.assertFalse(pool.isAvailable());
+		pool.release(port);
+		Assertions.assertFalse(pool.isAvailable(), "Released port must be quarantined.");
+		Assertions.assertEquals(1, pool.getQuarantineCount());
+		Thread.sleep(100);
+		Assertions.assertTrue(pool.isAvailable());
+		Assertions.assertEquals(port, pool.allocate());
+	}
+
 }
@@ -3,6 +3,8 @@
  */
 package org.mjsip.time;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
@@ -26,12 +28,38 @@ public class ConfiguredScheduler implements Scheduler {
 	 */
 	private ScheduledThreadPoolExecutor daemonExecutor;
 
+	/**
+	 * Executor for {@link #execute(Runnable) executed} tasks, either {@link #executor} or an executor
+	 * creating a virtual thread per task.
+	 */
+	private Executor taskExecutor;
+
+	/**
+	 * Executor for long-running media stream loops.
+	 */
+	private MediaExecutor mediaExecutor;
+
+	/**
+	 * Threads for blocking loops created on behalf of this scheduler.
+	 */
+	private LoopThreads loopThreads;
+
 	/**
 	 * Creates a {@link ConfiguredScheduler}.
+	 * 
+	 * <p>
+	 * If the configuration {@link SchedulerConfig#useVirtualThreads() requests virtual threads},
+	 * executed tasks and the {@link #loopThreads() loops} of this scheduler run on virtual threads.
+	 * Scheduled tasks still run in the scheduler's thread pool.
+	 * </p>
 	 */
 	public ConfiguredScheduler(SchedulerConfig config) {
 		executor = new ScheduledThreadPoolExecutor(config.getThreadPoolSize(),
 				config.useDaemonThreads() ? new DaemonFactory() : Executors.defaultThreadFactory());
+		
+		loopThreads = LoopThreads.of(config.useVirtualThreads());
+		taskExecutor = loopThreads.isVirtual() ? LoopThreads.newVirtualExecutor("task-") : executor;
+		mediaExecutor = new MediaExecutor("media-", config.getMaxMediaStreams(), loopThreads);
 	}
 
 	/**
@@ -44,7 +72,39 @@ public class ConfiguredScheduler implements Scheduler {
 	
 	@Override
 	public void execute(Runnable command) {
-		executor.execute(command);
+		taskExecutor.execute(command);
+	}
+
+	/**
+	 * Executor for media stream loops, separate from the scheduler's thread pool.
+	 */
+	@Override
+	public MediaExecutor mediaExecutor() {
+		return mediaExecutor;
+	}
+
+	@Override
+	public LoopThreads loopThreads() {
+		return loopThreads;
+	}
+
+	/**
+	 * Initiates an orderly shutdown of the thread pools and of the executor for virtual task
+	 * threads.
+	 *
+	 * <p>
+	 * Previously submitted tasks are executed, but no new tasks are accepted. Running media loops
+	 * are not affected, they end when their streams are halted.
+	 * </p>
+	 */
+	public void shutdown() {
+		executor.shutdown();
+		if (daemonExecutor != null) {
+			daemonExecutor.shutdown();
+		}
+		if (taskExecutor != executor) {
+			((ExecutorService) taskExecutor).shutdown();
+		}
 	}
 
 	/**
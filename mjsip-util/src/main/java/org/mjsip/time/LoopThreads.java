@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.time;
+
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the threads running blocking I/O loops, such as transport receivers and media streams.
+ *
+ * <p>
+ * {@link #PLATFORM} runs each loop on a platform thread. When virtual threads are requested and
+ * the running Java version supports them (Java 21 and later), {@link #of(boolean)} returns an
+ * instance running loops on virtual threads instead. This allows the simple blocking loops to
+ * scale to a large number of concurrent transports and streams.
+ * </p>
+ *
+ * <p>
+ * The choice is a property of a {@link Scheduler}, see {@link Scheduler#loopThreads()}, and is
+ * passed to the loops created on behalf of this scheduler.
+ * </p>
+ *
+ * @see SchedulerConfig#useVirtualThreads()
+ */
+public final class LoopThreads {
+
+	private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(LoopThreads.class);
+
+	/**
+	 * Runs loops on platform threads.
+	 */
+	public static final LoopThreads PLATFORM = new LoopThreads(false);
+
+	private static final LoopThreads VIRTUAL = new LoopThreads(true);
+
+	private final boolean _virtual;
+
+	private LoopThreads(boolean virtual) {
+		_virtual = virtual;
+	}
+
+	/**
+	 * The {@link LoopThreads} for platform or virtual threads.
+	 *
+	 * <p>
+	 * If virtual threads are requested but not supported by the running Java version,
+	 * {@link #PLATFORM} is returned.
+	 * </p>
+	 */
+	public static LoopThreads of(boolean virtual) {
+		if (!virtual) {
+			return PLATFORM;
+		}
+		if (!isVirtualSupported()) {
+			LOG.warn("Virtual threads are not supported by Java " + System.getProperty("java.version")
+					+ ", using platform threads.");
+			return PLATFORM;
+		}
+		return VIRTUAL;
+	}
+
+	/**
+	 * Whether the running Java version supports virtual threads.
+	 */
+	public static boolean isVirtualSupported() {
+		return VirtualThreads.isSupported();
+	}
+
+	/**
+	 * Whether loops are started on virtual threads.
+	 */
+	public boolean isVirtual() {
+		return _virtual;
+	}
+
+	/**
+	 * Starts the given loop in a new thread.
+	 *
+	 * @param loop
+	 *        The loop to run.
+	 * @param name
+	 *        The name of the new thread.
+	 * @return The started thread.
+	 */
+	public Thread start(Runnable loop, String name) {
+		Thread thread = _virtual ? VirtualThreads.newThread(loop, name) : new Thread(loop, name);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Creates an executor that runs each task in a new virtual thread.
+	 *
+	 * @param prefix
+	 *        The name prefix of the created threads.
+	 * @throws UnsupportedOperationException
+	 *         If the running Java version does not support virtual threads.
+	 */
+	public static ExecutorService newVirtualExecutor(String prefix) {
+		return VirtualThreads.newExecutor(prefix);
+	}
+
+	@Override
+	public String toString() {
+		return _virtual ? "virtual" : "platform";
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.time;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Executor} for long-running media stream loops, such as RTP senders and receivers.
+ *
+ * <p>
+ * Each loop runs in its own thread started by {@link LoopThreads}, never in the thread pool of a
+ * {@link Scheduler}. This way, the number of active streams does not affect the latency of
+ * scheduled timers.
+ * </p>
+ *
+ * <p>
+ * The number of concurrently running loops can be limited. If the limit is reached, further loops
+ * are rejected with a {@link RejectedExecutionException}, so that the caller can refuse the media
+ * session instead of overloading the host.
+ * </p>
+ */
+public class MediaExecutor implements Executor {
+
+	private final String _prefix;
+
+	private final int _maxStreams;
+
+	private final LoopThreads _threads;
+
+	private final AtomicInteger _active = new AtomicInteger();
+
+	private final AtomicInteger _peak = new AtomicInteger();
+
+	private final AtomicLong _started = new AtomicLong();
+
+	private final AtomicLong _rejected = new AtomicLong();
+
+	/**
+	 * Creates a {@link MediaExecutor}.
+	 *
+	 * @param prefix
+	 *        The name prefix of the threads running the loops.
+	 * @param maxStreams
+	 *        The maximum number of concurrently running loops, or <code>0</code> for no limit.
+	 */
+	public MediaExecutor(String prefix, int maxStreams) {
+		this(prefix, maxStreams, LoopThreads.PLATFORM);
+	}
+
+	/**
+	 * Creates a {@link MediaExecutor}.
+	 *
+	 * @param prefix
+	 *        The name prefix of the threads running the loops.
+	 * @param maxStreams
+	 *        The maximum number of concurrently running loops, or <code>0</code> for no limit.
+	 * @param threads
+	 *        The threads to run the loops on.
+	 */
+	public MediaExecutor(String prefix, int maxStreams, LoopThreads threads) {
+		_prefix = prefix;
+		_maxStreams = maxStreams;
+		_threads = threads;
+	}
+
+	/**
+	 * The maximum number of concurrently running loops, <code>0</code> if not limited.
+	 */
+	public int getMaxStreams() {
+		return _maxStreams;
+	}
+
+	/**
+	 * The number of currently running loops.
+	 */
+	public int getActiveCount() {
+		return _active.get();
+	}
+
+	/**
+	 * The maximum number of loops that have been running at the same time.
+	 */
+	public int getPeakCount() {
+		return _peak.get();
+	}
+
+	/**
+	 * The number of loops started so far.
+	 */
+	public long getStartedCount() {
+		return _started.get();
+	}
+
+	/**
+	 * The number of loops rejected because the limit was reached.
+	 */
+	public long getRejectedCount() {
+		return _rejected.get();
+	}
+
+	/**
+	 * Starts the given loop in a new thread.
+	 *
+	 * @throws RejectedExecutionException
+	 *         If the maximum number of concurrently running loops is reached.
+	 */
+	@Override
+	public void execute(Runnable loop) {
+		if (!acquire()) {
+			_rejected.incrementAndGet();
+			throw new RejectedExecutionException("Limit of " + _maxStreams + " concurrent media streams reached.");
+		}
+
+		long id = _started.incrementAndGet();
+		try {
+			_threads.start(() -> {
+				try {
+					loop.run();
+				} finally {
+					_active.decrementAndGet();
+				}
+			}, _prefix + id);
+		} catch (RuntimeException | Error ex) {
+			_active.decrementAndGet();
+			throw ex;
+		}
+	}
+
+	private boolean acquire() {
+		while (true) {
+			int active = _active.get();
+			if (_maxStreams > 0 && active >= _maxStreams) {
+				return false;
+			}
+			if (_active.compareAndSet(active, active + 1)) {
+				_peak.accumulateAndGet(active + 1, Math::max);
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MediaExecutor(active=" + getActiveCount() + ", peak=" + getPeakCount() + ", max=" + _maxStreams
+				+ ", rejected=" + getRejectedCount() + ")";
+	}
+
+}
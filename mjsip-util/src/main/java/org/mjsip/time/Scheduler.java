@@ -39,6 +39,27 @@ public interface Scheduler extends Executor {
 		return executor().scheduleWithFixedDelay(task, delay, delay, TimeUnit.MILLISECONDS);
 	}
 	
+	/**
+	 * The {@link Executor} for long-running media stream loops.
+	 * 
+	 * <p>
+	 * Media loops block for the whole duration of a call and must not run in the pool of scheduled
+	 * tasks. By default, this is the scheduler itself, implementations with a limited thread pool
+	 * should provide a separate {@link MediaExecutor}.
+	 * </p>
+	 */
+	default Executor mediaExecutor() {
+		return this;
+	}
+
+	/**
+	 * The {@link LoopThreads} for blocking transport and media loops created on behalf of this
+	 * scheduler.
+	 */
+	default LoopThreads loopThreads() {
+		return LoopThreads.PLATFORM;
+	}
+
 	/**
 	 * Wraps the given {@link ScheduledExecutorService} into a {@link Scheduler}.
 	 */
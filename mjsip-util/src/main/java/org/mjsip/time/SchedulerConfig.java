@@ -19,6 +19,12 @@ public class SchedulerConfig {
 	@Option(name = "--use-daemon-treads", handler = YesNoHandler.class)
 	private boolean _daemonThreads = true;
 
+	@Option(name = "--virtual-threads", usage = "Whether to run tasks and blocking transport and media loops on virtual threads (requires Java 21).", handler = YesNoHandler.class)
+	private boolean _virtualThreads = false;
+
+	@Option(name = "--max-media-streams", usage = "Maximum number of concurrently running media stream loops (two per audio call), 0 for no limit.")
+	private int _maxMediaStreams = 0;
+
 	/**
 	 * The core pool size of the scheduler's thread pool.
 	 */
@@ -33,4 +39,42 @@ public class SchedulerConfig {
 		return _daemonThreads;
 	}
 
+	/**
+	 * Whether tasks executed by the scheduler and the blocking transport and media loops run on
+	 * virtual threads.
+	 * 
+	 * <p>
+	 * Only effective on Java 21 and later.
+	 * </p>
+	 * 
+	 * @see LoopThreads
+	 */
+	public boolean useVirtualThreads() {
+		return _virtualThreads;
+	}
+
+	/** @see #useVirtualThreads() */
+	public void setVirtualThreads(boolean virtualThreads) {
+		_virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * The maximum number of concurrently running media stream loops, <code>0</code> for no limit.
+	 * 
+	 * @see MediaExecutor
+	 */
+	public int getMaxMediaStreams() {
+		return _maxMediaStreams;
+	}
+
+	/** @see #getMaxMediaStreams() */
+	public void setMaxMediaStreams(int maxMediaStreams) {
+		_maxMediaStreams = maxMediaStreams;
+	}
+
+	/** @see #getThreadPoolSize() */
+	public void setThreadPoolSize(int threadPoolSize) {
+		_threadPoolSize = threadPoolSize;
+	}
+
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.time;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads.
+ * 
+ * <p>
+ * This is the implementation for Java versions without virtual threads. On Java 21 and later, the
+ * multi-release JAR provides an implementation that creates virtual threads.
+ * </p>
+ */
+final class VirtualThreads {
+
+	private VirtualThreads() {
+		// Static utility.
+	}
+
+	/**
+	 * Whether virtual threads are supported by the running Java version.
+	 */
+	static boolean isSupported() {
+		return false;
+	}
+
+	/**
+	 * Creates an unstarted virtual thread.
+	 */
+	static Thread newThread(Runnable task, String name) {
+		throw new UnsupportedOperationException("Virtual threads require Java 21.");
+	}
+
+	/**
+	 * Creates an executor that runs each task in a new virtual thread.
+	 */
+	static ExecutorService newExecutor(String prefix) {
+		throw new UnsupportedOperationException("Virtual threads require Java 21.");
+	}
+
+}
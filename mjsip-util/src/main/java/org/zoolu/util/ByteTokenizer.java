@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.zoolu.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizer working directly on the bytes of a received text based message, such as a SIP request.
+ *
+ * <p>
+ * In contrast to {@link Parser}, the message needs not be decoded to a {@link String} before it is
+ * split into lines and tokens. Characters are classified with {@link CharTable}s. Only the tokens
+ * that are actually requested are decoded (as UTF-8).
+ * </p>
+ *
+ * <p>
+ * Line breaks are CR, LF or CRLF, as accepted by {@link Parser#goToNextLine()}.
+ * </p>
+ */
+public class ByteTokenizer {
+
+	private final byte[] _buf;
+
+	private final int _end;
+
+	private int _pos;
+
+	/**
+	 * Creates a {@link ByteTokenizer}.
+	 *
+	 * @param buf
+	 *        The buffer with the data to tokenize.
+	 * @param off
+	 *        The offset of the data in the buffer.
+	 * @param len
+	 *        The length of the data.
+	 */
+	public ByteTokenizer(byte[] buf, int off, int len) {
+		_buf = buf;
+		_pos = off;
+		_end = off + len;
+	}
+
+	/**
+	 * The current position in the underlying buffer.
+	 */
+	public int getPos() {
+		return _pos;
+	}
+
+	/**
+	 * Moves to the given position in the underlying buffer.
+	 */
+	public ByteTokenizer setPos(int pos) {
+		_pos = pos;
+		return this;
+	}
+
+	/**
+	 * The end position (exclusive) of the data in the underlying buffer.
+	 */
+	public int getEnd() {
+		return _end;
+	}
+
+	/**
+	 * Whether there are more bytes to tokenize.
+	 */
+	public boolean hasMore() {
+		return _pos < _end;
+	}
+
+	/**
+	 * Whether the data at the current position starts with the given ASCII string, ignoring case.
+	 */
+	public boolean startsWithIgnoreCase(String prefix) {
+		int length = prefix.length();
+		if (_pos + length > _end) {
+			return false;
+		}
+		for (int n = 0; n < length; n++) {
+			if (Parser.compareIgnoreCase((char) (_buf[_pos + n] & 0xFF), prefix.charAt(n)) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The position of the first occurrence of the given ASCII character in the range from
+	 * <code>begin</code> (inclusive) to <code>end</code> (exclusive), or <code>-1</code>.
+	 */
+	public int indexOf(char c, int begin, int end) {
+		byte b = (byte) c;
+		for (int n = begin; n < end; n++) {
+			if (_buf[n] == b) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The position of the first occurrence of the given byte sequence at or after the current
+	 * position, or <code>-1</code>.
+	 */
+	public int indexOf(byte[] pattern) {
+		byte first = pattern[0];
+		int last = _end - pattern.length;
+		search:
+		for (int n = _pos; n <= last; n++) {
+			if (_buf[n] != first) {
+				continue;
+			}
+			for (int k = 1; k < pattern.length; k++) {
+				if (_buf[n + k] != pattern[k]) {
+					continue search;
+				}
+			}
+			return n;
+		}
+		return -1;
+	}
+
+	/**
+	 * The position of the first byte at or after the current position that is contained in the
+	 * given table, or {@link #getEnd()}.
+	 */
+	public int indexOf(CharTable table) {
+		int result = table.indexIn(_buf, _pos, _end);
+		return result < 0 ? _end : result;
+	}
+
+	/**
+	 * Skips all bytes contained in the given table.
+	 */
+	public ByteTokenizer skip(CharTable table) {
+		while (_pos < _end && table.contains(_buf[_pos])) {
+			_pos++;
+		}
+		return this;
+	}
+
+	/**
+	 * Skips the line break at the current position, if any.
+	 */
+	public ByteTokenizer skipLineBreak() {
+		if (_pos < _end) {
+			byte b = _buf[_pos];
+			if (b == '\r') {
+				_pos++;
+				if (_pos < _end && _buf[_pos] == '\n') {
+					_pos++;
+				}
+			} else if (b == '\n') {
+				_pos++;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Moves to the beginning of the next line.
+	 */
+	public ByteTokenizer goToNextLine() {
+		_pos = indexOf(CharTable.CRLF);
+		return skipLineBreak();
+	}
+
+	/**
+	 * The position of the end of the logical line starting at the current position.
+	 *
+	 * <p>
+	 * A logical line continues on the next physical line, if this starts with a space or tab (line
+	 * folding of header fields as in RFC 822, RFC 3261). The line break is not part of the logical
+	 * line.
+	 * </p>
+	 *
+	 * @return The position of the line break ending the logical line, or {@link #getEnd()}.
+	 */
+	public int indexOfEndOfFoldedLine() {
+		int pos = _pos;
+		while (true) {
+			int end = CharTable.CRLF.indexIn(_buf, pos, _end);
+			if (end < 0) {
+				return _end;
+			}
+			pos = end + 1;
+			if (_buf[end] == '\r' && pos < _end && _buf[pos] == '\n') {
+				pos++;
+			}
+			if (pos >= _end || !CharTable.WSP.contains(_buf[pos])) {
+				return end;
+			}
+		}
+	}
+
+	/**
+	 * Decodes the bytes from <code>begin</code> (inclusive) to <code>end</code> (exclusive).
+	 */
+	public String getString(int begin, int end) {
+		return new String(_buf, begin, end - begin, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes the bytes from <code>begin</code> (inclusive) to <code>end</code> (exclusive) without
+	 * leading and trailing control characters and spaces, like {@link String#trim()}.
+	 */
+	public String getTrimmedString(int begin, int end) {
+		while (begin < end && (_buf[begin] & 0xFF) <= ' ') {
+			begin++;
+		}
+		while (end > begin && (_buf[end - 1] & 0xFF) <= ' ') {
+			end--;
+		}
+		return getString(begin, end);
+	}
+
+	@Override
+	public String toString() {
+		return getString(_pos, _end);
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.zoolu.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of 8-bit characters, classifying a character with a single lookup in a
+ * 256-entry table.
+ *
+ * <p>
+ * Replaces linear scans over a <code>char[]</code> of separators as in
+ * {@link Parser#isAnyOf(char[], char)}. Characters outside the 8-bit range are never contained.
+ * Bytes are classified by their unsigned value, so that a table can be applied to received data
+ * before it is decoded.
+ * </p>
+ */
+public final class CharTable {
+
+	/** Space (SP) and tab (HT). */
+	public static final CharTable WSP = of(' ', '\t');
+
+	/** CR and LF. */
+	public static final CharTable CRLF = of('\r', '\n');
+
+	/** Space, tab, CR, and LF. */
+	public static final CharTable WSPCRLF = WSP.or(CRLF);
+
+	/** Digits <code>0-9</code>. */
+	public static final CharTable DIGIT = range('0', '9');
+
+	/** Letters <code>a-z</code> and <code>A-Z</code>. */
+	public static final CharTable ALPHA = range('a', 'z').or(range('A', 'Z'));
+
+	/** Letters and digits. */
+	public static final CharTable ALPHANUM = ALPHA.or(DIGIT);
+
+	private final boolean[] _table;
+
+	private CharTable(boolean[] table) {
+		_table = table;
+	}
+
+	/**
+	 * Creates a {@link CharTable} containing the given characters.
+	 */
+	public static CharTable of(char... chars) {
+		boolean[] table = new boolean[256];
+		for (char c : chars) {
+			if (c < 256) {
+				table[c] = true;
+			}
+		}
+		return new CharTable(table);
+	}
+
+	/**
+	 * Creates a {@link CharTable} containing all characters of the given string.
+	 */
+	public static CharTable of(String chars) {
+		return of(chars.toCharArray());
+	}
+
+	/**
+	 * Creates a {@link CharTable} containing all characters from <code>first</code> to
+	 * <code>last</code> (inclusive).
+	 */
+	public static CharTable range(char first, char last) {
+		boolean[] table = new boolean[256];
+		Arrays.fill(table, first, Math.min(last, 255) + 1, true);
+		return new CharTable(table);
+	}
+
+	/**
+	 * The union of this and the given set.
+	 */
+	public CharTable or(CharTable other) {
+		boolean[] table = new boolean[256];
+		for (int n = 0; n < 256; n++) {
+			table[n] = _table[n] || other._table[n];
+		}
+		return new CharTable(table);
+	}
+
+	/**
+	 * The characters not in this set.
+	 */
+	public CharTable not() {
+		boolean[] table = new boolean[256];
+		for (int n = 0; n < 256; n++) {
+			table[n] = !_table[n];
+		}
+		return new CharTable(table);
+	}
+
+	/**
+	 * Whether the given character is contained.
+	 */
+	public boolean contains(char c) {
+		return c < 256 && _table[c];
+	}
+
+	/**
+	 * Whether the given byte is contained.
+	 */
+	public boolean contains(byte b) {
+		return _table[b & 0xFF];
+	}
+
+	/**
+	 * The index of the first character of the given string in the range from <code>begin</code>
+	 * (inclusive) to <code>end</code> (exclusive) that is contained in this set, or <code>-1</code>.
+	 */
+	public int indexIn(String str, int begin, int end) {
+		for (int n = begin; n < end; n++) {
+			if (contains(str.charAt(n))) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The index of the first byte of the given buffer in the range from <code>begin</code>
+	 * (inclusive) to <code>end</code> (exclusive) that is contained in this set, or <code>-1</code>.
+	 */
+	public int indexIn(byte[] buf, int begin, int end) {
+		boolean[] table = _table;
+		for (int n = begin; n < end; n++) {
+			if (table[buf[n] & 0xFF]) {
+				return n;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The index of the first character of the given string at or after <code>begin</code> that is
+	 * not contained in this set, or the length of the string.
+	 */
+	public int skipIn(String str, int begin) {
+		int end = str.length();
+		while (begin < end && contains(str.charAt(begin))) {
+			begin++;
+		}
+		return begin;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		for (int n = 0; n < 256; n++) {
+			if (_table[n]) {
+				if (n < ' ' || n > '~') {
+					result.append(String.format("\\x%02x", n));
+				} else {
+					result.append((char) n);
+				}
+			}
+		}
+		return result.append(']').toString();
+	}
+
+}
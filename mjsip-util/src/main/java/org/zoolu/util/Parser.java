@@ -112,6 +112,9 @@ public class Parser {
 	/** Goes to the next occurence of any char of array <i>cc</i> */
 	public Parser goTo(char[] cc) { index=indexOf(cc); if (index<0) index=str.length(); return this; }
 
+	/** Goes to the next occurence of any char of table <i>cc</i> */
+	public Parser goTo(CharTable cc) { index=indexOf(cc); if (index<0) index=str.length(); return this; }
+
 	/** Goes to the next occurence of <i>String s</i> */
 	public Parser goTo(String s) { index=str.indexOf(s,index); if (index<0) index=str.length(); return this; }
 
@@ -167,15 +170,15 @@ public class Parser {
 	/** LF */
 	public static boolean isLF(char c) { return (c=='\n'); }
 	/** CR or LF */
-	public static boolean isCRLF(char c) { return isAnyOf(CRLF,c); }
+	public static boolean isCRLF(char c) { return CharTable.CRLF.contains(c); }
 	/** Tab (HT) */
 	public static boolean isHT(char c) { return (c=='\t'); }
 	/** Space (SP) */
 	public static boolean isSP(char c) { return (c==' '); }
 	/** Space or tab */
-	public static boolean isWSP(char c){ return isAnyOf(WSP,c); }
+	public static boolean isWSP(char c){ return CharTable.WSP.contains(c); }
 	/** Space, tab, CR, or LF */
-	public static boolean isWSPCRLF(char c){ return isAnyOf(WSPCRLF,c); }
+	public static boolean isWSPCRLF(char c){ return CharTable.WSPCRLF.contains(c); }
 
 
 	/** Compares two chars ignoring case */
@@ -203,6 +206,10 @@ public class Parser {
 		}
 		return (found)? (begin-1) : -1;
 	}
+	/** Gets the absolute index (relative to the original string) of the first occurence of any char of table <i>cc</i>; return -1 if no occurence is found*/
+	public int indexOf(CharTable cc) {
+		return cc.indexIn(str,index,str.length());
+	}
 	/** Gets the absolute index (relative to the original string) of the first occurence of String <i>s</i> */
 	public int indexOf(String s) {
 		return str.indexOf(s,index);
@@ -315,6 +322,11 @@ public class Parser {
 		while (index<str.length() && isAnyOf(cc,nextChar())) index++;
 		return this;
 	}
+	/** Skips any chars of table <i>cc</i> */
+	public Parser skipChars(CharTable cc) {
+		index=cc.skipIn(str,index);
+		return this;
+	}
 	/** Skips a continuous string of char and go to the next "blank" char */
 	public Parser skipString() {
 		getString();
@@ -347,6 +359,14 @@ public class Parser {
 		index=end;
 		return str.substring(begin,end);
 	}
+	/** Gets a string of chars separated by any of chars of table <i>separators</i> */
+	public String getWord(CharTable separators) {
+		int begin=separators.skipIn(str,index);
+		int end=separators.indexIn(str,begin,str.length());
+		if (end<0) end=str.length();
+		index=end;
+		return str.substring(begin,end);
+	}
 	/** Gets an integer and point to the next char */
 	public int getInt() {
 		return Integer.parseInt(getString());
@@ -481,6 +501,19 @@ public class Parser {
 		index=end;
 		return str.substring(begin,end);
 	}   
+	/** Gets a string of chars separated by any of chars in table <i>separators</i>
+	  * , skipping any separator inside possible quoted texts. */
+	public String getWordSkippingQuoted(CharTable separators) {
+		int begin=separators.skipIn(str,index);
+		boolean inside_quoted_string=false;
+		int end=begin;
+		while (end<str.length() && (!separators.contains(str.charAt(end)) || inside_quoted_string)) {
+			if (str.charAt(end)=='"') inside_quoted_string=!inside_quoted_string;
+			end++;
+		}
+		index=end;
+		return str.substring(begin,end);
+	}   
 	/** Gets the first quatable string, that is a normal string, or text in quotes.
 	  * <br>In the latter case, quotes are dropped. */
 	public String getStringUnquoted() {
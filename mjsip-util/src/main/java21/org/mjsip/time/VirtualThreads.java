@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.time;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads.
+ * 
+ * <p>
+ * Implementation for Java 21 and later, packaged into the multi-release JAR.
+ * </p>
+ */
+final class VirtualThreads {
+
+	private VirtualThreads() {
+		// Static utility.
+	}
+
+	/**
+	 * Whether virtual threads are supported by the running Java version.
+	 */
+	static boolean isSupported() {
+		return true;
+	}
+
+	/**
+	 * Creates an unstarted virtual thread.
+	 */
+	static Thread newThread(Runnable task, String name) {
+		return Thread.ofVirtual().name(name).unstarted(task);
+	}
+
+	/**
+	 * Creates an executor that runs each task in a new virtual thread.
+	 */
+	static ExecutorService newExecutor(String prefix) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+	}
+
+}
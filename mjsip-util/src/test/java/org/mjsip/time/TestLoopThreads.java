@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.time;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link LoopThreads} as property of a {@link ConfiguredScheduler}.
+ */
+@SuppressWarnings("javadoc")
+class TestLoopThreads {
+
+	@Test
+	void testPerScheduler() throws InterruptedException {
+		SchedulerConfig virtualConfig = new SchedulerConfig();
+		virtualConfig.setVirtualThreads(true);
+		ConfiguredScheduler virtual = new ConfiguredScheduler(virtualConfig);
+		ConfiguredScheduler platform = new ConfiguredScheduler(new SchedulerConfig());
+		try {
+			Assertions.assertEquals(LoopThreads.isVirtualSupported(), virtual.loopThreads().isVirtual());
+
+			// Creating a scheduler with virtual threads does not affect other schedulers.
+			Assertions.assertSame(LoopThreads.PLATFORM, platform.loopThreads());
+			Assertions.assertSame(LoopThreads.PLATFORM, Scheduler.of(platform.executor()).loopThreads());
+
+			CountDownLatch done = new CountDownLatch(1);
+			Thread thread = platform.loopThreads().start(done::countDown, "loop");
+			Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+			thread.join(5000);
+			Assertions.assertFalse(thread.isAlive());
+		} finally {
+			virtual.shutdown();
+			platform.shutdown();
+		}
+
+		Assertions.assertTrue(virtual.executor().awaitTermination(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(platform.executor().awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+}
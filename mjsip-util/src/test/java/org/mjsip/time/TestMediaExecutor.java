@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2023 Bernhard Haumacher et al. All Rights Reserved.
+ */
+package org.mjsip.time;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link MediaExecutor} and its use by {@link ConfiguredScheduler}.
+ */
+@SuppressWarnings("javadoc")
+class TestMediaExecutor {
+
+	private static final int STREAMS = 200;
+
+	private static final int TIMERS = 20;
+
+	/** Packetization interval of the simulated streams. */
+	private static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(20);
+
+	/** Time the streams keep running after the last timer was due. */
+	private static final long GRACE = 200;
+
+	@Test
+	void testTimersWithManyStreams() throws InterruptedException {
+		SchedulerConfig config = new SchedulerConfig();
+		config.setThreadPoolSize(2);
+
+		// Baseline: The stream loops occupy the timer thread pool.
+		ConfiguredScheduler shared = new ConfiguredScheduler(config);
+		long sharedLateness;
+		try {
+			sharedLateness = maxLateness(shared, shared.executor());
+		} finally {
+			shared.shutdown();
+		}
+
+		ConfiguredScheduler scheduler = new ConfiguredScheduler(config);
+		long mediaLateness;
+		try {
+			mediaLateness = maxLateness(scheduler, scheduler.mediaExecutor());
+		} finally {
+			scheduler.shutdown();
+		}
+
+		Assertions.assertTrue(mediaLateness < sharedLateness / 2, "Maximum timer lateness with media executor: "
+				+ mediaLateness + "ms, in shared thread pool: " + sharedLateness + "ms");
+
+		for (int n = 0; n < 100 && scheduler.mediaExecutor().getActiveCount() > 0; n++) {
+			Thread.sleep(20);
+		}
+		Assertions.assertEquals(0, scheduler.mediaExecutor().getActiveCount());
+		Assertions.assertEquals(STREAMS, scheduler.mediaExecutor().getPeakCount());
+	}
+
+	/**
+	 * Runs {@link #STREAMS} media loops in the given executor and measures the maximum lateness of
+	 * timers scheduled meanwhile in milliseconds.
+	 */
+	private static long maxLateness(ConfiguredScheduler scheduler, Executor streams) throws InterruptedException {
+		CountDownLatch stop = new CountDownLatch(1);
+		AtomicLong checksum = new AtomicLong();
+		try {
+			// Pacing loops, like RTP senders of 200 calls.
+			for (int n = 0; n < STREAMS; n++) {
+				int seed = n;
+				streams.execute(() -> stream(seed, stop, checksum));
+			}
+
+			AtomicLong maxLateness = new AtomicLong();
+			CountDownLatch fired = new CountDownLatch(TIMERS);
+			for (int n = 0; n < TIMERS; n++) {
+				long delay = 10 * n;
+				long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+				scheduler.schedule(delay, () -> {
+					maxLateness.accumulateAndGet(System.nanoTime() - due, Math::max);
+					fired.countDown();
+				});
+			}
+			Thread.sleep(10 * TIMERS + GRACE);
+			stop.countDown();
+
+			Assertions.assertTrue(fired.await(10, TimeUnit.SECONDS), "All timers fired.");
+			return TimeUnit.NANOSECONDS.toMillis(maxLateness.get());
+		} finally {
+			stop.countDown();
+		}
+	}
+
+	/**
+	 * Encodes a frame of samples every {@link #PERIOD} until stopped.
+	 */
+	private static void stream(int seed, CountDownLatch stop, AtomicLong checksum) {
+		short[] samples = new short[160];
+		byte[] frame = new byte[samples.length];
+		long next = System.nanoTime();
+		int sum = 0;
+		try {
+			while (true) {
+				for (int n = 0; n < samples.length; n++) {
+					samples[n] = (short) ((seed + n) * 997 + next);
+				}
+				for (int round = 0; round < 10; round++) {
+					for (int n = 0; n < samples.length; n++) {
+						int sample = samples[n] + round;
+						int sign = sample < 0 ? 0x80 : 0;
+						int magnitude = Math.min(Math.abs(sample), 0x7FFF) >> 8;
+						frame[n] = (byte) ~(sign | magnitude);
+						sum += frame[n];
+					}
+				}
+
+				next += PERIOD;
+				long wait = next - System.nanoTime();
+				if (stop.await(Math.max(0, wait), TimeUnit.NANOSECONDS)) {
+					break;
+				}
+			}
+		} catch (InterruptedException ex) {
+			// Terminate.
+		}
+		checksum.addAndGet(sum);
+	}
+
+	@Test
+	void testLimit() throws InterruptedException {
+		MediaExecutor executor = new MediaExecutor("test-", 3);
+		CountDownLatch stop = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+		for (int n = 0; n < 3; n++) {
+			executor.execute(() -> {
+				try {
+					stop.await();
+				} catch (InterruptedException ex) {
+					// Terminate.
+				}
+				done.countDown();
+			});
+		}
+		Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+			// Never runs.
+		}));
+		Assertions.assertEquals(1, executor.getRejectedCount());
+		Assertions.assertEquals(3, executor.getActiveCount());
+
+		stop.countDown();
+		Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (int n = 0; n < 100 && executor.getActiveCount() > 0; n++) {
+			Thread.sleep(10);
+		}
+
+		// Capacity is available again.
+		CountDownLatch ran = new CountDownLatch(1);
+		executor.execute(ran::countDown);
+		Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(4, executor.getStartedCount());
+		Assertions.assertEquals(3, executor.getPeakCount());
+	}
+
+}